@@ -0,0 +1,84 @@
+package com.example.demo.smartfridge.benchmark;
+
+import com.example.demo.smartfridge.CachingSmartFridgeManager;
+import com.example.demo.smartfridge.ItemFillResult;
+import com.example.demo.smartfridge.SmartFridgeManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A dashboard-like mix against a fridge with and without a CachingSmartFridgeManager in front:
+ * writePercent of the calls re-add a stored container with a new fill factor, the rest are split
+ * evenly between getFillFactor() of a random item type and getItems() at one of three alerting
+ * thresholds. The hit rates are printed at the end of every trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CachingSmartFridgeManagerBenchmark {
+    private static final int ITEM_COUNT = 10_000;
+    private static final double[] THRESHOLDS = {0.1d, 0.25d, 0.5d};
+
+    @Param({"CONCURRENT"})
+    public SmartFridgeManagerImplementation implementation;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    @Param({"100", "10000"})
+    public int itemTypeCount;
+
+    @Param({"1", "10"})
+    public int writePercent;
+
+    private SmartFridgeManager manager;
+    private String[] itemUUIDs;
+    private long[] itemTypes;
+    private final ItemFillResult result = new ItemFillResult();
+    private final Random random = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        itemUUIDs = new String[ITEM_COUNT];
+        itemTypes = new long[ITEM_COUNT];
+        manager = implementation.create();
+        if (cached) {
+            manager = new CachingSmartFridgeManager(manager, 10_000);
+        }
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            itemUUIDs[i] = UUID.randomUUID().toString();
+            itemTypes[i] = random.nextInt(itemTypeCount);
+            manager.handleItemAdded(itemTypes[i], itemUUIDs[i], "item" + itemTypes[i], random.nextDouble());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void printHitRates() {
+        if (manager instanceof CachingSmartFridgeManager) {
+            CachingSmartFridgeManager cache = (CachingSmartFridgeManager) manager;
+            System.out.printf(Locale.ROOT, "%nhit rate getItems %.3f, getFillFactor %.3f%n",
+                    cache.getItemsStats().hitRate(), cache.getFillFactorStats().hitRate());
+        }
+    }
+
+    @Benchmark
+    public Object mixed() {
+        int operation = random.nextInt(100);
+        if (operation < writePercent) {
+            int container = random.nextInt(ITEM_COUNT);
+            manager.handleItemAdded(itemTypes[container], itemUUIDs[container], "item" + itemTypes[container], random.nextDouble());
+            return null;
+        }
+        if ((operation & 1) == 0) {
+            return manager.getFillFactorAsDouble(random.nextInt(itemTypeCount));
+        }
+        return manager.getItems(THRESHOLDS[operation % THRESHOLDS.length], result);
+    }
+}
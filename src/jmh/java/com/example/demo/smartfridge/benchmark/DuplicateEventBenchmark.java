@@ -0,0 +1,69 @@
+package com.example.demo.smartfridge.benchmark;
+
+import com.example.demo.smartfridge.DeduplicatingSmartFridgeManager;
+import com.example.demo.smartfridge.SmartFridgeManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-adds of stored containers with and without a DeduplicatingSmartFridgeManager in front:
+ * duplicatePercent of them repeat the last event of the container, as a hardware retry would,
+ * the rest carry a new fill factor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DuplicateEventBenchmark {
+    private static final int ITEM_COUNT = 10_000;
+    private static final int ITEM_TYPE_COUNT = 100;
+
+    @Param({"DEMO", "CONCURRENT"})
+    public SmartFridgeManagerImplementation implementation;
+
+    @Param({"false", "true"})
+    public boolean deduplicated;
+
+    @Param({"0", "50", "100"})
+    public int duplicatePercent;
+
+    private SmartFridgeManager manager;
+    private String[] itemUUIDs;
+    private long[] itemTypes;
+    private String[] names;
+    private double[] fillFactors;
+    private final Random random = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        itemUUIDs = new String[ITEM_COUNT];
+        itemTypes = new long[ITEM_COUNT];
+        names = new String[ITEM_COUNT];
+        fillFactors = new double[ITEM_COUNT];
+        manager = implementation.create();
+        if (deduplicated) {
+            manager = new DeduplicatingSmartFridgeManager(manager, ITEM_COUNT);
+        }
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            itemUUIDs[i] = UUID.randomUUID().toString();
+            itemTypes[i] = random.nextInt(ITEM_TYPE_COUNT);
+            names[i] = "item" + itemTypes[i];
+            fillFactors[i] = random.nextDouble();
+            manager.handleItemAdded(itemTypes[i], itemUUIDs[i], names[i], fillFactors[i]);
+        }
+    }
+
+    @Benchmark
+    public void reAdd() {
+        int container = random.nextInt(ITEM_COUNT);
+        if (random.nextInt(100) >= duplicatePercent) {
+            fillFactors[container] = random.nextDouble();
+        }
+        manager.handleItemAdded(itemTypes[container], itemUUIDs[container], names[container], fillFactors[container]);
+    }
+}
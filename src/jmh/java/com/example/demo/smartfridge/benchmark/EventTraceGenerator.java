@@ -0,0 +1,35 @@
+package com.example.demo.smartfridge.benchmark;
+
+import com.example.demo.smartfridge.EventTrace;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Writes a trace file for {@link EventTraceReplay}, see {@link EventTrace} for what the fridges do.
+ *
+ *      EventTraceGenerator file seed fridges itemTypes containers events
+ */
+public class EventTraceGenerator {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 6) {
+            System.err.println("usage: EventTraceGenerator file seed fridges itemTypes containers events");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        long seed = Long.parseLong(args[1]);
+        int fridgeCount = Integer.parseInt(args[2]);
+        int itemTypeCount = Integer.parseInt(args[3]);
+        int containerCount = Integer.parseInt(args[4]);
+        int eventCount = Integer.parseInt(args[5]);
+
+        long start = System.nanoTime();
+        EventTrace trace = EventTrace.generate(seed, fridgeCount, itemTypeCount, containerCount, eventCount);
+        trace.write(file);
+        System.out.printf(Locale.ROOT, "%s: %s, %d bytes, %.1f s%n",
+                file, trace, Files.size(file), (System.nanoTime() - start) / 1e9d);
+    }
+}
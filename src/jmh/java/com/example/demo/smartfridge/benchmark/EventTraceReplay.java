@@ -0,0 +1,113 @@
+package com.example.demo.smartfridge.benchmark;
+
+import com.example.demo.smartfridge.EventTrace;
+import com.example.demo.smartfridge.LatencyHistogram;
+import com.example.demo.smartfridge.SmartFridgeManager;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a trace file from {@link EventTraceGenerator} into a fresh SmartFridgeManager and
+ * reports the throughput and the latency percentiles of the event handlers.
+ *
+ * The trace is loaded before the clock starts, so only the manager is measured. Events are split
+ * over the threads by fridge, which keeps the events of each container in trace order, so only
+ * thread safe implementations should be replayed with more than one thread. With a rate, event i
+ * is due at start + i / rate and its latency is measured from when it was due, like in
+ * {@link HttpLoadGenerator}, so falling behind shows up in the percentiles. Each thread spins
+ * for the last SPIN_NANOS before an event is due, so give it a processor of its own. At max
+ * speed the latency is that of the call alone, two System.nanoTime() calls included.
+ *
+ *      EventTraceReplay file implementation [eventsPerSecond|max] [threads]
+ */
+public class EventTraceReplay {
+    // parkNanos() oversleeps by tens of microseconds, more than an event takes, so the last stretch
+    // before an event is due is spun
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: EventTraceReplay file implementation [eventsPerSecond|max] [threads]");
+            System.exit(2);
+        }
+        long loadStart = System.nanoTime();
+        EventTrace trace = EventTrace.read(Paths.get(args[0]));
+        System.out.printf(Locale.ROOT, "loaded %s in %.1f s%n", trace, (System.nanoTime() - loadStart) / 1e9d);
+
+        SmartFridgeManagerImplementation implementation = SmartFridgeManagerImplementation.valueOf(args[1]);
+        int eventsPerSecond = args.length > 2 && !"max".equals(args[2]) ? Integer.parseInt(args[2]) : 0;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        replay(trace, implementation, eventsPerSecond, threads);
+    }
+
+    /**
+     * @param trace
+     * @param implementation
+     * @param eventsPerSecond 0 for max speed
+     * @param threads
+     */
+    static void replay(EventTrace trace, SmartFridgeManagerImplementation implementation, int eventsPerSecond, int threads) throws Exception {
+        SmartFridgeManager manager = implementation.create();
+        LatencyHistogram latency = new LatencyHistogram();
+        long intervalNanos = eventsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / eventsPerSecond : 0L;
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < threads; w++) {
+            int worker = w;
+            workers.add(executor.submit(() -> {
+                LockSupport.parkNanos(start - System.nanoTime());
+                for (int event = 0; event < trace.getEventCount(); event++) {
+                    if (trace.getFridge(event) % threads != worker) {
+                        continue;
+                    }
+                    long sent;
+                    if (intervalNanos > 0) {
+                        sent = start + event * intervalNanos;
+                        long wait = sent - System.nanoTime();
+                        if (wait > SPIN_NANOS) {
+                            LockSupport.parkNanos(wait - SPIN_NANOS);
+                        }
+                        while (System.nanoTime() < sent) {
+                            // spin
+                        }
+                    } else {
+                        sent = System.nanoTime();
+                    }
+                    trace.apply(event, manager);
+                    latency.recordNanos(System.nanoTime() - sent);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        System.out.printf(Locale.ROOT, "%s: events %d, threads %d, target %s, achieved %.0f/s%n",
+                implementation, trace.getEventCount(), threads,
+                eventsPerSecond > 0 ? eventsPerSecond + "/s" : "max", trace.getEventCount() / (elapsed / 1e9d));
+        System.out.printf(Locale.ROOT, "p50 %.3f us, p90 %.3f us, p99 %.3f us, p99.9 %.3f us, max %.3f us%n",
+                micros(latency.getNanosAtPercentile(50.0d)),
+                micros(latency.getNanosAtPercentile(90.0d)),
+                micros(latency.getNanosAtPercentile(99.0d)),
+                micros(latency.getNanosAtPercentile(99.9d)),
+                micros(latency.getMaxNanos()));
+        System.out.printf(Locale.ROOT, "item types with containers at the end: %d%n", manager.getItems(1.0d).length);
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1e3d;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.smartfridge.benchmark;
+
+import com.example.demo.smartfridge.SmartFridgeManager;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fills one SmartFridgeManager with itemCount containers in 1000 item types, then reports what
+ * the full fridge costs the JVM: retained heap and direct memory after a full collection, the
+ * time of a few explicit full collections, and the collections and their longest pause while
+ * churnEvents containers are re-added with new fill factors, the steady state of a fleet node.
+ *
+ * Run one implementation per JVM, with the same heap for every run:
+ *
+ *      ./mvnw -Pjmh test-compile exec:exec -Djmh.main="-Xmx4g -XX:+UseG1GC com.example.demo.smartfridge.benchmark.FootprintComparison" -Djmh.args="OFF_HEAP 10000000"
+ *
+ *      FootprintComparison implementation itemCount [churnEvents]
+ */
+public class FootprintComparison {
+    private static final int ITEM_TYPE_COUNT = 1_000;
+    private static final int FULL_COLLECTIONS = 3;
+
+    private static final AtomicLong collections = new AtomicLong();
+    private static final AtomicLong longestPauseMillis = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: FootprintComparison implementation itemCount [churnEvents]");
+            System.exit(2);
+        }
+        SmartFridgeManagerImplementation implementation = SmartFridgeManagerImplementation.valueOf(args[0]);
+        int itemCount = Integer.parseInt(args[1]);
+        int churnEvents = args.length > 2 ? Integer.parseInt(args[2]) : itemCount;
+        watchCollections();
+
+        SmartFridgeManager manager = implementation.create();
+        long start = System.nanoTime();
+        Random random = new Random(42);
+        for (int i = 0; i < itemCount; i++) {
+            long itemType = random.nextInt(ITEM_TYPE_COUNT);
+            manager.handleItemAdded(itemType, itemUUID(i), "item" + itemType, random.nextDouble());
+        }
+        long fillNanos = System.nanoTime() - start;
+
+        long fullCollectionMillis = 0L;
+        for (int i = 0; i < FULL_COLLECTIONS; i++) {
+            long collectionStart = System.nanoTime();
+            System.gc();
+            fullCollectionMillis = Math.max(fullCollectionMillis, (System.nanoTime() - collectionStart) / 1_000_000L);
+        }
+        long heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long directBytes = directMemoryUsed();
+
+        collections.set(0L);
+        longestPauseMillis.set(0L);
+        start = System.nanoTime();
+        for (int i = 0; i < churnEvents; i++) {
+            int container = random.nextInt(itemCount);
+            long itemType = random.nextInt(ITEM_TYPE_COUNT);
+            manager.handleItemAdded(itemType, itemUUID(container), "item" + itemType, random.nextDouble());
+        }
+        long churnNanos = System.nanoTime() - start;
+
+        System.out.printf(Locale.ROOT, "%s, %,d containers%n", implementation, itemCount);
+        System.out.printf(Locale.ROOT, "  fill            %,8d ms%n", fillNanos / 1_000_000L);
+        System.out.printf(Locale.ROOT, "  heap retained   %,8d MB (%d bytes per container)%n", heapBytes >> 20, heapBytes / itemCount);
+        System.out.printf(Locale.ROOT, "  direct memory   %,8d MB%n", directBytes >> 20);
+        System.out.printf(Locale.ROOT, "  full gc         %,8d ms longest of %d%n", fullCollectionMillis, FULL_COLLECTIONS);
+        System.out.printf(Locale.ROOT, "  churn           %,8d ms for %,d events, %d collections, longest pause %d ms%n",
+                churnNanos / 1_000_000L, churnEvents, collections.get(), longestPauseMillis.get());
+    }
+
+    /**
+     * Generated again on every use, so the itemUUIDs are garbage unless the fridge keeps them
+     */
+    private static String itemUUID(int container) {
+        return new UUID(0x5eed_0000_0000_4000L | container, 0x8000_0000_0000_0000L | (container * 0x9E3779B97F4A7C15L >>> 2)).toString();
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0L;
+    }
+
+    private static void watchCollections() {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                collections.incrementAndGet();
+                longestPauseMillis.accumulateAndGet(info.getGcInfo().getDuration(), Math::max);
+            }, null, null);
+        }
+    }
+}
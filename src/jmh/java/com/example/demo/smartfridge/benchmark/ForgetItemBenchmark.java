@@ -0,0 +1,56 @@
+package com.example.demo.smartfridge.benchmark;
+
+import com.example.demo.smartfridge.SmartFridgeManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * forgetItem() of a stocked item type in a fridge of itemCount containers spread over
+ * itemTypeCount item types, followed by the rememberItem() that puts the fridge back as it was,
+ * so every invocation forgets an item type that is not forgotten yet.
+ *
+ * Only the implementations that can remember are measured. The others cannot undo a forget, so
+ * once every item type is forgotten they would only measure the early return of an item type
+ * that is already forgotten.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForgetItemBenchmark {
+
+    @Param({"DEMO"})
+    public SmartFridgeManagerImplementation implementation;
+
+    @Param({"10000", "1000000"})
+    public int itemCount;
+
+    @Param({"100", "10000"})
+    public int itemTypeCount;
+
+    private SmartFridgeManager manager;
+    private long itemType;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        manager = implementation.create();
+        for (int i = 0; i < itemCount; i++) {
+            int itemType = random.nextInt(itemTypeCount);
+            manager.handleItemAdded(itemType, UUID.randomUUID().toString(), "item" + itemType, random.nextDouble());
+        }
+    }
+
+    @Benchmark
+    public void forgetAndRememberItem() {
+        long forgotten = itemType;
+        itemType = forgotten + 1 == itemTypeCount ? 0 : forgotten + 1;
+        manager.forgetItem(forgotten);
+        manager.rememberItem(forgotten);
+    }
+}
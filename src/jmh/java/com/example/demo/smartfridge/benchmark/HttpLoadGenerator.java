@@ -0,0 +1,175 @@
+package com.example.demo.smartfridge.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop load against the fridge HTTP service: requests are due at a fixed rate whether or not
+ * earlier ones have completed, and latency is measured from when a request was due rather than
+ * from when it was sent, so a stalled server shows up in the percentiles instead of silently
+ * lowering the rate (coordinated omission).
+ *
+ * The mix is 70% single adds, 10% removes, 15% getItems(0.5) and 5% getFillFactor, over a pool of
+ * ITEM_COUNT containers in ITEM_TYPE_COUNT item types.
+ *
+ *      HttpLoadGenerator baseUrl requestsPerSecond seconds [connections]
+ */
+public class HttpLoadGenerator {
+    private static final int ITEM_COUNT = 10_000;
+    private static final int ITEM_TYPE_COUNT = 100;
+
+    private final String baseUrl;
+    private final String[] itemUUIDs = new String[ITEM_COUNT];
+
+    private HttpLoadGenerator(String baseUrl) {
+        this.baseUrl = baseUrl;
+        for (int i = 0; i < itemUUIDs.length; i++) {
+            itemUUIDs[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("usage: HttpLoadGenerator baseUrl requestsPerSecond seconds [connections]");
+            System.exit(2);
+        }
+        String baseUrl = args[0];
+        int requestsPerSecond = Integer.parseInt(args[1]);
+        int seconds = Integer.parseInt(args[2]);
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        // keep-alive connections kept per host, the default of 5 would reconnect for most requests
+        System.setProperty("http.maxConnections", Integer.toString(connections));
+
+        new HttpLoadGenerator(baseUrl).run(requestsPerSecond, seconds, connections);
+    }
+
+    private void run(int requestsPerSecond, int seconds, int connections) throws Exception {
+        // fill the fridge first, so queries see a realistic number of item types
+        for (int i = 0; i < itemUUIDs.length; i++) {
+            add(i);
+        }
+
+        int requestCount = requestsPerSecond * seconds;
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        List<Future<long[]>> workers = new ArrayList<>();
+        for (int w = 0; w < connections; w++) {
+            int worker = w;
+            workers.add(executor.submit(() -> {
+                // request i is due at start + i * interval and sent by worker i % connections
+                long[] latencies = new long[(requestCount - worker + connections - 1) / connections];
+                int errors = 0;
+                for (int i = worker, n = 0; i < requestCount; i += connections, n++) {
+                    long due = start + i * intervalNanos;
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    try {
+                        request();
+                    } catch (IOException e) {
+                        errors++;
+                    }
+                    latencies[n] = System.nanoTime() - due;
+                }
+                if (errors > 0) {
+                    System.err.println("worker " + worker + ": " + errors + " failed requests");
+                }
+                return latencies;
+            }));
+        }
+
+        long[] latencies = new long[requestCount];
+        int offset = 0;
+        for (Future<long[]> worker : workers) {
+            long[] workerLatencies = worker.get();
+            System.arraycopy(workerLatencies, 0, latencies, offset, workerLatencies.length);
+            offset += workerLatencies.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf(Locale.ROOT, "requests %d, target %d/s, achieved %.0f/s%n",
+                requestCount, requestsPerSecond, requestCount / (elapsed / 1e9d));
+        System.out.printf(Locale.ROOT, "p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                percentile(latencies, 0.5d),
+                percentile(latencies, 0.9d),
+                percentile(latencies, 0.99d),
+                percentile(latencies, 0.999d),
+                latencies[latencies.length - 1] / 1e6d);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6d;
+    }
+
+    private void request() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int operation = random.nextInt(100);
+        if (operation < 70) {
+            add(random.nextInt(ITEM_COUNT));
+        } else if (operation < 80) {
+            send("DELETE", "/fridge/items/" + itemUUIDs[random.nextInt(ITEM_COUNT)], null);
+        } else if (operation < 95) {
+            send("GET", "/fridge/items?fillFactor=0.5", null);
+        } else {
+            send("GET", "/fridge/item-types/" + random.nextInt(ITEM_TYPE_COUNT), null);
+        }
+    }
+
+    private void add(int item) throws IOException {
+        String body = String.format(
+                Locale.ROOT,
+                "{\"itemType\": %d, \"itemUUID\": \"%s\", \"name\": \"item%d\", \"fillFactor\": %.3f}",
+                item % ITEM_TYPE_COUNT,
+                itemUUIDs[item],
+                item % ITEM_TYPE_COUNT,
+                ThreadLocalRandom.current().nextDouble()
+        );
+        send("POST", "/fridge/events", body);
+    }
+
+    private void send(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        // reading the response to the end hands the connection back to the keep-alive cache
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) >= 0) {
+                    // discard
+                }
+            }
+        }
+        if (status >= 400) {
+            throw new IOException(method + " " + path + ": HTTP " + status);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.smartfridge.benchmark;
+
+import com.example.demo.smartfridge.ItemFillResult;
+import com.example.demo.smartfridge.SmartFridgeManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The 20 emptiest item types of a fridge with itemTypeCount item types, asked for with
+ * getLowestItems() and the way it was done before: getItems() of everything, then sorted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LowestItemsBenchmark {
+    private static final int ITEM_COUNT = 100_000;
+    private static final int LIMIT = 20;
+    private static final Comparator<Object> BY_FILL_FACTOR = Comparator
+            .comparingDouble((Object item) -> (Double) ((Object[]) item)[1])
+            .thenComparingLong(item -> (Long) ((Object[]) item)[0]);
+
+    @Param({"DEMO", "CONCURRENT", "ARRAY"})
+    public SmartFridgeManagerImplementation implementation;
+
+    @Param({"1000", "10000"})
+    public int itemTypeCount;
+
+    @Param({"0", "100"})
+    public int offset;
+
+    private SmartFridgeManager manager;
+    private final ItemFillResult result = new ItemFillResult();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        manager = implementation.create();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            int itemType = random.nextInt(itemTypeCount);
+            manager.handleItemAdded(itemType, UUID.randomUUID().toString(), "item" + itemType, random.nextDouble());
+        }
+    }
+
+    @Benchmark
+    public ItemFillResult lowestItems() {
+        result.clear();
+        manager.visitLowestItems(LIMIT, offset, result);
+        return result;
+    }
+
+    @Benchmark
+    public Object[] sortedItems() {
+        Object[] items = manager.getItems(1.0d);
+        Arrays.sort(items, BY_FILL_FACTOR);
+        return Arrays.copyOfRange(items, Math.min(offset, items.length), Math.min(offset + LIMIT, items.length));
+    }
+}
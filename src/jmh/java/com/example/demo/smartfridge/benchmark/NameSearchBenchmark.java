@@ -0,0 +1,64 @@
+package com.example.demo.smartfridge.benchmark;
+
+import com.example.demo.smartfridge.SmartFridgeManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Type-ahead search over a fridge of itemCount containers in 10000 item types, named by two of
+ * 100 made up words each, e.g. "Oat Milk". A search types one to five letters of a word and
+ * asks for the first ten matches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameSearchBenchmark {
+    private static final int ITEM_TYPE_COUNT = 10_000;
+    private static final int WORD_COUNT = 100;
+    private static final int LIMIT = 10;
+
+    @Param({"DEMO", "CONCURRENT"})
+    public SmartFridgeManagerImplementation implementation;
+
+    @Param({"1000000"})
+    public int itemCount;
+
+    private SmartFridgeManager manager;
+    private String[] words;
+    private final Random random = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        words = new String[WORD_COUNT];
+        for (int i = 0; i < WORD_COUNT; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int letter = 0; letter < 3 + random.nextInt(6); letter++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+            words[i] = word.toString();
+        }
+        String[] names = new String[ITEM_TYPE_COUNT];
+        for (int itemType = 0; itemType < ITEM_TYPE_COUNT; itemType++) {
+            names[itemType] = words[random.nextInt(WORD_COUNT)] + " " + words[random.nextInt(WORD_COUNT)];
+        }
+
+        manager = implementation.create();
+        for (int i = 0; i < itemCount; i++) {
+            int itemType = random.nextInt(ITEM_TYPE_COUNT);
+            manager.handleItemAdded(itemType, UUID.randomUUID().toString(), names[itemType], random.nextDouble());
+        }
+    }
+
+    @Benchmark
+    public Object[] findItems() {
+        String word = words[random.nextInt(WORD_COUNT)];
+        return manager.findItems(word.substring(0, 1 + random.nextInt(Math.min(5, word.length()))), LIMIT);
+    }
+}
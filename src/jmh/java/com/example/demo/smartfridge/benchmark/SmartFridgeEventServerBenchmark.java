@@ -0,0 +1,103 @@
+package com.example.demo.smartfridge.benchmark;
+
+import com.example.demo.smartfridge.SmartFridgeEventCodec;
+import com.example.demo.smartfridge.SmartFridgeEventServer;
+import com.example.demo.smartfridge.SmartFridgeManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events per second through the binary codec, over localhost loopback into a
+ * SmartFridgeEventServer and straight out of a buffer for comparison.
+ *
+ * A batch re-adds BATCH_SIZE stored containers with new fill factors, so the fridge keeps its
+ * size. The loopback benchmark writes the batch over one connection and waits until the server
+ * has handed every event to the manager, so it measures end to end throughput of a single
+ * gateway connection rather than how fast the socket accepts bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmartFridgeEventServerBenchmark {
+    private static final int BATCH_SIZE = 1000;
+    private static final int ITEM_COUNT = 10_000;
+    private static final int ITEM_TYPE_COUNT = 100;
+
+    @Param({"CONCURRENT"})
+    public SmartFridgeManagerImplementation implementation;
+
+    private SmartFridgeManager manager;
+    private SmartFridgeEventServer server;
+    private SocketChannel channel;
+    private final SmartFridgeEventCodec codec = new SmartFridgeEventCodec();
+    private ByteBuffer[] batches;
+    private int cursor;
+    private long sent;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        String[] itemUUIDs = new String[ITEM_COUNT];
+        manager = implementation.create();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            itemUUIDs[i] = UUID.randomUUID().toString();
+            manager.handleItemAdded(i % ITEM_TYPE_COUNT, itemUUIDs[i], "item" + i % ITEM_TYPE_COUNT, random.nextDouble());
+        }
+
+        batches = new ByteBuffer[ITEM_COUNT / BATCH_SIZE];
+        for (int b = 0; b < batches.length; b++) {
+            batches[b] = ByteBuffer.allocateDirect(BATCH_SIZE * 128);
+            for (int i = b * BATCH_SIZE; i < (b + 1) * BATCH_SIZE; i++) {
+                SmartFridgeEventCodec.putAddedFrame(batches[b], i % ITEM_TYPE_COUNT, itemUUIDs[i], "item" + i % ITEM_TYPE_COUNT, random.nextDouble());
+            }
+            batches[b].flip();
+        }
+
+        server = SmartFridgeEventServer.start(manager, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        channel.close();
+        server.close();
+    }
+
+    private ByteBuffer nextBatch() {
+        ByteBuffer batch = batches[cursor];
+        cursor = (cursor + 1) % batches.length;
+        batch.rewind();
+        return batch;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long loopback() throws IOException {
+        ByteBuffer batch = nextBatch();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        sent += BATCH_SIZE;
+        while (server.getEventCount() < sent) {
+            Thread.yield();
+        }
+        return sent;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int decode() {
+        return codec.decodeFrames(nextBatch(), manager);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo.smartfridge.benchmark;
+
+import com.example.demo.smartfridge.ItemFillResult;
+import com.example.demo.smartfridge.SmartFridgeEvent;
+import com.example.demo.smartfridge.SmartFridgeManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of a single SmartFridgeManager filled with itemCount containers spread over
+ * itemTypeCount item types, emptyFraction of them empty.
+ *
+ * The event benchmarks walk the stored containers round robin and leave the number of stored
+ * containers unchanged, so every invocation sees the same fridge size. The itemUUID Strings are
+ * reused, so their hash code is cached, unlike Strings freshly decoded from the hardware.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmartFridgeManagerBenchmark {
+    private static final int SWEEP_SIZE = 500;
+
+    @Param({"DEMO", "CONCURRENT", "ARRAY", "ARRAY_UUID"})
+    public SmartFridgeManagerImplementation implementation;
+
+    @Param({"10000", "1000000"})
+    public int itemCount;
+
+    @Param({"100", "10000"})
+    public int itemTypeCount;
+
+    @Param({"0.0", "0.25"})
+    public double emptyFraction;
+
+    private SmartFridgeManager manager;
+    private String[] itemUUIDs;
+    private long[] itemTypes;
+    private String[] names;
+    private double[] fillFactors;
+    private double[] refillFactors;
+    private List<SmartFridgeEvent> sweep;
+    private final ItemFillResult result = new ItemFillResult();
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        itemUUIDs = new String[itemCount];
+        itemTypes = new long[itemCount];
+        names = new String[itemCount];
+        fillFactors = new double[itemCount];
+        refillFactors = new double[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            itemUUIDs[i] = UUID.randomUUID().toString();
+            itemTypes[i] = random.nextInt(itemTypeCount);
+            names[i] = ("item" + itemTypes[i]).intern();
+            fillFactors[i] = randomFillFactor(random);
+            refillFactors[i] = randomFillFactor(random);
+        }
+
+        manager = implementation.create();
+        for (int i = 0; i < itemCount; i++) {
+            manager.handleItemAdded(itemTypes[i], itemUUIDs[i], names[i], fillFactors[i]);
+        }
+
+        sweep = new ArrayList<>(SWEEP_SIZE);
+        for (int i = 0; i < SWEEP_SIZE; i++) {
+            int container = random.nextInt(itemCount);
+            sweep.add(SmartFridgeEvent.added(
+                    itemTypes[container],
+                    itemUUIDs[container],
+                    names[container],
+                    refillFactors[container]
+            ));
+        }
+    }
+
+    private double randomFillFactor(Random random) {
+        return random.nextDouble() < emptyFraction ? 0.0d : random.nextDouble();
+    }
+
+    private int next() {
+        int container = cursor;
+        cursor = container + 1 == itemCount ? 0 : container + 1;
+        return container;
+    }
+
+    /**
+     * Re-inserts a stored container with a new fill factor
+     */
+    @Benchmark
+    public void handleItemAdded() {
+        int container = next();
+        manager.handleItemAdded(
+                itemTypes[container],
+                itemUUIDs[container],
+                names[container],
+                refillFactors[container]
+        );
+    }
+
+    /**
+     * Removes a stored container and puts it back, so this includes one handleItemAdded()
+     */
+    @Benchmark
+    public void handleItemRemoved() {
+        int container = next();
+        manager.handleItemRemoved(itemUUIDs[container]);
+        manager.handleItemAdded(
+                itemTypes[container],
+                itemUUIDs[container],
+                names[container],
+                fillFactors[container]
+        );
+    }
+
+    /**
+     * One inventory sweep of SWEEP_SIZE re-inserted containers
+     */
+    @Benchmark
+    @OperationsPerInvocation(SWEEP_SIZE)
+    public void applyEvents() {
+        manager.applyEvents(sweep);
+    }
+
+    @Benchmark
+    public Double getFillFactor() {
+        return manager.getFillFactor(itemTypes[next()]);
+    }
+
+    @Benchmark
+    public Object[] getItemsBelowTenPercent() {
+        return manager.getItems(0.1d);
+    }
+
+    @Benchmark
+    public Object[] getItemsBelowHalf() {
+        return manager.getItems(0.5d);
+    }
+
+    @Benchmark
+    public Object[] getItemsAll() {
+        return manager.getItems(1.0d);
+    }
+
+    @Benchmark
+    public ItemFillResult getItemsBelowHalfReusingResult() {
+        return manager.getItems(0.5d, result);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.smartfridge.benchmark;
+
+import com.example.demo.smartfridge.ArraySmartFridgeManager;
+import com.example.demo.smartfridge.ConcurrentSmartFridgeManager;
+import com.example.demo.smartfridge.DemoSmartFridgeManager;
+import com.example.demo.smartfridge.InstrumentedSmartFridgeManager;
+import com.example.demo.smartfridge.OffHeapSmartFridgeManager;
+import com.example.demo.smartfridge.SmartFridgeManager;
+
+/**
+ * The SmartFridgeManager implementations a benchmark can be parameterized with
+ */
+public enum SmartFridgeManagerImplementation {
+    DEMO {
+        @Override
+        public SmartFridgeManager create() {
+            return new DemoSmartFridgeManager();
+        }
+    },
+    CONCURRENT {
+        @Override
+        public SmartFridgeManager create() {
+            return new ConcurrentSmartFridgeManager();
+        }
+    },
+    /**
+     * CONCURRENT as served over HTTP, compare with CONCURRENT for the cost of the instrumentation
+     */
+    INSTRUMENTED {
+        @Override
+        public SmartFridgeManager create() {
+            return new InstrumentedSmartFridgeManager(new ConcurrentSmartFridgeManager());
+        }
+    },
+    ARRAY {
+        @Override
+        public SmartFridgeManager create() {
+            return new ArraySmartFridgeManager();
+        }
+    },
+    ARRAY_UUID {
+        @Override
+        public SmartFridgeManager create() {
+            return new ArraySmartFridgeManager(ArraySmartFridgeManager.KeyMode.UUID);
+        }
+    },
+    OFF_HEAP {
+        @Override
+        public SmartFridgeManager create() {
+            return new OffHeapSmartFridgeManager();
+        }
+    };
+
+    public abstract SmartFridgeManager create();
+}
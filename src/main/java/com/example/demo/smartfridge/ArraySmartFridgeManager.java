@@ -0,0 +1,357 @@
+package com.example.demo.smartfridge;
+
+import java.util.Arrays;
+
+/**
+ * SmartFridgeManager that keeps its containers as a struct of arrays instead of one object per
+ * container. Each container occupies a slot in the parallel arrays below, slots of removed
+ * containers are recycled through a free list and itemUUIDs are found through an open addressing
+ * index over the slots. Names are interned and item types are aggregated in an ItemTypeTable.
+ *
+ * With {@link KeyMode#UUID} an itemUUID in canonical UUID form is stored as two longs instead of
+ * a String, other identifiers still fall back to String keys.
+ *
+ * Once the arrays have grown to the working set size, the event handlers and
+ * {@link #getFillFactorAsDouble(long)} do not allocate.
+ *
+ * Not thread safe.
+ */
+public class ArraySmartFridgeManager implements SmartFridgeManager {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * How itemUUIDs are kept as keys
+     */
+    public enum KeyMode {
+        /**
+         * Every itemUUID is kept as the String handed to the event handlers
+         */
+        STRING,
+        /**
+         * Canonical UUIDs are parsed into two longs, other itemUUIDs are kept as Strings
+         */
+        UUID
+    }
+
+    private final boolean compactKeys;
+
+    private boolean[] occupied = new boolean[INITIAL_CAPACITY];
+    // null for slots keyed by uuidHighs/uuidLows
+    private String[] itemUUIDs = new String[INITIAL_CAPACITY];
+    private long[] uuidHighs;
+    private long[] uuidLows;
+    private int[] keyHashes = new int[INITIAL_CAPACITY];
+    private int[] typeEntries = new int[INITIAL_CAPACITY];
+    private double[] fillFactors = new double[INITIAL_CAPACITY];
+    private int[] nameIds = new int[INITIAL_CAPACITY];
+    private int slotsUsed;
+    private int size;
+
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount;
+
+    // slot + 1, 0 marks a free bucket
+    private int[] index = new int[INITIAL_CAPACITY * 2];
+
+    private final ItemTypeTable itemTypeTable = new ItemTypeTable();
+    private final NameTable nameTable = new NameTable();
+
+    public ArraySmartFridgeManager() {
+        this(KeyMode.STRING);
+    }
+
+    public ArraySmartFridgeManager(KeyMode keyMode) {
+        this.compactKeys = keyMode == KeyMode.UUID;
+        if (compactKeys) {
+            uuidHighs = new long[INITIAL_CAPACITY];
+            uuidLows = new long[INITIAL_CAPACITY];
+        }
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public void handleItemRemoved(String itemUUID) {
+        int bucket = findBucket(itemUUID);
+        if (bucket < 0) {
+            return;
+        }
+        int slot = index[bucket] - 1;
+        removeBucket(bucket);
+
+        itemTypeTable.remove(typeEntries[slot], fillFactors[slot]);
+        occupied[slot] = false;
+        itemUUIDs[slot] = null;
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, Double fillFactor) {
+        handleItemAdded(itemType, itemUUID, name, fillFactor.doubleValue());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the fillFactor is less than 0,
+     *      greater than 1 or NaN
+     */
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+        if (!(fillFactor >= 0.0d && fillFactor <= 1.0d)) {
+            throw new IllegalArgumentException(
+                    "ArraySmartFridgeManager.handleItemAdded: double fillFactor must be >= 0.0 or <= 1.0"
+            );
+        }
+
+        boolean uuidKey = compactKeys && Uuids.isCanonical(itemUUID);
+        long high = 0L;
+        long low = 0L;
+        int hash;
+        int bucket;
+        if (uuidKey) {
+            high = Uuids.mostSignificantBits(itemUUID);
+            low = Uuids.leastSignificantBits(itemUUID);
+            hash = Uuids.hash(high, low);
+            bucket = findBucket(high, low, hash);
+        } else {
+            hash = itemUUID.hashCode();
+            bucket = findBucket(itemUUID, hash);
+        }
+
+        int slot;
+        if (bucket >= 0) {
+            slot = index[bucket] - 1;
+            itemTypeTable.remove(typeEntries[slot], fillFactors[slot]);
+        } else {
+            slot = allocateSlot();
+            occupied[slot] = true;
+            if (uuidKey) {
+                uuidHighs[slot] = high;
+                uuidLows[slot] = low;
+            } else {
+                itemUUIDs[slot] = itemUUID;
+            }
+            keyHashes[slot] = hash;
+            insertBucket(slot);
+            size++;
+        }
+
+        int typeEntry = itemTypeTable.findOrCreate(itemType);
+        typeEntries[slot] = typeEntry;
+        fillFactors[slot] = fillFactor;
+        nameIds[slot] = nameTable.intern(name);
+        itemTypeTable.add(typeEntry, fillFactor);
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotsUsed == itemUUIDs.length) {
+            growSlots();
+        }
+        return slotsUsed++;
+    }
+
+    private void growSlots() {
+        int capacity = itemUUIDs.length * 2;
+        occupied = Arrays.copyOf(occupied, capacity);
+        itemUUIDs = Arrays.copyOf(itemUUIDs, capacity);
+        if (compactKeys) {
+            uuidHighs = Arrays.copyOf(uuidHighs, capacity);
+            uuidLows = Arrays.copyOf(uuidLows, capacity);
+        }
+        keyHashes = Arrays.copyOf(keyHashes, capacity);
+        typeEntries = Arrays.copyOf(typeEntries, capacity);
+        fillFactors = Arrays.copyOf(fillFactors, capacity);
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+
+        index = new int[capacity * 2];
+        for (int slot = 0; slot < slotsUsed; slot++) {
+            if (occupied[slot]) {
+                insertBucket(slot);
+            }
+        }
+    }
+
+    private int findBucket(String itemUUID) {
+        if (compactKeys && Uuids.isCanonical(itemUUID)) {
+            long high = Uuids.mostSignificantBits(itemUUID);
+            long low = Uuids.leastSignificantBits(itemUUID);
+            return findBucket(high, low, Uuids.hash(high, low));
+        }
+        return findBucket(itemUUID, itemUUID.hashCode());
+    }
+
+    private int findBucket(String itemUUID, int hash) {
+        int mask = index.length - 1;
+        for (int bucket = mix(hash) & mask; ; bucket = (bucket + 1) & mask) {
+            int slot = index[bucket] - 1;
+            if (slot < 0) {
+                return -1;
+            }
+            if (keyHashes[slot] == hash && itemUUID.equals(itemUUIDs[slot])) {
+                return bucket;
+            }
+        }
+    }
+
+    private int findBucket(long high, long low, int hash) {
+        int mask = index.length - 1;
+        for (int bucket = mix(hash) & mask; ; bucket = (bucket + 1) & mask) {
+            int slot = index[bucket] - 1;
+            if (slot < 0) {
+                return -1;
+            }
+            if (keyHashes[slot] == hash && itemUUIDs[slot] == null
+                    && uuidHighs[slot] == high && uuidLows[slot] == low) {
+                return bucket;
+            }
+        }
+    }
+
+    private String getItemUUID(int slot) {
+        if (itemUUIDs[slot] != null) {
+            return itemUUIDs[slot];
+        }
+        return Uuids.toString(uuidHighs[slot], uuidLows[slot]);
+    }
+
+    private void insertBucket(int slot) {
+        int mask = index.length - 1;
+        int bucket = mix(keyHashes[slot]) & mask;
+        while (index[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        index[bucket] = slot + 1;
+    }
+
+    /**
+     * Linear probing delete: later entries of the same probe run are shifted back into the hole
+     * so lookups never need tombstones.
+     */
+    private void removeBucket(int bucket) {
+        int mask = index.length - 1;
+        int hole = bucket;
+        index[hole] = 0;
+        for (int next = (hole + 1) & mask; index[next] != 0; next = (next + 1) & mask) {
+            int home = mix(keyHashes[index[next] - 1]) & mask;
+            boolean reachable = hole <= next
+                    ? hole < home && home <= next
+                    : hole < home || home <= next;
+            if (!reachable) {
+                index[hole] = index[next];
+                index[next] = 0;
+                hole = next;
+            }
+        }
+    }
+
+    @Override
+    public Object[] getItems(Double fillFactor) {
+        ItemFillResult result = new ItemFillResult();
+        visitItems(fillFactor, result);
+        return result.toArray();
+    }
+
+    @Override
+    public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+        for (int entry = 0; entry < itemTypeTable.size(); entry++) {
+            if (itemTypeTable.isIgnored(entry) || itemTypeTable.getCount(entry) == 0) {
+                continue;
+            }
+
+            double fill = itemTypeTable.getFillFactor(entry);
+            if (fill <= fillFactor) {
+                visitor.visit(itemTypeTable.getItemType(entry), fill);
+            }
+        }
+    }
+
+    @Override
+    public Double getFillFactor(long itemType) {
+        return getFillFactorAsDouble(itemType);
+    }
+
+    @Override
+    public double getFillFactorAsDouble(long itemType) {
+        int entry = itemTypeTable.find(itemType);
+        if (entry < 0) {
+            return 0.0d;
+        }
+        return itemTypeTable.getFillFactor(entry);
+    }
+
+    @Override
+    public Long getItemType(String itemUUID) {
+        int bucket = findBucket(itemUUID);
+        if (bucket < 0) {
+            return null;
+        }
+        return itemTypeTable.getItemType(typeEntries[index[bucket] - 1]);
+    }
+
+    @Override
+    public void forgetItem(long itemType) {
+        itemTypeTable.setIgnored(itemTypeTable.findOrCreate(itemType), true);
+    }
+
+    @Override
+    public int getItemCount() {
+        return size;
+    }
+
+    @Override
+    public int getItemTypeCount() {
+        return itemTypeTable.getStockedCount();
+    }
+
+    @Override
+    public int getForgottenItemTypeCount() {
+        return itemTypeTable.getIgnoredCount();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder toStringValue = new StringBuilder();
+
+        for (int slot = 0; slot < slotsUsed; slot++) {
+            if (!occupied[slot]) {
+                continue;
+            }
+            StandardSmartFridgeItem item = new StandardSmartFridgeItem(
+                    itemTypeTable.getItemType(typeEntries[slot]),
+                    getItemUUID(slot),
+                    nameTable.getName(nameIds[slot]),
+                    fillFactors[slot]
+            );
+            toStringValue.append("\n").append(item);
+        }
+        if (size > 0) {
+            toStringValue.append("\n");
+        }
+        return "ArraySmartFridgeManager{" + toStringValue + "}";
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return number of containers in the SmartFridge
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return number of distinct names seen by the SmartFridge
+     */
+    int getNameCount() {
+        return nameTable.size();
+    }
+}
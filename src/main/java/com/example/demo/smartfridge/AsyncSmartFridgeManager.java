@@ -0,0 +1,564 @@
+package com.example.demo.smartfridge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies events to another SmartFridgeManager in the background, so a slow manager does not
+ * stall the hardware driver that delivers the events.
+ *
+ * Events are validated on the caller's thread and handed to one of partitionCount workers through
+ * a bounded queue, picked by itemUUID hash, so the events of one container are applied in the
+ * order they were handed in. With more than one partition the events are applied concurrently and
+ * the target must be thread safe. When a queue is full the BackpressurePolicy decides what
+ * happens.
+ *
+ * The async variants return a future that completes once the event has been applied, or
+ * exceptionally if the target rejected it or it was dropped or rejected because its queue was
+ * full. The SmartFridgeManager event handlers return as soon as the event is queued.
+ *
+ * Queries and forgetItem() go straight to the target and see the events applied so far, see
+ * {@link #flush()}.
+ *
+ * Workers run on virtual threads when the JVM has them (Java 21), otherwise on one platform
+ * daemon thread each.
+ */
+public class AsyncSmartFridgeManager implements SmartFridgeManager, Closeable {
+    static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    /**
+     * What a caller experiences when the queue of the event's partition is full
+     */
+    public enum BackpressurePolicy {
+        /**
+         * Wait until the worker has made room
+         */
+        BLOCK,
+        /**
+         * Drop the oldest queued event of the partition, whose future fails with a
+         * RejectedExecutionException, and queue the new one
+         */
+        DROP_OLDEST,
+        /**
+         * Do not queue the event: the handlers throw a RejectedExecutionException, the async
+         * variants return a future that failed with one
+         */
+        REJECT
+    }
+
+    // null without virtual threads
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = virtualThreadFactory();
+
+    private final SmartFridgeManager target;
+    private final BackpressurePolicy policy;
+    private final Partition[] partitions;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private volatile boolean closed;
+
+    public AsyncSmartFridgeManager(SmartFridgeManager target, int partitionCount, BackpressurePolicy policy) {
+        this(target, partitionCount, DEFAULT_QUEUE_CAPACITY, policy);
+    }
+
+    /**
+     * @param target
+     * @param partitionCount number of workers, 1 to apply every event on the same thread
+     * @param queueCapacity number of events each partition can hold
+     * @param policy
+     */
+    public AsyncSmartFridgeManager(SmartFridgeManager target, int partitionCount, int queueCapacity, BackpressurePolicy policy) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("AsyncSmartFridgeManager: partitionCount must be >= 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("AsyncSmartFridgeManager: queueCapacity must be >= 1");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("AsyncSmartFridgeManager: policy must not be null");
+        }
+        this.target = target;
+        this.policy = policy;
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(queueCapacity);
+            Thread thread;
+            if (VIRTUAL_THREAD_FACTORY != null) {
+                thread = VIRTUAL_THREAD_FACTORY.newThread(partitions[i]::run);
+            } else {
+                thread = new Thread(partitions[i]::run);
+                thread.setDaemon(true);
+            }
+            thread.setName("smart-fridge-async-" + i);
+            thread.start();
+            partitions[i].thread = thread;
+        }
+    }
+
+    /**
+     * Thread.ofVirtual() is looked up reflectively, so the class still runs on Java 8
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the workers run on virtual threads
+     */
+    public static boolean isVirtualThreads() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    private int partitionIndex(String itemUUID) {
+        int hash = itemUUID.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % partitions.length;
+    }
+
+    private Partition partition(String itemUUID) {
+        return partitions[partitionIndex(itemUUID)];
+    }
+
+    /**
+     * @return a future that completes once the container has been added
+     *
+     * @throws IllegalArgumentException if the event is invalid
+     */
+    public CompletableFuture<Void> handleItemAddedAsync(long itemType, String itemUUID, String name, double fillFactor) {
+        SmartFridgeEvent event = SmartFridgeEvent.added(itemType, itemUUID, name, fillFactor);
+        return submit(partition(itemUUID), new Task(event, null));
+    }
+
+    /**
+     * @return a future that completes once the container has been removed
+     *
+     * @throws IllegalArgumentException if the itemUUID is null
+     */
+    public CompletableFuture<Void> handleItemRemovedAsync(String itemUUID) {
+        SmartFridgeEvent event = SmartFridgeEvent.removed(itemUUID);
+        return submit(partition(itemUUID), new Task(event, null));
+    }
+
+    /**
+     * The events are applied as one applyEvents() call per partition they fall into, so the
+     * target only validates and applies each of those parts as a whole.
+     *
+     * @return a future that completes once every part has been applied
+     *
+     * @throws IllegalArgumentException if the list contains null
+     */
+    public CompletableFuture<Void> applyEventsAsync(List<SmartFridgeEvent> events) {
+        List<List<SmartFridgeEvent>> parts = new ArrayList<>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            parts.add(null);
+        }
+        for (SmartFridgeEvent event : events) {
+            if (event == null) {
+                throw new IllegalArgumentException("AsyncSmartFridgeManager.applyEvents: events must not contain null");
+            }
+            int index = partitionIndex(event.getItemUUID());
+            if (parts.get(index) == null) {
+                parts.set(index, new ArrayList<>());
+            }
+            parts.get(index).add(event);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < partitions.length; i++) {
+            if (parts.get(i) != null) {
+                futures.add(submit(partitions[i], new Task(null, parts.get(i))));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * @return a future that completes once every event queued before has been applied or has
+     *      failed, also under the DROP_OLDEST and REJECT policies
+     */
+    public CompletableFuture<Void> flush() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(partitions.length);
+        for (Partition partition : partitions) {
+            Task marker = new Task(null, null);
+            try {
+                if (closed) {
+                    throw new RejectedExecutionException("AsyncSmartFridgeManager is closed");
+                }
+                // markers are never dropped or rejected, they wait for room
+                if (policy == BackpressurePolicy.DROP_OLDEST) {
+                    partition.dropLock.lockInterruptibly();
+                    try {
+                        partition.queue.put(marker);
+                    } finally {
+                        partition.dropLock.unlock();
+                    }
+                } else {
+                    partition.queue.put(marker);
+                }
+                rejectIfClosed(partition, marker);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                marker.future.completeExceptionally(e);
+            } catch (RejectedExecutionException e) {
+                marker.future.completeExceptionally(e);
+            }
+            futures.add(marker.future);
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private CompletableFuture<Void> submit(Partition partition, Task task) {
+        if (closed) {
+            rejectClosed(task);
+            return task.future;
+        }
+
+        switch (policy) {
+            case BLOCK:
+                try {
+                    partition.queue.put(task);
+                    rejectIfClosed(partition, task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    task.future.completeExceptionally(e);
+                }
+                break;
+            case DROP_OLDEST:
+                partition.dropLock.lock();
+                try {
+                    // the worker only takes from the head, everybody else adding holds the lock
+                    while (!partition.queue.offer(task)) {
+                        Task oldest = partition.dropOldestEvent();
+                        if (oldest == null) {
+                            // only flush() markers queued, which are never dropped
+                            partition.queue.put(task);
+                            break;
+                        }
+                        droppedCount.incrementAndGet();
+                        oldest.future.completeExceptionally(new RejectedExecutionException("AsyncSmartFridgeManager: dropped, queue full"));
+                    }
+                    rejectIfClosed(partition, task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    task.future.completeExceptionally(e);
+                } finally {
+                    partition.dropLock.unlock();
+                }
+                break;
+            case REJECT:
+                if (!partition.queue.offer(task)) {
+                    rejectedCount.incrementAndGet();
+                    task.future.completeExceptionally(new RejectedExecutionException("AsyncSmartFridgeManager: rejected, queue full"));
+                } else {
+                    rejectIfClosed(partition, task);
+                }
+                break;
+        }
+        return task.future;
+    }
+
+    /**
+     * Takes a task that was just queued back out if close() ran in the meantime. The worker may
+     * already have stopped and drained its queue, so nobody else would complete the task, and under
+     * BLOCK a queue nobody takes from would soon block every producer for good. A task the worker
+     * already took is completed by the worker.
+     */
+    private void rejectIfClosed(Partition partition, Task task) {
+        if (closed && partition.queue.remove(task)) {
+            rejectClosed(task);
+        }
+    }
+
+    private void rejectClosed(Task task) {
+        if (!task.isMarker()) {
+            rejectedCount.incrementAndGet();
+        }
+        task.future.completeExceptionally(new RejectedExecutionException("AsyncSmartFridgeManager is closed"));
+    }
+
+    /**
+     * Throws what a future that already failed on the caller's thread failed with
+     */
+    private static void rethrowRejected(CompletableFuture<Void> future) {
+        if (!future.isCompletedExceptionally()) {
+            return;
+        }
+        try {
+            future.getNow(null);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                throw (RejectedExecutionException) e.getCause();
+            }
+            // the target rejected an event that was applied right away
+        }
+    }
+
+    @Override
+    public void handleItemRemoved(String itemUUID) {
+        rethrowRejected(handleItemRemovedAsync(itemUUID));
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, Double fillFactor) {
+        if (fillFactor == null) {
+            throw new IllegalArgumentException("AsyncSmartFridgeManager.handleItemAdded: fillFactor must not be null");
+        }
+        handleItemAdded(itemType, itemUUID, name, fillFactor.doubleValue());
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+        rethrowRejected(handleItemAddedAsync(itemType, itemUUID, name, fillFactor));
+    }
+
+    @Override
+    public void applyEvents(List<SmartFridgeEvent> events) {
+        rethrowRejected(applyEventsAsync(events));
+    }
+
+    @Override
+    public Object[] getItems(Double fillFactor) {
+        return target.getItems(fillFactor);
+    }
+
+    @Override
+    public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+        target.visitItems(fillFactor, visitor);
+    }
+
+    @Override
+    public void visitLowestItems(int limit, int offset, ItemFillVisitor visitor) {
+        target.visitLowestItems(limit, offset, visitor);
+    }
+
+    @Override
+    public ItemFillResult getItems(double fillFactor, ItemFillResult result) {
+        return target.getItems(fillFactor, result);
+    }
+
+    @Override
+    public Double getFillFactor(long itemType) {
+        return target.getFillFactor(itemType);
+    }
+
+    @Override
+    public double getFillFactorAsDouble(long itemType) {
+        return target.getFillFactorAsDouble(itemType);
+    }
+
+    @Override
+    public Long getItemType(String itemUUID) {
+        return target.getItemType(itemUUID);
+    }
+
+    @Override
+    public Object[] findItems(String namePrefix, int limit) {
+        return target.findItems(namePrefix, limit);
+    }
+
+    @Override
+    public Object[] getItemsDepletingWithin(Duration within) {
+        return target.getItemsDepletingWithin(within);
+    }
+
+    @Override
+    public Object[] getFillSamples(long itemType, FillHistoryTier tier) {
+        return target.getFillSamples(itemType, tier);
+    }
+
+    @Override
+    public LowStockSubscription watchItemType(long itemType, double threshold, double hysteresis, LowStockListener listener) {
+        return target.watchItemType(itemType, threshold, hysteresis, listener);
+    }
+
+    @Override
+    public LowStockSubscription watchAllItemTypes(double threshold, double hysteresis, LowStockListener listener) {
+        return target.watchAllItemTypes(threshold, hysteresis, listener);
+    }
+
+    @Override
+    public long getDroppedLowStockEventCount() {
+        return target.getDroppedLowStockEventCount();
+    }
+
+    @Override
+    public void forgetItem(long itemType) {
+        target.forgetItem(itemType);
+    }
+
+    @Override
+    public void forgetItem(long itemType, Duration timeToLive) {
+        target.forgetItem(itemType, timeToLive);
+    }
+
+    @Override
+    public void rememberItem(long itemType) {
+        target.rememberItem(itemType);
+    }
+
+    @Override
+    public long getNextForgetExpiry() {
+        return target.getNextForgetExpiry();
+    }
+
+    @Override
+    public int getItemCount() {
+        return target.getItemCount();
+    }
+
+    @Override
+    public int getItemTypeCount() {
+        return target.getItemTypeCount();
+    }
+
+    @Override
+    public int getForgottenItemTypeCount() {
+        return target.getForgottenItemTypeCount();
+    }
+
+    /**
+     * @return number of events dropped by DROP_OLDEST
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return number of events rejected by REJECT or because the manager was closed
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return number of events waiting in the queues
+     */
+    public int getQueuedCount() {
+        int count = 0;
+        for (Partition partition : partitions) {
+            count += partition.queue.size();
+        }
+        return count;
+    }
+
+    /**
+     * Stops accepting events, applies the queued ones and closes the target if it is Closeable.
+     * Events handed in while close() runs are either applied or rejected.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Partition partition : partitions) {
+            try {
+                partition.queue.put(Task.STOP);
+                partition.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("AsyncSmartFridgeManager.close: interrupted", e);
+            }
+        }
+        if (target instanceof Closeable) {
+            ((Closeable) target).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncSmartFridgeManager{" + target + "}";
+    }
+
+    /**
+     * A single event, a batch of events or, with neither, a flush() marker
+     */
+    private static final class Task {
+        static final Task STOP = new Task(null, null);
+
+        final SmartFridgeEvent event;
+        final List<SmartFridgeEvent> events;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Task(SmartFridgeEvent event, List<SmartFridgeEvent> events) {
+            this.event = event;
+            this.events = events;
+        }
+
+        boolean isMarker() {
+            return event == null && events == null;
+        }
+    }
+
+    private final class Partition {
+        // many producers, the partition's worker is the only consumer
+        final BlockingQueue<Task> queue;
+        // serializes the producers under DROP_OLDEST
+        final Lock dropLock = new ReentrantLock();
+        Thread thread;
+
+        Partition(int queueCapacity) {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        /**
+         * Must be called while holding dropLock
+         *
+         * @return the oldest queued task that is not a flush() marker, removed, or null
+         */
+        Task dropOldestEvent() {
+            for (Iterator<Task> iterator = queue.iterator(); iterator.hasNext(); ) {
+                Task task = iterator.next();
+                if (!task.isMarker()) {
+                    iterator.remove();
+                    return task;
+                }
+            }
+            return null;
+        }
+
+        void run() {
+            while (true) {
+                Task task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    // only close() ends a worker
+                    continue;
+                }
+                if (task == Task.STOP) {
+                    // queued by producers that passed the closed check just before close()
+                    for (Task late; (late = queue.poll()) != null; ) {
+                        rejectClosed(late);
+                    }
+                    return;
+                }
+                try {
+                    if (task.event != null) {
+                        task.event.applyTo(target);
+                    } else if (task.events != null) {
+                        target.applyEvents(task.events);
+                    }
+                    task.future.complete(null);
+                } catch (Throwable e) {
+                    // an Error too, a worker that dies leaves every later future of its partition pending
+                    task.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.example.demo.smartfridge;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * SmartFridgeManager that remembers the answers of another SmartFridgeManager to getFillFactor()
+ * and getItems(), for dashboards and alerting that ask the same questions far more often than
+ * the contents change.
+ *
+ * Both caches are bounded and evict with Caffeine's W-TinyLFU policy. A write reads the fill
+ * factor of every item type it touches before and after it is applied, the item type of a
+ * removed or replaced container included. It drops the cached fill factor of those item types and
+ * the cached getItems() results of the thresholds at or above the lower of the two fill factors,
+ * since those are the only results the item type was or now is part of. The cached thresholds are
+ * kept sorted, so that is a single range walk.
+ *
+ * Writes are serialized by the cache, cached answers are read without locking. Every write has
+ * to go through the cache. When the time to live of a forgotten item type runs out, see
+ * {@link SmartFridgeManager#getNextForgetExpiry()}, every cached answer is dropped.
+ *
+ * Thread safe if the delegate is.
+ */
+public class CachingSmartFridgeManager implements SmartFridgeManager, Closeable {
+    private final SmartFridgeManager delegate;
+    private final Clock clock;
+    private final Object writeLock = new Object();
+    private final Cache<Long, Double> fillFactors;
+    private final Cache<Double, ItemFillResult> results;
+    // the keys of results, added and removed atomically with their entry
+    private final NavigableSet<Double> cachedThresholds = new ConcurrentSkipListSet<>();
+    private final Function<Long, Double> loadFillFactor;
+    private final Function<Double, ItemFillResult> loadResult;
+    private volatile long nextExpiry;
+
+    /**
+     * @param delegate
+     * @param maximumSize number of fill factors and of getItems() results kept, each
+     */
+    public CachingSmartFridgeManager(SmartFridgeManager delegate, long maximumSize) {
+        this(delegate, maximumSize, Clock.systemUTC());
+    }
+
+    /**
+     * @param delegate
+     * @param maximumSize number of fill factors and of getItems() results kept, each
+     * @param clock the delegate's clock, which decides when forget times to live run out
+     */
+    public CachingSmartFridgeManager(SmartFridgeManager delegate, long maximumSize, Clock clock) {
+        this.delegate = delegate;
+        this.clock = clock;
+        fillFactors = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        results = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .writer(new CacheWriter<Double, ItemFillResult>() {
+                    @Override
+                    public void write(Double threshold, ItemFillResult result) {
+                        // only loaded, never put
+                    }
+
+                    @Override
+                    public void delete(Double threshold, ItemFillResult result, RemovalCause cause) {
+                        cachedThresholds.remove(threshold);
+                    }
+                })
+                .recordStats()
+                .build();
+
+        loadFillFactor = itemType -> delegate.getFillFactorAsDouble(itemType);
+        loadResult = threshold -> {
+            // registered before the delegate is read: a write that misses the threshold in the
+            // range walk was applied before this read
+            cachedThresholds.add(threshold);
+            try {
+                ItemFillResult result = new ItemFillResult();
+                delegate.visitItems(threshold, result);
+                return result;
+            } catch (RuntimeException e) {
+                cachedThresholds.remove(threshold);
+                throw e;
+            }
+        };
+        nextExpiry = delegate.getNextForgetExpiry();
+    }
+
+    public SmartFridgeManager getDelegate() {
+        return delegate;
+    }
+
+    private void checkExpiry() {
+        if (nextExpiry == Long.MAX_VALUE || clock.millis() < nextExpiry) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (clock.millis() >= nextExpiry) {
+                // the delegate remembers the item types before the answers are dropped
+                long next = delegate.getNextForgetExpiry();
+                fillFactors.invalidateAll();
+                results.invalidateAll();
+                nextExpiry = next;
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the write lock, after the write
+     *
+     * @param itemType
+     * @param before the fill factor of the item type before the write
+     */
+    private void changed(long itemType, double before) {
+        fillFactors.invalidate(itemType);
+        invalidateResultsFrom(Math.min(before, delegate.getFillFactorAsDouble(itemType)));
+    }
+
+    private void invalidateResultsFrom(double fillFactor) {
+        for (Double threshold : cachedThresholds.tailSet(fillFactor, true)) {
+            results.invalidate(threshold);
+        }
+    }
+
+    @Override
+    public void handleItemRemoved(String itemUUID) {
+        synchronized (writeLock) {
+            Long itemType = delegate.getItemType(itemUUID);
+            if (itemType == null) {
+                delegate.handleItemRemoved(itemUUID);
+                return;
+            }
+            double before = delegate.getFillFactorAsDouble(itemType);
+            delegate.handleItemRemoved(itemUUID);
+            changed(itemType, before);
+        }
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, Double fillFactor) {
+        if (fillFactor == null) {
+            delegate.handleItemAdded(itemType, itemUUID, name, fillFactor);
+            return;
+        }
+        handleItemAdded(itemType, itemUUID, name, fillFactor.doubleValue());
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+        synchronized (writeLock) {
+            Long replaced = delegate.getItemType(itemUUID);
+            double before = delegate.getFillFactorAsDouble(itemType);
+            if (replaced == null || replaced == itemType) {
+                delegate.handleItemAdded(itemType, itemUUID, name, fillFactor);
+                changed(itemType, before);
+                return;
+            }
+
+            double replacedBefore = delegate.getFillFactorAsDouble(replaced);
+            delegate.handleItemAdded(itemType, itemUUID, name, fillFactor);
+            changed(itemType, before);
+            changed(replaced, replacedBefore);
+        }
+    }
+
+    @Override
+    public void applyEvents(List<SmartFridgeEvent> events) {
+        synchronized (writeLock) {
+            Map<Long, Double> before = new HashMap<>();
+            for (SmartFridgeEvent event : events) {
+                if (event == null) {
+                    // rejected by the delegate
+                    continue;
+                }
+                if (event.getType() == SmartFridgeEvent.Type.ADDED) {
+                    before.computeIfAbsent(event.getItemType(), loadFillFactor);
+                }
+                Long stored = delegate.getItemType(event.getItemUUID());
+                if (stored != null) {
+                    before.computeIfAbsent(stored, loadFillFactor);
+                }
+            }
+
+            delegate.applyEvents(events);
+
+            double lowest = Double.POSITIVE_INFINITY;
+            for (Map.Entry<Long, Double> touched : before.entrySet()) {
+                fillFactors.invalidate(touched.getKey());
+                lowest = Math.min(lowest, Math.min(touched.getValue(), delegate.getFillFactorAsDouble(touched.getKey())));
+            }
+            invalidateResultsFrom(lowest);
+        }
+    }
+
+    @Override
+    public Object[] getItems(Double fillFactor) {
+        if (fillFactor == null) {
+            return delegate.getItems(fillFactor);
+        }
+        return cachedResult(fillFactor).toArray();
+    }
+
+    @Override
+    public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+        ItemFillResult cached = cachedResult(fillFactor);
+        for (int i = 0; i < cached.size(); i++) {
+            visitor.visit(cached.getItemType(i), cached.getFillFactor(i));
+        }
+    }
+
+    @Override
+    public ItemFillResult getItems(double fillFactor, ItemFillResult result) {
+        result.clear();
+        visitItems(fillFactor, result);
+        return result;
+    }
+
+    /**
+     * Not cached, every page is read from the delegate
+     */
+    @Override
+    public void visitLowestItems(int limit, int offset, ItemFillVisitor visitor) {
+        delegate.visitLowestItems(limit, offset, visitor);
+    }
+
+    private ItemFillResult cachedResult(double fillFactor) {
+        checkExpiry();
+        return results.get(fillFactor, loadResult);
+    }
+
+    @Override
+    public Double getFillFactor(long itemType) {
+        checkExpiry();
+        return fillFactors.get(itemType, loadFillFactor);
+    }
+
+    @Override
+    public double getFillFactorAsDouble(long itemType) {
+        return getFillFactor(itemType);
+    }
+
+    @Override
+    public Long getItemType(String itemUUID) {
+        return delegate.getItemType(itemUUID);
+    }
+
+    @Override
+    public Object[] findItems(String namePrefix, int limit) {
+        return delegate.findItems(namePrefix, limit);
+    }
+
+    @Override
+    public Object[] getItemsDepletingWithin(Duration within) {
+        return delegate.getItemsDepletingWithin(within);
+    }
+
+    @Override
+    public Object[] getFillSamples(long itemType, FillHistoryTier tier) {
+        return delegate.getFillSamples(itemType, tier);
+    }
+
+    @Override
+    public LowStockSubscription watchItemType(long itemType, double threshold, double hysteresis, LowStockListener listener) {
+        return delegate.watchItemType(itemType, threshold, hysteresis, listener);
+    }
+
+    @Override
+    public LowStockSubscription watchAllItemTypes(double threshold, double hysteresis, LowStockListener listener) {
+        return delegate.watchAllItemTypes(threshold, hysteresis, listener);
+    }
+
+    @Override
+    public long getDroppedLowStockEventCount() {
+        return delegate.getDroppedLowStockEventCount();
+    }
+
+    @Override
+    public void forgetItem(long itemType) {
+        synchronized (writeLock) {
+            double before = delegate.getFillFactorAsDouble(itemType);
+            delegate.forgetItem(itemType);
+            changed(itemType, before);
+        }
+    }
+
+    @Override
+    public void forgetItem(long itemType, Duration timeToLive) {
+        synchronized (writeLock) {
+            double before = delegate.getFillFactorAsDouble(itemType);
+            delegate.forgetItem(itemType, timeToLive);
+            changed(itemType, before);
+            nextExpiry = delegate.getNextForgetExpiry();
+        }
+    }
+
+    @Override
+    public void rememberItem(long itemType) {
+        synchronized (writeLock) {
+            double before = delegate.getFillFactorAsDouble(itemType);
+            delegate.rememberItem(itemType);
+            changed(itemType, before);
+            nextExpiry = delegate.getNextForgetExpiry();
+        }
+    }
+
+    @Override
+    public long getNextForgetExpiry() {
+        return delegate.getNextForgetExpiry();
+    }
+
+    @Override
+    public int getItemCount() {
+        return delegate.getItemCount();
+    }
+
+    @Override
+    public int getItemTypeCount() {
+        return delegate.getItemTypeCount();
+    }
+
+    @Override
+    public int getForgottenItemTypeCount() {
+        return delegate.getForgottenItemTypeCount();
+    }
+
+    /**
+     * @return hits and misses of getFillFactor()
+     */
+    public CacheStats getFillFactorStats() {
+        return fillFactors.stats();
+    }
+
+    /**
+     * @return hits and misses of every getItems() variant
+     */
+    public CacheStats getItemsStats() {
+        return results.stats();
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return the thresholds with a cached getItems() result
+     */
+    NavigableSet<Double> getCachedThresholds() {
+        return cachedThresholds;
+    }
+
+    /**
+     * Closes the delegate if it is Closeable
+     */
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CachingSmartFridgeManager{" + delegate + "}";
+    }
+}
@@ -0,0 +1,783 @@
+package com.example.demo.smartfridge;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * SmartFridgeManager that can be shared by several fridge event threads.
+ *
+ * Events for different itemUUIDs run in parallel. Each item type has its own aggregate which is
+ * only ever updated while holding that aggregate's monitor. Updates are made from inside the
+ * contents map's per key compute, which keeps the aggregates in step with the contents when the
+ * same itemUUID is added and removed concurrently.
+ *
+ * Queries that span several item types read a {@link Snapshot}: every event is stamped with the
+ * current epoch, and each aggregate keeps its totals as of the epochs still visible to an open
+ * snapshot. Taking a snapshot closes the current epoch and waits for the events that are being
+ * applied in it at that moment, while later events go ahead in the next epoch, so events never
+ * wait for a query. The snapshot then reads the totals of exactly the events of the closed epochs.
+ * A single getItems() call uses a snapshot of its own, so its result never mixes states from
+ * different moments.
+ *
+ * The aggregate of an item type whose last container is removed is dropped once no open snapshot
+ * can see it with containers, so queries only walk item types that are stocked.
+ *
+ * Forgetting and remembering an item type are stamped with epochs the same way, so a snapshot
+ * keeps seeing an item type as forgotten or not no matter what happens to it later. A time to live
+ * is checked against the manager's Clock whenever the forgotten item types are queried.
+ */
+public class ConcurrentSmartFridgeManager implements SmartFridgeManager {
+    private final ConcurrentMap<String, SmartFridgeItem> contents = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, VersionedAggregate> aggregates = new ConcurrentHashMap<>();
+    // itemType -> newest forgetItem() of the item type, kept after rememberItem() until no open
+    // snapshot can see it as forgotten
+    private final ConcurrentMap<Long, Forgotten> ignoreItemTypes = new ConcurrentHashMap<>();
+    // remembered item types whose Forgotten is still visible to an open snapshot, dropped once it is closed
+    private final Queue<Long> rememberedItemTypes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger forgottenCount = new AtomicInteger();
+    private final Object expiryLock = new Object();
+    // no time to live runs out before this, so most queries skip the scan of ignoreItemTypes
+    private volatile long nextExpiry = Long.MAX_VALUE;
+    private final Clock clock;
+    private final NameIndex nameIndex = new NameIndex();
+
+    private final AtomicLong epoch = new AtomicLong(1);
+    // events in flight by the parity of their epoch, see beginEvent(). Snapshots are taken one at a
+    // time and each only waits for the epoch it closes, so two counters are enough.
+    private final AtomicLong[] eventsInFlight = {new AtomicLong(), new AtomicLong()};
+    private final Object snapshotLock = new Object();
+    // epoch of each open snapshot -> number of open snapshots of that epoch
+    private final ConcurrentNavigableMap<Long, Integer> openSnapshots = new ConcurrentSkipListMap<>();
+    // empty aggregates that an open snapshot may still see with containers, dropped once it is closed
+    private final Queue<VersionedAggregate> emptyAggregates = new ConcurrentLinkedQueue<>();
+
+    public ConcurrentSmartFridgeManager() {
+        this(Clock.systemUTC());
+    }
+
+    /**
+     * @param clock times the forgetItem() time to live
+     */
+    public ConcurrentSmartFridgeManager(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void handleItemRemoved(String itemUUID) {
+        long registeredEpoch = beginEvent();
+        try {
+            contents.computeIfPresent(itemUUID, (uuid, removed) -> {
+                long currentEpoch = epoch.get();
+                removeFromAggregate(removed, currentEpoch);
+                nameIndex.remove(removed.getName(), removed.getItemType());
+                return null;
+            });
+        } finally {
+            endEvent(registeredEpoch);
+        }
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, Double fillFactor) {
+        handleItemAdded(itemType, itemUUID, name, fillFactor.doubleValue());
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+        StandardSmartFridgeItem item = new StandardSmartFridgeItem(itemType, itemUUID, name, fillFactor);
+        long registeredEpoch = beginEvent();
+        try {
+            contents.compute(itemUUID, (uuid, replaced) -> {
+                // read while holding the itemUUID, so a later event of the same itemUUID never gets
+                // an older epoch
+                long currentEpoch = epoch.get();
+                if (replaced != null) {
+                    removeFromAggregate(replaced, currentEpoch);
+                }
+                addToAggregate(item, currentEpoch);
+                nameIndex.update(replaced, item);
+                return item;
+            });
+        } finally {
+            endEvent(registeredEpoch);
+        }
+    }
+
+    /**
+     * Registers an event with the current epoch, which a snapshot closing it then waits for. The
+     * epoch cannot move on past the next one before the event ends, so the event may be stamped
+     * with either.
+     *
+     * @return the epoch the event is registered with, to be passed to endEvent()
+     */
+    private long beginEvent() {
+        while (true) {
+            long currentEpoch = epoch.get();
+            AtomicLong inFlight = eventsInFlight[(int) currentEpoch & 1];
+            inFlight.incrementAndGet();
+            if (epoch.get() == currentEpoch) {
+                return currentEpoch;
+            }
+            // a snapshot closed the epoch before it saw the event, which belongs to the next one
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void endEvent(long eventEpoch) {
+        eventsInFlight[(int) eventEpoch & 1].decrementAndGet();
+    }
+
+    private void addToAggregate(SmartFridgeItem item, long currentEpoch) {
+        while (true) {
+            VersionedAggregate aggregate = aggregates.computeIfAbsent(item.getItemType(), VersionedAggregate::new);
+            synchronized (aggregate) {
+                // dropped between the lookup and the monitor, the next lookup creates a new one
+                if (!aggregate.dropped) {
+                    aggregate.add(currentEpoch, oldestVisibleEpoch(currentEpoch), item.getFillFactorAsDouble());
+                    return;
+                }
+            }
+        }
+    }
+
+    private void removeFromAggregate(SmartFridgeItem item, long currentEpoch) {
+        // only empty aggregates are dropped, so the one the item was added to is still there
+        VersionedAggregate aggregate = aggregates.get(item.getItemType());
+        synchronized (aggregate) {
+            long oldestVisibleEpoch = oldestVisibleEpoch(currentEpoch);
+            aggregate.remove(currentEpoch, oldestVisibleEpoch, item.getFillFactorAsDouble());
+            dropIfEmpty(aggregate, oldestVisibleEpoch);
+        }
+    }
+
+    /**
+     * Must be called while holding the aggregate's monitor. An aggregate that an open snapshot may
+     * still see with containers is queued and tried again when a snapshot is closed.
+     */
+    private void dropIfEmpty(VersionedAggregate aggregate, long oldestVisibleEpoch) {
+        if (aggregate.dropped || !aggregate.latest().isEmpty()) {
+            return;
+        }
+        if (aggregate.latestEpoch() <= oldestVisibleEpoch) {
+            aggregate.dropped = true;
+            aggregates.remove(aggregate.getItemType(), aggregate);
+        } else if (!aggregate.queued) {
+            aggregate.queued = true;
+            emptyAggregates.add(aggregate);
+        }
+    }
+
+    private void dropEmptyAggregates() {
+        for (int i = emptyAggregates.size(); i > 0; i--) {
+            VersionedAggregate aggregate = emptyAggregates.poll();
+            if (aggregate == null) {
+                return;
+            }
+            synchronized (aggregate) {
+                aggregate.queued = false;
+                dropIfEmpty(aggregate, oldestVisibleEpoch(epoch.get()));
+            }
+        }
+    }
+
+    /**
+     * A snapshot opened concurrently registers before it closes its epoch, so reading the current
+     * epoch before calling this never misses it
+     *
+     * @param currentEpoch
+     * @return epoch of the oldest open snapshot, or currentEpoch if there is none
+     */
+    private long oldestVisibleEpoch(long currentEpoch) {
+        Map.Entry<Long, Integer> oldest = openSnapshots.firstEntry();
+        return oldest == null ? currentEpoch : oldest.getKey();
+    }
+
+    /**
+     * Opens a consistent view of the fill factors as of now. The snapshot has to be closed, until
+     * then the aggregates keep the totals it needs.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        expireForgotten();
+        synchronized (snapshotLock) {
+            long closedEpoch = epoch.get();
+            openSnapshots.merge(closedEpoch, 1, Integer::sum);
+            epoch.set(closedEpoch + 1);
+            // only the events that registered before the epoch was closed are waited for
+            AtomicLong inFlight = eventsInFlight[(int) closedEpoch & 1];
+            while (inFlight.get() != 0L) {
+                Thread.yield();
+            }
+            return new Snapshot(closedEpoch);
+        }
+    }
+
+    @Override
+    public Object[] getItems(Double fillFactor) {
+        ItemFillResult result = new ItemFillResult();
+        visitItems(fillFactor, result);
+        return result.toArray();
+    }
+
+    @Override
+    public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+        try (Snapshot snapshot = snapshot()) {
+            snapshot.visitItems(fillFactor, visitor);
+        }
+    }
+
+    @Override
+    public Double getFillFactor(long itemType) {
+        return getFillFactorAsDouble(itemType);
+    }
+
+    /**
+     * A single item type needs no snapshot, its aggregate is read under its own monitor
+     */
+    @Override
+    public double getFillFactorAsDouble(long itemType) {
+        VersionedAggregate aggregate = aggregates.get(itemType);
+        if (aggregate == null) {
+            return 0.0d;
+        }
+        synchronized (aggregate) {
+            return aggregate.latest().getFillFactor();
+        }
+    }
+
+    @Override
+    public Long getItemType(String itemUUID) {
+        SmartFridgeItem item = contents.get(itemUUID);
+        return item == null ? null : item.getItemType();
+    }
+
+    /**
+     * Reads the latest fill factors, like getFillFactor(), without a snapshot
+     */
+    @Override
+    public Object[] findItems(String namePrefix, int limit) {
+        NameIndex.checkArguments("ConcurrentSmartFridgeManager.findItems", namePrefix, limit);
+        return NameIndex.toItems(
+                nameIndex.find(namePrefix, limit, itemType -> !isForgotten(itemType)),
+                this::getFillFactorAsDouble
+        );
+    }
+
+    @Override
+    public void forgetItem(long itemType) {
+        expireForgotten();
+        forgetItemUntil(itemType, Long.MAX_VALUE);
+    }
+
+    @Override
+    public void forgetItem(long itemType, Duration timeToLive) {
+        if (timeToLive == null || timeToLive.isNegative()) {
+            throw new IllegalArgumentException("ConcurrentSmartFridgeManager.forgetItem: Duration timeToLive must be >= 0");
+        }
+        expireForgotten();
+        long now = clock.millis();
+        long millis = timeToLive.getSeconds() >= Long.MAX_VALUE / 1000L ? Long.MAX_VALUE : timeToLive.toMillis();
+        long expiresAt = millis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + millis;
+        forgetItemUntil(itemType, expiresAt);
+        synchronized (expiryLock) {
+            nextExpiry = Math.min(nextExpiry, expiresAt);
+        }
+        // a time to live of zero is remembered right away
+        expireForgotten();
+    }
+
+    /**
+     * @param itemType
+     * @param expiresAt epoch millis, Long.MAX_VALUE to forget for good
+     */
+    private void forgetItemUntil(long itemType, long expiresAt) {
+        long registeredEpoch = beginEvent();
+        try {
+            ignoreItemTypes.compute(itemType, (key, forgotten) -> {
+                // read while holding the itemType, so a later forget or remember never gets an older epoch
+                long currentEpoch = epoch.get();
+                if (forgotten != null && forgotten.isForgotten()) {
+                    // forgetting again only replaces the time to live
+                    return new Forgotten(forgotten.forgottenAt, Long.MAX_VALUE, expiresAt, forgotten.older);
+                }
+                forgottenCount.incrementAndGet();
+                return new Forgotten(currentEpoch, Long.MAX_VALUE, expiresAt, visible(forgotten, oldestVisibleEpoch(currentEpoch)));
+            });
+        } finally {
+            endEvent(registeredEpoch);
+        }
+    }
+
+    @Override
+    public void rememberItem(long itemType) {
+        expireForgotten();
+        remember(itemType, null);
+    }
+
+    /**
+     * @param itemType
+     * @param expired the Forgotten whose time to live ran out, null to remember the item type
+     *      however it was forgotten
+     */
+    private void remember(long itemType, Forgotten expired) {
+        long registeredEpoch = beginEvent();
+        try {
+            ignoreItemTypes.computeIfPresent(itemType, (key, forgotten) -> {
+                if (!forgotten.isForgotten() || expired != null && forgotten != expired) {
+                    return forgotten;
+                }
+                forgottenCount.decrementAndGet();
+                long currentEpoch = epoch.get();
+                Forgotten remembered = visible(
+                        new Forgotten(forgotten.forgottenAt, currentEpoch, Long.MAX_VALUE, forgotten.older),
+                        oldestVisibleEpoch(currentEpoch)
+                );
+                if (remembered != null) {
+                    rememberedItemTypes.add(itemType);
+                }
+                return remembered;
+            });
+        } finally {
+            endEvent(registeredEpoch);
+        }
+    }
+
+    /**
+     * @param forgotten newest Forgotten of an item type, or null
+     * @param oldestVisibleEpoch
+     * @return forgotten with the Forgotten that no open snapshot can see any more cut off, or null
+     *      if none is left
+     */
+    private static Forgotten visible(Forgotten forgotten, long oldestVisibleEpoch) {
+        if (forgotten == null || forgotten.rememberedAt <= oldestVisibleEpoch) {
+            return null;
+        }
+        for (Forgotten newer = forgotten; newer.older != null; newer = newer.older) {
+            if (newer.older.rememberedAt <= oldestVisibleEpoch) {
+                newer.older = null;
+                break;
+            }
+        }
+        return forgotten;
+    }
+
+    private void dropRememberedItemTypes() {
+        for (int i = rememberedItemTypes.size(); i > 0; i--) {
+            Long itemType = rememberedItemTypes.poll();
+            if (itemType == null) {
+                return;
+            }
+            ignoreItemTypes.computeIfPresent(itemType, (key, forgotten) -> {
+                Forgotten remaining = visible(forgotten, oldestVisibleEpoch(epoch.get()));
+                if (remaining != null && !remaining.isForgotten()) {
+                    rememberedItemTypes.add(itemType);
+                }
+                return remaining;
+            });
+        }
+    }
+
+    private boolean isForgotten(long itemType) {
+        if (ignoreItemTypes.isEmpty()) {
+            return false;
+        }
+        Forgotten forgotten = ignoreItemTypes.get(itemType);
+        return forgotten != null && forgotten.isForgotten();
+    }
+
+    private void expireForgotten() {
+        if (nextExpiry == Long.MAX_VALUE) {
+            return;
+        }
+        long now = clock.millis();
+        if (now < nextExpiry) {
+            return;
+        }
+
+        synchronized (expiryLock) {
+            // forgetItem() with a time to live updates nextExpiry after its Forgotten is in the
+            // map, so the scan either sees it or the update comes after the one here
+            long next = Long.MAX_VALUE;
+            for (Map.Entry<Long, Forgotten> entry : ignoreItemTypes.entrySet()) {
+                Forgotten forgotten = entry.getValue();
+                if (!forgotten.isForgotten()) {
+                    continue;
+                }
+                if (forgotten.expiresAt <= now) {
+                    remember(entry.getKey(), forgotten);
+                } else {
+                    next = Math.min(next, forgotten.expiresAt);
+                }
+            }
+            nextExpiry = next;
+        }
+    }
+
+    /**
+     * Expiry times are kept in the time of the manager's Clock
+     */
+    @Override
+    public long getNextForgetExpiry() {
+        expireForgotten();
+        return nextExpiry;
+    }
+
+    @Override
+    public int getItemCount() {
+        return contents.size();
+    }
+
+    /**
+     * Counts the item types that still have containers, O(T) for T stocked item types
+     */
+    @Override
+    public int getItemTypeCount() {
+        expireForgotten();
+        int count = 0;
+        for (VersionedAggregate aggregate : aggregates.values()) {
+            if (!aggregate.latest().isEmpty() && !isForgotten(aggregate.getItemType())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getForgottenItemTypeCount() {
+        expireForgotten();
+        return forgottenCount.get();
+    }
+
+    @Override
+    public String toString() {
+        String toStringValue = "";
+
+        if (contents.size() > 0) {
+            toStringValue = "\n" +
+                    contents
+                            .values()
+                            .stream()
+                            .map(e -> e.toString())
+                            .collect(Collectors.joining("\n")) +
+            "\n";
+        }
+        return "ConcurrentSmartFridgeManager{" + toStringValue + "}";
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return SmartFridge contents
+     */
+    Map<String, SmartFridgeItem> getContents() {
+        return contents;
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return SmartFridge ignored item types
+     */
+    Set<Long> getIgnoreItemTypes() {
+        expireForgotten();
+        return ignoreItemTypes.keySet().stream().filter(this::isForgotten).collect(Collectors.toSet());
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return number of versions kept for the item type
+     */
+    int getVersionCount(long itemType) {
+        VersionedAggregate aggregate = aggregates.get(itemType);
+        if (aggregate == null) {
+            return 0;
+        }
+        synchronized (aggregate) {
+            return aggregate.versionCount();
+        }
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return number of item types that have an aggregate
+     */
+    int getAggregateCount() {
+        return aggregates.size();
+    }
+
+    /**
+     * Fill factors of the ConcurrentSmartFridgeManager as of the moment the snapshot was taken.
+     * Reads do not lock and may run on any thread while events are applied.
+     */
+    public final class Snapshot implements AutoCloseable {
+        private final long epoch;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Snapshot(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * @return the last epoch whose events are visible to this snapshot
+         */
+        public long getEpoch() {
+            return epoch;
+        }
+
+        private boolean isIgnored(long itemType) {
+            // checking isEmpty first saves boxing the itemType when nothing is forgotten
+            if (ignoreItemTypes.isEmpty()) {
+                return false;
+            }
+            for (Forgotten forgotten = ignoreItemTypes.get(itemType); forgotten != null; forgotten = forgotten.older) {
+                if (forgotten.forgottenAt <= epoch) {
+                    return epoch < forgotten.rememberedAt;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @see SmartFridgeManager#getItems(Double)
+         */
+        public Object[] getItems(Double fillFactor) {
+            ItemFillResult result = new ItemFillResult();
+            visitItems(fillFactor, result);
+            return result.toArray();
+        }
+
+        /**
+         * @see SmartFridgeManager#getItems(double, ItemFillResult)
+         */
+        public ItemFillResult getItems(double fillFactor, ItemFillResult result) {
+            result.clear();
+            visitItems(fillFactor, result);
+            return result;
+        }
+
+        /**
+         * @see SmartFridgeManager#visitItems(double, ItemFillVisitor)
+         */
+        public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+            checkOpen();
+            for (VersionedAggregate aggregate : aggregates.values()) {
+                ItemTypeAggregate version = aggregate.at(epoch);
+                if (version == null || version.isEmpty() || isIgnored(aggregate.getItemType())) {
+                    continue;
+                }
+                double fill = version.getFillFactor();
+                if (fill <= fillFactor) {
+                    visitor.visit(aggregate.getItemType(), fill);
+                }
+            }
+        }
+
+        /**
+         * @see SmartFridgeManager#getFillFactorAsDouble(long)
+         */
+        public double getFillFactor(long itemType) {
+            checkOpen();
+            VersionedAggregate aggregate = aggregates.get(itemType);
+            ItemTypeAggregate version = aggregate == null ? null : aggregate.at(epoch);
+            return version == null ? 0.0d : version.getFillFactor();
+        }
+
+        private void checkOpen() {
+            if (closed.get()) {
+                throw new IllegalStateException("ConcurrentSmartFridgeManager.Snapshot: snapshot is closed");
+            }
+        }
+
+        /**
+         * Releases the versions kept for this snapshot. Closing twice has no effect.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                openSnapshots.computeIfPresent(epoch, (key, count) -> count == 1 ? null : count - 1);
+                dropEmptyAggregates();
+                dropRememberedItemTypes();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ConcurrentSmartFridgeManager.Snapshot{epoch=" + epoch + "}";
+        }
+    }
+
+    /**
+     * The totals of one item type as of every epoch that an open snapshot can still see, newest
+     * first. Writers hold the monitor, readers do not: a version only changes while events of its
+     * epoch are in flight, and a snapshot only reads versions of epochs it has waited for.
+     */
+    private static final class VersionedAggregate {
+        private final long itemType;
+        private volatile Version head;
+        // both only accessed while holding the monitor
+        private boolean dropped;
+        private boolean queued;
+
+        VersionedAggregate(long itemType) {
+            this.itemType = itemType;
+            this.head = new Version(0L, new ItemTypeAggregate(itemType), null);
+        }
+
+        long getItemType() {
+            return itemType;
+        }
+
+        ItemTypeAggregate latest() {
+            return head.totals;
+        }
+
+        long latestEpoch() {
+            return head.epoch;
+        }
+
+        /**
+         * @param epoch
+         * @return the totals as of the end of the epoch, or null if the item type had not been seen yet
+         */
+        ItemTypeAggregate at(long epoch) {
+            Version version = head;
+            while (version != null && version.epoch > epoch) {
+                version = version.older;
+            }
+            return version == null ? null : version.totals;
+        }
+
+        /**
+         * Must be called while holding the monitor
+         *
+         * @param eventEpoch
+         * @param oldestVisibleEpoch epoch of the oldest open snapshot, or eventEpoch if there is none
+         * @param fillFactor
+         */
+        void add(long eventEpoch, long oldestVisibleEpoch, double fillFactor) {
+            Version target = writable(eventEpoch, oldestVisibleEpoch);
+            for (Version version = head; ; version = version.older) {
+                version.totals.add(fillFactor);
+                if (version == target) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Must be called while holding the monitor
+         *
+         * @see #add(long, long, double)
+         */
+        void remove(long eventEpoch, long oldestVisibleEpoch, double fillFactor) {
+            Version target = writable(eventEpoch, oldestVisibleEpoch);
+            for (Version version = head; ; version = version.older) {
+                version.totals.remove(fillFactor);
+                if (version == target) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * An event of the closing epoch may still be in flight while events of the next one come
+         * in, so the event's change goes into its own version and every newer one. No snapshot
+         * reads those until the event is done.
+         *
+         * @return the version of the event's epoch, created if needed
+         */
+        private Version writable(long eventEpoch, long oldestVisibleEpoch) {
+            Version newer = null;
+            Version version = head;
+            while (version.epoch > eventEpoch) {
+                newer = version;
+                version = version.older;
+            }
+            if (version.epoch != eventEpoch) {
+                ItemTypeAggregate totals = version.totals;
+                version = new Version(eventEpoch, new ItemTypeAggregate(
+                        itemType,
+                        totals.getCount(),
+                        totals.getNonEmptyCount(),
+                        totals.getNonEmptySum()
+                ), version);
+                if (newer == null) {
+                    head = version;
+                } else {
+                    newer.older = version;
+                }
+            }
+
+            // the newest version at or before the oldest visible epoch is the last one anybody can
+            // read, which is never newer than the event's own
+            for (Version visible = head; visible != null; visible = visible.older) {
+                if (visible.epoch <= oldestVisibleEpoch) {
+                    visible.older = null;
+                    break;
+                }
+            }
+            return version;
+        }
+
+        int versionCount() {
+            int count = 0;
+            for (Version version = head; version != null; version = version.older) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private static final class Version {
+        private final long epoch;
+        private final ItemTypeAggregate totals;
+        // cut off once no open snapshot can reach the older versions, a reader that still sees the
+        // old link only walks versions it does not need. Volatile as a version may be inserted
+        // behind a newer one.
+        private volatile Version older;
+
+        Version(long epoch, ItemTypeAggregate totals, Version older) {
+            this.epoch = epoch;
+            this.totals = totals;
+            this.older = older;
+        }
+    }
+
+    /**
+     * One forgetItem() of an item type, newest first. The item type is forgotten for snapshots of
+     * the epochs from forgottenAt up to, but not including, rememberedAt.
+     */
+    private static final class Forgotten {
+        private final long forgottenAt;
+        // Long.MAX_VALUE while the item type is forgotten
+        private final long rememberedAt;
+        // epoch millis, Long.MAX_VALUE without a time to live
+        private final long expiresAt;
+        // cut off once no open snapshot can see it, like Version.older
+        private volatile Forgotten older;
+
+        Forgotten(long forgottenAt, long rememberedAt, long expiresAt, Forgotten older) {
+            this.forgottenAt = forgottenAt;
+            this.rememberedAt = rememberedAt;
+            this.expiresAt = expiresAt;
+            this.older = older;
+        }
+
+        boolean isForgotten() {
+            return rememberedAt == Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package com.example.demo.smartfridge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SmartFridgeManager that drops the events the fridge hardware retries or delivers late before
+ * they reach another SmartFridgeManager, so they cost a map lookup instead of an update of the
+ * contents and of everything derived from them.
+ *
+ * The last event applied for each itemUUID is kept in a bounded window. An event is suppressed
+ * if, compared to that last event:
+ *
+ *      - both are numbered (see {@link SmartFridgeEvent#withSequence(long)}) and its sequence is
+ *        the same, a duplicate, or lower, out of order
+ *      - it is the same removal, or the same add with the same item type, name and fill factor,
+ *        a duplicate. It would leave the contents as they are, but an unnumbered retry and a
+ *        repeated reading cannot be told apart, so the repeated reading is not recorded in the
+ *        fill history either.
+ *
+ * The window holds the itemUUIDs of the most recent events, at most maxEntries of them and, with
+ * a time to live, only those with an event within it. An itemUUID that fell out of the window
+ * has its next event applied whatever it is, so the window should cover the time the hardware
+ * keeps retrying.
+ *
+ * Writes are serialized by the window, queries go straight to the delegate. Every write has to
+ * go through the window, as a write that bypasses it is not compared against.
+ *
+ * Thread safe if the delegate is.
+ */
+public class DeduplicatingSmartFridgeManager implements SmartFridgeManager, Closeable {
+    private final SmartFridgeManager delegate;
+    private final Clock clock;
+    // 0 for no time to live
+    private final long timeToLiveMillis;
+    private final Object writeLock = new Object();
+    // least recently seen first
+    private final LastEvents lastEvents;
+    private final LongAdder duplicateCount = new LongAdder();
+    private final LongAdder outOfOrderCount = new LongAdder();
+
+    private enum Verdict {
+        APPLY,
+        DUPLICATE,
+        OUT_OF_ORDER
+    }
+
+    /**
+     * Last events in access order, the least recently seen one is dropped beyond maxEntries
+     */
+    private static final class LastEvents extends LinkedHashMap<String, LastEvent> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LastEvents(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LastEvent> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    /**
+     * The last event applied for an itemUUID
+     */
+    private static final class LastEvent {
+        private long sequence;
+        private SmartFridgeEvent.Type type;
+        private long itemType;
+        private String name;
+        private double fillFactor;
+        private long seenAt;
+
+        private LastEvent copy() {
+            LastEvent copy = new LastEvent();
+            copy.sequence = sequence;
+            copy.type = type;
+            copy.itemType = itemType;
+            copy.name = name;
+            copy.fillFactor = fillFactor;
+            copy.seenAt = seenAt;
+            return copy;
+        }
+
+        private Verdict judge(long sequence, SmartFridgeEvent.Type type, long itemType, String name, double fillFactor) {
+            if (sequence != SmartFridgeEvent.NO_SEQUENCE && this.sequence != SmartFridgeEvent.NO_SEQUENCE) {
+                if (sequence == this.sequence) {
+                    return Verdict.DUPLICATE;
+                }
+                if (sequence < this.sequence) {
+                    return Verdict.OUT_OF_ORDER;
+                }
+            }
+            if (type != this.type) {
+                return Verdict.APPLY;
+            }
+            if (type == SmartFridgeEvent.Type.REMOVED
+                    || itemType == this.itemType && Objects.equals(name, this.name) && Double.compare(fillFactor, this.fillFactor) == 0) {
+                return Verdict.DUPLICATE;
+            }
+            return Verdict.APPLY;
+        }
+
+        private void seen(long sequence, long now) {
+            this.sequence = Math.max(this.sequence, sequence);
+            seenAt = now;
+        }
+
+        private void applied(long sequence, SmartFridgeEvent.Type type, long itemType, String name, double fillFactor, long now) {
+            seen(sequence, now);
+            this.type = type;
+            this.itemType = itemType;
+            this.name = name;
+            this.fillFactor = fillFactor;
+        }
+    }
+
+    /**
+     * @param delegate
+     * @param maxEntries number of itemUUIDs whose last event is kept
+     */
+    public DeduplicatingSmartFridgeManager(SmartFridgeManager delegate, int maxEntries) {
+        this(delegate, maxEntries, Duration.ZERO, Clock.systemUTC());
+    }
+
+    /**
+     * @param delegate
+     * @param maxEntries number of itemUUIDs whose last event is kept
+     * @param timeToLive how long the last event of an itemUUID is kept, zero for as long as it
+     *      is one of the maxEntries most recent ones
+     * @param clock
+     *
+     * @throws IllegalArgumentException if maxEntries is less than 1 or the timeToLive is negative
+     */
+    public DeduplicatingSmartFridgeManager(SmartFridgeManager delegate, int maxEntries, Duration timeToLive, Clock clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("DeduplicatingSmartFridgeManager: int maxEntries must be >= 1");
+        }
+        if (timeToLive.isNegative()) {
+            throw new IllegalArgumentException("DeduplicatingSmartFridgeManager: Duration timeToLive must not be negative");
+        }
+        this.delegate = delegate;
+        this.clock = clock;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        lastEvents = new LastEvents(maxEntries);
+    }
+
+    public SmartFridgeManager getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Applies a single, possibly numbered, event
+     *
+     * @param event
+     *
+     * @return false if the event was suppressed
+     *
+     * @throws IllegalArgumentException if the event is null
+     */
+    public boolean handleEvent(SmartFridgeEvent event) {
+        if (event == null) {
+            throw new IllegalArgumentException("DeduplicatingSmartFridgeManager.handleEvent: event must not be null");
+        }
+        return handle(event.getSequence(), event.getType(), event.getItemType(), event.getItemUUID(), event.getName(), event.getFillFactor());
+    }
+
+    @Override
+    public void handleItemRemoved(String itemUUID) {
+        handle(SmartFridgeEvent.NO_SEQUENCE, SmartFridgeEvent.Type.REMOVED, 0L, itemUUID, null, 0.0d);
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, Double fillFactor) {
+        if (fillFactor == null) {
+            delegate.handleItemAdded(itemType, itemUUID, name, fillFactor);
+            return;
+        }
+        handleItemAdded(itemType, itemUUID, name, fillFactor.doubleValue());
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+        handle(SmartFridgeEvent.NO_SEQUENCE, SmartFridgeEvent.Type.ADDED, itemType, itemUUID, name, fillFactor);
+    }
+
+    private boolean handle(long sequence, SmartFridgeEvent.Type type, long itemType, String itemUUID, String name, double fillFactor) {
+        synchronized (writeLock) {
+            long now = now();
+            LastEvent last = lookUp(itemUUID, now);
+            Verdict verdict = last == null ? Verdict.APPLY : last.judge(sequence, type, itemType, name, fillFactor);
+            if (verdict != Verdict.APPLY) {
+                count(verdict);
+                last.seen(sequence, now);
+                return false;
+            }
+
+            if (type == SmartFridgeEvent.Type.ADDED) {
+                delegate.handleItemAdded(itemType, itemUUID, name, fillFactor);
+            } else {
+                delegate.handleItemRemoved(itemUUID);
+            }
+            if (last == null) {
+                last = new LastEvent();
+                last.sequence = sequence;
+                lastEvents.put(itemUUID, last);
+            }
+            last.applied(sequence, type, itemType, name, fillFactor, now);
+            evictExpired(now);
+            return true;
+        }
+    }
+
+    /**
+     * Suppressed events are left out of the batch, the remaining ones are handed to the delegate
+     * in one call. Within the batch, every event is compared to the last one not suppressed for
+     * its itemUUID.
+     */
+    @Override
+    public void applyEvents(List<SmartFridgeEvent> events) {
+        synchronized (writeLock) {
+            if (events.contains(null)) {
+                // rejected by the delegate
+                delegate.applyEvents(events);
+                return;
+            }
+
+            long now = now();
+            // copies of the window's entries, only written back once the delegate took the batch
+            Map<String, LastEvent> batchLastEvents = new HashMap<>();
+            Map<String, SmartFridgeEvent> applied = new LinkedHashMap<>();
+            for (SmartFridgeEvent event : events) {
+                String itemUUID = event.getItemUUID();
+                LastEvent last = batchLastEvents.get(itemUUID);
+                if (last == null) {
+                    LastEvent windowed = lookUp(itemUUID, now);
+                    if (windowed != null) {
+                        last = windowed.copy();
+                        batchLastEvents.put(itemUUID, last);
+                    }
+                }
+
+                Verdict verdict = last == null ? Verdict.APPLY
+                        : last.judge(event.getSequence(), event.getType(), event.getItemType(), event.getName(), event.getFillFactor());
+                if (verdict != Verdict.APPLY) {
+                    count(verdict);
+                    last.seen(event.getSequence(), now);
+                    continue;
+                }
+                if (last == null) {
+                    last = new LastEvent();
+                    last.sequence = event.getSequence();
+                    batchLastEvents.put(itemUUID, last);
+                }
+                last.applied(event.getSequence(), event.getType(), event.getItemType(), event.getName(), event.getFillFactor(), now);
+                applied.put(itemUUID, event);
+            }
+
+            if (!applied.isEmpty()) {
+                delegate.applyEvents(new ArrayList<>(applied.values()));
+            }
+            lastEvents.putAll(batchLastEvents);
+            evictExpired(now);
+        }
+    }
+
+    private long now() {
+        return timeToLiveMillis == 0L ? 0L : clock.millis();
+    }
+
+    /**
+     * Must be called while holding the write lock
+     *
+     * @return the last event of the itemUUID, or null if it is not or no longer in the window
+     */
+    private LastEvent lookUp(String itemUUID, long now) {
+        LastEvent last = lastEvents.get(itemUUID);
+        if (last != null && timeToLiveMillis != 0L && now - last.seenAt >= timeToLiveMillis) {
+            lastEvents.remove(itemUUID);
+            return null;
+        }
+        return last;
+    }
+
+    /**
+     * Must be called while holding the write lock
+     */
+    private void evictExpired(long now) {
+        if (timeToLiveMillis == 0L) {
+            return;
+        }
+        Iterator<LastEvent> leastRecent = lastEvents.values().iterator();
+        while (leastRecent.hasNext() && now - leastRecent.next().seenAt >= timeToLiveMillis) {
+            leastRecent.remove();
+        }
+    }
+
+    private void count(Verdict verdict) {
+        if (verdict == Verdict.DUPLICATE) {
+            duplicateCount.increment();
+        } else {
+            outOfOrderCount.increment();
+        }
+    }
+
+    @Override
+    public Object[] getItems(Double fillFactor) {
+        return delegate.getItems(fillFactor);
+    }
+
+    @Override
+    public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+        delegate.visitItems(fillFactor, visitor);
+    }
+
+    @Override
+    public void visitLowestItems(int limit, int offset, ItemFillVisitor visitor) {
+        delegate.visitLowestItems(limit, offset, visitor);
+    }
+
+    @Override
+    public ItemFillResult getItems(double fillFactor, ItemFillResult result) {
+        return delegate.getItems(fillFactor, result);
+    }
+
+    @Override
+    public Double getFillFactor(long itemType) {
+        return delegate.getFillFactor(itemType);
+    }
+
+    @Override
+    public double getFillFactorAsDouble(long itemType) {
+        return delegate.getFillFactorAsDouble(itemType);
+    }
+
+    @Override
+    public Long getItemType(String itemUUID) {
+        return delegate.getItemType(itemUUID);
+    }
+
+    @Override
+    public Object[] findItems(String namePrefix, int limit) {
+        return delegate.findItems(namePrefix, limit);
+    }
+
+    @Override
+    public Object[] getItemsDepletingWithin(Duration within) {
+        return delegate.getItemsDepletingWithin(within);
+    }
+
+    @Override
+    public Object[] getFillSamples(long itemType, FillHistoryTier tier) {
+        return delegate.getFillSamples(itemType, tier);
+    }
+
+    @Override
+    public LowStockSubscription watchItemType(long itemType, double threshold, double hysteresis, LowStockListener listener) {
+        return delegate.watchItemType(itemType, threshold, hysteresis, listener);
+    }
+
+    @Override
+    public LowStockSubscription watchAllItemTypes(double threshold, double hysteresis, LowStockListener listener) {
+        return delegate.watchAllItemTypes(threshold, hysteresis, listener);
+    }
+
+    @Override
+    public long getDroppedLowStockEventCount() {
+        return delegate.getDroppedLowStockEventCount();
+    }
+
+    @Override
+    public void forgetItem(long itemType) {
+        delegate.forgetItem(itemType);
+    }
+
+    @Override
+    public void forgetItem(long itemType, Duration timeToLive) {
+        delegate.forgetItem(itemType, timeToLive);
+    }
+
+    @Override
+    public void rememberItem(long itemType) {
+        delegate.rememberItem(itemType);
+    }
+
+    @Override
+    public long getNextForgetExpiry() {
+        return delegate.getNextForgetExpiry();
+    }
+
+    @Override
+    public int getItemCount() {
+        return delegate.getItemCount();
+    }
+
+    @Override
+    public int getItemTypeCount() {
+        return delegate.getItemTypeCount();
+    }
+
+    @Override
+    public int getForgottenItemTypeCount() {
+        return delegate.getForgottenItemTypeCount();
+    }
+
+    /**
+     * @return the number of events suppressed as a repeat of the last one
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.sum();
+    }
+
+    /**
+     * @return the number of events suppressed for a sequence lower than the last one
+     */
+    public long getOutOfOrderCount() {
+        return outOfOrderCount.sum();
+    }
+
+    /**
+     * @return the number of itemUUIDs whose last event is kept, expired ones included until they
+     *      are evicted
+     */
+    public int getWindowSize() {
+        synchronized (writeLock) {
+            return lastEvents.size();
+        }
+    }
+
+    /**
+     * Closes the delegate if it is Closeable
+     */
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DeduplicatingSmartFridgeManager{" + delegate + "}";
+    }
+}
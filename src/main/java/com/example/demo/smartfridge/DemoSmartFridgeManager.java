@@ -1,80 +1,482 @@
 package com.example.demo.smartfridge;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Forgotten item types are moved out of the itemTypeIndex, so queries only ever see item types
+ * that are stocked. Their containers stay in the contents and their aggregates are kept up to date
+ * in a plain map, which lets getFillFactor() still report them and rememberItem() put them back
+ * without a scan.
+ */
 public class DemoSmartFridgeManager implements SmartFridgeManager {
     private Map<String, SmartFridgeItem> contents;
     private Set<Long> ignoreItemTypes = new HashSet<>();
+    private ItemTypeIndex itemTypeIndex;
+    private final Map<Long, ItemTypeAggregate> forgottenAggregates = new HashMap<>();
+    // itemType -> epoch millis when a forgetItem() with a time to live runs out
+    private final Map<Long, Long> forgetExpiries = new HashMap<>();
+    // no expiry is due before this, so most calls skip the scan of forgetExpiries
+    private long nextExpiry = Long.MAX_VALUE;
+    // created with the first watch, so unwatched fridges pay nothing for notifications
+    private LowStockNotifier lowStockNotifier;
+    private final Map<Long, FillHistory> fillHistories = new HashMap<>();
+    private boolean recordingHistory = true;
+    private final NameIndex nameIndex = new NameIndex();
+    private Clock clock = Clock.systemUTC();
 
     public DemoSmartFridgeManager() {
         this.contents = new HashMap<>();
+        this.itemTypeIndex = new ItemTypeIndex();
     }
 
+    /**
+     * @param clock timestamps the fill history
+     */
+    public DemoSmartFridgeManager(Clock clock) {
+        this();
+        this.clock = clock;
+    }
+
+    /**
+     * The stored items must not be modified once they are handed over, the per item type
+     * aggregates are only updated through the event handlers.
+     *
+     * @param contents initial SmartFridge contents keyed by itemUUID
+     */
     public DemoSmartFridgeManager(Map<String, SmartFridgeItem> contents) {
         this.contents = contents;
+        this.itemTypeIndex = new ItemTypeIndex(contents.values());
+        contents.values().forEach(item -> nameIndex.add(item.getName(), item.getItemType()));
     }
 
     @Override
     public void handleItemRemoved(String itemUUID) {
-        contents.remove(itemUUID);
+        expireForgotten();
+        SmartFridgeItem removed = contents.remove(itemUUID);
+        if (removed != null) {
+            takenOut(removed);
+            removeFromAggregate(removed);
+            nameIndex.remove(removed.getName(), removed.getItemType());
+            fillFactorChanged(removed.getItemType());
+        }
     }
 
     @Override
     public void handleItemAdded(long itemType, String itemUUID, String name, Double fillFactor) {
+        handleItemAdded(itemType, itemUUID, name, fillFactor.doubleValue());
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
         StandardSmartFridgeItem item = new StandardSmartFridgeItem(itemType, itemUUID, name, fillFactor);
-        contents.put(itemUUID, item);
+        expireForgotten();
+        SmartFridgeItem replaced = contents.put(itemUUID, item);
+        if (replaced != null) {
+            removeFromAggregate(replaced);
+            if (replaced.getItemType() != itemType) {
+                fillFactorChanged(replaced.getItemType());
+            }
+        }
+        addToAggregate(item);
+        nameIndex.update(replaced, item);
+        recordHistory(replaced, item);
+        fillFactorChanged(itemType);
+    }
+
+    private boolean isForgotten(long itemType) {
+        // checking isEmpty first saves boxing the itemType when nothing is forgotten
+        return !ignoreItemTypes.isEmpty() && ignoreItemTypes.contains(itemType);
     }
 
-    private Set<Long> getApprovedItemTypes() {
-        return contents
-                .values()
-                .stream()
-                .map(SmartFridgeItem::getItemType)
-                .filter(e -> !ignoreItemTypes.contains(e))
-                .collect(Collectors.toSet());
+    private void addToAggregate(SmartFridgeItem item) {
+        if (isForgotten(item.getItemType())) {
+            forgottenAggregates
+                    .computeIfAbsent(item.getItemType(), ItemTypeAggregate::new)
+                    .add(item.getFillFactorAsDouble());
+        } else {
+            itemTypeIndex.add(item);
+        }
+    }
+
+    private void removeFromAggregate(SmartFridgeItem item) {
+        if (isForgotten(item.getItemType())) {
+            ItemTypeAggregate aggregate = forgottenAggregates.get(item.getItemType());
+            aggregate.remove(item.getFillFactorAsDouble());
+            if (aggregate.isEmpty()) {
+                forgottenAggregates.remove(item.getItemType());
+            }
+        } else {
+            itemTypeIndex.remove(item);
+        }
+    }
+
+    /**
+     * Applies the changes of forgotten item types to their aggregates
+     *
+     * @param items
+     * @param added whether the items are newly stored or no longer stored
+     * @return the items of the other item types
+     */
+    private List<SmartFridgeItem> withoutForgotten(List<SmartFridgeItem> items, boolean added) {
+        if (ignoreItemTypes.isEmpty()) {
+            return items;
+        }
+        List<SmartFridgeItem> remembered = new ArrayList<>(items.size());
+        for (SmartFridgeItem item : items) {
+            if (!ignoreItemTypes.contains(item.getItemType())) {
+                remembered.add(item);
+            } else if (added) {
+                addToAggregate(item);
+            } else {
+                removeFromAggregate(item);
+            }
+        }
+        return remembered;
     }
 
     @Override
-    public Object[] getItems(Double fillFactor) {
+    public void applyEvents(List<SmartFridgeEvent> events) {
+        Collection<SmartFridgeEvent> lastEvents = SmartFridgeEvent.coalesce(events);
+        expireForgotten();
 
-        Set<Long> itemTypes = getApprovedItemTypes();
+        List<SmartFridgeItem> removed = new ArrayList<>();
+        List<SmartFridgeItem> added = new ArrayList<>();
+        // the container each added one replaces, null if it was not stored
+        List<SmartFridgeItem> replaced = new ArrayList<>();
+        for (SmartFridgeEvent event : lastEvents) {
+            SmartFridgeItem previous;
+            if (event.getType() == SmartFridgeEvent.Type.ADDED) {
+                StandardSmartFridgeItem item = new StandardSmartFridgeItem(
+                        event.getItemType(),
+                        event.getItemUUID(),
+                        event.getName(),
+                        event.getFillFactor()
+                );
+                previous = contents.put(event.getItemUUID(), item);
+                added.add(item);
+                replaced.add(previous);
+            } else {
+                previous = contents.remove(event.getItemUUID());
+                if (previous != null) {
+                    takenOut(previous);
+                }
+            }
+            if (previous != null) {
+                removed.add(previous);
+            }
+        }
 
-        Object[] getItems = itemTypes
-                .stream()
-                .map(itemType -> {
-                    Double fill = getFillFactor(itemType);
-                    if (fill > fillFactor) {
-                        return null;
-                    }
+        // removals first, a forgotten aggregate must not be emptied after the additions
+        List<SmartFridgeItem> removedRemembered = withoutForgotten(removed, false);
+        itemTypeIndex.update(removedRemembered, withoutForgotten(added, true));
+        removed.forEach(item -> nameIndex.remove(item.getName(), item.getItemType()));
+        added.forEach(item -> nameIndex.add(item.getName(), item.getItemType()));
+        for (int i = 0; i < added.size(); i++) {
+            recordHistory(replaced.get(i), added.get(i));
+        }
 
-                    Object[] returnItem = new Object[]{itemType, fill};
-                    return returnItem;
-                })
-                .filter(Objects::nonNull)
-                .toArray();
+        Set<Long> changed = new HashSet<>();
+        removed.forEach(item -> changed.add(item.getItemType()));
+        added.forEach(item -> changed.add(item.getItemType()));
+        changed.forEach(this::fillFactorChanged);
+    }
 
-        return getItems;
+    /**
+     * Starts the fill history of an item type with its first stored container and records what was
+     * consumed from a container that is reported again with less in it, either in place or after
+     * it was taken out. Only the containers tell consumption apart from stocking, the average fill
+     * factor also drops when a fuller container is taken out or an emptier one is stocked.
+     *
+     * @param replaced the container stored under the itemUUID before, null if there was none
+     * @param item the container as it is reported now
+     */
+    private void recordHistory(SmartFridgeItem replaced, SmartFridgeItem item) {
+        long itemType = item.getItemType();
+        if (!recordingHistory || isForgotten(itemType)) {
+            return;
+        }
+        FillHistory history = fillHistories.get(itemType);
+        if (history == null) {
+            // whatever was consumed before the history started took an unknown time, so it is left out
+            fillHistories.put(itemType, new FillHistory(clock.millis()));
+            return;
+        }
+        double previousFill;
+        if (replaced == null) {
+            previousFill = history.putBack(item.getItemUUID());
+        } else {
+            previousFill = replaced.getItemType() == itemType ? replaced.getFillFactorAsDouble() : Double.NaN;
+        }
+        history.recordConsumption(clock.millis(), previousFill - item.getFillFactorAsDouble());
+    }
+
+    private void takenOut(SmartFridgeItem item) {
+        FillHistory history = fillHistories.get(item.getItemType());
+        if (history != null && recordingHistory) {
+            history.takeOut(item.getItemUUID(), item.getFillFactorAsDouble());
+        }
+    }
+
+    /**
+     * Samples the fill history and tells the watches, after every change of the item type's fill factor
+     */
+    private void fillFactorChanged(long itemType) {
+        FillHistory history = fillHistories.get(itemType);
+        if (history != null && recordingHistory) {
+            history.recordFill(clock.millis(), getFillFactorAsDouble(itemType));
+        }
+        if (lowStockNotifier == null || !lowStockNotifier.isWatching(itemType) || isForgotten(itemType)) {
+            return;
+        }
+        lowStockNotifier.fillFactorChanged(itemType, getFillFactorAsDouble(itemType));
+    }
+
+    @Override
+    public Object[] getItems(Double fillFactor) {
+        ItemFillResult result = new ItemFillResult();
+        visitItems(fillFactor, result);
+        return result.toArray();
+    }
+
+    @Override
+    public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+        expireForgotten();
+        for (ItemTypeAggregate aggregate : itemTypeIndex.atOrBelow(fillFactor)) {
+            visitor.visit(aggregate.getItemType(), aggregate.getFillFactor());
+        }
+    }
+
+    /**
+     * Walks the fill factor ordering from its lowest end, which is O(log T + offset + limit) for T
+     * item types
+     */
+    @Override
+    public void visitLowestItems(int limit, int offset, ItemFillVisitor visitor) {
+        LowestItems.checkArguments("DemoSmartFridgeManager.getLowestItems", limit, offset);
+        expireForgotten();
+        Iterator<ItemTypeAggregate> lowest = itemTypeIndex.lowestFirst();
+        for (int skipped = 0; skipped < offset && lowest.hasNext(); skipped++) {
+            lowest.next();
+        }
+        for (int visited = 0; visited < limit && lowest.hasNext(); visited++) {
+            ItemTypeAggregate aggregate = lowest.next();
+            visitor.visit(aggregate.getItemType(), aggregate.getFillFactor());
+        }
     }
 
     @Override
     public Double getFillFactor(long itemType) {
-        OptionalDouble fillFactor = contents
-                .values()
-                .stream()
-                .filter(e -> e.getItemType() == itemType)
-                .mapToDouble(SmartFridgeItem::getFillFactor)
-                .filter(e -> e > 0.0d)
-                .average();
-        if (fillFactor.isPresent()) {
-            return fillFactor.getAsDouble();
+        return getFillFactorAsDouble(itemType);
+    }
+
+    @Override
+    public double getFillFactorAsDouble(long itemType) {
+        expireForgotten();
+        ItemTypeAggregate aggregate = itemTypeIndex.get(itemType);
+        if (aggregate == null && !forgottenAggregates.isEmpty()) {
+            aggregate = forgottenAggregates.get(itemType);
+        }
+        if (aggregate == null) {
+            return 0.0d;
+        }
+        return aggregate.getFillFactor();
+    }
+
+    @Override
+    public Long getItemType(String itemUUID) {
+        SmartFridgeItem item = contents.get(itemUUID);
+        return item == null ? null : item.getItemType();
+    }
+
+    @Override
+    public Object[] findItems(String namePrefix, int limit) {
+        NameIndex.checkArguments("DemoSmartFridgeManager.findItems", namePrefix, limit);
+        expireForgotten();
+        return NameIndex.toItems(
+                nameIndex.find(namePrefix, limit, itemType -> !isForgotten(itemType)),
+                itemType -> itemTypeIndex.get(itemType).getFillFactor()
+        );
+    }
+
+    /**
+     * Depletion is estimated from each item type's {@link FillHistory}, as the fill factors of its
+     * stored containers added up over the rate they are consumed at. Item types without a stored
+     * container are not reported, like in getItems().
+     */
+    @Override
+    public Object[] getItemsDepletingWithin(Duration within) {
+        if (within == null || within.isNegative()) {
+            throw new IllegalArgumentException("DemoSmartFridgeManager.getItemsDepletingWithin: Duration within must be >= 0");
+        }
+        long withinMillis = within.getSeconds() >= Long.MAX_VALUE / 1000L ? Long.MAX_VALUE : within.toMillis();
+        expireForgotten();
+        long now = clock.millis();
+
+        List<long[]> depleting = new ArrayList<>();
+        for (ItemTypeAggregate aggregate : itemTypeIndex.values()) {
+            FillHistory history = fillHistories.get(aggregate.getItemType());
+            long untilEmpty = aggregate.getFillFactor() <= 0.0d
+                    ? 0L
+                    : history == null ? Long.MAX_VALUE : history.getMillisUntilEmpty(now, aggregate.getNonEmptySum());
+            if (untilEmpty <= withinMillis && untilEmpty != Long.MAX_VALUE) {
+                depleting.add(new long[]{aggregate.getItemType(), untilEmpty});
+            }
+        }
+        depleting.sort(Comparator.<long[]>comparingLong(e -> e[1]).thenComparingLong(e -> e[0]));
+
+        Object[] items = new Object[depleting.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new Object[]{depleting.get(i)[0], Duration.ofMillis(depleting.get(i)[1])};
+        }
+        return items;
+    }
+
+    /**
+     * Forgotten item types have no history
+     */
+    @Override
+    public Object[] getFillSamples(long itemType, FillHistoryTier tier) {
+        if (tier == null) {
+            throw new IllegalArgumentException("DemoSmartFridgeManager.getFillSamples: FillHistoryTier tier must not be null");
         }
-        return 0.0d;
+        expireForgotten();
+        FillHistory history = fillHistories.get(itemType);
+        return history == null ? new Object[0] : history.getSamples(tier);
     }
 
     @Override
     public void forgetItem(long itemType) {
-        ignoreItemTypes.add(itemType);
+        expireForgotten();
+        forgetExpiries.remove(itemType);
+        if (!ignoreItemTypes.add(itemType)) {
+            return;
+        }
+        ItemTypeAggregate aggregate = itemTypeIndex.removeItemType(itemType);
+        if (aggregate != null) {
+            forgottenAggregates.put(itemType, aggregate);
+        }
+        // a history from before the break would only distort the forecast once it is stocked again
+        fillHistories.remove(itemType);
+    }
+
+    @Override
+    public void forgetItem(long itemType, Duration timeToLive) {
+        if (timeToLive == null || timeToLive.isNegative()) {
+            throw new IllegalArgumentException("DemoSmartFridgeManager.forgetItem: Duration timeToLive must be >= 0");
+        }
+        long now = clock.millis();
+        long millis = timeToLive.getSeconds() >= Long.MAX_VALUE / 1000L ? Long.MAX_VALUE : timeToLive.toMillis();
+        forgetItemUntil(itemType, millis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + millis);
+    }
+
+    /**
+     * Forgets the item type until the given time, e.g. when restoring a time to live from a snapshot
+     *
+     * @param itemType
+     * @param expiresAt epoch millis
+     */
+    void forgetItemUntil(long itemType, long expiresAt) {
+        forgetItem(itemType);
+        forgetExpiries.put(itemType, expiresAt);
+        nextExpiry = Math.min(nextExpiry, expiresAt);
+        expireForgotten();
+    }
+
+    @Override
+    public void rememberItem(long itemType) {
+        expireForgotten();
+        remember(itemType);
+    }
+
+    /**
+     * Expiry times are kept in the time of the manager's Clock
+     */
+    @Override
+    public long getNextForgetExpiry() {
+        expireForgotten();
+        return nextExpiry;
+    }
+
+    private void remember(long itemType) {
+        forgetExpiries.remove(itemType);
+        if (!ignoreItemTypes.remove(itemType)) {
+            return;
+        }
+        ItemTypeAggregate aggregate = forgottenAggregates.remove(itemType);
+        if (aggregate != null) {
+            itemTypeIndex.put(aggregate);
+            fillFactorChanged(itemType);
+        }
+    }
+
+    private void expireForgotten() {
+        if (nextExpiry == Long.MAX_VALUE) {
+            return;
+        }
+        long now = clock.millis();
+        if (now < nextExpiry) {
+            return;
+        }
+
+        List<Long> expired = new ArrayList<>();
+        long next = Long.MAX_VALUE;
+        for (Map.Entry<Long, Long> expiry : forgetExpiries.entrySet()) {
+            if (expiry.getValue() <= now) {
+                expired.add(expiry.getKey());
+            } else {
+                next = Math.min(next, expiry.getValue());
+            }
+        }
+        nextExpiry = next;
+        expired.forEach(this::remember);
+    }
+
+    @Override
+    public LowStockSubscription watchItemType(long itemType, double threshold, double hysteresis, LowStockListener listener) {
+        expireForgotten();
+        ItemTypeAggregate aggregate = itemTypeIndex.get(itemType);
+        return getLowStockNotifier().watch(
+                itemType,
+                threshold,
+                hysteresis,
+                listener,
+                aggregate == null ? Collections.emptyList() : Collections.singletonList(aggregate)
+        );
+    }
+
+    @Override
+    public LowStockSubscription watchAllItemTypes(double threshold, double hysteresis, LowStockListener listener) {
+        expireForgotten();
+        return getLowStockNotifier().watch(null, threshold, hysteresis, listener, itemTypeIndex.values());
+    }
+
+    @Override
+    public long getDroppedLowStockEventCount() {
+        LowStockNotifier notifier = lowStockNotifier;
+        return notifier == null ? 0L : notifier.getDroppedCount();
+    }
+
+    /**
+     * The sizes do not expire forgotten item types, so they can be read from another thread. An
+     * item type whose time to live has passed is counted as forgotten until the next call that
+     * expires it.
+     */
+    @Override
+    public int getItemCount() {
+        return contents.size();
+    }
+
+    @Override
+    public int getItemTypeCount() {
+        return itemTypeIndex.size();
+    }
+
+    @Override
+    public int getForgottenItemTypeCount() {
+        return ignoreItemTypes.size();
     }
 
     @Override
@@ -94,7 +496,7 @@ public class DemoSmartFridgeManager implements SmartFridgeManager {
     }
 
     /**
-     * for unit testing
+     * for unit testing and snapshots
      *
      * @return SmartFridge contents
      */
@@ -103,11 +505,70 @@ public class DemoSmartFridgeManager implements SmartFridgeManager {
     }
 
     /**
-     * for unit testing
+     * for unit testing and snapshots
      *
      * @return SmartFridge ignored item types
      */
     Set<Long> getIgnoreItemTypes() {
+        expireForgotten();
         return ignoreItemTypes;
     }
+
+    /**
+     * for unit testing and snapshots
+     *
+     * @return expiry in epoch millis of the ignored item types that were forgotten with a time to live
+     */
+    Map<Long, Long> getForgetExpiries() {
+        expireForgotten();
+        return forgetExpiries;
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return aggregates of the forgotten item types that still have stored containers
+     */
+    Map<Long, ItemTypeAggregate> getForgottenAggregates() {
+        return forgottenAggregates;
+    }
+
+    /**
+     * @return the watches of this SmartFridge, created on first use
+     */
+    LowStockNotifier getLowStockNotifier() {
+        if (lowStockNotifier == null) {
+            lowStockNotifier = new LowStockNotifier(LowStockNotifier.DEFAULT_QUEUE_CAPACITY);
+        }
+        return lowStockNotifier;
+    }
+
+    /**
+     * Turns the fill history off while the journal is replayed, the replayed events would all be
+     * timestamped with the time of the restart
+     *
+     * @param recordingHistory
+     */
+    void setRecordingHistory(boolean recordingHistory) {
+        this.recordingHistory = recordingHistory;
+    }
+
+    /**
+     * for unit testing
+     *
+     * @param itemType
+     * @return the fill history of the item type, or null if it had no stored container since it was last forgotten
+     */
+    FillHistory getFillHistory(long itemType) {
+        return fillHistories.get(itemType);
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return SmartFridge per item type aggregates
+     */
+    ItemTypeIndex getItemTypeIndex() {
+        return itemTypeIndex;
+    }
 }
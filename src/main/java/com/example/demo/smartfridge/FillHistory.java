@@ -0,0 +1,231 @@
+package com.example.demo.smartfridge;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fill factor history of a single item type and the consumption rate estimated from it.
+ *
+ * The average fill factor after every change is sampled into three fixed size rings: every sample,
+ * the last sample of each minute and the last sample of each hour, so memory per item type is
+ * bounded while the coarser tiers still reach back two days.
+ *
+ * The average fill factor also drops when a fuller container is taken out or an emptier one is
+ * stocked, so the forecast is not taken from the samples. Only containers that are reported again
+ * with less in them count as consumption, the difference being what was consumed. A container that
+ * is taken out and put back is remembered in a small ring of the containers taken out, so it is
+ * compared with the fill factor it was taken out with.
+ *
+ * The consumption rate is an exponentially weighted average of the fill factor consumed per
+ * millisecond, weighted by time rather than by sample so bursts of events do not dominate it, and
+ * corrected for the time before the history started so a young history is not biased towards
+ * zero. The time since the last consumption counts as time without consumption, so an item type
+ * nobody touches stops being reported as running out. Memory is constant per item type.
+ *
+ * Not thread safe.
+ */
+class FillHistory {
+    static final int RAW_CAPACITY = 32;
+    static final int MINUTE_CAPACITY = 60;
+    static final int HOUR_CAPACITY = 48;
+    // containers taken out at the same time, e.g. while the fridge is restocked; older ones are
+    // assumed to be thrown away
+    static final int TAKEN_OUT_CAPACITY = 8;
+    static final long RATE_TIME_CONSTANT_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    private final Tier raw = new Tier(0L, RAW_CAPACITY);
+    private final Tier minutes = new Tier(TimeUnit.MINUTES.toMillis(1), MINUTE_CAPACITY);
+    private final Tier hours = new Tier(TimeUnit.HOURS.toMillis(1), HOUR_CAPACITY);
+
+    private final String[] takenOutUUIDs = new String[TAKEN_OUT_CAPACITY];
+    private final double[] takenOutFillFactors = new double[TAKEN_OUT_CAPACITY];
+    // index of the next container taken out, overwriting the oldest one once the ring is full
+    private int takenOutNext;
+
+    private final long startTime;
+    private long lastTime;
+    // fill factor consumed per millisecond
+    private double rate;
+
+    /**
+     * @param startTime epoch millis since when consumption of the item type is observed
+     */
+    FillHistory(long startTime) {
+        this.startTime = startTime;
+        this.lastTime = startTime;
+    }
+
+    /**
+     * @param time epoch millis
+     * @param fillFactor the average fill factor of the item type after a change
+     */
+    void recordFill(long time, double fillFactor) {
+        raw.record(time, fillFactor);
+        minutes.record(time, fillFactor);
+        hours.record(time, fillFactor);
+    }
+
+    /**
+     * @param time epoch millis, a time before the previous consumption is taken as the previous one
+     * @param consumed fill factor consumed from one container since it was last reported
+     */
+    void recordConsumption(long time, double consumed) {
+        if (!(consumed > 0.0d)) {
+            return;
+        }
+        time = Math.max(time, lastTime);
+        long elapsed = time - lastTime;
+        // consumed / elapsed weighted by (1 - decay), which tends to consumed / tau for tiny intervals
+        rate = decayedRate(elapsed) + (elapsed == 0L
+                ? consumed / RATE_TIME_CONSTANT_MILLIS
+                : consumed * -Math.expm1(-(double) elapsed / RATE_TIME_CONSTANT_MILLIS) / elapsed);
+        lastTime = time;
+    }
+
+    /**
+     * @param itemUUID
+     * @param fillFactor the fill factor the container was last reported with
+     */
+    void takeOut(String itemUUID, double fillFactor) {
+        takenOutUUIDs[takenOutNext] = itemUUID;
+        takenOutFillFactors[takenOutNext] = fillFactor;
+        takenOutNext = (takenOutNext + 1) % TAKEN_OUT_CAPACITY;
+    }
+
+    /**
+     * @param itemUUID
+     * @return the fill factor the container was taken out with, or NaN if it is not one of the
+     *      containers taken out
+     */
+    double putBack(String itemUUID) {
+        for (int i = 0; i < TAKEN_OUT_CAPACITY; i++) {
+            if (itemUUID.equals(takenOutUUIDs[i])) {
+                takenOutUUIDs[i] = null;
+                return takenOutFillFactors[i];
+            }
+        }
+        return Double.NaN;
+    }
+
+    private double decayedRate(long elapsed) {
+        return rate * Math.exp(-(double) elapsed / RATE_TIME_CONSTANT_MILLIS);
+    }
+
+    /**
+     * @param now epoch millis
+     * @return the estimated fill factor consumed per millisecond
+     */
+    double getConsumptionRate(long now) {
+        if (now <= startTime) {
+            return 0.0d;
+        }
+        // the weights of the time observed so far only add up to this much of the average
+        double observed = -Math.expm1(-(double) (now - startTime) / RATE_TIME_CONSTANT_MILLIS);
+        return decayedRate(Math.max(0L, now - lastTime)) / observed;
+    }
+
+    /**
+     * @param now epoch millis
+     * @param storedFill the fill factors of the stored containers added up
+     * @return estimated millis until the stored containers are empty, or Long.MAX_VALUE if nothing is being consumed
+     */
+    long getMillisUntilEmpty(long now, double storedFill) {
+        if (storedFill <= 0.0d) {
+            return 0L;
+        }
+        double rate = getConsumptionRate(now);
+        if (!(rate > 0.0d)) {
+            return Long.MAX_VALUE;
+        }
+        double millis = storedFill / rate;
+        return millis >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) millis;
+    }
+
+    Tier getTier(FillHistoryTier tier) {
+        switch (tier) {
+            case RAW:
+                return raw;
+            case MINUTE:
+                return minutes;
+            case HOUR:
+                return hours;
+            default:
+                throw new IllegalArgumentException("FillHistory.getTier: unknown tier " + tier);
+        }
+    }
+
+    /**
+     * @return the samples of the tier as an array of arrays containing [ epoch millis, fillFactor ],
+     *      oldest first
+     */
+    Object[] getSamples(FillHistoryTier tier) {
+        Tier samples = getTier(tier);
+        Object[] items = new Object[samples.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new Object[]{samples.getTime(i), samples.getFillFactor(i)};
+        }
+        return items;
+    }
+
+    /**
+     * Ring of (time, fill factor) samples. With a bucket width, a sample in the same bucket as the
+     * newest one replaces it, so each bucket keeps its last fill factor.
+     */
+    static final class Tier {
+        private final long bucketMillis;
+        private final long[] times;
+        private final double[] fillFactors;
+        // index of the oldest sample
+        private int start;
+        private int size;
+
+        Tier(long bucketMillis, int capacity) {
+            this.bucketMillis = bucketMillis;
+            this.times = new long[capacity];
+            this.fillFactors = new double[capacity];
+        }
+
+        void record(long time, double fillFactor) {
+            int newest = (start + size - 1) % times.length;
+            if (size > 0) {
+                // a clock that steps back does not reorder the ring
+                time = Math.max(time, times[newest]);
+                if (bucketMillis > 0L && time / bucketMillis == times[newest] / bucketMillis) {
+                    times[newest] = time;
+                    fillFactors[newest] = fillFactor;
+                    return;
+                }
+            }
+
+            if (size == times.length) {
+                times[start] = time;
+                fillFactors[start] = fillFactor;
+                start = (start + 1) % times.length;
+            } else {
+                int next = (start + size) % times.length;
+                times[next] = time;
+                fillFactors[next] = fillFactor;
+                size++;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @param index 0 is the oldest sample
+         * @return the time of the sample in epoch millis
+         */
+        long getTime(int index) {
+            return times[(start + index) % times.length];
+        }
+
+        /**
+         * @param index 0 is the oldest sample
+         * @return the fill factor of the sample
+         */
+        double getFillFactor(int index) {
+            return fillFactors[(start + index) % fillFactors.length];
+        }
+    }
+}
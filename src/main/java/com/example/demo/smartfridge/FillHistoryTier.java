@@ -0,0 +1,19 @@
+package com.example.demo.smartfridge;
+
+/**
+ * Resolutions of the fill history, see {@link SmartFridgeManager#getFillSamples(long, FillHistoryTier)}
+ */
+public enum FillHistoryTier {
+    /**
+     * Every change, the last 32 of them
+     */
+    RAW,
+    /**
+     * The last sample of each minute, for the last 60 minutes with a change
+     */
+    MINUTE,
+    /**
+     * The last sample of each hour, for the last 48 hours with a change
+     */
+    HOUR
+}
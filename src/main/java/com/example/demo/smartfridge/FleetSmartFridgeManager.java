@@ -0,0 +1,425 @@
+package com.example.demo.smartfridge;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ToIntFunction;
+
+/**
+ * Tracks many fridges, each identified by a fridgeId, and answers fill factor queries across all
+ * of them.
+ *
+ * Fridges are spread over shards by fridgeId. Each shard holds a DemoSmartFridgeManager per fridge
+ * and the per item type aggregates of all containers in its fridges, both guarded by the shard's
+ * monitor, so events for fridges in different shards run in parallel. Fleet queries fork one task
+ * per shard on a ForkJoinPool, copy each shard's aggregates and merge them pairwise, which costs
+ * O(T) per shard for T item types instead of a scan of every container.
+ *
+ * Each shard is read atomically, the fleet as a whole is not: events that arrive while a fleet
+ * query runs may be reflected for some shards and not for others.
+ *
+ * Forgetting an item type is a decision of a single fridge's owner. It hides the item type from
+ * that fridge's {@link SmartFridgeManager#getItems(Double)}, not from the fleet queries.
+ */
+public class FleetSmartFridgeManager {
+    private final Shard[] shards;
+    private final ForkJoinPool pool;
+
+    /**
+     * Uses four shards per available processor and the common ForkJoinPool
+     */
+    public FleetSmartFridgeManager() {
+        this(Runtime.getRuntime().availableProcessors() * 4, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param shardCount number of shards, rounded up to a power of two
+     * @param pool runs the per shard tasks of fleet queries
+     */
+    public FleetSmartFridgeManager(int shardCount, ForkJoinPool pool) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("FleetSmartFridgeManager: shardCount must be >= 1");
+        }
+        int capacity = 1;
+        while (capacity < shardCount) {
+            capacity <<= 1;
+        }
+        this.shards = new Shard[capacity];
+        for (int i = 0; i < capacity; i++) {
+            shards[i] = new Shard();
+        }
+        this.pool = pool;
+    }
+
+    private Shard shard(long fridgeId) {
+        return shards[ItemTypeTable.hash(fridgeId) & (shards.length - 1)];
+    }
+
+    /**
+     * @param fridgeId
+     * @param itemUUID
+     */
+    public void handleItemRemoved(long fridgeId, String itemUUID) {
+        shard(fridgeId).handleItemRemoved(fridgeId, itemUUID);
+    }
+
+    /**
+     * @param fridgeId
+     * @param itemType
+     * @param itemUUID
+     * @param name
+     * @param fillFactor
+     *
+     * @throws IllegalArgumentException if the fillFactor is less than 0
+     *      or greater than 1
+     */
+    public void handleItemAdded(long fridgeId, long itemType, String itemUUID, String name, double fillFactor) {
+        shard(fridgeId).handleItemAdded(fridgeId, itemType, itemUUID, name, fillFactor);
+    }
+
+    /**
+     * Applies a batch of events to one fridge, see {@link SmartFridgeManager#applyEvents(List)}
+     *
+     * @param fridgeId
+     * @param events
+     */
+    public void applyEvents(long fridgeId, List<SmartFridgeEvent> events) {
+        shard(fridgeId).applyEvents(fridgeId, events);
+    }
+
+    /**
+     * @param fridgeId
+     * @param itemType
+     */
+    public void forgetItem(long fridgeId, long itemType) {
+        shard(fridgeId).forgetItem(fridgeId, itemType);
+    }
+
+    /**
+     * @param fridgeId
+     * @return a SmartFridgeManager for a single fridge, backed by this fleet
+     */
+    public SmartFridgeManager getFridge(long fridgeId) {
+        return new Fridge(fridgeId);
+    }
+
+    /**
+     * Item types whose fill factor across every fridge of the fleet is at most fillFactor, lowest
+     * fill factor first
+     *
+     * @param fillFactor
+     * @return an array of arrays containing [ itemType, fillFactor ]
+     */
+    public Object[] getItems(double fillFactor) {
+        ItemFillResult result = new ItemFillResult();
+        visitItems(fillFactor, result);
+        return result.toArray();
+    }
+
+    /**
+     * Same as {@link #getItems(double)}, handing the results to a visitor
+     *
+     * @param fillFactor
+     * @param visitor
+     */
+    public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+        List<ItemTypeAggregate> aggregates = new ArrayList<>();
+        for (ItemTypeAggregate aggregate : pool.invoke(new MergeTask(0, shards.length)).values()) {
+            if (aggregate.getFillFactor() <= fillFactor) {
+                aggregates.add(aggregate);
+            }
+        }
+        aggregates.sort(ItemTypeIndex.BY_FILL_FACTOR);
+
+        for (ItemTypeAggregate aggregate : aggregates) {
+            visitor.visit(aggregate.getItemType(), aggregate.getFillFactor());
+        }
+    }
+
+    /**
+     * Average fill factor of the non-empty containers of an item type across every fridge
+     *
+     * @param itemType
+     * @return the average fill factor, or 0.0 if every container is empty
+     */
+    public double getFillFactor(long itemType) {
+        // a single lookup per shard, not worth forking for
+        ItemTypeAggregate total = new ItemTypeAggregate(itemType);
+        for (Shard shard : shards) {
+            shard.addAggregateTo(total);
+        }
+        return total.getFillFactor();
+    }
+
+    /**
+     * @return the number of fridges that received at least one event
+     */
+    public int getFridgeCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.getFridgeCount();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "FleetSmartFridgeManager{shards=" + shards.length + ", fridges=" + getFridgeCount() + "}";
+    }
+
+    private class MergeTask extends RecursiveTask<Map<Long, ItemTypeAggregate>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        MergeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Long, ItemTypeAggregate> compute() {
+            if (to - from == 1) {
+                return shards[from].copyAggregates();
+            }
+            int middle = (from + to) >>> 1;
+            MergeTask left = new MergeTask(from, middle);
+            left.fork();
+            Map<Long, ItemTypeAggregate> right = new MergeTask(middle, to).compute();
+            Map<Long, ItemTypeAggregate> merged = left.join();
+
+            if (merged.size() < right.size()) {
+                Map<Long, ItemTypeAggregate> larger = right;
+                right = merged;
+                merged = larger;
+            }
+            for (ItemTypeAggregate aggregate : right.values()) {
+                ItemTypeAggregate existing = merged.putIfAbsent(aggregate.getItemType(), aggregate);
+                if (existing != null) {
+                    existing.addAll(aggregate);
+                }
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Fridges whose fridgeIds hash to the same shard, plus the aggregates of all their containers
+     */
+    private static class Shard {
+        private final Map<Long, DemoSmartFridgeManager> fridges = new HashMap<>();
+        private final Map<Long, ItemTypeAggregate> aggregates = new HashMap<>();
+
+        private DemoSmartFridgeManager fridge(long fridgeId) {
+            return fridges.computeIfAbsent(fridgeId, id -> new DemoSmartFridgeManager());
+        }
+
+        /**
+         * @return the fridge, or a new one that is only kept by {@link #accepted(long, DemoSmartFridgeManager)}
+         *      once it took an event, so a rejected event leaves no empty fridge behind
+         */
+        private DemoSmartFridgeManager fridgeOrNew(long fridgeId) {
+            DemoSmartFridgeManager fridge = fridges.get(fridgeId);
+            return fridge == null ? new DemoSmartFridgeManager() : fridge;
+        }
+
+        private void accepted(long fridgeId, DemoSmartFridgeManager fridge) {
+            fridges.putIfAbsent(fridgeId, fridge);
+        }
+
+        synchronized void handleItemRemoved(long fridgeId, String itemUUID) {
+            DemoSmartFridgeManager fridge = fridges.get(fridgeId);
+            if (fridge == null) {
+                return;
+            }
+            SmartFridgeItem removed = fridge.getContents().get(itemUUID);
+            fridge.handleItemRemoved(itemUUID);
+            if (removed != null) {
+                remove(removed);
+            }
+        }
+
+        synchronized void handleItemAdded(long fridgeId, long itemType, String itemUUID, String name, double fillFactor) {
+            DemoSmartFridgeManager fridge = fridgeOrNew(fridgeId);
+            SmartFridgeItem replaced = fridge.getContents().get(itemUUID);
+            // the fridge rejects invalid events before the aggregates change
+            fridge.handleItemAdded(itemType, itemUUID, name, fillFactor);
+            accepted(fridgeId, fridge);
+            if (replaced != null) {
+                remove(replaced);
+            }
+            aggregates.computeIfAbsent(itemType, ItemTypeAggregate::new).add(fillFactor);
+        }
+
+        synchronized void applyEvents(long fridgeId, List<SmartFridgeEvent> events) {
+            Collection<SmartFridgeEvent> lastEvents = SmartFridgeEvent.coalesce(events);
+            DemoSmartFridgeManager fridge = fridgeOrNew(fridgeId);
+
+            List<SmartFridgeItem> previous = new ArrayList<>();
+            for (SmartFridgeEvent event : lastEvents) {
+                SmartFridgeItem item = fridge.getContents().get(event.getItemUUID());
+                if (item != null) {
+                    previous.add(item);
+                }
+            }
+            fridge.applyEvents(new ArrayList<>(lastEvents));
+            accepted(fridgeId, fridge);
+
+            previous.forEach(this::remove);
+            for (SmartFridgeEvent event : lastEvents) {
+                if (event.getType() == SmartFridgeEvent.Type.ADDED) {
+                    aggregates.computeIfAbsent(event.getItemType(), ItemTypeAggregate::new).add(event.getFillFactor());
+                }
+            }
+        }
+
+        private void remove(SmartFridgeItem item) {
+            ItemTypeAggregate aggregate = aggregates.get(item.getItemType());
+            aggregate.remove(item.getFillFactorAsDouble());
+            if (aggregate.isEmpty()) {
+                aggregates.remove(item.getItemType());
+            }
+        }
+
+        synchronized void forgetItem(long fridgeId, long itemType) {
+            fridge(fridgeId).forgetItem(itemType);
+        }
+
+        synchronized void visitItems(long fridgeId, double fillFactor, ItemFillVisitor visitor) {
+            DemoSmartFridgeManager fridge = fridges.get(fridgeId);
+            if (fridge != null) {
+                fridge.visitItems(fillFactor, visitor);
+            }
+        }
+
+        synchronized void visitLowestItems(long fridgeId, int limit, int offset, ItemFillVisitor visitor) {
+            DemoSmartFridgeManager fridge = fridges.get(fridgeId);
+            if (fridge == null) {
+                LowestItems.checkArguments("FleetSmartFridgeManager.getLowestItems", limit, offset);
+                return;
+            }
+            fridge.visitLowestItems(limit, offset, visitor);
+        }
+
+        synchronized double getFillFactor(long fridgeId, long itemType) {
+            DemoSmartFridgeManager fridge = fridges.get(fridgeId);
+            return fridge == null ? 0.0d : fridge.getFillFactorAsDouble(itemType);
+        }
+
+        /**
+         * @return the size read from the fridge, 0 for a fridge that never received an event
+         */
+        synchronized int getSize(long fridgeId, ToIntFunction<DemoSmartFridgeManager> size) {
+            DemoSmartFridgeManager fridge = fridges.get(fridgeId);
+            return fridge == null ? 0 : size.applyAsInt(fridge);
+        }
+
+        synchronized Map<Long, ItemTypeAggregate> copyAggregates() {
+            Map<Long, ItemTypeAggregate> copy = new HashMap<>(aggregates.size() * 2);
+            for (ItemTypeAggregate aggregate : aggregates.values()) {
+                copy.put(aggregate.getItemType(), new ItemTypeAggregate(
+                        aggregate.getItemType(),
+                        aggregate.getCount(),
+                        aggregate.getNonEmptyCount(),
+                        aggregate.getNonEmptySum()
+                ));
+            }
+            return copy;
+        }
+
+        synchronized void addAggregateTo(ItemTypeAggregate total) {
+            ItemTypeAggregate aggregate = aggregates.get(total.getItemType());
+            if (aggregate != null) {
+                total.addAll(aggregate);
+            }
+        }
+
+        synchronized int getFridgeCount() {
+            return fridges.size();
+        }
+    }
+
+    /**
+     * Single fridge view that routes through the fridge's shard
+     */
+    private class Fridge implements SmartFridgeManager {
+        private final long fridgeId;
+
+        Fridge(long fridgeId) {
+            this.fridgeId = fridgeId;
+        }
+
+        @Override
+        public void handleItemRemoved(String itemUUID) {
+            FleetSmartFridgeManager.this.handleItemRemoved(fridgeId, itemUUID);
+        }
+
+        @Override
+        public void handleItemAdded(long itemType, String itemUUID, String name, Double fillFactor) {
+            handleItemAdded(itemType, itemUUID, name, fillFactor.doubleValue());
+        }
+
+        @Override
+        public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+            FleetSmartFridgeManager.this.handleItemAdded(fridgeId, itemType, itemUUID, name, fillFactor);
+        }
+
+        @Override
+        public void applyEvents(List<SmartFridgeEvent> events) {
+            FleetSmartFridgeManager.this.applyEvents(fridgeId, events);
+        }
+
+        @Override
+        public Object[] getItems(Double fillFactor) {
+            ItemFillResult result = new ItemFillResult();
+            visitItems(fillFactor, result);
+            return result.toArray();
+        }
+
+        @Override
+        public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+            shard(fridgeId).visitItems(fridgeId, fillFactor, visitor);
+        }
+
+        @Override
+        public void visitLowestItems(int limit, int offset, ItemFillVisitor visitor) {
+            shard(fridgeId).visitLowestItems(fridgeId, limit, offset, visitor);
+        }
+
+        @Override
+        public Double getFillFactor(long itemType) {
+            return getFillFactorAsDouble(itemType);
+        }
+
+        @Override
+        public double getFillFactorAsDouble(long itemType) {
+            return shard(fridgeId).getFillFactor(fridgeId, itemType);
+        }
+
+        @Override
+        public void forgetItem(long itemType) {
+            FleetSmartFridgeManager.this.forgetItem(fridgeId, itemType);
+        }
+
+        @Override
+        public int getItemCount() {
+            return shard(fridgeId).getSize(fridgeId, DemoSmartFridgeManager::getItemCount);
+        }
+
+        @Override
+        public int getItemTypeCount() {
+            return shard(fridgeId).getSize(fridgeId, DemoSmartFridgeManager::getItemTypeCount);
+        }
+
+        @Override
+        public int getForgottenItemTypeCount() {
+            return shard(fridgeId).getSize(fridgeId, DemoSmartFridgeManager::getForgottenItemTypeCount);
+        }
+
+        @Override
+        public String toString() {
+            return "FleetSmartFridgeManager.Fridge{fridgeId=" + fridgeId + "}";
+        }
+    }
+}
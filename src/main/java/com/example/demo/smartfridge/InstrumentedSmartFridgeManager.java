@@ -0,0 +1,275 @@
+package com.example.demo.smartfridge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SmartFridgeManager that counts the events handed to another SmartFridgeManager and records the
+ * latency of its queries, for monitoring.
+ *
+ * Added, removed and forgotten are counted once the delegate has accepted the call, so rejected
+ * events are not counted. Events a DeduplicatingSmartFridgeManager suppresses are only left out
+ * with that manager in front of this one. The latency of every getItems() variant, visitItems() and
+ * getLowestItems() included, goes into one LatencyHistogram and that of both getFillFactor() variants into another. The sizes
+ * are read from the delegate, see {@link SmartFridgeManager#getItemCount()}.
+ *
+ * Timing a call takes two System.nanoTime() calls, which cost more than a getFillFactor() lookup
+ * on some virtual machines, so only a random one in fillFactorSampleInterval getFillFactor()
+ * calls is timed. getItems() is timed on every call. An event costs one LongAdder increment.
+ * Thread safe if the delegate is.
+ */
+public class InstrumentedSmartFridgeManager implements SmartFridgeManager, Closeable {
+    static final int DEFAULT_FILL_FACTOR_SAMPLE_INTERVAL = 16;
+
+    private final SmartFridgeManager delegate;
+    private final int fillFactorSampleInterval;
+    private final LongAdder addedCount = new LongAdder();
+    private final LongAdder removedCount = new LongAdder();
+    private final LongAdder forgottenCount = new LongAdder();
+    private final LatencyHistogram getItemsLatency = new LatencyHistogram();
+    private final LatencyHistogram getFillFactorLatency = new LatencyHistogram();
+
+    public InstrumentedSmartFridgeManager(SmartFridgeManager delegate) {
+        this(delegate, DEFAULT_FILL_FACTOR_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * @param delegate
+     * @param fillFactorSampleInterval a power of two, 1 to time every getFillFactor() call
+     */
+    InstrumentedSmartFridgeManager(SmartFridgeManager delegate, int fillFactorSampleInterval) {
+        if (Integer.bitCount(fillFactorSampleInterval) != 1) {
+            throw new IllegalArgumentException("InstrumentedSmartFridgeManager: fillFactorSampleInterval must be a power of two");
+        }
+        this.delegate = delegate;
+        this.fillFactorSampleInterval = fillFactorSampleInterval;
+    }
+
+    private boolean sampleFillFactor() {
+        return (ThreadLocalRandom.current().nextInt() & (fillFactorSampleInterval - 1)) == 0;
+    }
+
+    public SmartFridgeManager getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void handleItemRemoved(String itemUUID) {
+        delegate.handleItemRemoved(itemUUID);
+        removedCount.increment();
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, Double fillFactor) {
+        delegate.handleItemAdded(itemType, itemUUID, name, fillFactor);
+        addedCount.increment();
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+        delegate.handleItemAdded(itemType, itemUUID, name, fillFactor);
+        addedCount.increment();
+    }
+
+    @Override
+    public void applyEvents(List<SmartFridgeEvent> events) {
+        delegate.applyEvents(events);
+        int added = 0;
+        for (SmartFridgeEvent event : events) {
+            if (event.getType() == SmartFridgeEvent.Type.ADDED) {
+                added++;
+            }
+        }
+        addedCount.add(added);
+        removedCount.add(events.size() - added);
+    }
+
+    @Override
+    public Object[] getItems(Double fillFactor) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getItems(fillFactor);
+        } finally {
+            getItemsLatency.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+        long start = System.nanoTime();
+        try {
+            delegate.visitItems(fillFactor, visitor);
+        } finally {
+            getItemsLatency.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public ItemFillResult getItems(double fillFactor, ItemFillResult result) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getItems(fillFactor, result);
+        } finally {
+            getItemsLatency.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void visitLowestItems(int limit, int offset, ItemFillVisitor visitor) {
+        long start = System.nanoTime();
+        try {
+            delegate.visitLowestItems(limit, offset, visitor);
+        } finally {
+            getItemsLatency.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Double getFillFactor(long itemType) {
+        if (!sampleFillFactor()) {
+            return delegate.getFillFactor(itemType);
+        }
+        long start = System.nanoTime();
+        try {
+            return delegate.getFillFactor(itemType);
+        } finally {
+            getFillFactorLatency.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public double getFillFactorAsDouble(long itemType) {
+        if (!sampleFillFactor()) {
+            return delegate.getFillFactorAsDouble(itemType);
+        }
+        long start = System.nanoTime();
+        try {
+            return delegate.getFillFactorAsDouble(itemType);
+        } finally {
+            getFillFactorLatency.recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Long getItemType(String itemUUID) {
+        return delegate.getItemType(itemUUID);
+    }
+
+    @Override
+    public Object[] findItems(String namePrefix, int limit) {
+        return delegate.findItems(namePrefix, limit);
+    }
+
+    @Override
+    public Object[] getItemsDepletingWithin(Duration within) {
+        return delegate.getItemsDepletingWithin(within);
+    }
+
+    @Override
+    public Object[] getFillSamples(long itemType, FillHistoryTier tier) {
+        return delegate.getFillSamples(itemType, tier);
+    }
+
+    @Override
+    public LowStockSubscription watchItemType(long itemType, double threshold, double hysteresis, LowStockListener listener) {
+        return delegate.watchItemType(itemType, threshold, hysteresis, listener);
+    }
+
+    @Override
+    public LowStockSubscription watchAllItemTypes(double threshold, double hysteresis, LowStockListener listener) {
+        return delegate.watchAllItemTypes(threshold, hysteresis, listener);
+    }
+
+    @Override
+    public long getDroppedLowStockEventCount() {
+        return delegate.getDroppedLowStockEventCount();
+    }
+
+    @Override
+    public void forgetItem(long itemType) {
+        delegate.forgetItem(itemType);
+        forgottenCount.increment();
+    }
+
+    @Override
+    public void forgetItem(long itemType, Duration timeToLive) {
+        delegate.forgetItem(itemType, timeToLive);
+        forgottenCount.increment();
+    }
+
+    @Override
+    public void rememberItem(long itemType) {
+        delegate.rememberItem(itemType);
+    }
+
+    @Override
+    public long getNextForgetExpiry() {
+        return delegate.getNextForgetExpiry();
+    }
+
+    @Override
+    public int getItemCount() {
+        return delegate.getItemCount();
+    }
+
+    @Override
+    public int getItemTypeCount() {
+        return delegate.getItemTypeCount();
+    }
+
+    @Override
+    public int getForgottenItemTypeCount() {
+        return delegate.getForgottenItemTypeCount();
+    }
+
+    /**
+     * @return number of containers added, replacements included
+     */
+    public long getAddedCount() {
+        return addedCount.sum();
+    }
+
+    /**
+     * @return number of remove events, including those for containers that were not stored
+     */
+    public long getRemovedCount() {
+        return removedCount.sum();
+    }
+
+    /**
+     * @return number of forgetItem() calls
+     */
+    public long getForgottenCount() {
+        return forgottenCount.sum();
+    }
+
+    public LatencyHistogram getItemsLatency() {
+        return getItemsLatency;
+    }
+
+    /**
+     * @return latency of the sampled getFillFactor() calls
+     */
+    public LatencyHistogram getFillFactorLatency() {
+        return getFillFactorLatency;
+    }
+
+    /**
+     * Closes the delegate if it is Closeable
+     */
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InstrumentedSmartFridgeManager{" + delegate + "}";
+    }
+}
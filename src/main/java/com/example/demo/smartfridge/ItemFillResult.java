@@ -0,0 +1,95 @@
+package com.example.demo.smartfridge;
+
+import java.util.Arrays;
+
+/**
+ * Reusable result of {@link SmartFridgeManager#getItems(double, ItemFillResult)}: item types and
+ * their fill factors in parallel primitive arrays. The arrays only grow, so a result that is
+ * reused for repeated queries stops allocating once it has seen the largest result.
+ *
+ * Not thread safe.
+ */
+public final class ItemFillResult implements ItemFillVisitor {
+    private long[] itemTypes;
+    private double[] fillFactors;
+    private int size;
+
+    public ItemFillResult() {
+        this(16);
+    }
+
+    public ItemFillResult(int initialCapacity) {
+        itemTypes = new long[Math.max(1, initialCapacity)];
+        fillFactors = new double[itemTypes.length];
+    }
+
+    @Override
+    public void visit(long itemType, double fillFactor) {
+        if (size == itemTypes.length) {
+            itemTypes = Arrays.copyOf(itemTypes, size * 2);
+            fillFactors = Arrays.copyOf(fillFactors, size * 2);
+        }
+        itemTypes[size] = itemType;
+        fillFactors[size] = fillFactor;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index
+     * @return the itemType of the index-th result
+     *
+     * @throws IndexOutOfBoundsException if index is not below {@link #size()}
+     */
+    public long getItemType(int index) {
+        checkIndex(index);
+        return itemTypes[index];
+    }
+
+    /**
+     * @param index
+     * @return the fill factor of the index-th result
+     *
+     * @throws IndexOutOfBoundsException if index is not below {@link #size()}
+     */
+    public double getFillFactor(int index) {
+        checkIndex(index);
+        return fillFactors[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("ItemFillResult: index " + index + ", size " + size);
+        }
+    }
+
+    /**
+     * Empties the result, keeping the arrays for the next query
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return the results in the format of {@link SmartFridgeManager#getItems(Double)}
+     */
+    public Object[] toArray() {
+        Object[] items = new Object[size];
+        for (int i = 0; i < size; i++) {
+            items[i] = new Object[]{itemTypes[i], fillFactors[i]};
+        }
+        return items;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder toStringValue = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            toStringValue.append(i == 0 ? "" : ", ").append(itemTypes[i]).append('=').append(fillFactors[i]);
+        }
+        return "ItemFillResult{" + toStringValue + "}";
+    }
+}
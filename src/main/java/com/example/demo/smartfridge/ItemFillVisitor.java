@@ -0,0 +1,12 @@
+package com.example.demo.smartfridge;
+
+/**
+ * Receives the results of {@link SmartFridgeManager#visitItems(double, ItemFillVisitor)} one item
+ * type at a time, without boxing.
+ */
+@FunctionalInterface
+public interface ItemFillVisitor {
+
+    void visit( long itemType, double fillFactor );
+
+}
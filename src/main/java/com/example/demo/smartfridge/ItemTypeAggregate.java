@@ -0,0 +1,97 @@
+package com.example.demo.smartfridge;
+
+/**
+ * Running totals for every container of a single item type, so the average fill factor can be
+ * read without scanning the fridge contents.
+ */
+class ItemTypeAggregate {
+    private final long itemType;
+    private int count;
+    private int nonEmptyCount;
+    private double nonEmptySum;
+
+    ItemTypeAggregate(long itemType) {
+        this.itemType = itemType;
+    }
+
+    ItemTypeAggregate(long itemType, int count, int nonEmptyCount, double nonEmptySum) {
+        this.itemType = itemType;
+        this.count = count;
+        this.nonEmptyCount = nonEmptyCount;
+        this.nonEmptySum = nonEmptySum;
+    }
+
+    long getItemType() {
+        return itemType;
+    }
+
+    /**
+     * @return the number of containers of this item type, empty ones included
+     */
+    int getCount() {
+        return count;
+    }
+
+    int getNonEmptyCount() {
+        return nonEmptyCount;
+    }
+
+    double getNonEmptySum() {
+        return nonEmptySum;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    void add(double fillFactor) {
+        count++;
+        if (fillFactor > 0.0d) {
+            nonEmptyCount++;
+            nonEmptySum += fillFactor;
+        }
+    }
+
+    void remove(double fillFactor) {
+        count--;
+        if (fillFactor > 0.0d) {
+            nonEmptyCount--;
+            // reset instead of subtracting the last value so rounding error can't outlive the containers
+            nonEmptySum = nonEmptyCount == 0 ? 0.0d : nonEmptySum - fillFactor;
+        }
+    }
+
+    /**
+     * Adds the totals of another aggregate of the same item type, e.g. to combine partial
+     * aggregates kept for different parts of the contents
+     *
+     * @param other
+     */
+    void addAll(ItemTypeAggregate other) {
+        count += other.count;
+        nonEmptyCount += other.nonEmptyCount;
+        nonEmptySum += other.nonEmptySum;
+    }
+
+    /**
+     * Average fill factor of the non-empty containers, or 0.0 if every container is empty.
+     *
+     * @return the average fill factor for this item type
+     */
+    double getFillFactor() {
+        if (nonEmptyCount == 0) {
+            return 0.0d;
+        }
+        return nonEmptySum / nonEmptyCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemTypeAggregate{" +
+                "itemType=" + itemType +
+                ", count=" + count +
+                ", nonEmptyCount=" + nonEmptyCount +
+                ", nonEmptySum=" + nonEmptySum +
+                "}";
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.demo.smartfridge;
+
+import java.util.*;
+
+/**
+ * Per item type aggregates kept in step with the fridge contents, so the fill factor of an item
+ * type never requires a scan of the stored containers. The aggregates are also kept ordered by
+ * fill factor, which turns a threshold query into a range query.
+ *
+ * Updates are O(log T) for T item types. Not thread safe.
+ */
+class ItemTypeIndex {
+    static final Comparator<ItemTypeAggregate> BY_FILL_FACTOR = Comparator
+            .comparingDouble(ItemTypeAggregate::getFillFactor)
+            .thenComparingLong(ItemTypeAggregate::getItemType);
+
+    private final Map<Long, ItemTypeAggregate> aggregates = new HashMap<>();
+    // an aggregate's position depends on its fill factor, so it is taken out while it changes
+    private final NavigableSet<ItemTypeAggregate> byFillFactor = new TreeSet<>(BY_FILL_FACTOR);
+
+    ItemTypeIndex() {
+    }
+
+    ItemTypeIndex(Collection<SmartFridgeItem> items) {
+        items.forEach(this::add);
+    }
+
+    void add(SmartFridgeItem item) {
+        add(item.getItemType(), item.getFillFactorAsDouble());
+    }
+
+    void add(long itemType, double fillFactor) {
+        ItemTypeAggregate aggregate = aggregates.get(itemType);
+        if (aggregate == null) {
+            aggregate = new ItemTypeAggregate(itemType);
+            aggregates.put(itemType, aggregate);
+        } else {
+            byFillFactor.remove(aggregate);
+        }
+        aggregate.add(fillFactor);
+        byFillFactor.add(aggregate);
+    }
+
+    void remove(SmartFridgeItem item) {
+        remove(item.getItemType(), item.getFillFactorAsDouble());
+    }
+
+    void remove(long itemType, double fillFactor) {
+        ItemTypeAggregate aggregate = aggregates.get(itemType);
+        if (aggregate == null) {
+            return;
+        }
+        byFillFactor.remove(aggregate);
+        aggregate.remove(fillFactor);
+        if (aggregate.isEmpty()) {
+            aggregates.remove(itemType);
+        } else {
+            byFillFactor.add(aggregate);
+        }
+    }
+
+    /**
+     * @return the number of tracked item types, all of them non-empty
+     */
+    int size() {
+        return aggregates.size();
+    }
+
+    /**
+     * Starts tracking an aggregate whose totals were computed elsewhere, e.g. read from a snapshot
+     *
+     * @param aggregate a non-empty aggregate for an item type that is not tracked yet
+     */
+    void put(ItemTypeAggregate aggregate) {
+        aggregates.put(aggregate.getItemType(), aggregate);
+        byFillFactor.add(aggregate);
+    }
+
+    /**
+     * Stops tracking an item type, e.g. to keep its aggregate elsewhere while it is forgotten
+     *
+     * @param itemType
+     * @return the aggregate that was tracked for the item type, or null if there was none
+     */
+    ItemTypeAggregate removeItemType(long itemType) {
+        ItemTypeAggregate aggregate = aggregates.remove(itemType);
+        if (aggregate != null) {
+            byFillFactor.remove(aggregate);
+        }
+        return aggregate;
+    }
+
+    /**
+     * Applies several container changes at once. Each touched item type is taken out of and put
+     * back into the fill factor ordering only once, however many of its containers changed.
+     *
+     * @param removed items that are no longer stored
+     * @param added items that are newly stored
+     */
+    void update(Collection<SmartFridgeItem> removed, Collection<SmartFridgeItem> added) {
+        Map<Long, ItemTypeAggregate> touched = new HashMap<>();
+        for (SmartFridgeItem item : removed) {
+            detach(item.getItemType(), touched).remove(item.getFillFactorAsDouble());
+        }
+        for (SmartFridgeItem item : added) {
+            detach(item.getItemType(), touched).add(item.getFillFactorAsDouble());
+        }
+
+        for (ItemTypeAggregate aggregate : touched.values()) {
+            if (aggregate.isEmpty()) {
+                aggregates.remove(aggregate.getItemType());
+            } else {
+                byFillFactor.add(aggregate);
+            }
+        }
+    }
+
+    private ItemTypeAggregate detach(long itemType, Map<Long, ItemTypeAggregate> touched) {
+        ItemTypeAggregate aggregate = touched.get(itemType);
+        if (aggregate != null) {
+            return aggregate;
+        }
+
+        aggregate = aggregates.get(itemType);
+        if (aggregate == null) {
+            aggregate = new ItemTypeAggregate(itemType);
+            aggregates.put(itemType, aggregate);
+        } else {
+            byFillFactor.remove(aggregate);
+        }
+        touched.put(itemType, aggregate);
+        return aggregate;
+    }
+
+    /**
+     * @param itemType
+     * @return the aggregate for the item type, or null if no container of that type is stored
+     */
+    ItemTypeAggregate get(long itemType) {
+        return aggregates.get(itemType);
+    }
+
+    /**
+     * @return the aggregates of every item type with at least one stored container
+     */
+    Collection<ItemTypeAggregate> values() {
+        return aggregates.values();
+    }
+
+    /**
+     * @return every aggregate, lowest fill factor first
+     */
+    Iterator<ItemTypeAggregate> lowestFirst() {
+        return Collections.unmodifiableNavigableSet(byFillFactor).iterator();
+    }
+
+    /**
+     * @param fillFactor
+     * @return the aggregates with a fill factor of at most fillFactor, lowest fill factor first
+     */
+    NavigableSet<ItemTypeAggregate> atOrBelow(double fillFactor) {
+        if (!(fillFactor >= 0.0d)) {
+            return Collections.emptyNavigableSet();
+        }
+        ItemTypeAggregate upperBound = new ItemTypeAggregate(Long.MAX_VALUE);
+        upperBound.add(fillFactor);
+        return byFillFactor.headSet(upperBound, true);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.demo.smartfridge;
+
+import java.util.Arrays;
+
+/**
+ * Per item type aggregates held in primitive arrays. Entries are numbered densely in the order the
+ * item types were first seen and are never removed, so an entry number stays valid for the
+ * lifetime of the table. Lookups go through an open addressing hash table keyed by the raw
+ * itemType, so neither updates nor reads box a value.
+ *
+ * Not thread safe.
+ */
+class ItemTypeTable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] itemTypes = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int[] nonEmptyCounts = new int[INITIAL_CAPACITY];
+    private double[] nonEmptySums = new double[INITIAL_CAPACITY];
+    private boolean[] ignored = new boolean[INITIAL_CAPACITY];
+    private int size;
+    // entries with containers that are not ignored, and ignored entries
+    private int stockedCount;
+    private int ignoredCount;
+
+    // entry + 1, 0 marks a free bucket
+    private int[] buckets = new int[INITIAL_CAPACITY * 2];
+
+    static int hash(long itemType) {
+        long h = itemType * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @param itemType
+     * @return the entry for the item type, or -1 if it has never been seen
+     */
+    int find(long itemType) {
+        int mask = buckets.length - 1;
+        for (int bucket = hash(itemType) & mask; ; bucket = (bucket + 1) & mask) {
+            int entry = buckets[bucket] - 1;
+            if (entry < 0 || itemTypes[entry] == itemType) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * @param itemType
+     * @return the entry for the item type, created empty if it has never been seen
+     */
+    int findOrCreate(long itemType) {
+        int entry = find(itemType);
+        if (entry >= 0) {
+            return entry;
+        }
+        if (size == itemTypes.length) {
+            grow();
+        }
+        entry = size++;
+        itemTypes[entry] = itemType;
+        insertBucket(entry);
+        return entry;
+    }
+
+    private void grow() {
+        int capacity = itemTypes.length * 2;
+        itemTypes = Arrays.copyOf(itemTypes, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        nonEmptyCounts = Arrays.copyOf(nonEmptyCounts, capacity);
+        nonEmptySums = Arrays.copyOf(nonEmptySums, capacity);
+        ignored = Arrays.copyOf(ignored, capacity);
+
+        buckets = new int[capacity * 2];
+        for (int entry = 0; entry < size; entry++) {
+            insertBucket(entry);
+        }
+    }
+
+    private void insertBucket(int entry) {
+        int mask = buckets.length - 1;
+        int bucket = hash(itemTypes[entry]) & mask;
+        while (buckets[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        buckets[bucket] = entry + 1;
+    }
+
+    void add(int entry, double fillFactor) {
+        if (counts[entry]++ == 0 && !ignored[entry]) {
+            stockedCount++;
+        }
+        if (fillFactor > 0.0d) {
+            nonEmptyCounts[entry]++;
+            nonEmptySums[entry] += fillFactor;
+        }
+    }
+
+    void remove(int entry, double fillFactor) {
+        if (--counts[entry] == 0 && !ignored[entry]) {
+            stockedCount--;
+        }
+        if (fillFactor > 0.0d) {
+            int nonEmptyCount = --nonEmptyCounts[entry];
+            nonEmptySums[entry] = nonEmptyCount == 0 ? 0.0d : nonEmptySums[entry] - fillFactor;
+        }
+    }
+
+    /**
+     * @return the number of entries, entries are numbered 0 to size() - 1
+     */
+    int size() {
+        return size;
+    }
+
+    long getItemType(int entry) {
+        return itemTypes[entry];
+    }
+
+    int getCount(int entry) {
+        return counts[entry];
+    }
+
+    int getNonEmptyCount(int entry) {
+        return nonEmptyCounts[entry];
+    }
+
+    double getNonEmptySum(int entry) {
+        return nonEmptySums[entry];
+    }
+
+    /**
+     * Average fill factor of the non-empty containers, or 0.0 if every container is empty.
+     */
+    double getFillFactor(int entry) {
+        int nonEmptyCount = nonEmptyCounts[entry];
+        if (nonEmptyCount == 0) {
+            return 0.0d;
+        }
+        return nonEmptySums[entry] / nonEmptyCount;
+    }
+
+    boolean isIgnored(int entry) {
+        return ignored[entry];
+    }
+
+    void setIgnored(int entry, boolean ignore) {
+        if (ignored[entry] == ignore) {
+            return;
+        }
+        ignored[entry] = ignore;
+        ignoredCount += ignore ? 1 : -1;
+        if (counts[entry] > 0) {
+            stockedCount += ignore ? -1 : 1;
+        }
+    }
+
+    /**
+     * @return the number of item types with containers that are not ignored
+     */
+    int getStockedCount() {
+        return stockedCount;
+    }
+
+    /**
+     * @return the number of ignored item types
+     */
+    int getIgnoredCount() {
+        return ignoredCount;
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.demo.smartfridge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * DemoSmartFridgeManager whose state survives a restart.
+ *
+ * Every accepted add, remove and forget is written to a SmartFridgeJournal after it has been
+ * applied, since the delegate is what rejects invalid events. Once a journal write has failed,
+ * every further change is rejected with an IllegalStateException before it is applied, so the
+ * in-memory state is never more than the failed write ahead of the journal.
+ *
+ * Every snapshotEveryEvents events a SmartFridgeSnapshot of the contents and ignored item types is
+ * written and the journal continues in a new file, so {@link #open(Path)} only has to load the
+ * latest snapshot and replay the journal records after it. The previous snapshot and its journal
+ * files are kept as a fallback in case the latest snapshot turns out to be damaged.
+ *
+ * All methods are synchronized.
+ */
+public class JournaledSmartFridgeManager implements SmartFridgeManager, Closeable {
+    static final int DEFAULT_GROUP_COMMIT_SIZE = 256;
+    static final long DEFAULT_GROUP_COMMIT_MILLIS = 10;
+    static final int DEFAULT_SNAPSHOT_EVERY_EVENTS = 1_000_000;
+
+    private final Path directory;
+    private final DemoSmartFridgeManager delegate;
+    private final SmartFridgeJournal journal;
+    private final int snapshotEveryEvents;
+    private long eventsSinceSnapshot;
+
+    private JournaledSmartFridgeManager(
+            Path directory,
+            DemoSmartFridgeManager delegate,
+            SmartFridgeJournal journal,
+            int snapshotEveryEvents
+    ) {
+        this.directory = directory;
+        this.delegate = delegate;
+        this.journal = journal;
+        this.snapshotEveryEvents = snapshotEveryEvents;
+    }
+
+    /**
+     * Recovers the fridge stored in the directory, or starts an empty one
+     *
+     * @param directory
+     * @return the recovered SmartFridgeManager
+     */
+    public static JournaledSmartFridgeManager open(Path directory) {
+        return open(directory, DEFAULT_GROUP_COMMIT_SIZE, DEFAULT_GROUP_COMMIT_MILLIS, DEFAULT_SNAPSHOT_EVERY_EVENTS);
+    }
+
+    /**
+     * Recovers the fridge stored in the directory, or starts an empty one
+     *
+     * @param directory
+     * @param groupCommitSize number of pending journal records that triggers an fsync
+     * @param groupCommitMillis longest time a journal record stays pending, 0 to only sync by size
+     * @param snapshotEveryEvents number of events between two snapshots
+     * @return the recovered SmartFridgeManager
+     */
+    public static JournaledSmartFridgeManager open(
+            Path directory,
+            int groupCommitSize,
+            long groupCommitMillis,
+            int snapshotEveryEvents
+    ) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        DemoSmartFridgeManager delegate;
+        long snapshotSequence = 0;
+        SmartFridgeSnapshot snapshot = SmartFridgeSnapshot.readLatest(directory);
+        if (snapshot != null) {
+            snapshotSequence = snapshot.getSequence();
+            delegate = new DemoSmartFridgeManager(snapshot.getContents());
+            snapshot.getIgnoreItemTypes().forEach(delegate::forgetItem);
+            snapshot.getForgetExpiries().forEach(delegate::forgetItemUntil);
+        } else {
+            delegate = new DemoSmartFridgeManager();
+        }
+
+        delegate.setRecordingHistory(false);
+        long lastSequence = SmartFridgeJournal.replay(directory, snapshotSequence, delegate);
+        delegate.setRecordingHistory(true);
+        SmartFridgeJournal journal = new SmartFridgeJournal(directory, lastSequence, groupCommitSize, groupCommitMillis);
+        return new JournaledSmartFridgeManager(directory, delegate, journal, snapshotEveryEvents);
+    }
+
+    @Override
+    public synchronized void handleItemRemoved(String itemUUID) {
+        journal.checkWritable();
+        delegate.handleItemRemoved(itemUUID);
+        journal.appendRemoved(itemUUID);
+        eventsLogged(1);
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, Double fillFactor) {
+        handleItemAdded(itemType, itemUUID, name, fillFactor.doubleValue());
+    }
+
+    @Override
+    public synchronized void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+        journal.checkWritable();
+        // the delegate rejects invalid events before they reach the journal
+        delegate.handleItemAdded(itemType, itemUUID, name, fillFactor);
+        journal.appendAdded(itemType, itemUUID, name, fillFactor);
+        eventsLogged(1);
+    }
+
+    @Override
+    public synchronized void applyEvents(List<SmartFridgeEvent> events) {
+        Collection<SmartFridgeEvent> lastEvents = SmartFridgeEvent.coalesce(events);
+        journal.checkWritable();
+        delegate.applyEvents(new ArrayList<>(lastEvents));
+        for (SmartFridgeEvent event : lastEvents) {
+            if (event.getType() == SmartFridgeEvent.Type.ADDED) {
+                journal.appendAdded(event.getItemType(), event.getItemUUID(), event.getName(), event.getFillFactor());
+            } else {
+                journal.appendRemoved(event.getItemUUID());
+            }
+        }
+        eventsLogged(lastEvents.size());
+    }
+
+    @Override
+    public synchronized Object[] getItems(Double fillFactor) {
+        return delegate.getItems(fillFactor);
+    }
+
+    @Override
+    public synchronized void visitItems(double fillFactor, ItemFillVisitor visitor) {
+        delegate.visitItems(fillFactor, visitor);
+    }
+
+    @Override
+    public synchronized void visitLowestItems(int limit, int offset, ItemFillVisitor visitor) {
+        delegate.visitLowestItems(limit, offset, visitor);
+    }
+
+    @Override
+    public synchronized Double getFillFactor(long itemType) {
+        return delegate.getFillFactor(itemType);
+    }
+
+    @Override
+    public synchronized double getFillFactorAsDouble(long itemType) {
+        return delegate.getFillFactorAsDouble(itemType);
+    }
+
+    @Override
+    public synchronized Long getItemType(String itemUUID) {
+        return delegate.getItemType(itemUUID);
+    }
+
+    @Override
+    public synchronized Object[] findItems(String namePrefix, int limit) {
+        return delegate.findItems(namePrefix, limit);
+    }
+
+    @Override
+    public synchronized Object[] getItemsDepletingWithin(Duration within) {
+        return delegate.getItemsDepletingWithin(within);
+    }
+
+    @Override
+    public synchronized Object[] getFillSamples(long itemType, FillHistoryTier tier) {
+        return delegate.getFillSamples(itemType, tier);
+    }
+
+    @Override
+    public synchronized void forgetItem(long itemType) {
+        journal.checkWritable();
+        delegate.forgetItem(itemType);
+        journal.appendForgotten(itemType);
+        eventsLogged(1);
+    }
+
+    @Override
+    public synchronized void forgetItem(long itemType, Duration timeToLive) {
+        journal.checkWritable();
+        delegate.forgetItem(itemType, timeToLive);
+        Long expiresAt = delegate.getForgetExpiries().get(itemType);
+        if (expiresAt != null) {
+            journal.appendForgottenUntil(itemType, expiresAt);
+        } else {
+            // the time to live was zero, nothing is forgotten
+            journal.appendRemembered(itemType);
+        }
+        eventsLogged(1);
+    }
+
+    @Override
+    public synchronized void rememberItem(long itemType) {
+        journal.checkWritable();
+        delegate.rememberItem(itemType);
+        journal.appendRemembered(itemType);
+        eventsLogged(1);
+    }
+
+    @Override
+    public synchronized long getNextForgetExpiry() {
+        return delegate.getNextForgetExpiry();
+    }
+
+    @Override
+    public synchronized int getItemCount() {
+        return delegate.getItemCount();
+    }
+
+    @Override
+    public synchronized int getItemTypeCount() {
+        return delegate.getItemTypeCount();
+    }
+
+    @Override
+    public synchronized int getForgottenItemTypeCount() {
+        return delegate.getForgottenItemTypeCount();
+    }
+
+    @Override
+    public synchronized LowStockSubscription watchItemType(
+            long itemType,
+            double threshold,
+            double hysteresis,
+            LowStockListener listener
+    ) {
+        return delegate.watchItemType(itemType, threshold, hysteresis, listener);
+    }
+
+    @Override
+    public synchronized LowStockSubscription watchAllItemTypes(double threshold, double hysteresis, LowStockListener listener) {
+        return delegate.watchAllItemTypes(threshold, hysteresis, listener);
+    }
+
+    @Override
+    public synchronized long getDroppedLowStockEventCount() {
+        return delegate.getDroppedLowStockEventCount();
+    }
+
+    private void eventsLogged(int count) {
+        eventsSinceSnapshot += count;
+        if (eventsSinceSnapshot >= snapshotEveryEvents) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current state and drops the journal files and snapshots that are
+     * no longer needed to recover it
+     */
+    public synchronized void snapshot() {
+        long sequence = journal.getLastSequence();
+        journal.roll();
+        // expiries first, one that runs out in between is then restored as expired instead of as forgotten for good
+        Map<Long, Long> forgetExpiries = new HashMap<>(delegate.getForgetExpiries());
+        SmartFridgeSnapshot.write(
+                directory,
+                sequence,
+                delegate.getContents().values(),
+                delegate.getIgnoreItemTypes(),
+                forgetExpiries
+        );
+        eventsSinceSnapshot = 0;
+
+        List<Path> snapshots = SmartFridgeSnapshot.files(directory);
+        if (snapshots.size() > 1) {
+            long keepFrom = SmartFridgeSnapshot.sequence(snapshots.get(snapshots.size() - 2));
+            SmartFridgeSnapshot.deleteBefore(directory, keepFrom);
+            journal.deleteUpTo(keepFrom);
+        }
+    }
+
+    /**
+     * Writes every pending journal record to disk
+     */
+    public void sync() {
+        journal.sync();
+    }
+
+    @Override
+    public synchronized void close() {
+        journal.close();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "JournaledSmartFridgeManager{" + delegate + "}";
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return the in-memory SmartFridge
+     */
+    DemoSmartFridgeManager getDelegate() {
+        return delegate;
+    }
+}
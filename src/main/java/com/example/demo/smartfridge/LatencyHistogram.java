@@ -0,0 +1,104 @@
+package com.example.demo.smartfridge;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency distribution in the style of HdrHistogram: log-linear buckets, each power of two split
+ * into SUB_BUCKET_COUNT linear sub-buckets, so every recorded value is kept to within 1/64 (1.6%)
+ * of itself from 1 ns up to MAX_TRACKABLE_NANOS. Larger values are counted in the last bucket.
+ *
+ * Recording is one array increment and never allocates or locks, so it can sit on the hot path of
+ * every call. Reads walk the 2k buckets while recording continues and see a distribution that is
+ * at most a few calls behind.
+ */
+public final class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 6;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final long MAX_TRACKABLE_NANOS = (1L << 36) - 1;
+
+    private static final int MAX_EXPONENT = 63 - Long.numberOfLeadingZeros(MAX_TRACKABLE_NANOS);
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos a duration, negative values are counted as 0
+     */
+    public void recordNanos(long nanos) {
+        long value = Math.max(0L, Math.min(nanos, MAX_TRACKABLE_NANOS));
+        counts.incrementAndGet(bucket(value));
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        // the leading one bit is implied by the exponent, the next SUB_BUCKET_BITS pick the sub-bucket
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * @return the largest value that falls into the bucket
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        long subBucket = (bucket - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the value that percentile of the recorded values are at or below, to within the
+     *      precision of the buckets, or 0 if nothing was recorded
+     */
+    public long getNanosAtPercentile(double percentile) {
+        if (!(percentile >= 0.0d && percentile <= 100.0d)) {
+            throw new IllegalArgumentException("LatencyHistogram.getNanosAtPercentile: double percentile must be >= 0.0 or <= 100.0");
+        }
+
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0L;
+        }
+
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0d * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+}
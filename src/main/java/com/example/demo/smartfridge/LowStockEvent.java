@@ -0,0 +1,60 @@
+package com.example.demo.smartfridge;
+
+/**
+ * Notification that the fill factor of an item type crossed a watched threshold, see
+ * {@link SmartFridgeManager#watchItemType(long, double, double, LowStockListener)}
+ */
+public final class LowStockEvent {
+
+    public enum Type {
+        /**
+         * The fill factor dropped to or below the threshold
+         */
+        LOW,
+        /**
+         * The fill factor rose above the threshold plus the hysteresis
+         */
+        RESTOCKED
+    }
+
+    private final Type type;
+    private final long itemType;
+    private final double fillFactor;
+    private final double threshold;
+
+    LowStockEvent(Type type, long itemType, double fillFactor, double threshold) {
+        this.type = type;
+        this.itemType = itemType;
+        this.fillFactor = fillFactor;
+        this.threshold = threshold;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getItemType() {
+        return itemType;
+    }
+
+    /**
+     * @return the fill factor of the item type right after the event that caused the crossing
+     */
+    public double getFillFactor() {
+        return fillFactor;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public String toString() {
+        return "LowStockEvent{" +
+                "type=" + type +
+                ", itemType=" + itemType +
+                ", fillFactor=" + fillFactor +
+                ", threshold=" + threshold +
+                "}";
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.demo.smartfridge;
+
+/**
+ * Receives LowStockEvents. Listeners are called on a notification thread of the
+ * SmartFridgeManager, never on the thread that delivered the fridge event.
+ */
+@FunctionalInterface
+public interface LowStockListener {
+
+    void onLowStock( LowStockEvent event );
+
+}
@@ -0,0 +1,209 @@
+package com.example.demo.smartfridge;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Threshold watches of a SmartFridgeManager and the thread that notifies their listeners.
+ *
+ * The manager reports the new fill factor of every item type changed by an event. Each watch keeps
+ * whether an item type is currently low: it becomes low when the fill factor drops to or below the
+ * threshold and only stops being low once the fill factor rises above threshold + hysteresis. Only
+ * those two transitions produce a LowStockEvent, and an item type that is seen for the first time
+ * produces one only if it starts out low.
+ *
+ * Events are handed to a single daemon thread through a bounded queue. When the queue is full the
+ * event is dropped and counted instead of blocking the thread that delivered the fridge event, so a
+ * slow listener delays other listeners but never the fridge. The watch then keeps the state the
+ * listener was last told about, so the next change of the item type tries the transition again
+ * with the fill factor of that moment instead of it being lost.
+ *
+ * Watch state is only touched by the thread that updates the manager, registration and
+ * cancellation may happen on any thread.
+ */
+class LowStockNotifier {
+    static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private final List<Watch> allItemTypes = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<Long, List<Watch>> byItemType = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+
+    LowStockNotifier(int queueCapacity) {
+        executor = new ThreadPoolExecutor(
+                1,
+                1,
+                1,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "smart-fridge-low-stock");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        // no thread is kept around while there is nothing to deliver
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param itemType the watched item type, or null to watch every item type
+     * @param threshold
+     * @param hysteresis
+     * @param listener
+     * @param current aggregates of the watched item types as they are now, which set the initial
+     *      state without producing events
+     * @return the subscription
+     *
+     * @throws IllegalArgumentException if the threshold is not between 0 and 1, the hysteresis is
+     *      negative or the listener is null
+     */
+    LowStockSubscription watch(
+            Long itemType,
+            double threshold,
+            double hysteresis,
+            LowStockListener listener,
+            Collection<ItemTypeAggregate> current
+    ) {
+        if (!(threshold >= 0.0d && threshold <= 1.0d)) {
+            throw new IllegalArgumentException("LowStockNotifier.watch: double threshold must be >= 0.0 or <= 1.0");
+        }
+        if (!(hysteresis >= 0.0d)) {
+            throw new IllegalArgumentException("LowStockNotifier.watch: double hysteresis must be >= 0.0");
+        }
+        if (listener == null) {
+            throw new IllegalArgumentException("LowStockNotifier.watch: listener must not be null");
+        }
+
+        Watch watch = new Watch(itemType, threshold, hysteresis, listener);
+        for (ItemTypeAggregate aggregate : current) {
+            watch.update(aggregate.getItemType(), aggregate.getFillFactor());
+        }
+        if (itemType == null) {
+            allItemTypes.add(watch);
+        } else {
+            byItemType.computeIfAbsent(itemType, type -> new CopyOnWriteArrayList<>()).add(watch);
+        }
+        return watch;
+    }
+
+    /**
+     * @param itemType
+     * @return true if a change of the item type's fill factor can produce an event
+     */
+    boolean isWatching(long itemType) {
+        return !allItemTypes.isEmpty() || byItemType.containsKey(itemType);
+    }
+
+    /**
+     * @param itemType
+     * @param fillFactor the item type's fill factor after the change, 0.0 if no container is left
+     */
+    void fillFactorChanged(long itemType, double fillFactor) {
+        List<Watch> watches = byItemType.get(itemType);
+        if (watches != null) {
+            for (Watch watch : watches) {
+                watch.changed(itemType, fillFactor);
+            }
+        }
+        for (Watch watch : allItemTypes) {
+            watch.changed(itemType, fillFactor);
+        }
+    }
+
+    /**
+     * @return the number of events dropped because the notification queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private class Watch implements LowStockSubscription {
+        private final Long itemType;
+        private final double threshold;
+        private final double hysteresis;
+        private final LowStockListener listener;
+        // item types seen by this watch and whether each one is low
+        private final Map<Long, Boolean> low = new HashMap<>();
+        private volatile boolean cancelled;
+
+        Watch(Long itemType, double threshold, double hysteresis, LowStockListener listener) {
+            this.itemType = itemType;
+            this.threshold = threshold;
+            this.hysteresis = hysteresis;
+            this.listener = listener;
+        }
+
+        /**
+         * Sets the state of the item type without producing an event
+         */
+        void update(long itemType, double fillFactor) {
+            LowStockEvent event = transition(itemType, fillFactor);
+            if (event != null) {
+                low.put(itemType, event.getType() == LowStockEvent.Type.LOW);
+            }
+        }
+
+        /**
+         * @return the event for the transition, which is not applied to the state yet, or null if
+         *      the item type's state did not change
+         */
+        private LowStockEvent transition(long itemType, double fillFactor) {
+            Boolean wasLow = low.get(itemType);
+            if (wasLow == null || !wasLow) {
+                if (fillFactor <= threshold) {
+                    return new LowStockEvent(LowStockEvent.Type.LOW, itemType, fillFactor, threshold);
+                }
+                if (wasLow == null) {
+                    low.put(itemType, false);
+                }
+                return null;
+            }
+            if (fillFactor > threshold + hysteresis) {
+                return new LowStockEvent(LowStockEvent.Type.RESTOCKED, itemType, fillFactor, threshold);
+            }
+            return null;
+        }
+
+        void changed(long itemType, double fillFactor) {
+            LowStockEvent event = transition(itemType, fillFactor);
+            if (event == null) {
+                return;
+            }
+            try {
+                executor.execute(() -> deliver(event));
+            } catch (RejectedExecutionException e) {
+                // the listener was not told, so neither is the watch
+                dropped.incrementAndGet();
+                return;
+            }
+            low.put(itemType, event.getType() == LowStockEvent.Type.LOW);
+        }
+
+        private void deliver(LowStockEvent event) {
+            if (cancelled) {
+                return;
+            }
+            try {
+                listener.onLowStock(event);
+            } catch (RuntimeException e) {
+                // a failing listener must not take the notification thread down with it
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (itemType == null) {
+                allItemTypes.remove(this);
+            } else {
+                byItemType.computeIfPresent(itemType, (type, watches) -> {
+                    watches.remove(this);
+                    return watches.isEmpty() ? null : watches;
+                });
+            }
+        }
+    }
+}
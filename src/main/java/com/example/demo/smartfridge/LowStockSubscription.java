@@ -0,0 +1,13 @@
+package com.example.demo.smartfridge;
+
+/**
+ * Handle of a registered LowStockListener
+ */
+public interface LowStockSubscription {
+
+    /**
+     * Stops the notifications. Events that were already queued may still be delivered.
+     */
+    void cancel();
+
+}
@@ -0,0 +1,78 @@
+package com.example.demo.smartfridge;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * {@link SmartFridgeManager#getLowestItems(int, int)} for implementations that do not keep their
+ * item types ordered by fill factor: a single visitItems() pass keeps the offset + limit lowest
+ * item types in a bounded heap, which costs O(T log(offset + limit)) for T item types instead of
+ * sorting all of them.
+ */
+final class LowestItems {
+    // same order as ItemTypeIndex.BY_FILL_FACTOR
+    private static final Comparator<Candidate> BY_FILL_FACTOR = Comparator
+            .comparingDouble((Candidate candidate) -> candidate.fillFactor)
+            .thenComparingLong(candidate -> candidate.itemType);
+
+    private static final class Candidate {
+        private final long itemType;
+        private final double fillFactor;
+
+        private Candidate(long itemType, double fillFactor) {
+            this.itemType = itemType;
+            this.fillFactor = fillFactor;
+        }
+    }
+
+    private LowestItems() {
+    }
+
+    /**
+     * @param caller e.g. "DemoSmartFridgeManager.getLowestItems"
+     * @param limit
+     * @param offset
+     *
+     * @throws IllegalArgumentException if the limit is less than 1 or the offset is negative
+     */
+    static void checkArguments(String caller, int limit, int offset) {
+        if (limit < 1) {
+            throw new IllegalArgumentException(caller + ": int limit must be >= 1");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException(caller + ": int offset must be >= 0");
+        }
+    }
+
+    /**
+     * @param manager
+     * @param limit
+     * @param offset
+     * @param visitor receives the selected item types, lowest fill factor first
+     */
+    static void select(SmartFridgeManager manager, int limit, int offset, ItemFillVisitor visitor) {
+        checkArguments(manager.getClass().getSimpleName() + ".getLowestItems", limit, offset);
+        int kept = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        // the highest kept item type first, it is the one to make room
+        PriorityQueue<Candidate> lowest = new PriorityQueue<>(Math.min(kept, 64), BY_FILL_FACTOR.reversed());
+        manager.visitItems(Double.POSITIVE_INFINITY, (itemType, fillFactor) -> {
+            if (lowest.size() < kept) {
+                lowest.add(new Candidate(itemType, fillFactor));
+                return;
+            }
+            Candidate highest = lowest.peek();
+            if (fillFactor < highest.fillFactor || fillFactor == highest.fillFactor && itemType < highest.itemType) {
+                lowest.poll();
+                lowest.add(new Candidate(itemType, fillFactor));
+            }
+        });
+
+        Candidate[] ordered = new Candidate[lowest.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            ordered[i] = lowest.poll();
+        }
+        for (int i = offset; i < ordered.length; i++) {
+            visitor.visit(ordered[i].itemType, ordered[i].fillFactor);
+        }
+    }
+}
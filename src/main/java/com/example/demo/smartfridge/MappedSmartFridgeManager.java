@@ -0,0 +1,331 @@
+package com.example.demo.smartfridge;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * SmartFridgeManager that answers from a memory mapped MappedSmartFridgeSnapshot plus the changes
+ * made since it was written. Opening a snapshot only maps the file, containers and per item type
+ * aggregates are read in place. Only containers added since the snapshot, itemUUIDs of snapshot
+ * containers that were removed or replaced, item types touched by either and newly forgotten item
+ * types are kept on the heap.
+ *
+ * {@link #writeSnapshot(Path)} folds the changes into a new snapshot file, which can then be
+ * opened in their place.
+ *
+ * Not thread safe.
+ */
+public class MappedSmartFridgeManager implements SmartFridgeManager {
+    private final MappedSmartFridgeSnapshot snapshot;
+
+    private final Map<String, SmartFridgeItem> added = new HashMap<>();
+    // snapshot containers that were removed or replaced since the snapshot
+    private final Set<String> removed = new HashSet<>();
+    // item types whose aggregate in the snapshot is superseded by the one in itemTypeIndex
+    private final Set<Long> touchedItemTypes = new HashSet<>();
+    private final ItemTypeIndex itemTypeIndex = new ItemTypeIndex();
+    private final Set<Long> ignoreItemTypes = new HashSet<>();
+
+    private MappedSmartFridgeManager(MappedSmartFridgeSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @param file a snapshot written by {@link #write(Path, Collection, Set)} or {@link #writeSnapshot(Path)}
+     * @return a SmartFridgeManager backed by the mapped snapshot
+     *
+     * @throws IllegalArgumentException if the file is not a mapped snapshot
+     */
+    public static MappedSmartFridgeManager open(Path file) {
+        return new MappedSmartFridgeManager(MappedSmartFridgeSnapshot.open(file));
+    }
+
+    /**
+     * Writes a snapshot that can be opened with {@link #open(Path)}
+     *
+     * @param file
+     * @param items stored containers, one per itemUUID
+     * @param ignoreItemTypes
+     */
+    public static void write(Path file, Collection<SmartFridgeItem> items, Set<Long> ignoreItemTypes) {
+        MappedSmartFridgeSnapshot.write(file, items, ignoreItemTypes);
+    }
+
+    /**
+     * Writes the current contents to a new snapshot file
+     *
+     * @param file must not be the file this manager was opened from
+     */
+    public void writeSnapshot(Path file) {
+        Set<Long> ignored = new HashSet<>(ignoreItemTypes);
+        for (int position = 0; position < snapshot.getTypeCount(); position++) {
+            if (snapshot.isTypeIgnored(position)) {
+                ignored.add(snapshot.getTypeItemType(position));
+            }
+        }
+        MappedSmartFridgeSnapshot.write(file, getContents(), ignored);
+    }
+
+    private void touch(long itemType) {
+        if (!touchedItemTypes.add(itemType)) {
+            return;
+        }
+        int position = snapshot.findType(itemType);
+        if (position >= 0 && snapshot.getTypeContainerCount(position) > 0) {
+            itemTypeIndex.put(snapshot.getTypeAggregate(position));
+        }
+    }
+
+    /**
+     * Hides the snapshot container stored under the itemUUID, if there is one
+     */
+    private void removeFromSnapshot(String itemUUID) {
+        if (removed.contains(itemUUID)) {
+            return;
+        }
+        int position = snapshot.findItem(itemUUID);
+        if (position < 0) {
+            return;
+        }
+        removed.add(itemUUID);
+        long itemType = snapshot.getItemType(position);
+        touch(itemType);
+        itemTypeIndex.remove(itemType, snapshot.getFillFactor(position));
+    }
+
+    @Override
+    public void handleItemRemoved(String itemUUID) {
+        SmartFridgeItem item = added.remove(itemUUID);
+        if (item != null) {
+            itemTypeIndex.remove(item);
+        } else {
+            removeFromSnapshot(itemUUID);
+        }
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, Double fillFactor) {
+        handleItemAdded(itemType, itemUUID, name, fillFactor.doubleValue());
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+        StandardSmartFridgeItem item = new StandardSmartFridgeItem(itemType, itemUUID, name, fillFactor);
+        SmartFridgeItem replaced = added.put(itemUUID, item);
+        if (replaced != null) {
+            itemTypeIndex.remove(replaced);
+        } else {
+            removeFromSnapshot(itemUUID);
+        }
+        touch(itemType);
+        itemTypeIndex.add(item);
+    }
+
+    private boolean isIgnored(long itemType) {
+        if (ignoreItemTypes.contains(itemType)) {
+            return true;
+        }
+        int position = snapshot.findType(itemType);
+        return position >= 0 && snapshot.isTypeIgnored(position);
+    }
+
+    @Override
+    public Object[] getItems(Double fillFactor) {
+        ItemFillResult result = new ItemFillResult();
+        visitItems(fillFactor, result);
+        return result.toArray();
+    }
+
+    /**
+     * Merges the item types of the snapshot, which are stored in fill factor order, with the ones
+     * in itemTypeIndex, so the result is ordered like DemoSmartFridgeManager's.
+     */
+    @Override
+    public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+        if (!(fillFactor >= 0.0d)) {
+            return;
+        }
+        visitInOrder(fillFactor, 0, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Stops the same merge once offset + limit item types have been seen
+     */
+    @Override
+    public void visitLowestItems(int limit, int offset, ItemFillVisitor visitor) {
+        LowestItems.checkArguments("MappedSmartFridgeManager.getLowestItems", limit, offset);
+        visitInOrder(Double.POSITIVE_INFINITY, offset, limit, visitor);
+    }
+
+    /**
+     * @param fillFactor
+     * @param offset number of item types skipped before the first one is visited
+     * @param limit maximum number of item types visited
+     * @param visitor
+     */
+    private void visitInOrder(double fillFactor, int offset, int limit, ItemFillVisitor visitor) {
+        int end = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        int seen = 0;
+        Iterator<ItemTypeAggregate> changed = itemTypeIndex.atOrBelow(fillFactor).iterator();
+        ItemTypeAggregate nextChanged = nextNotIgnored(changed);
+        for (int position = 0; position < snapshot.getTypeCount() && seen < end; position++) {
+            double fill = snapshot.getTypeFillFactor(position);
+            if (fill > fillFactor) {
+                break;
+            }
+            long itemType = snapshot.getTypeItemType(position);
+            if (snapshot.getTypeContainerCount(position) == 0 || snapshot.isTypeIgnored(position)
+                    || ignoreItemTypes.contains(itemType) || touchedItemTypes.contains(itemType)) {
+                continue;
+            }
+
+            while (nextChanged != null && seen < end && (nextChanged.getFillFactor() < fill
+                    || nextChanged.getFillFactor() == fill && nextChanged.getItemType() < itemType)) {
+                if (seen++ >= offset) {
+                    visitor.visit(nextChanged.getItemType(), nextChanged.getFillFactor());
+                }
+                nextChanged = nextNotIgnored(changed);
+            }
+            if (seen < end && seen++ >= offset) {
+                visitor.visit(itemType, fill);
+            }
+        }
+        while (nextChanged != null && seen < end) {
+            if (seen++ >= offset) {
+                visitor.visit(nextChanged.getItemType(), nextChanged.getFillFactor());
+            }
+            nextChanged = nextNotIgnored(changed);
+        }
+    }
+
+    private ItemTypeAggregate nextNotIgnored(Iterator<ItemTypeAggregate> aggregates) {
+        while (aggregates.hasNext()) {
+            ItemTypeAggregate aggregate = aggregates.next();
+            if (!isIgnored(aggregate.getItemType())) {
+                return aggregate;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Double getFillFactor(long itemType) {
+        return getFillFactorAsDouble(itemType);
+    }
+
+    @Override
+    public double getFillFactorAsDouble(long itemType) {
+        if (touchedItemTypes.contains(itemType)) {
+            ItemTypeAggregate aggregate = itemTypeIndex.get(itemType);
+            return aggregate == null ? 0.0d : aggregate.getFillFactor();
+        }
+        int position = snapshot.findType(itemType);
+        if (position < 0) {
+            return 0.0d;
+        }
+        return snapshot.getTypeFillFactor(position);
+    }
+
+    @Override
+    public Long getItemType(String itemUUID) {
+        SmartFridgeItem item = added.get(itemUUID);
+        if (item != null) {
+            return item.getItemType();
+        }
+        if (removed.contains(itemUUID)) {
+            return null;
+        }
+        int position = snapshot.findItem(itemUUID);
+        return position < 0 ? null : snapshot.getItemType(position);
+    }
+
+    @Override
+    public void forgetItem(long itemType) {
+        ignoreItemTypes.add(itemType);
+    }
+
+    @Override
+    public int getItemCount() {
+        // replaced snapshot containers are both removed and added
+        return snapshot.getItemCount() - removed.size() + added.size();
+    }
+
+    /**
+     * Walks the item types of the snapshot, O(T) for T item types in it
+     */
+    @Override
+    public int getItemTypeCount() {
+        int count = 0;
+        for (int position = 0; position < snapshot.getTypeCount(); position++) {
+            long itemType = snapshot.getTypeItemType(position);
+            if (snapshot.getTypeContainerCount(position) > 0 && !touchedItemTypes.contains(itemType)
+                    && !snapshot.isTypeIgnored(position) && !ignoreItemTypes.contains(itemType)) {
+                count++;
+            }
+        }
+        for (ItemTypeAggregate aggregate : itemTypeIndex.values()) {
+            if (!isIgnored(aggregate.getItemType())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Walks the item types of the snapshot, O(T) for T item types in it
+     */
+    @Override
+    public int getForgottenItemTypeCount() {
+        int count = ignoreItemTypes.size();
+        for (int position = 0; position < snapshot.getTypeCount(); position++) {
+            if (snapshot.isTypeIgnored(position) && !ignoreItemTypes.contains(snapshot.getTypeItemType(position))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return every stored container, decoded from the snapshot where it has not changed since
+     */
+    private List<SmartFridgeItem> getContents() {
+        List<SmartFridgeItem> contents = new ArrayList<>(snapshot.getItemCount() + added.size());
+        for (int position = 0; position < snapshot.getItemCount(); position++) {
+            String itemUUID = snapshot.getItemUUID(position);
+            if (removed.contains(itemUUID)) {
+                continue;
+            }
+            contents.add(new StandardSmartFridgeItem(
+                    snapshot.getItemType(position),
+                    itemUUID,
+                    snapshot.getName(position),
+                    snapshot.getFillFactor(position)
+            ));
+        }
+        contents.addAll(added.values());
+        return contents;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder toStringValue = new StringBuilder();
+
+        List<SmartFridgeItem> contents = getContents();
+        for (SmartFridgeItem item : contents) {
+            toStringValue.append("\n").append(item);
+        }
+        if (!contents.isEmpty()) {
+            toStringValue.append("\n");
+        }
+        return "MappedSmartFridgeManager{" + toStringValue + "}";
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return number of containers kept on the heap
+     */
+    int getAddedCount() {
+        return added.size();
+    }
+}
@@ -0,0 +1,412 @@
+package com.example.demo.smartfridge;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Fixed layout snapshot of the fridge contents that is queried in place through a
+ * MappedByteBuffer, so opening it costs a header check instead of rebuilding one object per
+ * container. All fields are big endian:
+ *
+ *      header:     int magic, int version, int itemCount, int itemIndexCapacity,
+ *                  int typeCount, int typeIndexCapacity, long itemsOffset, long itemIndexOffset,
+ *                  long typesOffset, long typeIndexOffset, long stringsOffset
+ *      items:      (long itemType, double fillFactor, long uuidHigh, long uuidLow,
+ *                  int nameOffset, int keyKind, int keyHash, int unused)...
+ *      item index: open addressing table of item position + 1, 0 marks a free bucket
+ *      types:      (long itemType, int count, int nonEmptyCount, double nonEmptySum,
+ *                  int ignored, int unused)... ordered by fill factor, then itemType
+ *      type index: open addressing table of type position + 1, 0 marks a free bucket
+ *      strings:    (int length, UTF-8 bytes)...
+ *
+ * Canonical itemUUIDs are stored in uuidHigh/uuidLow, any other itemUUID is stored in the strings
+ * area and uuidHigh holds its offset. A nameOffset of -1 stands for a null name. Types that are
+ * ignored without any stored container have a count of 0.
+ *
+ * The file is a single mapping, which limits a snapshot to 2 GB. Unlike SmartFridgeSnapshot the
+ * content is not checksummed, as that would mean reading the whole file on open.
+ */
+class MappedSmartFridgeSnapshot {
+    private static final int MAGIC = 0x53464d31;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int ITEM_SIZE = 48;
+    private static final int TYPE_SIZE = 32;
+
+    private static final int CANONICAL_KEY = 1;
+    private static final int STRING_KEY = 2;
+
+    private final MappedByteBuffer buffer;
+    private final int itemCount;
+    private final int itemIndexCapacity;
+    private final int typeCount;
+    private final int typeIndexCapacity;
+    private final int itemsOffset;
+    private final int itemIndexOffset;
+    private final int typesOffset;
+    private final int typeIndexOffset;
+    private final int stringsOffset;
+
+    private MappedSmartFridgeSnapshot(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.itemCount = buffer.getInt(8);
+        this.itemIndexCapacity = buffer.getInt(12);
+        this.typeCount = buffer.getInt(16);
+        this.typeIndexCapacity = buffer.getInt(20);
+        this.itemsOffset = (int) buffer.getLong(24);
+        this.itemIndexOffset = (int) buffer.getLong(32);
+        this.typesOffset = (int) buffer.getLong(40);
+        this.typeIndexOffset = (int) buffer.getLong(48);
+        this.stringsOffset = (int) buffer.getLong(56);
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableCapacity(int size) {
+        int capacity = 1;
+        while (capacity < size * 2L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Maps a snapshot file. The mapping stays valid after the file is closed and is released
+     * once the snapshot is garbage collected.
+     *
+     * @param file
+     * @return the mapped snapshot
+     *
+     * @throws IllegalArgumentException if the file is not a mapped snapshot
+     */
+    static MappedSmartFridgeSnapshot open(Path file) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("MappedSmartFridgeSnapshot.open: not a mapped snapshot " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("MappedSmartFridgeSnapshot.open: not a mapped snapshot " + file);
+        }
+        MappedSmartFridgeSnapshot snapshot = new MappedSmartFridgeSnapshot(buffer);
+        if (!snapshot.hasValidLayout()) {
+            throw new IllegalArgumentException("MappedSmartFridgeSnapshot.open: damaged mapped snapshot " + file);
+        }
+        return snapshot;
+    }
+
+    private boolean hasValidLayout() {
+        return itemCount >= 0 && typeCount >= 0
+                && Integer.bitCount(itemIndexCapacity) == 1 && itemIndexCapacity >= itemCount * 2L
+                && Integer.bitCount(typeIndexCapacity) == 1 && typeIndexCapacity >= typeCount * 2L
+                && itemsOffset == HEADER_SIZE
+                && itemIndexOffset == itemsOffset + (long) itemCount * ITEM_SIZE
+                && typesOffset == itemIndexOffset + (long) itemIndexCapacity * 4
+                && typeIndexOffset == typesOffset + (long) typeCount * TYPE_SIZE
+                && stringsOffset == typeIndexOffset + (long) typeIndexCapacity * 4
+                && stringsOffset <= buffer.capacity();
+    }
+
+    /**
+     * Writes a snapshot to a temporary file and moves it into place
+     *
+     * @param file
+     * @param items stored containers, one per itemUUID
+     * @param ignoreItemTypes
+     *
+     * @throws IllegalArgumentException if the snapshot would not fit into a single mapping
+     */
+    static void write(Path file, Collection<SmartFridgeItem> items, Set<Long> ignoreItemTypes) {
+        int itemCount = items.size();
+        long[] itemTypes = new long[itemCount];
+        double[] fillFactors = new double[itemCount];
+        long[] uuidHighs = new long[itemCount];
+        long[] uuidLows = new long[itemCount];
+        int[] nameOffsets = new int[itemCount];
+        int[] keyKinds = new int[itemCount];
+        int[] keyHashes = new int[itemCount];
+
+        List<byte[]> strings = new ArrayList<>();
+        long stringsSize = 0;
+        ItemTypeIndex itemTypeIndex = new ItemTypeIndex();
+        int position = 0;
+        for (SmartFridgeItem item : items) {
+            String itemUUID = item.getItemUUID();
+            itemTypes[position] = item.getItemType();
+            fillFactors[position] = item.getFillFactorAsDouble();
+            if (Uuids.isCanonical(itemUUID)) {
+                keyKinds[position] = CANONICAL_KEY;
+                uuidHighs[position] = Uuids.mostSignificantBits(itemUUID);
+                uuidLows[position] = Uuids.leastSignificantBits(itemUUID);
+                keyHashes[position] = Uuids.hash(uuidHighs[position], uuidLows[position]);
+            } else {
+                byte[] bytes = itemUUID.getBytes(StandardCharsets.UTF_8);
+                keyKinds[position] = STRING_KEY;
+                uuidHighs[position] = stringsSize;
+                keyHashes[position] = itemUUID.hashCode();
+                strings.add(bytes);
+                stringsSize += 4 + bytes.length;
+            }
+            if (item.getName() == null) {
+                nameOffsets[position] = -1;
+            } else {
+                byte[] bytes = item.getName().getBytes(StandardCharsets.UTF_8);
+                nameOffsets[position] = (int) stringsSize;
+                strings.add(bytes);
+                stringsSize += 4 + bytes.length;
+            }
+            itemTypeIndex.add(item);
+            position++;
+        }
+
+        List<ItemTypeAggregate> types = new ArrayList<>(itemTypeIndex.values());
+        for (long itemType : ignoreItemTypes) {
+            if (itemTypeIndex.get(itemType) == null) {
+                types.add(new ItemTypeAggregate(itemType));
+            }
+        }
+        types.sort(ItemTypeIndex.BY_FILL_FACTOR);
+
+        int itemIndexCapacity = tableCapacity(itemCount);
+        int typeIndexCapacity = tableCapacity(types.size());
+        long itemsOffset = HEADER_SIZE;
+        long itemIndexOffset = itemsOffset + (long) itemCount * ITEM_SIZE;
+        long typesOffset = itemIndexOffset + (long) itemIndexCapacity * 4;
+        long typeIndexOffset = typesOffset + (long) types.size() * TYPE_SIZE;
+        long stringsOffset = typeIndexOffset + (long) typeIndexCapacity * 4;
+        if (stringsOffset + stringsSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("MappedSmartFridgeSnapshot.write: snapshot exceeds 2 GB");
+        }
+
+        int[] itemIndex = new int[itemIndexCapacity];
+        for (position = 0; position < itemCount; position++) {
+            int bucket = mix(keyHashes[position]) & (itemIndexCapacity - 1);
+            while (itemIndex[bucket] != 0) {
+                bucket = (bucket + 1) & (itemIndexCapacity - 1);
+            }
+            itemIndex[bucket] = position + 1;
+        }
+        int[] typeIndex = new int[typeIndexCapacity];
+        for (position = 0; position < types.size(); position++) {
+            int bucket = ItemTypeTable.hash(types.get(position).getItemType()) & (typeIndexCapacity - 1);
+            while (typeIndex[bucket] != 0) {
+                bucket = (bucket + 1) & (typeIndexCapacity - 1);
+            }
+            typeIndex[bucket] = position + 1;
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temporary.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(itemCount);
+            out.writeInt(itemIndexCapacity);
+            out.writeInt(types.size());
+            out.writeInt(typeIndexCapacity);
+            out.writeLong(itemsOffset);
+            out.writeLong(itemIndexOffset);
+            out.writeLong(typesOffset);
+            out.writeLong(typeIndexOffset);
+            out.writeLong(stringsOffset);
+
+            for (position = 0; position < itemCount; position++) {
+                out.writeLong(itemTypes[position]);
+                out.writeDouble(fillFactors[position]);
+                out.writeLong(uuidHighs[position]);
+                out.writeLong(uuidLows[position]);
+                out.writeInt(nameOffsets[position]);
+                out.writeInt(keyKinds[position]);
+                out.writeInt(keyHashes[position]);
+                out.writeInt(0);
+            }
+            for (int bucket : itemIndex) {
+                out.writeInt(bucket);
+            }
+            for (ItemTypeAggregate type : types) {
+                out.writeLong(type.getItemType());
+                out.writeInt(type.getCount());
+                out.writeInt(type.getNonEmptyCount());
+                out.writeDouble(type.getNonEmptySum());
+                out.writeInt(ignoreItemTypes.contains(type.getItemType()) ? 1 : 0);
+                out.writeInt(0);
+            }
+            for (int bucket : typeIndex) {
+                out.writeInt(bucket);
+            }
+            for (byte[] bytes : strings) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @param itemUUID
+     * @return the position of the container, or -1 if it is not in the snapshot
+     */
+    int findItem(String itemUUID) {
+        int mask = itemIndexCapacity - 1;
+        if (Uuids.isCanonical(itemUUID)) {
+            long high = Uuids.mostSignificantBits(itemUUID);
+            long low = Uuids.leastSignificantBits(itemUUID);
+            int hash = Uuids.hash(high, low);
+            for (int bucket = mix(hash) & mask; ; bucket = (bucket + 1) & mask) {
+                int position = buffer.getInt(itemIndexOffset + bucket * 4) - 1;
+                if (position < 0) {
+                    return -1;
+                }
+                int item = itemsOffset + position * ITEM_SIZE;
+                if (buffer.getInt(item + 40) == hash && buffer.getInt(item + 36) == CANONICAL_KEY
+                        && buffer.getLong(item + 16) == high && buffer.getLong(item + 24) == low) {
+                    return position;
+                }
+            }
+        }
+
+        int hash = itemUUID.hashCode();
+        byte[] bytes = null;
+        for (int bucket = mix(hash) & mask; ; bucket = (bucket + 1) & mask) {
+            int position = buffer.getInt(itemIndexOffset + bucket * 4) - 1;
+            if (position < 0) {
+                return -1;
+            }
+            int item = itemsOffset + position * ITEM_SIZE;
+            if (buffer.getInt(item + 40) == hash && buffer.getInt(item + 36) == STRING_KEY) {
+                if (bytes == null) {
+                    bytes = itemUUID.getBytes(StandardCharsets.UTF_8);
+                }
+                if (stringEquals((int) buffer.getLong(item + 16), bytes)) {
+                    return position;
+                }
+            }
+        }
+    }
+
+    private boolean stringEquals(int offset, byte[] bytes) {
+        int start = stringsOffset + offset;
+        if (buffer.getInt(start) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(start + 4 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String getString(int offset) {
+        int start = stringsOffset + offset;
+        byte[] bytes = new byte[buffer.getInt(start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + 4 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    long getItemType(int position) {
+        return buffer.getLong(itemsOffset + position * ITEM_SIZE);
+    }
+
+    double getFillFactor(int position) {
+        return buffer.getDouble(itemsOffset + position * ITEM_SIZE + 8);
+    }
+
+    String getItemUUID(int position) {
+        int item = itemsOffset + position * ITEM_SIZE;
+        if (buffer.getInt(item + 36) == CANONICAL_KEY) {
+            return Uuids.toString(buffer.getLong(item + 16), buffer.getLong(item + 24));
+        }
+        return getString((int) buffer.getLong(item + 16));
+    }
+
+    String getName(int position) {
+        int nameOffset = buffer.getInt(itemsOffset + position * ITEM_SIZE + 32);
+        return nameOffset < 0 ? null : getString(nameOffset);
+    }
+
+    int getTypeCount() {
+        return typeCount;
+    }
+
+    /**
+     * @param itemType
+     * @return the position of the item type, or -1 if it is not in the snapshot
+     */
+    int findType(long itemType) {
+        int mask = typeIndexCapacity - 1;
+        for (int bucket = ItemTypeTable.hash(itemType) & mask; ; bucket = (bucket + 1) & mask) {
+            int position = buffer.getInt(typeIndexOffset + bucket * 4) - 1;
+            if (position < 0 || getTypeItemType(position) == itemType) {
+                return position;
+            }
+        }
+    }
+
+    long getTypeItemType(int position) {
+        return buffer.getLong(typesOffset + position * TYPE_SIZE);
+    }
+
+    /**
+     * @param position
+     * @return the number of containers of the item type, empty ones included
+     */
+    int getTypeContainerCount(int position) {
+        return buffer.getInt(typesOffset + position * TYPE_SIZE + 8);
+    }
+
+    /**
+     * @param position
+     * @return the aggregate fill factor, computed the same way as {@link ItemTypeAggregate#getFillFactor()}
+     */
+    double getTypeFillFactor(int position) {
+        int type = typesOffset + position * TYPE_SIZE;
+        int nonEmptyCount = buffer.getInt(type + 12);
+        if (nonEmptyCount == 0) {
+            return 0.0d;
+        }
+        return buffer.getDouble(type + 16) / nonEmptyCount;
+    }
+
+    boolean isTypeIgnored(int position) {
+        return buffer.getInt(typesOffset + position * TYPE_SIZE + 24) != 0;
+    }
+
+    ItemTypeAggregate getTypeAggregate(int position) {
+        int type = typesOffset + position * TYPE_SIZE;
+        return new ItemTypeAggregate(
+                buffer.getLong(type),
+                buffer.getInt(type + 8),
+                buffer.getInt(type + 12),
+                buffer.getDouble(type + 16)
+        );
+    }
+}
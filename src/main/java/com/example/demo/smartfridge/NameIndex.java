@@ -0,0 +1,180 @@
+package com.example.demo.smartfridge;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongPredicate;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Prefix index over the names of the stored containers, for type-ahead search.
+ *
+ * Every distinct name is entered once per word under the lower case rest of the name starting at
+ * that word, "Oat Milk" under "oat milk" and "milk", in a sorted dictionary, so a prefix query is
+ * a range walk that only touches matching names. Per name the index counts the stored containers
+ * of each item type, so it grows with the number of distinct names and item types, not with the
+ * number of containers. A name is dropped from the dictionary with its last container.
+ *
+ * Thread safe, adding and removing containers of different names does not contend, apart from
+ * the first container of a name and the last one, which enter and drop the name one at a time.
+ */
+class NameIndex {
+    // word key -> names that have a word starting with the key, only changed while holding its monitor
+    private final ConcurrentNavigableMap<String, NavigableSet<String>> namesByKey = new ConcurrentSkipListMap<>();
+    // name -> itemType -> number of stored containers, only changed inside the per name compute
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Long, Integer>> itemTypesByName = new ConcurrentHashMap<>();
+
+    void add(String name, long itemType) {
+        if (name == null) {
+            return;
+        }
+        itemTypesByName.compute(name, (key, counts) -> {
+            if (counts == null) {
+                register(name);
+                counts = new ConcurrentSkipListMap<>();
+            }
+            counts.merge(itemType, 1, Integer::sum);
+            return counts;
+        });
+    }
+
+    void remove(String name, long itemType) {
+        if (name == null) {
+            return;
+        }
+        itemTypesByName.computeIfPresent(name, (key, counts) -> {
+            counts.computeIfPresent(itemType, (type, count) -> count == 1 ? null : count - 1);
+            if (counts.isEmpty()) {
+                unregister(name);
+                return null;
+            }
+            return counts;
+        });
+    }
+
+    /**
+     * Moves a container from the name and item type it was stored under to its new ones. A
+     * container that is only refilled keeps both, which leaves the index as it is.
+     *
+     * @param replaced the container previously stored under the itemUUID, or null
+     * @param item
+     */
+    void update(SmartFridgeItem replaced, SmartFridgeItem item) {
+        if (replaced != null) {
+            if (replaced.getItemType() == item.getItemType() && Objects.equals(replaced.getName(), item.getName())) {
+                return;
+            }
+            remove(replaced.getName(), replaced.getItemType());
+        }
+        add(item.getName(), item.getItemType());
+    }
+
+    private void register(String name) {
+        synchronized (namesByKey) {
+            for (String key : keys(name)) {
+                namesByKey.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>()).add(name);
+            }
+        }
+    }
+
+    private void unregister(String name) {
+        synchronized (namesByKey) {
+            for (String key : keys(name)) {
+                NavigableSet<String> names = namesByKey.get(key);
+                names.remove(name);
+                if (names.isEmpty()) {
+                    namesByKey.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the lower case rest of the name starting at each of its words
+     */
+    private static List<String> keys(String name) {
+        String normalized = normalize(name);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            if (Character.isLetterOrDigit(normalized.charAt(i)) && (i == 0 || !Character.isLetterOrDigit(normalized.charAt(i - 1)))) {
+                keys.add(normalized.substring(i));
+            }
+        }
+        return keys;
+    }
+
+    static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param prefix matched against the start of every word of a name, ignoring case
+     * @param limit maximum number of item types returned
+     * @param include decides which item types are returned, e.g. not the forgotten ones
+     * @return matching item types with the name they matched by, ordered by the matching word,
+     *      then by name and item type. An item type stored under several matching names is
+     *      returned once.
+     */
+    Map<Long, String> find(String prefix, int limit, LongPredicate include) {
+        String key = normalize(prefix).trim();
+        Map<Long, String> found = new LinkedHashMap<>();
+        for (Map.Entry<String, NavigableSet<String>> entry : namesByKey.tailMap(key, true).entrySet()) {
+            if (!entry.getKey().startsWith(key)) {
+                break;
+            }
+            for (String name : entry.getValue()) {
+                ConcurrentNavigableMap<Long, Integer> counts = itemTypesByName.get(name);
+                if (counts == null) {
+                    // dropped with its last container since the key was read
+                    continue;
+                }
+                for (Long itemType : counts.keySet()) {
+                    if (!found.containsKey(itemType) && include.test(itemType)) {
+                        found.put(itemType, name);
+                        if (found.size() == limit) {
+                            return found;
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Converts the result of {@link #find(String, int, LongPredicate)} to the
+     * format of {@link SmartFridgeManager#findItems(String, int)}
+     */
+    static Object[] toItems(Map<Long, String> found, LongToDoubleFunction fillFactor) {
+        Object[] items = new Object[found.size()];
+        int i = 0;
+        for (Map.Entry<Long, String> entry : found.entrySet()) {
+            items[i++] = new Object[]{entry.getKey(), entry.getValue(), fillFactor.applyAsDouble(entry.getKey())};
+        }
+        return items;
+    }
+
+    /**
+     * Checks the arguments of {@link SmartFridgeManager#findItems(String, int)}
+     */
+    static void checkArguments(String caller, String prefix, int limit) {
+        if (prefix == null) {
+            throw new IllegalArgumentException(caller + ": String namePrefix must not be null");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException(caller + ": int limit must be >= 1");
+        }
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return number of word keys
+     */
+    int getKeyCount() {
+        return namesByKey.size();
+    }
+}
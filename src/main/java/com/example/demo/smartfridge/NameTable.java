@@ -0,0 +1,43 @@
+package com.example.demo.smartfridge;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns item names to dense ids. Fridges report the same few names over and over, so each
+ * container only needs to remember an int. Names are kept for the lifetime of the table.
+ *
+ * Not thread safe.
+ */
+class NameTable {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+
+    /**
+     * @param name
+     * @return the id of the name, assigned on first use
+     */
+    int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        int newId = ids.size();
+        if (newId == names.length) {
+            names = Arrays.copyOf(names, newId * 2);
+        }
+        names[newId] = name;
+        ids.put(name, newId);
+        return newId;
+    }
+
+    String getName(int id) {
+        return names[id];
+    }
+
+    int size() {
+        return ids.size();
+    }
+}
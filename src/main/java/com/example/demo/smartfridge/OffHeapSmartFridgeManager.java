@@ -0,0 +1,398 @@
+package com.example.demo.smartfridge;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SmartFridgeManager that keeps its containers outside the Java heap, for inventories so large
+ * that one object per container makes for a multi-GB heap and long collections.
+ *
+ * Each container is a fixed size record in direct ByteBuffers allocated in chunks of
+ * SLOTS_PER_CHUNK, so growing never copies the records:
+ *
+ *      offset  0  long    itemUUID, most significant bits
+ *      offset  8  long    itemUUID, least significant bits
+ *      offset 16  double  fillFactor
+ *      offset 24  int     ItemTypeTable entry, or the next free slot of a free record
+ *      offset 28  int     NameTable id
+ *      offset 32  int     hash of the itemUUID
+ *      offset 36  int     FREE, UUID_KEY or STRING_KEY
+ *
+ * Records of removed containers are chained into a free list through their item type field and
+ * handed out again before the chunks grow. The open addressing index over the records is a
+ * direct buffer as well. What stays on the heap is per item type and per name (ItemTypeTable,
+ * NameTable), the array of chunks and the itemUUIDs that are not canonical UUIDs, see
+ * {@link Uuids#isCanonical(String)}, which are kept as Strings by slot.
+ *
+ * Direct buffers are released once the manager is garbage collected, like any other direct
+ * buffer, so -XX:MaxDirectMemorySize has to leave room for about RECORD_BYTES + 8 bytes per
+ * container.
+ *
+ * Not thread safe.
+ */
+public class OffHeapSmartFridgeManager implements SmartFridgeManager {
+    static final int RECORD_BYTES = 40;
+    static final int SLOTS_PER_CHUNK = 1 << 16;
+    private static final int INITIAL_BUCKETS = 1 << 10;
+
+    private static final int UUID_HIGH = 0;
+    private static final int UUID_LOW = 8;
+    private static final int FILL_FACTOR = 16;
+    private static final int TYPE_ENTRY = 24;
+    private static final int NAME_ID = 28;
+    private static final int KEY_HASH = 32;
+    private static final int KEY_KIND = 36;
+
+    private static final int FREE = 0;
+    private static final int UUID_KEY = 1;
+    private static final int STRING_KEY = 2;
+
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private int slotsUsed;
+    private int size;
+    // -1 when there is no free record
+    private int freeHead = -1;
+
+    // slot + 1, 0 marks a free bucket
+    private IntBuffer index;
+    private int indexMask;
+
+    private final Map<Integer, String> stringKeys = new HashMap<>();
+    private final ItemTypeTable itemTypeTable = new ItemTypeTable();
+    private final NameTable nameTable = new NameTable();
+
+    public OffHeapSmartFridgeManager() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize number of containers to allocate the index for up front, so it is not
+     *      rebuilt while the fridge fills up
+     */
+    public OffHeapSmartFridgeManager(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("OffHeapSmartFridgeManager: expectedSize must be >= 0");
+        }
+        int buckets = INITIAL_BUCKETS;
+        while (buckets < expectedSize * 2L) {
+            buckets *= 2;
+        }
+        allocateIndex(buckets);
+    }
+
+    private void allocateIndex(int buckets) {
+        index = ByteBuffer.allocateDirect(buckets * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        indexMask = buckets - 1;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return chunks[slot / SLOTS_PER_CHUNK];
+    }
+
+    private static int offset(int slot) {
+        return (slot % SLOTS_PER_CHUNK) * RECORD_BYTES;
+    }
+
+    @Override
+    public void handleItemRemoved(String itemUUID) {
+        int bucket = findBucket(itemUUID);
+        if (bucket < 0) {
+            return;
+        }
+        int slot = index.get(bucket) - 1;
+        removeBucket(bucket);
+
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        itemTypeTable.remove(chunk.getInt(offset + TYPE_ENTRY), chunk.getDouble(offset + FILL_FACTOR));
+        if (chunk.getInt(offset + KEY_KIND) == STRING_KEY) {
+            stringKeys.remove(slot);
+        }
+        chunk.putInt(offset + KEY_KIND, FREE);
+        chunk.putInt(offset + TYPE_ENTRY, freeHead);
+        freeHead = slot;
+        size--;
+    }
+
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, Double fillFactor) {
+        handleItemAdded(itemType, itemUUID, name, fillFactor.doubleValue());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the fillFactor is less than 0,
+     *      greater than 1 or NaN
+     */
+    @Override
+    public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+        if (!(fillFactor >= 0.0d && fillFactor <= 1.0d)) {
+            throw new IllegalArgumentException(
+                    "OffHeapSmartFridgeManager.handleItemAdded: double fillFactor must be >= 0.0 or <= 1.0"
+            );
+        }
+
+        boolean uuidKey = Uuids.isCanonical(itemUUID);
+        long high = 0L;
+        long low = 0L;
+        int hash;
+        int bucket;
+        if (uuidKey) {
+            high = Uuids.mostSignificantBits(itemUUID);
+            low = Uuids.leastSignificantBits(itemUUID);
+            hash = Uuids.hash(high, low);
+            bucket = findBucket(high, low, hash);
+        } else {
+            hash = itemUUID.hashCode();
+            bucket = findBucket(itemUUID, hash);
+        }
+
+        int slot;
+        ByteBuffer chunk;
+        int offset;
+        if (bucket >= 0) {
+            slot = index.get(bucket) - 1;
+            chunk = chunk(slot);
+            offset = offset(slot);
+            itemTypeTable.remove(chunk.getInt(offset + TYPE_ENTRY), chunk.getDouble(offset + FILL_FACTOR));
+        } else {
+            if (size + 1 > (indexMask + 1) / 2) {
+                growIndex();
+            }
+            slot = allocateSlot();
+            chunk = chunk(slot);
+            offset = offset(slot);
+            if (uuidKey) {
+                chunk.putLong(offset + UUID_HIGH, high);
+                chunk.putLong(offset + UUID_LOW, low);
+                chunk.putInt(offset + KEY_KIND, UUID_KEY);
+            } else {
+                stringKeys.put(slot, itemUUID);
+                chunk.putInt(offset + KEY_KIND, STRING_KEY);
+            }
+            chunk.putInt(offset + KEY_HASH, hash);
+            insertBucket(slot, hash);
+            size++;
+        }
+
+        int typeEntry = itemTypeTable.findOrCreate(itemType);
+        chunk.putInt(offset + TYPE_ENTRY, typeEntry);
+        chunk.putDouble(offset + FILL_FACTOR, fillFactor);
+        chunk.putInt(offset + NAME_ID, nameTable.intern(name));
+        itemTypeTable.add(typeEntry, fillFactor);
+    }
+
+    private int allocateSlot() {
+        if (freeHead >= 0) {
+            int slot = freeHead;
+            freeHead = chunk(slot).getInt(offset(slot) + TYPE_ENTRY);
+            return slot;
+        }
+        if (slotsUsed == chunks.length * SLOTS_PER_CHUNK) {
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = ByteBuffer.allocateDirect(SLOTS_PER_CHUNK * RECORD_BYTES)
+                    .order(ByteOrder.nativeOrder());
+        }
+        return slotsUsed++;
+    }
+
+    private void growIndex() {
+        allocateIndex((indexMask + 1) * 2);
+        for (int slot = 0; slot < slotsUsed; slot++) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            if (chunk.getInt(offset + KEY_KIND) != FREE) {
+                insertBucket(slot, chunk.getInt(offset + KEY_HASH));
+            }
+        }
+    }
+
+    private int findBucket(String itemUUID) {
+        if (Uuids.isCanonical(itemUUID)) {
+            long high = Uuids.mostSignificantBits(itemUUID);
+            long low = Uuids.leastSignificantBits(itemUUID);
+            return findBucket(high, low, Uuids.hash(high, low));
+        }
+        return findBucket(itemUUID, itemUUID.hashCode());
+    }
+
+    private int findBucket(String itemUUID, int hash) {
+        for (int bucket = mix(hash) & indexMask; ; bucket = (bucket + 1) & indexMask) {
+            int slot = index.get(bucket) - 1;
+            if (slot < 0) {
+                return -1;
+            }
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            if (chunk.getInt(offset + KEY_HASH) == hash && chunk.getInt(offset + KEY_KIND) == STRING_KEY
+                    && itemUUID.equals(stringKeys.get(slot))) {
+                return bucket;
+            }
+        }
+    }
+
+    private int findBucket(long high, long low, int hash) {
+        for (int bucket = mix(hash) & indexMask; ; bucket = (bucket + 1) & indexMask) {
+            int slot = index.get(bucket) - 1;
+            if (slot < 0) {
+                return -1;
+            }
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            if (chunk.getInt(offset + KEY_HASH) == hash && chunk.getInt(offset + KEY_KIND) == UUID_KEY
+                    && chunk.getLong(offset + UUID_HIGH) == high && chunk.getLong(offset + UUID_LOW) == low) {
+                return bucket;
+            }
+        }
+    }
+
+    private String getItemUUID(int slot) {
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        if (chunk.getInt(offset + KEY_KIND) == STRING_KEY) {
+            return stringKeys.get(slot);
+        }
+        return Uuids.toString(chunk.getLong(offset + UUID_HIGH), chunk.getLong(offset + UUID_LOW));
+    }
+
+    private void insertBucket(int slot, int hash) {
+        int bucket = mix(hash) & indexMask;
+        while (index.get(bucket) != 0) {
+            bucket = (bucket + 1) & indexMask;
+        }
+        index.put(bucket, slot + 1);
+    }
+
+    /**
+     * Linear probing delete, see ArraySmartFridgeManager
+     */
+    private void removeBucket(int bucket) {
+        int hole = bucket;
+        index.put(hole, 0);
+        for (int next = (hole + 1) & indexMask; index.get(next) != 0; next = (next + 1) & indexMask) {
+            int slot = index.get(next) - 1;
+            int home = mix(chunk(slot).getInt(offset(slot) + KEY_HASH)) & indexMask;
+            boolean reachable = hole <= next
+                    ? hole < home && home <= next
+                    : hole < home || home <= next;
+            if (!reachable) {
+                index.put(hole, index.get(next));
+                index.put(next, 0);
+                hole = next;
+            }
+        }
+    }
+
+    @Override
+    public Object[] getItems(Double fillFactor) {
+        ItemFillResult result = new ItemFillResult();
+        visitItems(fillFactor, result);
+        return result.toArray();
+    }
+
+    @Override
+    public void visitItems(double fillFactor, ItemFillVisitor visitor) {
+        for (int entry = 0; entry < itemTypeTable.size(); entry++) {
+            if (itemTypeTable.isIgnored(entry) || itemTypeTable.getCount(entry) == 0) {
+                continue;
+            }
+
+            double fill = itemTypeTable.getFillFactor(entry);
+            if (fill <= fillFactor) {
+                visitor.visit(itemTypeTable.getItemType(entry), fill);
+            }
+        }
+    }
+
+    @Override
+    public Double getFillFactor(long itemType) {
+        return getFillFactorAsDouble(itemType);
+    }
+
+    @Override
+    public double getFillFactorAsDouble(long itemType) {
+        int entry = itemTypeTable.find(itemType);
+        if (entry < 0) {
+            return 0.0d;
+        }
+        return itemTypeTable.getFillFactor(entry);
+    }
+
+    @Override
+    public Long getItemType(String itemUUID) {
+        int bucket = findBucket(itemUUID);
+        if (bucket < 0) {
+            return null;
+        }
+        int slot = index.get(bucket) - 1;
+        return itemTypeTable.getItemType(chunk(slot).getInt(offset(slot) + TYPE_ENTRY));
+    }
+
+    @Override
+    public void forgetItem(long itemType) {
+        itemTypeTable.setIgnored(itemTypeTable.findOrCreate(itemType), true);
+    }
+
+    @Override
+    public int getItemCount() {
+        return size;
+    }
+
+    @Override
+    public int getItemTypeCount() {
+        return itemTypeTable.getStockedCount();
+    }
+
+    @Override
+    public int getForgottenItemTypeCount() {
+        return itemTypeTable.getIgnoredCount();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder toStringValue = new StringBuilder();
+
+        for (int slot = 0; slot < slotsUsed; slot++) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            if (chunk.getInt(offset + KEY_KIND) == FREE) {
+                continue;
+            }
+            StandardSmartFridgeItem item = new StandardSmartFridgeItem(
+                    itemTypeTable.getItemType(chunk.getInt(offset + TYPE_ENTRY)),
+                    getItemUUID(slot),
+                    nameTable.getName(chunk.getInt(offset + NAME_ID)),
+                    chunk.getDouble(offset + FILL_FACTOR)
+            );
+            toStringValue.append("\n").append(item);
+        }
+        if (size > 0) {
+            toStringValue.append("\n");
+        }
+        return "OffHeapSmartFridgeManager{" + toStringValue + "}";
+    }
+
+    /**
+     * for unit testing
+     *
+     * @return number of records handed out, in use or free
+     */
+    int getSlotsUsed() {
+        return slotsUsed;
+    }
+
+    /**
+     * @return bytes of direct memory held for records and the index
+     */
+    public long getOffHeapBytes() {
+        return (long) chunks.length * SLOTS_PER_CHUNK * RECORD_BYTES + (indexMask + 1L) * 4L;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.demo.smartfridge;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single handleItemAdded() or handleItemRemoved() notification, used to hand a whole inventory
+ * sweep to {@link SmartFridgeManager#applyEvents(List)} at once.
+ *
+ * Hardware that numbers its events can attach the number with {@link #withSequence(long)}, which
+ * lets a {@link DeduplicatingSmartFridgeManager} tell retries and late deliveries apart from new
+ * events. Other managers ignore it.
+ */
+public final class SmartFridgeEvent {
+
+    public enum Type {
+        ADDED,
+        REMOVED
+    }
+
+    /**
+     * Sequence of an event that was not numbered
+     */
+    public static final long NO_SEQUENCE = -1L;
+
+    private final Type type;
+    private final long itemType;
+    private final String itemUUID;
+    private final String name;
+    private final double fillFactor;
+    private final long sequence;
+
+    private SmartFridgeEvent(Type type, long itemType, String itemUUID, String name, double fillFactor, long sequence) {
+        this.type = type;
+        this.itemType = itemType;
+        this.itemUUID = itemUUID;
+        this.name = name;
+        this.fillFactor = fillFactor;
+        this.sequence = sequence;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the itemUUID is null or the fillFactor is not
+     *      between 0 and 1
+     */
+    public static SmartFridgeEvent added(long itemType, String itemUUID, String name, double fillFactor) {
+        if (itemUUID == null) {
+            throw new IllegalArgumentException("SmartFridgeEvent.added: itemUUID must not be null");
+        }
+        if (!(fillFactor >= 0.0d && fillFactor <= 1.0d)) {
+            throw new IllegalArgumentException(
+                    "SmartFridgeEvent.added: double fillFactor must be >= 0.0 or <= 1.0"
+            );
+        }
+        return new SmartFridgeEvent(Type.ADDED, itemType, itemUUID, name, fillFactor, NO_SEQUENCE);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the itemUUID is null
+     */
+    public static SmartFridgeEvent removed(String itemUUID) {
+        if (itemUUID == null) {
+            throw new IllegalArgumentException("SmartFridgeEvent.removed: itemUUID must not be null");
+        }
+        return new SmartFridgeEvent(Type.REMOVED, 0L, itemUUID, null, 0.0d, NO_SEQUENCE);
+    }
+
+    /**
+     * @param sequence number the hardware gave the event, increasing with every event it sends
+     *      for the itemUUID
+     * @return the same event, numbered
+     *
+     * @throws IllegalArgumentException if the sequence is less than 0
+     */
+    public SmartFridgeEvent withSequence(long sequence) {
+        if (sequence < 0L) {
+            throw new IllegalArgumentException("SmartFridgeEvent.withSequence: long sequence must be >= 0");
+        }
+        return new SmartFridgeEvent(type, itemType, itemUUID, name, fillFactor, sequence);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getItemType() {
+        return itemType;
+    }
+
+    public String getItemUUID() {
+        return itemUUID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getFillFactor() {
+        return fillFactor;
+    }
+
+    /**
+     * @return the number given with {@link #withSequence(long)}, or NO_SEQUENCE
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Delivers this event through the single event handlers of the manager
+     *
+     * @param manager
+     */
+    public void applyTo(SmartFridgeManager manager) {
+        if (type == Type.ADDED) {
+            manager.handleItemAdded(itemType, itemUUID, name, fillFactor);
+        } else {
+            manager.handleItemRemoved(itemUUID);
+        }
+    }
+
+    /**
+     * Only the last event for an itemUUID decides its final state, so earlier events for the same
+     * itemUUID can be dropped from a batch.
+     *
+     * @param events
+     * @return the last event of every itemUUID in the batch
+     *
+     * @throws IllegalArgumentException if the batch contains a null event
+     */
+    static Collection<SmartFridgeEvent> coalesce(List<SmartFridgeEvent> events) {
+        Map<String, SmartFridgeEvent> lastEvents = new LinkedHashMap<>();
+        for (SmartFridgeEvent event : events) {
+            if (event == null) {
+                throw new IllegalArgumentException("SmartFridgeEvent.coalesce: events must not contain null");
+            }
+            lastEvents.put(event.getItemUUID(), event);
+        }
+        return lastEvents.values();
+    }
+
+    @Override
+    public String toString() {
+        return "SmartFridgeEvent{" +
+                "type=" + type +
+                ", itemType=" + itemType +
+                ", itemUUID='" + itemUUID + '\'' +
+                ", name='" + name + '\'' +
+                ", fillFactor=" + fillFactor +
+                (sequence == NO_SEQUENCE ? "" : ", sequence=" + sequence) +
+                "}";
+    }
+}
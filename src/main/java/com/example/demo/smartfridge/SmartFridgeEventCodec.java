@@ -0,0 +1,327 @@
+package com.example.demo.smartfridge;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of handleItemAdded() and handleItemRemoved() events, shared by the
+ * gateway wire protocol ({@link SmartFridgeEventServer}) and the journal files.
+ *
+ * On the wire every event is a length prefixed frame, big-endian:
+ *
+ *      int length of the rest of the frame, byte type, fields
+ *      ADDED fields:   long itemType, double fillFactor, itemUUID, name
+ *      REMOVED fields: itemUUID
+ *      itemUUID: int -2, long mostSignificantBits, long leastSignificantBits for a canonical UUID,
+ *                otherwise int length, UTF-8 bytes
+ *      name:     int length, UTF-8 bytes, or int -1 for null
+ *
+ * A canonical itemUUID takes 20 bytes instead of 40. Older journal files only hold the UTF-8
+ * form, which is still decoded.
+ *
+ * Encoding writes straight into the buffer. Decoding calls the manager's event handlers directly,
+ * with no event object in between, and interns names, so a decoded event allocates only its
+ * itemUUID String.
+ *
+ * The static encoding methods are thread safe, a decoding instance is not.
+ */
+public final class SmartFridgeEventCodec {
+    public static final byte ADDED = 1;
+    public static final byte REMOVED = 2;
+    public static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+    private static final int CANONICAL_UUID = -2;
+    private static final int NULL_STRING = -1;
+    private static final int NAME_CACHE_SIZE = 1024;
+
+    // names by hash of their UTF-8 bytes, a colliding name replaces the cached one
+    private final byte[][] cachedNameBytes = new byte[NAME_CACHE_SIZE][];
+    private final String[] cachedNames = new String[NAME_CACHE_SIZE];
+    private byte[] scratch = new byte[256];
+    private long rejectedCount;
+
+    /**
+     * @return bytes taken by the fields of an ADDED event
+     */
+    public static int addedLength(String itemUUID, String name) {
+        return 8 + 8 + uuidLength(itemUUID) + stringLength(name);
+    }
+
+    /**
+     * @return bytes taken by the fields of a REMOVED event
+     */
+    public static int removedLength(String itemUUID) {
+        return uuidLength(itemUUID);
+    }
+
+    /**
+     * Writes a whole frame
+     *
+     * @throws java.nio.BufferOverflowException if the buffer has no room for the frame
+     */
+    public static void putAddedFrame(ByteBuffer buffer, long itemType, String itemUUID, String name, double fillFactor) {
+        buffer.putInt(1 + addedLength(itemUUID, name));
+        buffer.put(ADDED);
+        putAdded(buffer, itemType, itemUUID, name, fillFactor);
+    }
+
+    /**
+     * Writes a whole frame
+     *
+     * @throws java.nio.BufferOverflowException if the buffer has no room for the frame
+     */
+    public static void putRemovedFrame(ByteBuffer buffer, String itemUUID) {
+        buffer.putInt(1 + removedLength(itemUUID));
+        buffer.put(REMOVED);
+        putRemoved(buffer, itemUUID);
+    }
+
+    /**
+     * Writes the fields of an ADDED event, {@link #addedLength(String, String)} bytes
+     */
+    static void putAdded(ByteBuffer buffer, long itemType, String itemUUID, String name, double fillFactor) {
+        buffer.putLong(itemType);
+        buffer.putDouble(fillFactor);
+        putUuid(buffer, itemUUID);
+        putString(buffer, name);
+    }
+
+    /**
+     * Writes the fields of a REMOVED event, {@link #removedLength(String)} bytes
+     */
+    static void putRemoved(ByteBuffer buffer, String itemUUID) {
+        putUuid(buffer, itemUUID);
+    }
+
+    private static int uuidLength(String itemUUID) {
+        return Uuids.isCanonical(itemUUID) ? 4 + 16 : stringLength(itemUUID);
+    }
+
+    private static void putUuid(ByteBuffer buffer, String itemUUID) {
+        if (Uuids.isCanonical(itemUUID)) {
+            buffer.putInt(CANONICAL_UUID);
+            buffer.putLong(Uuids.mostSignificantBits(itemUUID));
+            buffer.putLong(Uuids.leastSignificantBits(itemUUID));
+        } else {
+            putString(buffer, itemUUID);
+        }
+    }
+
+    private static int stringLength(String value) {
+        return 4 + (value == null ? 0 : utf8Length(value));
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // a lone surrogate is written as '?', like String.getBytes() does
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(NULL_STRING);
+            return;
+        }
+        buffer.putInt(utf8Length(value));
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xf0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3f));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3f));
+                buffer.put((byte) (0x80 | codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xe0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3f));
+                buffer.put((byte) (0x80 | c & 0x3f));
+            }
+        }
+    }
+
+    /**
+     * Decodes every complete frame in the buffer and hands the events to the manager. An
+     * incomplete frame at the end is left in the buffer for the next call. An event the manager
+     * rejects is skipped and counted, see {@link #getRejectedCount()}.
+     *
+     * @param buffer in read mode
+     * @param target
+     * @return the number of frames decoded, rejected events included
+     *
+     * @throws IllegalArgumentException if a frame is malformed, after which the position of the
+     *      buffer is undefined and the stream cannot be resynchronized
+     */
+    public int decodeFrames(ByteBuffer buffer, SmartFridgeManager target) {
+        int frames = 0;
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length < 1 || length > MAX_FRAME_LENGTH) {
+                throw new IllegalArgumentException("SmartFridgeEventCodec.decodeFrames: frame length " + length);
+            }
+            if (buffer.remaining() < 4 + length) {
+                break;
+            }
+
+            int limit = buffer.limit();
+            buffer.position(start + 4).limit(start + 4 + length);
+            try {
+                decode(buffer.get(), buffer, target, true);
+            } finally {
+                buffer.limit(limit);
+            }
+            frames++;
+        }
+        return frames;
+    }
+
+    /**
+     * @return number of events rejected by the manager in {@link #decodeFrames(ByteBuffer, SmartFridgeManager)}
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Decodes the fields of one event and hands it to the manager
+     *
+     * @param type ADDED or REMOVED
+     * @param buffer positioned at the fields, limited to the end of the event
+     * @param target
+     *
+     * @throws IllegalArgumentException if the fields are malformed or do not fill the event
+     *      exactly, or the manager rejects the event
+     */
+    void decode(byte type, ByteBuffer buffer, SmartFridgeManager target) {
+        decode(type, buffer, target, false);
+    }
+
+    private void decode(byte type, ByteBuffer buffer, SmartFridgeManager target, boolean skipRejected) {
+        long itemType = 0L;
+        double fillFactor = 0.0d;
+        String itemUUID;
+        String name = null;
+        // every field is read and checked before the manager sees the event
+        try {
+            switch (type) {
+                case ADDED:
+                    itemType = buffer.getLong();
+                    fillFactor = buffer.getDouble();
+                    itemUUID = getUuid(buffer);
+                    name = getName(buffer);
+                    break;
+                case REMOVED:
+                    itemUUID = getUuid(buffer);
+                    break;
+                default:
+                    throw new IllegalArgumentException("SmartFridgeEventCodec.decode: unknown event type " + type);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("SmartFridgeEventCodec.decode: truncated event", e);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("SmartFridgeEventCodec.decode: " + buffer.remaining() + " bytes after the event");
+        }
+
+        try {
+            if (type == ADDED) {
+                target.handleItemAdded(itemType, itemUUID, name, fillFactor);
+            } else {
+                target.handleItemRemoved(itemUUID);
+            }
+        } catch (IllegalArgumentException e) {
+            if (!skipRejected) {
+                throw e;
+            }
+            rejectedCount++;
+        }
+    }
+
+    private String getUuid(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == CANONICAL_UUID) {
+            return Uuids.toString(buffer.getLong(), buffer.getLong());
+        }
+        return getString(buffer, length, false);
+    }
+
+    private String getName(ByteBuffer buffer) {
+        return getString(buffer, buffer.getInt(), true);
+    }
+
+    private String getString(ByteBuffer buffer, int length, boolean intern) {
+        if (length == NULL_STRING) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("SmartFridgeEventCodec.decode: string length " + length);
+        }
+
+        byte[] bytes;
+        int offset;
+        if (buffer.hasArray()) {
+            bytes = buffer.array();
+            offset = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.position() + length);
+        } else {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            bytes = scratch;
+            offset = 0;
+        }
+        return intern ? intern(bytes, offset, length) : new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+
+    private String intern(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = (hash ^ hash >>> 16) & (NAME_CACHE_SIZE - 1);
+
+        byte[] cached = cachedNameBytes[slot];
+        if (cached != null && cached.length == length && regionEquals(cached, bytes, offset)) {
+            return cachedNames[slot];
+        }
+        String name = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, offset, copy, 0, length);
+        cachedNameBytes[slot] = copy;
+        cachedNames[slot] = name;
+        return name;
+    }
+
+    private static boolean regionEquals(byte[] cached, byte[] bytes, int offset) {
+        for (int i = 0; i < cached.length; i++) {
+            if (cached[i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
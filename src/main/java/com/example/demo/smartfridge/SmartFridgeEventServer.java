@@ -0,0 +1,185 @@
+package com.example.demo.smartfridge;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+
+/**
+ * Accepts the raw event stream of the fridge gateways: {@link SmartFridgeEventCodec} frames over
+ * plain TCP, one way, with no reply. A single thread multiplexes every connection with a
+ * selector, reads into one direct buffer per connection and decodes the frames straight into the
+ * manager's event handlers.
+ *
+ * Events the manager rejects are skipped and counted. A malformed frame closes its connection,
+ * since the rest of the stream can no longer be framed. Any other failure while reading or
+ * handling an event is counted and also closes only its connection, so one bad connection or
+ * event cannot stop the server thread.
+ *
+ * The manager is called from the server thread, so it must be thread safe if anything else uses
+ * it at the same time.
+ */
+public class SmartFridgeEventServer implements Closeable {
+    // room for the largest frame plus a partial one behind it
+    private static final int BUFFER_SIZE = 4 * SmartFridgeEventCodec.MAX_FRAME_LENGTH;
+
+    private final SmartFridgeManager target;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final SmartFridgeEventCodec codec = new SmartFridgeEventCodec();
+    private final Thread thread;
+    private volatile long eventCount;
+    // copied from the codec after every read, so other threads see it
+    private volatile long rejectedCount;
+    private volatile long failedCount;
+    private volatile boolean closed;
+
+    private SmartFridgeEventServer(SmartFridgeManager target, InetSocketAddress address) throws IOException {
+        this.target = target;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        thread = new Thread(this::run, "smart-fridge-event-server");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * @param target
+     * @param address port 0 picks a free port, see {@link #getLocalPort()}
+     * @return the running server
+     */
+    public static SmartFridgeEventServer start(SmartFridgeManager target, InetSocketAddress address) {
+        try {
+            SmartFridgeEventServer server = new SmartFridgeEventServer(target, address);
+            server.thread.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return number of events handed to the manager so far, rejected ones included
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return number of events the manager rejected
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return number of connections closed because reading from them or handling their events failed
+     *      with anything but a malformed frame
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // closed
+        } catch (IOException e) {
+            if (!closed) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, ByteBuffer.allocateDirect(BUFFER_SIZE));
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        try {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                closeConnection(key);
+                return;
+            }
+
+            buffer.flip();
+            try {
+                eventCount += codec.decodeFrames(buffer, target);
+            } finally {
+                rejectedCount = codec.getRejectedCount();
+                buffer.compact();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            closeConnection(key);
+        } catch (RuntimeException e) {
+            failedCount++;
+            closeConnection(key);
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+    }
+
+    /**
+     * Stops accepting events and closes every connection
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+            serverChannel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -9,4 +9,18 @@ public interface SmartFridgeItem {
 
     Double getFillFactor();
     void setFillFactor(Double fillFactor);
+
+    /**
+     * Unboxed variant of {@link #getFillFactor()}
+     */
+    default double getFillFactorAsDouble() {
+        return getFillFactor();
+    }
+
+    /**
+     * Unboxed variant of {@link #setFillFactor(Double)}
+     */
+    default void setFillFactor(double fillFactor) {
+        setFillFactor(Double.valueOf(fillFactor));
+    }
 }
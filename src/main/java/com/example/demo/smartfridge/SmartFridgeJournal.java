@@ -0,0 +1,389 @@
+package com.example.demo.smartfridge;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Binary append-only log of the events applied to a SmartFridgeManager.
+ *
+ * Every record carries a sequence number and a CRC32 of its payload:
+ *
+ *      int payloadLength, int crc32, payload = byte type, long sequence, event fields
+ *
+ * Added and removed events are encoded with the {@link SmartFridgeEventCodec}, the same fields the
+ * gateways send.
+ *
+ * Records are buffered and written with a single fsync once groupCommitSize records are pending
+ * or groupCommitMillis have passed, whichever comes first (group commit). A crash can lose at most
+ * the records that were not synced yet; a torn record at the end of a file is detected by its
+ * length or CRC and ends the replay of that file.
+ *
+ * The journal is split into files named after the sequence number of their first record, so
+ * files made obsolete by a snapshot can be deleted as a whole.
+ *
+ * Once a write or fsync fails, including one of the background group commit, the journal is failed:
+ * what made it to the file is unknown, so every further append or sync throws an
+ * IllegalStateException instead of writing records behind a gap.
+ */
+class SmartFridgeJournal implements Closeable {
+    static final byte ADDED = SmartFridgeEventCodec.ADDED;
+    static final byte REMOVED = SmartFridgeEventCodec.REMOVED;
+    static final byte FORGOTTEN = 3;
+    static final byte FORGOTTEN_UNTIL = 4;
+    static final byte REMEMBERED = 5;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD_SIZE = 1 << 20;
+
+    private final Path directory;
+    private final int groupCommitSize;
+    private final ScheduledExecutorService flusher;
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private long lastSequence;
+    private int pending;
+    // the first write or fsync that failed
+    private RuntimeException failure;
+
+    /**
+     * Starts a new journal file after the given sequence number
+     *
+     * @param directory
+     * @param lastSequence sequence number of the last record already recovered
+     * @param groupCommitSize number of pending records that triggers an fsync
+     * @param groupCommitMillis longest time a record stays pending, 0 to only sync by size
+     */
+    SmartFridgeJournal(Path directory, long lastSequence, int groupCommitSize, long groupCommitMillis) {
+        this.directory = directory;
+        this.lastSequence = lastSequence;
+        this.groupCommitSize = groupCommitSize;
+        this.channel = openFile(lastSequence + 1);
+
+        if (groupCommitMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "smart-fridge-journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::syncInBackground, groupCommitMillis, groupCommitMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    private FileChannel openFile(long firstSequence) {
+        try {
+            return FileChannel.open(
+                    directory.resolve(fileName(firstSequence)),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    // anything already there is an unrecoverable tail from before a crash
+                    StandardOpenOption.TRUNCATE_EXISTING
+            );
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String fileName(long firstSequence) {
+        return String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX);
+    }
+
+    synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    synchronized long appendAdded(long itemType, String itemUUID, String name, double fillFactor) {
+        int start = beginRecord(ADDED, 1 + 8 + SmartFridgeEventCodec.addedLength(itemUUID, name));
+        SmartFridgeEventCodec.putAdded(buffer, itemType, itemUUID, name, fillFactor);
+        return endRecord(start);
+    }
+
+    synchronized long appendRemoved(String itemUUID) {
+        int start = beginRecord(REMOVED, 1 + 8 + SmartFridgeEventCodec.removedLength(itemUUID));
+        SmartFridgeEventCodec.putRemoved(buffer, itemUUID);
+        return endRecord(start);
+    }
+
+    synchronized long appendForgotten(long itemType) {
+        int start = beginRecord(FORGOTTEN, 1 + 8 + 8);
+        buffer.putLong(itemType);
+        return endRecord(start);
+    }
+
+    synchronized long appendForgottenUntil(long itemType, long expiresAt) {
+        int start = beginRecord(FORGOTTEN_UNTIL, 1 + 8 + 8 + 8);
+        buffer.putLong(itemType);
+        buffer.putLong(expiresAt);
+        return endRecord(start);
+    }
+
+    synchronized long appendRemembered(long itemType) {
+        int start = beginRecord(REMEMBERED, 1 + 8 + 8);
+        buffer.putLong(itemType);
+        return endRecord(start);
+    }
+
+    /**
+     * @throws IllegalStateException if the journal is closed or an earlier write failed
+     */
+    synchronized void checkWritable() {
+        if (failure != null) {
+            throw new IllegalStateException("SmartFridgeJournal: an earlier write failed", failure);
+        }
+        if (!channel.isOpen()) {
+            throw new IllegalStateException("SmartFridgeJournal: closed");
+        }
+    }
+
+    private int beginRecord(byte type, int payloadLength) {
+        checkWritable();
+        if (buffer.remaining() < HEADER_SIZE + payloadLength) {
+            writeBuffer();
+            if (buffer.capacity() < HEADER_SIZE + payloadLength) {
+                buffer = ByteBuffer.allocate(HEADER_SIZE + payloadLength);
+            }
+        }
+        int start = buffer.position();
+        buffer.putInt(payloadLength);
+        buffer.putInt(0);
+        buffer.put(type);
+        buffer.putLong(++lastSequence);
+        return start;
+    }
+
+    private long endRecord(int start) {
+        int payloadStart = start + HEADER_SIZE;
+        crc.reset();
+        crc.update(buffer.array(), payloadStart, buffer.position() - payloadStart);
+        buffer.putInt(start + 4, (int) crc.getValue());
+
+        if (++pending >= groupCommitSize) {
+            sync();
+        }
+        return lastSequence;
+    }
+
+    private void writeBuffer() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw failed(new UncheckedIOException(e));
+        } finally {
+            // never left flipped, the records in it are lost either way once the journal failed
+            buffer.clear();
+        }
+    }
+
+    private RuntimeException failed(RuntimeException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        return e;
+    }
+
+    /**
+     * Writes the pending records and waits until they are on disk
+     *
+     * @throws IllegalStateException if an earlier write failed
+     */
+    synchronized void sync() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        checkWritable();
+        if (pending == 0) {
+            return;
+        }
+        writeBuffer();
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw failed(new UncheckedIOException(e));
+        }
+        pending = 0;
+    }
+
+    /**
+     * The group commit of the flusher thread, which must not throw or it is never run again. A
+     * failure is kept and reported by the next append or sync instead.
+     */
+    private synchronized void syncInBackground() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * Syncs the current file and continues in a new one, so everything up to the current sequence
+     * number can be deleted once a snapshot covers it.
+     */
+    synchronized void roll() {
+        sync();
+        closeChannel();
+        channel = openFile(lastSequence + 1);
+    }
+
+    /**
+     * Deletes the journal files whose records all have a sequence number of at most sequence
+     *
+     * @param sequence
+     */
+    synchronized void deleteUpTo(long sequence) {
+        List<Path> files = files(directory);
+        for (int i = 0; i + 1 < files.size(); i++) {
+            if (firstSequence(files.get(i + 1)) - 1 <= sequence) {
+                try {
+                    Files.deleteIfExists(files.get(i));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        synchronized (this) {
+            try {
+                if (failure == null) {
+                    sync();
+                }
+            } finally {
+                closeChannel();
+            }
+        }
+    }
+
+    static List<Path> files(Path directory) {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                    .filter(p -> p.getFileName().toString().startsWith(PREFIX))
+                    .filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long firstSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Applies every intact record with a sequence number above afterSequence to the target
+     *
+     * @param directory
+     * @param afterSequence sequence number already covered by a snapshot
+     * @param target
+     * @return the sequence number of the last record seen, at least afterSequence
+     */
+    static long replay(Path directory, long afterSequence, DemoSmartFridgeManager target) {
+        long lastSequence = afterSequence;
+        SmartFridgeEventCodec codec = new SmartFridgeEventCodec();
+        for (Path file : files(directory)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                lastSequence = Math.max(lastSequence, replay(in, afterSequence, codec, target));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return lastSequence;
+    }
+
+    private static long replay(
+            DataInputStream in,
+            long afterSequence,
+            SmartFridgeEventCodec codec,
+            DemoSmartFridgeManager target
+    ) throws IOException {
+        long lastSequence = afterSequence;
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[256];
+        while (true) {
+            int payloadLength;
+            int expectedCrc;
+            try {
+                payloadLength = in.readInt();
+                expectedCrc = in.readInt();
+                if (payloadLength < 9 || payloadLength > MAX_PAYLOAD_SIZE) {
+                    return lastSequence;
+                }
+                if (payload.length < payloadLength) {
+                    payload = new byte[payloadLength];
+                }
+                in.readFully(payload, 0, payloadLength);
+            } catch (EOFException e) {
+                // torn record at the end of the file
+                return lastSequence;
+            }
+            crc.reset();
+            crc.update(payload, 0, payloadLength);
+            if ((int) crc.getValue() != expectedCrc) {
+                return lastSequence;
+            }
+
+            ByteBuffer record = ByteBuffer.wrap(payload, 0, payloadLength);
+            byte type = record.get();
+            long sequence = record.getLong();
+            if (sequence <= afterSequence) {
+                continue;
+            }
+            apply(type, record, codec, target);
+            lastSequence = sequence;
+        }
+    }
+
+    private static void apply(byte type, ByteBuffer record, SmartFridgeEventCodec codec, DemoSmartFridgeManager target) {
+        switch (type) {
+            case ADDED:
+            case REMOVED:
+                codec.decode(type, record, target);
+                break;
+            case FORGOTTEN:
+                target.forgetItem(record.getLong());
+                break;
+            case FORGOTTEN_UNTIL:
+                long forgotten = record.getLong();
+                // the absolute expiry, as from a snapshot; one that passed while the fridge was down takes effect right away
+                target.forgetItemUntil(forgotten, record.getLong());
+                break;
+            case REMEMBERED:
+                target.rememberItem(record.getLong());
+                break;
+            default:
+                throw new IllegalStateException("SmartFridgeJournal.replay: unknown record type " + type);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.demo.smartfridge;
 
+import java.time.Duration;
+import java.util.List;
+
 /**
  * Interface for the Smart Fridge Manager
  *
@@ -30,6 +33,34 @@ public interface SmartFridgeManager {
      */
     void handleItemAdded( long itemType, String itemUUID, String name, Double fillFactor );
 
+    /**
+     * Unboxed variant of {@link #handleItemAdded(long, String, String, Double)}. Implementations that
+     * store the fill factor as a primitive should override this one.
+     *
+     * @param itemType
+     * @param itemUUID
+     * @param name
+     * @param fillFactor
+     */
+    default void handleItemAdded( long itemType, String itemUUID, String name, double fillFactor ) {
+        handleItemAdded( itemType, itemUUID, name, Double.valueOf( fillFactor ) );
+    }
+
+    /**
+     * Applies a batch of events, e.g. the result of one inventory sweep of the fridge. The whole
+     * batch is validated before any event is applied and only the last event of each itemUUID is
+     * applied, which leaves the fridge in the same state as delivering the events one by one.
+     *
+     * @param events
+     *
+     * @throws IllegalArgumentException if the batch contains a null event
+     */
+    default void applyEvents( List<SmartFridgeEvent> events ) {
+        for ( SmartFridgeEvent event : SmartFridgeEvent.coalesce( events ) ) {
+            event.applyTo( this );
+        }
+    }
+
     /**
      * These are the query methods for the fridge to be able to display alerts and create shopping
      * lists for the fridge user.
@@ -49,6 +80,67 @@ public interface SmartFridgeManager {
      */
     Object[] getItems( Double fillFactor );
 
+    /**
+     * Allocation free variant of {@link #getItems(Double)}: every item type it would return is
+     * handed to the visitor instead, in the same order. Implementations should override this one
+     * and implement getItems(Double) on top of it.
+     *
+     * @param fillFactor
+     * @param visitor
+     */
+    default void visitItems( double fillFactor, ItemFillVisitor visitor ) {
+        for ( Object item : getItems( fillFactor ) ) {
+            Object[] pair = ( Object[] ) item;
+            visitor.visit( ( Long ) pair[ 0 ], ( Double ) pair[ 1 ] );
+        }
+    }
+
+    /**
+     * Variant of {@link #getItems(Double)} that fills a reusable result, so polling the same
+     * threshold repeatedly does not allocate.
+     *
+     * @param fillFactor
+     * @param result cleared before it is filled
+     *
+     * @return the result
+     */
+    default ItemFillResult getItems( double fillFactor, ItemFillResult result ) {
+        result.clear();
+        visitItems( fillFactor, result );
+        return result;
+    }
+
+    /**
+     * Returns the item types with the lowest fill factor, a page at a time, e.g. the top of a
+     * shopping list. Forgotten item types are not returned, like in getItems().
+     *
+     * @param limit maximum number of item types returned
+     * @param offset number of lower item types skipped, for the following pages
+     *
+     * @return an array of arrays containing [ itemType, fillFactor ], lowest fill factor first
+     *      and lowest itemType first among equal fill factors
+     *
+     * @throws IllegalArgumentException if the limit is less than 1 or the offset is negative
+     */
+    default Object[] getLowestItems( int limit, int offset ) {
+        ItemFillResult result = new ItemFillResult();
+        visitLowestItems( limit, offset, result );
+        return result.toArray();
+    }
+
+    /**
+     * Visitor variant of {@link #getLowestItems(int, int)}. The default selects the item types
+     * from a full visitItems() pass, implementations that keep their item types ordered by fill
+     * factor should override this one.
+     *
+     * @param limit
+     * @param offset
+     * @param visitor
+     */
+    default void visitLowestItems( int limit, int offset, ItemFillVisitor visitor ) {
+        LowestItems.select( this, limit, offset, visitor );
+    }
+
     /**
      * Returns the fill factor for a given item type to be displayed to the owner. Unless all available containers are
      * empty, this method should only consider the non-empty containers
@@ -60,6 +152,132 @@ public interface SmartFridgeManager {
      */
     Double getFillFactor( long itemType );
 
+    /**
+     * Unboxed variant of {@link #getFillFactor(long)}
+     *
+     * @param itemType
+     *
+     * @return a double representing the average fill factor for the item type
+     */
+    default double getFillFactorAsDouble( long itemType ) {
+        return getFillFactor( itemType );
+    }
+
+    /**
+     * Looks up the item type of a stored container, e.g. to tell which item type a
+     * handleItemRemoved() call is going to change.
+     *
+     * @param itemUUID
+     *
+     * @return the item type, or null if no container is stored under the itemUUID
+     *
+     * @throws UnsupportedOperationException if the implementation cannot look up containers
+     */
+    default Long getItemType( String itemUUID ) {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " cannot look up containers" );
+    }
+
+    /**
+     * Type-ahead search by the names of the stored containers. A name matches if, ignoring case,
+     * one of its words starts with the prefix, so "milk" and "oat m" both find "Oat Milk".
+     * Forgotten item types are not returned, like in getItems().
+     *
+     * @param namePrefix
+     * @param limit maximum number of item types returned
+     *
+     * @return an array of arrays containing [ itemType, name, fillFactor ], ordered by the
+     *      matching word. An item type stored under several matching names is returned once.
+     *
+     * @throws IllegalArgumentException if the namePrefix is null or the limit is less than 1
+     * @throws UnsupportedOperationException if the implementation does not index names
+     */
+    default Object[] findItems( String namePrefix, int limit ) {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " does not index names" );
+    }
+
+    /**
+     * Returns the item types expected to run out within the given time, based on how fast their
+     * containers have been emptied. Used by the fridge to put items on the shopping list before
+     * they are depleted.
+     *
+     * @param within
+     *
+     * @return an array of arrays containing [ itemType, Duration until empty ], soonest first.
+     *      Depleted item types are included with a Duration of zero.
+     *
+     * @throws UnsupportedOperationException if the implementation keeps no fill history
+     */
+    default Object[] getItemsDepletingWithin( Duration within ) {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " keeps no fill history" );
+    }
+
+    /**
+     * Returns how the average fill factor of an item type developed, e.g. for a chart on the
+     * fridge display. Every change is sampled, older samples are only kept as the last one of each
+     * minute and of each hour.
+     *
+     * @param itemType
+     * @param tier the resolution of the samples
+     *
+     * @return an array of arrays containing [ epoch millis, fillFactor ], oldest first. Empty for
+     *      an item type without history, e.g. one that is forgotten.
+     *
+     * @throws UnsupportedOperationException if the implementation keeps no fill history
+     */
+    default Object[] getFillSamples( long itemType, FillHistoryTier tier ) {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " keeps no fill history" );
+    }
+
+    /**
+     * Notification methods for displays that want to react to item types running low instead of
+     * polling getItems().
+     */
+
+    /**
+     * Registers a listener that is told when the fill factor of an item type drops to or below the
+     * threshold, and again when it rises above threshold + hysteresis, so a fill factor moving back
+     * and forth across the threshold does not produce a stream of events. Only changes caused by
+     * the event handlers are reported, forgotten item types are not reported at all.
+     *
+     * @param itemType
+     * @param threshold
+     * @param hysteresis
+     * @param listener
+     *
+     * @return a subscription that cancels the notifications
+     *
+     * @throws UnsupportedOperationException if the implementation does not send notifications
+     */
+    default LowStockSubscription watchItemType( long itemType, double threshold, double hysteresis, LowStockListener listener ) {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " does not send low stock notifications" );
+    }
+
+    /**
+     * Same as {@link #watchItemType(long, double, double, LowStockListener)} for every item type
+     *
+     * @param threshold
+     * @param hysteresis
+     * @param listener
+     *
+     * @return a subscription that cancels the notifications
+     *
+     * @throws UnsupportedOperationException if the implementation does not send notifications
+     */
+    default LowStockSubscription watchAllItemTypes( double threshold, double hysteresis, LowStockListener listener ) {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " does not send low stock notifications" );
+    }
+
+    /**
+     * For monitoring, may be read from another thread than the one updating the fridge.
+     *
+     * @return the number of low stock events dropped because the listeners fell too far behind
+     *
+     * @throws UnsupportedOperationException if the implementation does not send notifications
+     */
+    default long getDroppedLowStockEventCount() {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " does not send low stock notifications" );
+    }
+
     /**
      * Stop tracking a given item. This method is used by the fridge to signal that its
      * owner will no longer stock this item and thus should not be returned from #getItems()
@@ -68,4 +286,73 @@ public interface SmartFridgeManager {
      */
     void forgetItem( long itemType );
 
+    /**
+     * Same as {@link #forgetItem(long)}, but the item type is remembered again once the time to
+     * live has passed, e.g. for seasonal items. Forgetting it again replaces the time to live.
+     *
+     * @param itemType
+     * @param timeToLive
+     *
+     * @throws UnsupportedOperationException if the implementation cannot remember forgotten item types
+     */
+    default void forgetItem( long itemType, Duration timeToLive ) {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " cannot remember forgotten item types" );
+    }
+
+    /**
+     * Undoes {@link #forgetItem(long)}: the item type is returned from #getItems() again, with the
+     * fill factor of the containers that are stored now.
+     *
+     * @param itemType
+     *
+     * @throws UnsupportedOperationException if the implementation cannot remember forgotten item types
+     */
+    default void rememberItem( long itemType ) {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " cannot remember forgotten item types" );
+    }
+
+    /**
+     * Tells when an item type forgotten with {@link #forgetItem(long, Duration)} is remembered
+     * again, e.g. for a cache of query results that has to be dropped at that moment.
+     *
+     * @return epoch millis at which the next time to live runs out, Long.MAX_VALUE if there is
+     *      none, which is always the case for implementations that cannot remember forgotten
+     *      item types
+     */
+    default long getNextForgetExpiry() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Sizes for monitoring. They may be read from another thread than the one updating the
+     * fridge, in which case they are only approximately current.
+     */
+
+    /**
+     * @return the number of stored containers, forgotten item types included
+     *
+     * @throws UnsupportedOperationException if the implementation does not report its size
+     */
+    default int getItemCount() {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " does not report its size" );
+    }
+
+    /**
+     * @return the number of item types with stored containers that are returned from #getItems()
+     *
+     * @throws UnsupportedOperationException if the implementation does not report its size
+     */
+    default int getItemTypeCount() {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " does not report its size" );
+    }
+
+    /**
+     * @return the number of forgotten item types
+     *
+     * @throws UnsupportedOperationException if the implementation does not report its size
+     */
+    default int getForgottenItemTypeCount() {
+        throw new UnsupportedOperationException( getClass().getSimpleName() + " does not report its size" );
+    }
+
 }
@@ -0,0 +1,257 @@
+package com.example.demo.smartfridge;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact point in time copy of the fridge contents and ignored item types, tagged with the
+ * sequence number of the last journal record it includes.
+ *
+ *      int magic, int version, long sequence,
+ *      int ignoredCount, long itemType...,
+ *      int expiryCount, (long itemType, long expiresAt)...,
+ *      int itemCount, (long itemType, double fillFactor, UTF itemUUID, boolean hasName, UTF name)...,
+ *      long crc32 of everything before it
+ *
+ * Snapshots are written to a temporary file and moved into place, so a crash never leaves a
+ * partial snapshot under a snapshot file name.
+ */
+class SmartFridgeSnapshot {
+    private static final int MAGIC = 0x53465331;
+    // version 1 had no expiries
+    private static final int VERSION = 2;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    private final long sequence;
+    private final Map<String, SmartFridgeItem> contents;
+    private final Set<Long> ignoreItemTypes;
+    private final Map<Long, Long> forgetExpiries;
+
+    SmartFridgeSnapshot(
+            long sequence,
+            Map<String, SmartFridgeItem> contents,
+            Set<Long> ignoreItemTypes,
+            Map<Long, Long> forgetExpiries
+    ) {
+        this.sequence = sequence;
+        this.contents = contents;
+        this.ignoreItemTypes = ignoreItemTypes;
+        this.forgetExpiries = forgetExpiries;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    Map<String, SmartFridgeItem> getContents() {
+        return contents;
+    }
+
+    Set<Long> getIgnoreItemTypes() {
+        return ignoreItemTypes;
+    }
+
+    /**
+     * @return expiry in epoch millis of the ignored item types that were forgotten with a time to live
+     */
+    Map<Long, Long> getForgetExpiries() {
+        return forgetExpiries;
+    }
+
+    static String fileName(long sequence) {
+        return String.format("%s%020d%s", PREFIX, sequence, SUFFIX);
+    }
+
+    static long sequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * @param directory
+     * @param sequence sequence number of the last journal record reflected in the contents
+     * @param items
+     * @param ignoreItemTypes
+     * @param forgetExpiries
+     * @return the snapshot file
+     */
+    static Path write(
+            Path directory,
+            long sequence,
+            Collection<SmartFridgeItem> items,
+            Set<Long> ignoreItemTypes,
+            Map<Long, Long> forgetExpiries
+    ) {
+        Path file = directory.resolve(fileName(sequence));
+        Path temporary = directory.resolve(fileName(sequence) + ".tmp");
+
+        try (FileOutputStream fileOut = new FileOutputStream(temporary.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+
+            out.writeInt(ignoreItemTypes.size());
+            for (long itemType : ignoreItemTypes) {
+                out.writeLong(itemType);
+            }
+
+            out.writeInt(forgetExpiries.size());
+            for (Map.Entry<Long, Long> expiry : forgetExpiries.entrySet()) {
+                out.writeLong(expiry.getKey());
+                out.writeLong(expiry.getValue());
+            }
+
+            out.writeInt(items.size());
+            for (SmartFridgeItem item : items) {
+                out.writeLong(item.getItemType());
+                out.writeDouble(item.getFillFactorAsDouble());
+                out.writeUTF(item.getItemUUID());
+                out.writeBoolean(item.getName() != null);
+                if (item.getName() != null) {
+                    out.writeUTF(item.getName());
+                }
+            }
+
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            return Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param directory
+     * @return the newest readable snapshot, or null if there is none
+     */
+    static SmartFridgeSnapshot readLatest(Path directory) {
+        List<Path> files = files(directory);
+        for (int i = files.size() - 1; i >= 0; i--) {
+            SmartFridgeSnapshot snapshot = read(files.get(i));
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param file
+     * @return the snapshot, or null if the file is damaged
+     */
+    static SmartFridgeSnapshot read(Path file) {
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try (InputStream fileIn = Files.newInputStream(file)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(fileIn), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int version = in.readInt();
+            if (version != 1 && version != VERSION) {
+                return null;
+            }
+            long sequence = in.readLong();
+
+            // a damaged count must not turn into a huge allocation
+            int ignoredCount = in.readInt();
+            if (ignoredCount < 0 || ignoredCount > size / 8) {
+                return null;
+            }
+            Set<Long> ignoreItemTypes = new HashSet<>();
+            for (int i = 0; i < ignoredCount; i++) {
+                ignoreItemTypes.add(in.readLong());
+            }
+
+            Map<Long, Long> forgetExpiries = new HashMap<>();
+            if (version >= 2) {
+                int expiryCount = in.readInt();
+                if (expiryCount < 0 || expiryCount > size / 16) {
+                    return null;
+                }
+                for (int i = 0; i < expiryCount; i++) {
+                    forgetExpiries.put(in.readLong(), in.readLong());
+                }
+            }
+
+            int itemCount = in.readInt();
+            if (itemCount < 0 || itemCount > size / 16) {
+                return null;
+            }
+            Map<String, SmartFridgeItem> contents = new HashMap<>(itemCount * 2);
+            for (int i = 0; i < itemCount; i++) {
+                long itemType = in.readLong();
+                double fillFactor = in.readDouble();
+                String itemUUID = in.readUTF();
+                String name = in.readBoolean() ? in.readUTF() : null;
+                contents.put(itemUUID, new StandardSmartFridgeItem(itemType, itemUUID, name, fillFactor));
+            }
+
+            long expectedCrc = checked.getChecksum().getValue();
+            if (in.readLong() != expectedCrc) {
+                return null;
+            }
+            return new SmartFridgeSnapshot(sequence, contents, ignoreItemTypes, forgetExpiries);
+        } catch (EOFException | UTFDataFormatException | IllegalArgumentException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<Path> files(Path directory) {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                    .filter(p -> p.getFileName().toString().startsWith(PREFIX))
+                    .filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Deletes every snapshot older than the given sequence number, including leftovers of
+     * interrupted writes
+     *
+     * @param directory
+     * @param sequence
+     */
+    static void deleteBefore(Path directory, long sequence) {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path file : paths.collect(Collectors.toList())) {
+                String name = file.getFileName().toString();
+                if (!name.startsWith(PREFIX)) {
+                    continue;
+                }
+                if (name.endsWith(".tmp") || name.compareTo(fileName(sequence)) < 0) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
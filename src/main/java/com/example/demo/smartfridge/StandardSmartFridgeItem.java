@@ -4,9 +4,9 @@ class StandardSmartFridgeItem implements SmartFridgeItem {
     private long itemType;
     private String itemUUID;
     private String name;
-    private Double fillFactor;
+    private double fillFactor;
 
-    public StandardSmartFridgeItem(long itemType, String itemUUID, String name, Double fillFactor) {
+    public StandardSmartFridgeItem(long itemType, String itemUUID, String name, double fillFactor) {
         this.itemType = itemType;
         this.itemUUID = itemUUID;
         this.name = name;
@@ -32,15 +32,23 @@ class StandardSmartFridgeItem implements SmartFridgeItem {
         return fillFactor;
     }
 
+    public double getFillFactorAsDouble() {
+        return fillFactor;
+    }
+
+    public void setFillFactor(Double fillFactor) {
+        setFillFactor(fillFactor.doubleValue());
+    }
+
     /**
      * Based on the SmartFridgeManager.java interface, fillFactor is based on a percentage
      * @param fillFactor the amount of the item that is contained in the SmartFridge container
      *
-     * @throws IllegalArgumentException if the fillFactor is less than 0
-     *      or greater than 1
+     * @throws IllegalArgumentException if the fillFactor is less than 0,
+     *      greater than 1 or NaN
      */
-    public void setFillFactor(Double fillFactor) {
-        if (fillFactor < 0.0d || fillFactor > 1.0d) {
+    public void setFillFactor(double fillFactor) {
+        if (!(fillFactor >= 0.0d && fillFactor <= 1.0d)) {
             throw new IllegalArgumentException(
                     "StandardSmartFridgeItem.setFillFactor: Double fillFactor must be >= 0.0 or <= 1.0"
             );
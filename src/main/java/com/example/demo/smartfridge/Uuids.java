@@ -0,0 +1,97 @@
+package com.example.demo.smartfridge;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Allocation free conversion between itemUUIDs in canonical form and their two 64 bit halves.
+ *
+ * Only the canonical lowercase form produced by {@link UUID#toString()} is accepted, so a
+ * converted itemUUID always converts back to the exact same String.
+ */
+final class Uuids {
+    private static final int LENGTH = 36;
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (char c = '0'; c <= '9'; c++) {
+            HEX_VALUES[c] = (byte) (c - '0');
+        }
+        for (char c = 'a'; c <= 'f'; c++) {
+            HEX_VALUES[c] = (byte) (c - 'a' + 10);
+        }
+    }
+
+    private Uuids() {
+    }
+
+    /**
+     * @param itemUUID
+     * @return true if the itemUUID is a lowercase canonical UUID, e.g.
+     *      123e4567-e89b-12d3-a456-426614174000
+     */
+    static boolean isCanonical(String itemUUID) {
+        if (itemUUID == null || itemUUID.length() != LENGTH
+                || itemUUID.charAt(8) != '-' || itemUUID.charAt(13) != '-'
+                || itemUUID.charAt(18) != '-' || itemUUID.charAt(23) != '-') {
+            return false;
+        }
+        int digits = hexDigits(itemUUID, 0, 8)
+                | hexDigits(itemUUID, 9, 13)
+                | hexDigits(itemUUID, 14, 18)
+                | hexDigits(itemUUID, 19, 23)
+                | hexDigits(itemUUID, 24, 36);
+        // any character outside [0-9a-f] sets bits above the low nibble
+        return (digits & ~0x0f) == 0;
+    }
+
+    private static int hexDigits(String value, int from, int to) {
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            digits |= c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+        }
+        return digits;
+    }
+
+    /**
+     * @param itemUUID a canonical UUID, see {@link #isCanonical(String)}
+     * @return the most significant 64 bits
+     */
+    static long mostSignificantBits(String itemUUID) {
+        return parseHex(itemUUID, 0, 8) << 32
+                | parseHex(itemUUID, 9, 13) << 16
+                | parseHex(itemUUID, 14, 18);
+    }
+
+    /**
+     * @param itemUUID a canonical UUID, see {@link #isCanonical(String)}
+     * @return the least significant 64 bits
+     */
+    static long leastSignificantBits(String itemUUID) {
+        return parseHex(itemUUID, 19, 23) << 48
+                | parseHex(itemUUID, 24, 36);
+    }
+
+    static String toString(long mostSignificantBits, long leastSignificantBits) {
+        return new UUID(mostSignificantBits, leastSignificantBits).toString();
+    }
+
+    static int hash(long mostSignificantBits, long leastSignificantBits) {
+        long h = (mostSignificantBits ^ leastSignificantBits) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long parseHex(String value, int from, int to) {
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            result = (result << 4) | hexValue(value.charAt(i));
+        }
+        return result;
+    }
+
+    private static int hexValue(char c) {
+        return HEX_VALUES[c];
+    }
+}
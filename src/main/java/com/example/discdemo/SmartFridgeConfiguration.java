@@ -0,0 +1,80 @@
+package com.example.discdemo;
+
+import com.example.demo.smartfridge.CachingSmartFridgeManager;
+import com.example.demo.smartfridge.ConcurrentSmartFridgeManager;
+import com.example.demo.smartfridge.DeduplicatingSmartFridgeManager;
+import com.example.demo.smartfridge.InstrumentedSmartFridgeManager;
+import com.example.demo.smartfridge.JournaledSmartFridgeManager;
+import com.example.demo.smartfridge.SmartFridgeEventServer;
+import com.example.demo.smartfridge.SmartFridgeManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * The SmartFridgeManager served over HTTP. Requests run on several server threads at once, so
+ * only the thread safe implementations qualify.
+ */
+@Configuration
+public class SmartFridgeConfiguration {
+
+	/**
+	 * @param journalDirectory smartfridge.journal-directory, keeps the contents across restarts
+	 *      when set, otherwise they only live in memory
+	 * @param cacheSize smartfridge.cache-size, number of fill factors and of getItems() results
+	 *      cached in front of the fridge, 0 for no cache
+	 * @param dedupWindowSize smartfridge.dedup-window-size, number of itemUUIDs whose last event
+	 *      is kept to suppress retried and late events, 0 for no suppression
+	 * @param dedupTimeToLive smartfridge.dedup-time-to-live, ISO-8601 duration such as PT10M the
+	 *      last event is kept for, as long as it is in the window when left out
+	 * @return the fridge, instrumented for {@link SmartFridgeMetrics} and closed with the
+	 *      application context
+	 */
+	@Bean
+	public SmartFridgeManager smartFridgeManager(
+			@Value("${smartfridge.journal-directory:}") String journalDirectory,
+			@Value("${smartfridge.cache-size:0}") long cacheSize,
+			@Value("${smartfridge.dedup-window-size:0}") int dedupWindowSize,
+			@Value("${smartfridge.dedup-time-to-live:}") String dedupTimeToLive
+	) {
+		SmartFridgeManager manager;
+		if (journalDirectory.isEmpty()) {
+			manager = new ConcurrentSmartFridgeManager();
+		} else {
+			manager = JournaledSmartFridgeManager.open(Paths.get(journalDirectory));
+		}
+		if (cacheSize > 0) {
+			manager = new CachingSmartFridgeManager(manager, cacheSize);
+		}
+		manager = new InstrumentedSmartFridgeManager(manager);
+		if (dedupWindowSize > 0) {
+			// in front of the instrumentation and the cache, so suppressed events are not counted
+			// as added or removed and do not drop cached answers
+			Duration timeToLive = dedupTimeToLive.isEmpty() ? Duration.ZERO : Duration.parse(dedupTimeToLive);
+			manager = new DeduplicatingSmartFridgeManager(manager, dedupWindowSize, timeToLive, Clock.systemUTC());
+		}
+		return manager;
+	}
+
+	@Bean
+	public SmartFridgeMetrics smartFridgeMetrics(SmartFridgeManager manager) {
+		return new SmartFridgeMetrics(manager);
+	}
+
+	/**
+	 * Binary event ingest next to the HTTP API, only started when smartfridge.event-port is set.
+	 *
+	 * @return the server, closed with the application context
+	 */
+	@Bean
+	@ConditionalOnProperty("smartfridge.event-port")
+	public SmartFridgeEventServer smartFridgeEventServer(SmartFridgeManager manager, @Value("${smartfridge.event-port}") int port) {
+		return SmartFridgeEventServer.start(manager, new InetSocketAddress(port));
+	}
+}
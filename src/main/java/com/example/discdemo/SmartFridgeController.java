@@ -0,0 +1,138 @@
+package com.example.discdemo;
+
+import com.example.demo.smartfridge.SmartFridgeEvent;
+import com.example.demo.smartfridge.SmartFridgeManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * HTTP/JSON access to the SmartFridgeManager for the fridge gateways.
+ *
+ * Connections are served by the embedded Tomcat's NIO connector, which parks idle keep-alive
+ * connections on a selector instead of a thread each. Requests are handled inline on the request
+ * thread: every call is an in-memory update or lookup, and handing it to another pool would only
+ * add a context switch to each request.
+ */
+@RestController
+@RequestMapping("/fridge")
+public class SmartFridgeController {
+	private final SmartFridgeManager manager;
+
+	public SmartFridgeController(SmartFridgeManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * A numbered event is applied as a batch of one, which keeps its sequence
+	 */
+	@PostMapping("/events")
+	@ResponseStatus(HttpStatus.NO_CONTENT)
+	public void handleEvent(@RequestBody SmartFridgeEventRequest request) {
+		SmartFridgeEvent event = request.toEvent();
+		if (event.getSequence() == SmartFridgeEvent.NO_SEQUENCE) {
+			event.applyTo(manager);
+		} else {
+			manager.applyEvents(Collections.singletonList(event));
+		}
+	}
+
+	/**
+	 * Applies a whole inventory sweep, see {@link SmartFridgeManager#applyEvents(List)}. The batch
+	 * is validated before any event is applied.
+	 */
+	@PostMapping("/events/batch")
+	@ResponseStatus(HttpStatus.NO_CONTENT)
+	public void handleEvents(@RequestBody List<SmartFridgeEventRequest> requests) {
+		List<SmartFridgeEvent> events = new ArrayList<>(requests.size());
+		for (SmartFridgeEventRequest request : requests) {
+			if (request == null) {
+				throw new IllegalArgumentException("SmartFridgeController.handleEvents: events must not contain null");
+			}
+			events.add(request.toEvent());
+		}
+		manager.applyEvents(events);
+	}
+
+	@DeleteMapping("/items/{itemUUID}")
+	@ResponseStatus(HttpStatus.NO_CONTENT)
+	public void handleItemRemoved(@PathVariable String itemUUID) {
+		manager.handleItemRemoved(itemUUID);
+	}
+
+	/**
+	 * @param fillFactor
+	 * @return [ [ itemType, fillFactor ], ... ] like {@link SmartFridgeManager#getItems(Double)}
+	 */
+	@GetMapping("/items")
+	public Object[] getItems(@RequestParam double fillFactor) {
+		return manager.getItems(fillFactor);
+	}
+
+	/**
+	 * A page of the shopping list, see {@link SmartFridgeManager#getLowestItems(int, int)}
+	 *
+	 * @param limit
+	 * @param offset
+	 * @return [ [ itemType, fillFactor ], ... ], lowest fill factor first
+	 */
+	@GetMapping("/items/lowest")
+	public Object[] getLowestItems(@RequestParam(defaultValue = "20") int limit, @RequestParam(defaultValue = "0") int offset) {
+		return manager.getLowestItems(limit, offset);
+	}
+
+	/**
+	 * Type-ahead search, see {@link SmartFridgeManager#findItems(String, int)}
+	 *
+	 * @param prefix
+	 * @param limit
+	 * @return [ [ itemType, name, fillFactor ], ... ]
+	 */
+	@GetMapping("/items/search")
+	public Object[] findItems(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+		return manager.findItems(prefix, limit);
+	}
+
+	@GetMapping("/item-types/{itemType}")
+	public Map<String, Object> getFillFactor(@PathVariable long itemType) {
+		Map<String, Object> fill = new LinkedHashMap<>();
+		fill.put("itemType", itemType);
+		fill.put("fillFactor", manager.getFillFactorAsDouble(itemType));
+		return fill;
+	}
+
+	/**
+	 * @param itemType
+	 * @param timeToLive ISO-8601 duration such as PT12H, forgets for good when left out
+	 */
+	@PostMapping("/item-types/{itemType}/forget")
+	@ResponseStatus(HttpStatus.NO_CONTENT)
+	public void forgetItem(@PathVariable long itemType, @RequestParam(name = "ttl", required = false) String timeToLive) {
+		if (timeToLive == null) {
+			manager.forgetItem(itemType);
+		} else {
+			manager.forgetItem(itemType, Duration.parse(timeToLive));
+		}
+	}
+
+	@PostMapping("/item-types/{itemType}/remember")
+	@ResponseStatus(HttpStatus.NO_CONTENT)
+	public void rememberItem(@PathVariable long itemType) {
+		manager.rememberItem(itemType);
+	}
+
+	@ExceptionHandler({IllegalArgumentException.class, DateTimeParseException.class})
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public Map<String, String> badRequest(RuntimeException e) {
+		return Collections.singletonMap("error", e.getMessage());
+	}
+
+	@ExceptionHandler(UnsupportedOperationException.class)
+	@ResponseStatus(HttpStatus.NOT_IMPLEMENTED)
+	public Map<String, String> notImplemented(UnsupportedOperationException e) {
+		return Collections.singletonMap("error", e.getMessage());
+	}
+}
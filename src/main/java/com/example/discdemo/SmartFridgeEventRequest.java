@@ -0,0 +1,86 @@
+package com.example.discdemo;
+
+import com.example.demo.smartfridge.SmartFridgeEvent;
+
+/**
+ * JSON body of an ingested event, e.g.
+ *
+ *      {"type": "ADDED", "itemType": 1, "itemUUID": "...", "name": "milk", "fillFactor": 0.5}
+ *      {"type": "REMOVED", "itemUUID": "..."}
+ *
+ * The type defaults to ADDED, so a single add can leave it out. Hardware that numbers its events
+ * adds "sequence": 42, see {@link SmartFridgeEvent#withSequence(long)}.
+ */
+public class SmartFridgeEventRequest {
+	private SmartFridgeEvent.Type type = SmartFridgeEvent.Type.ADDED;
+	private long itemType;
+	private String itemUUID;
+	private String name;
+	private Double fillFactor;
+	private Long sequence;
+
+	public SmartFridgeEvent.Type getType() {
+		return type;
+	}
+
+	public void setType(SmartFridgeEvent.Type type) {
+		this.type = type;
+	}
+
+	public long getItemType() {
+		return itemType;
+	}
+
+	public void setItemType(long itemType) {
+		this.itemType = itemType;
+	}
+
+	public String getItemUUID() {
+		return itemUUID;
+	}
+
+	public void setItemUUID(String itemUUID) {
+		this.itemUUID = itemUUID;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public Double getFillFactor() {
+		return fillFactor;
+	}
+
+	public void setFillFactor(Double fillFactor) {
+		this.fillFactor = fillFactor;
+	}
+
+	public Long getSequence() {
+		return sequence;
+	}
+
+	public void setSequence(Long sequence) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * @return the validated event
+	 *
+	 * @throws IllegalArgumentException if a field required by the type is missing or out of range
+	 */
+	SmartFridgeEvent toEvent() {
+		SmartFridgeEvent event;
+		if (type == SmartFridgeEvent.Type.REMOVED) {
+			event = SmartFridgeEvent.removed(itemUUID);
+		} else if (fillFactor == null) {
+			throw new IllegalArgumentException("SmartFridgeEventRequest.toEvent: fillFactor must not be null");
+		} else {
+			event = SmartFridgeEvent.added(itemType, itemUUID, name, fillFactor);
+		}
+		return sequence == null ? event : event.withSequence(sequence);
+	}
+}
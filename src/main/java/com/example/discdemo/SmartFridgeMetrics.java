@@ -0,0 +1,109 @@
+package com.example.discdemo;
+
+import com.example.demo.smartfridge.CachingSmartFridgeManager;
+import com.example.demo.smartfridge.DeduplicatingSmartFridgeManager;
+import com.example.demo.smartfridge.InstrumentedSmartFridgeManager;
+import com.example.demo.smartfridge.LatencyHistogram;
+import com.example.demo.smartfridge.SmartFridgeManager;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Publishes the fridge's counters, sizes and query latencies on the actuator metrics endpoint
+ * (/metrics), named like the built-in ones:
+ *
+ *      counter.smartfridge.items.added, .removed, .forgotten
+ *      gauge.smartfridge.items, gauge.smartfridge.item-types, gauge.smartfridge.item-types.forgotten
+ *      timer.smartfridge.get-items.count, .p50, .p90, .p99, .p999, .max in milliseconds,
+ *      the same for timer.smartfridge.get-fill-factor
+ *      gauge.smartfridge.cache.get-items.hit-rate, .get-fill-factor.hit-rate with a cache
+ *      counter.smartfridge.events.duplicate, .out-of-order with duplicate suppression
+ *      counter.smartfridge.low-stock.dropped with low stock notifications
+ *
+ * The latencies cover everything since the start, getFillFactor() ones are a sample of the calls.
+ * A size or counter the fridge does not report is left out.
+ */
+public class SmartFridgeMetrics implements PublicMetrics {
+	private final InstrumentedSmartFridgeManager manager;
+	// null when not part of the fridge
+	private final DeduplicatingSmartFridgeManager deduplicating;
+	private final CachingSmartFridgeManager cache;
+
+	/**
+	 * @param manager the fridge as built by {@link SmartFridgeConfiguration}, an
+	 *      InstrumentedSmartFridgeManager, possibly behind a DeduplicatingSmartFridgeManager and
+	 *      in front of a CachingSmartFridgeManager
+	 *
+	 * @throws IllegalArgumentException if the fridge is not instrumented
+	 */
+	public SmartFridgeMetrics(SmartFridgeManager manager) {
+		if (manager instanceof DeduplicatingSmartFridgeManager) {
+			deduplicating = (DeduplicatingSmartFridgeManager) manager;
+			manager = deduplicating.getDelegate();
+		} else {
+			deduplicating = null;
+		}
+		if (!(manager instanceof InstrumentedSmartFridgeManager)) {
+			throw new IllegalArgumentException("SmartFridgeMetrics: manager must be an InstrumentedSmartFridgeManager");
+		}
+		this.manager = (InstrumentedSmartFridgeManager) manager;
+		SmartFridgeManager delegate = this.manager.getDelegate();
+		cache = delegate instanceof CachingSmartFridgeManager ? (CachingSmartFridgeManager) delegate : null;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		List<Metric<?>> metrics = new ArrayList<>();
+		metrics.add(new Metric<>("counter.smartfridge.items.added", manager.getAddedCount()));
+		metrics.add(new Metric<>("counter.smartfridge.items.removed", manager.getRemovedCount()));
+		metrics.add(new Metric<>("counter.smartfridge.items.forgotten", manager.getForgottenCount()));
+
+		addSize(metrics, "gauge.smartfridge.items", manager::getItemCount);
+		addSize(metrics, "gauge.smartfridge.item-types", manager::getItemTypeCount);
+		addSize(metrics, "gauge.smartfridge.item-types.forgotten", manager::getForgottenItemTypeCount);
+		try {
+			metrics.add(new Metric<>("counter.smartfridge.low-stock.dropped", manager.getDroppedLowStockEventCount()));
+		} catch (UnsupportedOperationException e) {
+			// no notifications from this fridge
+		}
+
+		addLatency(metrics, "timer.smartfridge.get-items", manager.getItemsLatency());
+		addLatency(metrics, "timer.smartfridge.get-fill-factor", manager.getFillFactorLatency());
+
+		if (deduplicating != null) {
+			metrics.add(new Metric<>("counter.smartfridge.events.duplicate", deduplicating.getDuplicateCount()));
+			metrics.add(new Metric<>("counter.smartfridge.events.out-of-order", deduplicating.getOutOfOrderCount()));
+		}
+		if (cache != null) {
+			metrics.add(new Metric<>("gauge.smartfridge.cache.get-items.hit-rate", cache.getItemsStats().hitRate()));
+			metrics.add(new Metric<>("gauge.smartfridge.cache.get-fill-factor.hit-rate", cache.getFillFactorStats().hitRate()));
+		}
+		return metrics;
+	}
+
+	private static void addSize(List<Metric<?>> metrics, String name, IntSupplier size) {
+		try {
+			metrics.add(new Metric<>(name, size.getAsInt()));
+		} catch (UnsupportedOperationException e) {
+			// not reported by this fridge
+		}
+	}
+
+	private static void addLatency(List<Metric<?>> metrics, String name, LatencyHistogram histogram) {
+		metrics.add(new Metric<>(name + ".count", histogram.getCount()));
+		metrics.add(new Metric<>(name + ".p50", millis(histogram.getNanosAtPercentile(50.0d))));
+		metrics.add(new Metric<>(name + ".p90", millis(histogram.getNanosAtPercentile(90.0d))));
+		metrics.add(new Metric<>(name + ".p99", millis(histogram.getNanosAtPercentile(99.0d))));
+		metrics.add(new Metric<>(name + ".p999", millis(histogram.getNanosAtPercentile(99.9d))));
+		metrics.add(new Metric<>(name + ".max", millis(histogram.getMaxNanos())));
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6d;
+	}
+}
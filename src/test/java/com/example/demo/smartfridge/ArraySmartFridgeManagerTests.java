@@ -0,0 +1,309 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class ArraySmartFridgeManagerTests {
+
+    private String randomUUID() {
+        return UUID.randomUUID().toString();
+    }
+
+    private Map<Long, Double> toMap(Object[] items) {
+        Map<Long, Double> map = new HashMap<>();
+        for (Object item : items) {
+            Object[] pair = (Object[]) item;
+            map.put((Long) pair[0], (Double) pair[1]);
+        }
+        return map;
+    }
+
+    @Test
+    public void toStringShouldBeOverwritten() {
+        SmartFridgeManager manager = new ArraySmartFridgeManager();
+
+        String expected = "ArraySmartFridgeManager{}";
+        String actual = manager.toString();
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void toStringWithContents() {
+        String uuid = randomUUID();
+
+        SmartFridgeManager manager = new ArraySmartFridgeManager();
+        manager.handleItemAdded(
+                1,
+                uuid,
+                "testItem1",
+                0.5d
+        );
+        String expected = "ArraySmartFridgeManager{\n" +
+                "StandardSmartFridgeItem{\n" +
+                " itemType=1,\n" +
+                " itemUUID='" + uuid + "',\n" +
+                " name='testItem1',\n" +
+                " fillFactor=0.5\n" +
+                "}\n" +
+                "}";
+        String actual = manager.toString();
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void handleItemRemovedReusesSlot() {
+        String uuid1 = randomUUID();
+        String uuid2 = randomUUID();
+        ArraySmartFridgeManager manager = new ArraySmartFridgeManager();
+
+        manager.handleItemAdded(
+                1,
+                uuid1,
+                "testItem",
+                1.0d
+        );
+        manager.handleItemRemoved(uuid1);
+        manager.handleItemRemoved(uuid1);
+        assertEquals(0, manager.size());
+
+        manager.handleItemAdded(
+                1,
+                uuid2,
+                "testItem",
+                0.5d
+        );
+        assertEquals(1, manager.size());
+        assertEquals(1, manager.getNameCount());
+        assertEquals(0.5d, manager.getFillFactorAsDouble(1), 0.0d);
+    }
+
+    @Test
+    public void getFillFactorAfterItemReinserted() {
+        String uuid = randomUUID();
+        ArraySmartFridgeManager manager = new ArraySmartFridgeManager();
+
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testItem1",
+                0.5d
+        );
+        manager.handleItemAdded(
+                1,
+                uuid,
+                "testItem2",
+                1.0d
+        );
+        manager.handleItemAdded(
+                2,
+                uuid,
+                "testItem2",
+                0.25d
+        );
+
+        assertEquals(2, manager.size());
+        assertEquals(0.5d, manager.getFillFactorAsDouble(1), 0.0d);
+        assertEquals(0.25d, manager.getFillFactorAsDouble(2), 0.0d);
+    }
+
+    @Test
+    public void getFillFactorEmptyContainers() {
+        SmartFridgeManager manager = new ArraySmartFridgeManager();
+
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testItem1",
+                0.0d
+        );
+
+        Double expected = 0.0d;
+        Double actual = manager.getFillFactor(1);
+        assertEquals(expected, actual);
+
+        actual = manager.getFillFactor(2);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void getItemsIgnoreItems() {
+        SmartFridgeManager manager = new ArraySmartFridgeManager();
+
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testItem1",
+                0.5d
+        );
+        manager.handleItemAdded(
+                2,
+                randomUUID(),
+                "testItem2",
+                0.25d
+        );
+
+        Object[] actual = manager.getItems(0.75d);
+        assertEquals(2, actual.length);
+
+        manager.forgetItem(1);
+        manager.forgetItem(3);
+
+        actual = manager.getItems(0.75d);
+        assertEquals(1, actual.length);
+    }
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void handleItemAddedNegativeFillFactor() {
+        SmartFridgeManager manager = new ArraySmartFridgeManager();
+
+        exception.expect(IllegalArgumentException.class);
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testNewItem",
+                -1.0d
+        );
+    }
+
+    @Test
+    public void uuidKeysToString() {
+        String uuid = randomUUID();
+
+        SmartFridgeManager manager = new ArraySmartFridgeManager(ArraySmartFridgeManager.KeyMode.UUID);
+        manager.handleItemAdded(
+                1,
+                uuid,
+                "testItem1",
+                0.5d
+        );
+        String expected = "ArraySmartFridgeManager{\n" +
+                "StandardSmartFridgeItem{\n" +
+                " itemType=1,\n" +
+                " itemUUID='" + uuid + "',\n" +
+                " name='testItem1',\n" +
+                " fillFactor=0.5\n" +
+                "}\n" +
+                "}";
+        String actual = manager.toString();
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void uuidKeysWithFallbackKeys() {
+        String uuid = randomUUID();
+        ArraySmartFridgeManager manager = new ArraySmartFridgeManager(ArraySmartFridgeManager.KeyMode.UUID);
+
+        manager.handleItemAdded(
+                1,
+                uuid,
+                "testItem1",
+                0.5d
+        );
+        manager.handleItemAdded(
+                1,
+                uuid.toUpperCase(),
+                "testItem2",
+                1.0d
+        );
+        manager.handleItemAdded(
+                1,
+                "testUUID",
+                "testItem3",
+                0.25d
+        );
+        assertEquals(3, manager.size());
+
+        manager.handleItemAdded(
+                1,
+                uuid,
+                "testItem1",
+                0.25d
+        );
+        assertEquals(3, manager.size());
+        assertEquals(0.5d, manager.getFillFactorAsDouble(1), 0.0d);
+
+        manager.handleItemRemoved(uuid);
+        manager.handleItemRemoved("testUUID");
+        assertEquals(1, manager.size());
+        assertEquals(1.0d, manager.getFillFactorAsDouble(1), 0.0d);
+    }
+
+    @Test
+    public void randomEventsMatchDemoSmartFridgeManager() {
+        randomEventsMatchDemoSmartFridgeManager(new ArraySmartFridgeManager());
+    }
+
+    @Test
+    public void randomEventsWithUuidKeysMatchDemoSmartFridgeManager() {
+        randomEventsMatchDemoSmartFridgeManager(new ArraySmartFridgeManager(ArraySmartFridgeManager.KeyMode.UUID));
+    }
+
+    private void randomEventsMatchDemoSmartFridgeManager(SmartFridgeManager actual) {
+        Random random = new Random(42);
+        String[] uuids = new String[500];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = i % 10 == 0 ? "testUUID" + i : randomUUID();
+        }
+        SmartFridgeManager expected = new DemoSmartFridgeManager();
+
+        for (int i = 0; i < 100_000; i++) {
+            String uuid = uuids[random.nextInt(uuids.length)];
+            if (random.nextInt(3) == 0) {
+                expected.handleItemRemoved(uuid);
+                actual.handleItemRemoved(uuid);
+            } else {
+                long itemType = random.nextInt(40);
+                double fillFactor = random.nextInt(4) == 0 ? 0.0d : random.nextDouble();
+                expected.handleItemAdded(itemType, uuid, "testItem" + itemType, fillFactor);
+                actual.handleItemAdded(itemType, uuid, "testItem" + itemType, fillFactor);
+            }
+        }
+
+        for (long itemType = 0; itemType < 40; itemType++) {
+            assertEquals(expected.getFillFactorAsDouble(itemType), actual.getFillFactorAsDouble(itemType), 1e-9d);
+        }
+        Map<Long, Double> expectedItems = toMap(expected.getItems(0.5d));
+        Map<Long, Double> actualItems = toMap(actual.getItems(0.5d));
+        assertEquals(expectedItems.keySet(), actualItems.keySet());
+    }
+
+    @Test
+    public void sizes() {
+        SmartFridgeManager manager = new ArraySmartFridgeManager();
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        manager.handleItemAdded(1, "b", "milk", 0.0d);
+        manager.handleItemAdded(2, "c", "jam", 1.0d);
+        manager.handleItemAdded(3, "d", "cheese", 1.0d);
+        manager.handleItemRemoved("d");
+        manager.forgetItem(2);
+        manager.forgetItem(4);
+
+        assertEquals(3, manager.getItemCount());
+        assertEquals(1, manager.getItemTypeCount());
+        assertEquals(2, manager.getForgottenItemTypeCount());
+    }
+
+    @Test
+    public void handleItemAddedNaNFillFactor() {
+        SmartFridgeManager manager = new ArraySmartFridgeManager();
+
+        exception.expect(IllegalArgumentException.class);
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testNewItem",
+                Double.NaN
+        );
+    }
+}
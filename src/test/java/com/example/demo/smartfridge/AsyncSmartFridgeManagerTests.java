@@ -0,0 +1,331 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncSmartFridgeManagerTests {
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    /**
+     * Holds every event until open() is called
+     */
+    private static class GatedSmartFridgeManager extends ConcurrentSmartFridgeManager {
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        void open() {
+            gate.countDown();
+        }
+
+        private void await() {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+            await();
+            super.handleItemAdded(itemType, itemUUID, name, fillFactor);
+        }
+
+        @Override
+        public void handleItemRemoved(String itemUUID) {
+            await();
+            super.handleItemRemoved(itemUUID);
+        }
+    }
+
+    @Test
+    public void eventsOfOneContainerKeepTheirOrder() throws Exception {
+        ConcurrentSmartFridgeManager target = new ConcurrentSmartFridgeManager();
+        AsyncSmartFridgeManager manager = new AsyncSmartFridgeManager(target, 4, 16, AsyncSmartFridgeManager.BackpressurePolicy.BLOCK);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> producers = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                int producer = p;
+                producers.add(executor.submit(() -> {
+                    // every container ends with the last fill factor it was given, or removed
+                    for (int i = 1; i <= 1_000; i++) {
+                        String itemUUID = "item" + producer + "-" + (i % 50);
+                        if (i % 7 == 0) {
+                            manager.handleItemRemoved(itemUUID);
+                        } else {
+                            manager.handleItemAdded(producer, itemUUID, "item", i / 1_000.0d);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> producer : producers) {
+                producer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        manager.flush().get(10, TimeUnit.SECONDS);
+
+        ConcurrentSmartFridgeManager expected = new ConcurrentSmartFridgeManager();
+        for (int producer = 0; producer < 4; producer++) {
+            for (int i = 1; i <= 1_000; i++) {
+                String itemUUID = "item" + producer + "-" + (i % 50);
+                if (i % 7 == 0) {
+                    expected.handleItemRemoved(itemUUID);
+                } else {
+                    expected.handleItemAdded(producer, itemUUID, "item", i / 1_000.0d);
+                }
+            }
+        }
+        assertEquals(expected.getItemCount(), manager.getItemCount());
+        // the running sums are updated in a different order, so compare with a tolerance
+        for (long itemType = 0; itemType < 4; itemType++) {
+            assertEquals(expected.getFillFactorAsDouble(itemType), manager.getFillFactorAsDouble(itemType), 1e-9d);
+        }
+        manager.close();
+    }
+
+    @Test
+    public void futureCompletesOnceApplied() throws Exception {
+        GatedSmartFridgeManager target = new GatedSmartFridgeManager();
+        AsyncSmartFridgeManager manager = new AsyncSmartFridgeManager(target, 2, AsyncSmartFridgeManager.BackpressurePolicy.BLOCK);
+        CompletableFuture<Void> added = manager.handleItemAddedAsync(1, "a", "milk", 0.5d);
+        CompletableFuture<Void> flushed = manager.flush();
+        assertFalse(added.isDone());
+        assertFalse(flushed.isDone());
+        assertEquals(0.0d, manager.getFillFactorAsDouble(1), 0.0d);
+
+        target.open();
+        assertNull(added.get(10, TimeUnit.SECONDS));
+        flushed.get(10, TimeUnit.SECONDS);
+        assertEquals(0.5d, manager.getFillFactorAsDouble(1), 0.0d);
+        manager.close();
+    }
+
+    @Test
+    public void invalidEventIsRejectedOnCallerThread() throws Exception {
+        AsyncSmartFridgeManager manager = new AsyncSmartFridgeManager(new DemoSmartFridgeManager(), 1, AsyncSmartFridgeManager.BackpressurePolicy.BLOCK);
+        try {
+            exception.expect(IllegalArgumentException.class);
+            manager.handleItemAdded(1, "a", "milk", 1.5d);
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void eventRejectedByTargetFailsItsFuture() throws Exception {
+        DemoSmartFridgeManager target = new DemoSmartFridgeManager() {
+            @Override
+            public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+                if ("bad".equals(itemUUID)) {
+                    throw new IllegalArgumentException("bad container");
+                }
+                super.handleItemAdded(itemType, itemUUID, name, fillFactor);
+            }
+        };
+        AsyncSmartFridgeManager manager = new AsyncSmartFridgeManager(target, 1, AsyncSmartFridgeManager.BackpressurePolicy.BLOCK);
+        CompletableFuture<Void> bad = manager.handleItemAddedAsync(1, "bad", "milk", 0.5d);
+        CompletableFuture<Void> good = manager.handleItemAddedAsync(1, "good", "milk", 0.5d);
+        try {
+            bad.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        // the worker carries on
+        good.get(10, TimeUnit.SECONDS);
+        assertEquals(1, manager.getItems(1.0d).length);
+        manager.close();
+    }
+
+    @Test
+    public void rejectWhenQueueFull() throws Exception {
+        GatedSmartFridgeManager target = new GatedSmartFridgeManager();
+        AsyncSmartFridgeManager manager = new AsyncSmartFridgeManager(target, 1, 2, AsyncSmartFridgeManager.BackpressurePolicy.REJECT);
+        // one held by the worker, two queued
+        manager.handleItemAdded(1, "a", "milk", 0.1d);
+        awaitQueued(manager, 0);
+        manager.handleItemAdded(1, "b", "milk", 0.2d);
+        manager.handleItemAdded(1, "c", "milk", 0.3d);
+
+        CompletableFuture<Void> rejected = manager.handleItemAddedAsync(1, "d", "milk", 0.4d);
+        assertTrue(rejected.isCompletedExceptionally());
+        try {
+            manager.handleItemRemoved("a");
+            fail();
+        } catch (RejectedExecutionException e) {
+            assertEquals(2, manager.getRejectedCount());
+        }
+
+        target.open();
+        manager.flush().get(10, TimeUnit.SECONDS);
+        assertEquals(3, manager.getItemCount());
+        manager.close();
+    }
+
+    @Test
+    public void dropOldestWhenQueueFull() throws Exception {
+        GatedSmartFridgeManager target = new GatedSmartFridgeManager();
+        AsyncSmartFridgeManager manager = new AsyncSmartFridgeManager(target, 1, 2, AsyncSmartFridgeManager.BackpressurePolicy.DROP_OLDEST);
+        manager.handleItemAdded(1, "a", "milk", 0.1d);
+        awaitQueued(manager, 0);
+        CompletableFuture<Void> b = manager.handleItemAddedAsync(1, "b", "milk", 0.2d);
+        CompletableFuture<Void> flushed = manager.flush();
+        // drops b, never the flush marker
+        CompletableFuture<Void> c = manager.handleItemAddedAsync(1, "c", "milk", 0.3d);
+        assertTrue(b.isCompletedExceptionally());
+        assertEquals(1, manager.getDroppedCount());
+
+        target.open();
+        flushed.get(10, TimeUnit.SECONDS);
+        c.get(10, TimeUnit.SECONDS);
+        assertNull(manager.getItemType("b"));
+        assertEquals(2, manager.getItemCount());
+        manager.close();
+    }
+
+    @Test
+    public void blockWhenQueueFull() throws Exception {
+        GatedSmartFridgeManager target = new GatedSmartFridgeManager();
+        AsyncSmartFridgeManager manager = new AsyncSmartFridgeManager(target, 1, 1, AsyncSmartFridgeManager.BackpressurePolicy.BLOCK);
+        manager.handleItemAdded(1, "a", "milk", 0.1d);
+        awaitQueued(manager, 0);
+        manager.handleItemAdded(1, "b", "milk", 0.2d);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> blocked = executor.submit(() -> manager.handleItemAdded(1, "c", "milk", 0.3d));
+            try {
+                blocked.get(100, TimeUnit.MILLISECONDS);
+                fail();
+            } catch (TimeoutException e) {
+                // waits for room
+            }
+            target.open();
+            blocked.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        manager.flush().get(10, TimeUnit.SECONDS);
+        assertEquals(3, manager.getItemCount());
+        assertEquals(0, manager.getDroppedCount() + manager.getRejectedCount());
+        manager.close();
+    }
+
+    @Test
+    public void applyEventsSplitsByPartition() throws Exception {
+        AsyncSmartFridgeManager manager = new AsyncSmartFridgeManager(new ConcurrentSmartFridgeManager(), 4, AsyncSmartFridgeManager.BackpressurePolicy.BLOCK);
+        List<SmartFridgeEvent> events = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            events.add(SmartFridgeEvent.added(i % 5, "item" + i, "item", 0.5d));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            events.add(SmartFridgeEvent.removed("item" + i));
+        }
+        manager.applyEventsAsync(events).get(10, TimeUnit.SECONDS);
+        assertEquals(50, manager.getItemCount());
+        assertEquals(5, manager.getItems(1.0d).length);
+        manager.close();
+    }
+
+    @Test
+    public void closeAppliesQueuedEvents() throws Exception {
+        GatedSmartFridgeManager target = new GatedSmartFridgeManager();
+        AsyncSmartFridgeManager manager = new AsyncSmartFridgeManager(target, 2, AsyncSmartFridgeManager.BackpressurePolicy.BLOCK);
+        for (int i = 0; i < 10; i++) {
+            manager.handleItemAdded(1, "item" + i, "milk", 0.5d);
+        }
+        target.open();
+        manager.close();
+        assertEquals(10, target.getItemCount());
+
+        CompletableFuture<Void> late = manager.handleItemRemovedAsync("item0");
+        assertTrue(late.isCompletedExceptionally());
+        exception.expect(RejectedExecutionException.class);
+        manager.handleItemRemoved("item0");
+    }
+
+    @Test
+    public void closeCompletesEveryFutureOfRacingProducers() throws Exception {
+        for (AsyncSmartFridgeManager.BackpressurePolicy policy : AsyncSmartFridgeManager.BackpressurePolicy.values()) {
+            for (int round = 0; round < 20; round++) {
+                AsyncSmartFridgeManager manager = new AsyncSmartFridgeManager(new ConcurrentSmartFridgeManager(), 2, 4, policy);
+                ExecutorService producers = Executors.newFixedThreadPool(4);
+                List<Future<List<CompletableFuture<Void>>>> submitted = new ArrayList<>();
+                for (int producer = 0; producer < 4; producer++) {
+                    int id = producer;
+                    submitted.add(producers.submit(() -> {
+                        List<CompletableFuture<Void>> futures = new ArrayList<>();
+                        for (int i = 0; ; i++) {
+                            CompletableFuture<Void> future = manager.handleItemAddedAsync(1, id + "-" + i, "milk", 0.5d);
+                            futures.add(future);
+                            if (i % 16 == 0) {
+                                futures.add(manager.flush());
+                            }
+                            if (manager.getRejectedCount() > 0 && future.isCompletedExceptionally()) {
+                                return futures;
+                            }
+                        }
+                    }));
+                }
+                Thread.sleep(1);
+                manager.close();
+
+                for (Future<List<CompletableFuture<Void>>> producer : submitted) {
+                    for (CompletableFuture<Void> future : producer.get(10, TimeUnit.SECONDS)) {
+                        try {
+                            future.get(10, TimeUnit.SECONDS);
+                        } catch (ExecutionException e) {
+                            assertTrue(e.getCause() instanceof RejectedExecutionException);
+                        }
+                    }
+                }
+                producers.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void errorInTargetFailsItsFuture() throws Exception {
+        DemoSmartFridgeManager target = new DemoSmartFridgeManager() {
+            @Override
+            public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+                if ("bad".equals(itemUUID)) {
+                    throw new AssertionError("bad container");
+                }
+                super.handleItemAdded(itemType, itemUUID, name, fillFactor);
+            }
+        };
+        AsyncSmartFridgeManager manager = new AsyncSmartFridgeManager(target, 1, AsyncSmartFridgeManager.BackpressurePolicy.BLOCK);
+        CompletableFuture<Void> bad = manager.handleItemAddedAsync(1, "bad", "milk", 0.5d);
+        CompletableFuture<Void> good = manager.handleItemAddedAsync(1, "good", "milk", 0.5d);
+        try {
+            bad.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+        good.get(10, TimeUnit.SECONDS);
+        manager.close();
+    }
+
+    private static void awaitQueued(AsyncSmartFridgeManager manager, int queued) throws InterruptedException {
+        // the worker has taken the event and waits in the target
+        for (int i = 0; i < 1_000 && manager.getQueuedCount() != queued; i++) {
+            Thread.sleep(1);
+        }
+        assertEquals(queued, manager.getQueuedCount());
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CachingSmartFridgeManagerTests {
+    private static final double[] THRESHOLDS = {0.0d, 0.1d, 0.25d, 0.5d, 0.75d, 1.0d};
+
+    @Test
+    public void repeatedQueriesHitTheCache() {
+        CachingSmartFridgeManager manager = new CachingSmartFridgeManager(new DemoSmartFridgeManager(), 100);
+        manager.handleItemAdded(1, "a", "milk", 0.2d);
+        manager.handleItemAdded(2, "b", "jam", 0.8d);
+
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(new Object[]{new Object[]{1L, 0.2d}}, manager.getItems(0.5d));
+            assertEquals(0.8d, manager.getFillFactorAsDouble(2), 0.0d);
+        }
+        assertEquals(2, manager.getItemsStats().hitCount());
+        assertEquals(1, manager.getItemsStats().missCount());
+        assertEquals(2, manager.getFillFactorStats().hitCount());
+        assertEquals(1, manager.getFillFactorStats().missCount());
+    }
+
+    @Test
+    public void writeOnlyDropsAffectedResults() {
+        CachingSmartFridgeManager manager = new CachingSmartFridgeManager(new DemoSmartFridgeManager(), 100);
+        manager.handleItemAdded(1, "a", "milk", 0.2d);
+        manager.handleItemAdded(1, "b", "milk", 0.4d);
+        manager.handleItemAdded(2, "c", "jam", 0.6d);
+        for (double threshold : THRESHOLDS) {
+            manager.getItems(threshold);
+        }
+        manager.getFillFactor(1);
+        manager.getFillFactor(2);
+
+        // jam goes from 0.6 to 0.7, which only results from 0.6 up can notice
+        manager.handleItemAdded(2, "d", "jam", 0.8d);
+        assertEquals(new TreeSet<>(Arrays.asList(0.0d, 0.1d, 0.25d, 0.5d)), manager.getCachedThresholds());
+        assertEquals(0.3d, manager.getFillFactor(1), 1e-9d);
+        assertEquals(1, manager.getFillFactorStats().hitCount());
+        assertEquals(0.7d, manager.getFillFactor(2), 1e-9d);
+
+        // milk goes from 0.3 to 0.4
+        manager.handleItemRemoved("a");
+        assertEquals(new TreeSet<>(Arrays.asList(0.0d, 0.1d, 0.25d)), manager.getCachedThresholds());
+        ItemFillResult result = manager.getItems(0.5d, new ItemFillResult());
+        assertEquals(1, result.size());
+        assertEquals(0.4d, result.getFillFactor(0), 1e-9d);
+
+        // unknown containers change nothing
+        manager.handleItemRemoved("unknown");
+        assertEquals(new TreeSet<>(Arrays.asList(0.0d, 0.1d, 0.25d, 0.5d)), manager.getCachedThresholds());
+
+        // an item type without containers reads as 0.0, so emptying one drops every result
+        manager.handleItemRemoved("b");
+        assertTrue(manager.getCachedThresholds().isEmpty());
+    }
+
+    @Test
+    public void replacedContainerDropsBothItemTypes() {
+        CachingSmartFridgeManager manager = new CachingSmartFridgeManager(new DemoSmartFridgeManager(), 100);
+        manager.handleItemAdded(1, "a", "milk", 0.9d);
+        manager.handleItemAdded(2, "b", "jam", 0.9d);
+        assertEquals(0.9d, manager.getFillFactor(1), 0.0d);
+        assertEquals(0.9d, manager.getFillFactor(2), 0.0d);
+        assertEquals(2, manager.getItems(1.0d).length);
+
+        // the container moves from milk to jam
+        manager.handleItemAdded(2, "a", "jam", 0.5d);
+        assertEquals(0.0d, manager.getFillFactor(1), 0.0d);
+        assertEquals(0.7d, manager.getFillFactor(2), 1e-9d);
+        assertEquals(1, manager.getItems(1.0d).length);
+    }
+
+    @Test
+    public void forgetAndRemember() {
+        MutableClock clock = new MutableClock();
+        CachingSmartFridgeManager manager = new CachingSmartFridgeManager(new DemoSmartFridgeManager(clock), 100, clock);
+        manager.handleItemAdded(1, "a", "milk", 0.2d);
+        manager.handleItemAdded(2, "b", "jam", 0.4d);
+        assertEquals(2, manager.getItems(0.5d).length);
+
+        manager.forgetItem(1);
+        assertEquals(1, manager.getItems(0.5d).length);
+        manager.rememberItem(1);
+        assertEquals(2, manager.getItems(0.5d).length);
+
+        // the time to live runs out in the delegate, without a write through the cache
+        manager.forgetItem(2, Duration.ofHours(1));
+        assertEquals(1, manager.getItems(0.5d).length);
+        clock.advance(Duration.ofHours(1));
+        assertEquals(2, manager.getItems(0.5d).length);
+        assertEquals(Long.MAX_VALUE, manager.getNextForgetExpiry());
+    }
+
+    @Test
+    public void answersMatchUncachedFridge() {
+        Random random = new Random(42);
+        DemoSmartFridgeManager expected = new DemoSmartFridgeManager();
+        // small enough that thresholds and fill factors are evicted now and then
+        CachingSmartFridgeManager manager = new CachingSmartFridgeManager(new DemoSmartFridgeManager(), 4);
+
+        for (int step = 0; step < 20_000; step++) {
+            long itemType = random.nextInt(8);
+            String itemUUID = "item" + random.nextInt(40);
+            int operation = random.nextInt(100);
+            if (operation < 40) {
+                double fillFactor = random.nextInt(5) / 4.0d;
+                expected.handleItemAdded(itemType, itemUUID, "item", fillFactor);
+                manager.handleItemAdded(itemType, itemUUID, "item", fillFactor);
+            } else if (operation < 60) {
+                expected.handleItemRemoved(itemUUID);
+                manager.handleItemRemoved(itemUUID);
+            } else if (operation < 63) {
+                List<SmartFridgeEvent> events = Arrays.asList(
+                        SmartFridgeEvent.added(itemType, itemUUID, "item", random.nextDouble()),
+                        SmartFridgeEvent.removed("item" + random.nextInt(40))
+                );
+                expected.applyEvents(events);
+                manager.applyEvents(events);
+            } else if (operation < 65) {
+                expected.forgetItem(itemType);
+                manager.forgetItem(itemType);
+            } else if (operation < 67) {
+                expected.rememberItem(itemType);
+                manager.rememberItem(itemType);
+            } else if (operation < 85) {
+                double threshold = THRESHOLDS[random.nextInt(THRESHOLDS.length)];
+                assertArrayEquals("step " + step, expected.getItems(threshold), manager.getItems(threshold));
+            } else {
+                assertEquals("step " + step, expected.getFillFactorAsDouble(itemType), manager.getFillFactorAsDouble(itemType), 0.0d);
+            }
+        }
+        assertTrue(manager.getItemsStats().hitCount() > 0);
+    }
+
+    @Test
+    public void concurrentReadsSeeEveryWrite() throws Exception {
+        CachingSmartFridgeManager manager = new CachingSmartFridgeManager(new ConcurrentSmartFridgeManager(), 100);
+        ConcurrentSmartFridgeManager uncached = (ConcurrentSmartFridgeManager) manager.getDelegate();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                int writer = t;
+                tasks.add(executor.submit(() -> {
+                    Random random = new Random(writer);
+                    for (int i = 0; i < 20_000; i++) {
+                        String itemUUID = "item" + writer + "-" + random.nextInt(100);
+                        if (random.nextBoolean()) {
+                            manager.handleItemAdded(random.nextInt(8), itemUUID, "item", random.nextInt(5) / 4.0d);
+                        } else {
+                            manager.handleItemRemoved(itemUUID);
+                        }
+                    }
+                }));
+                tasks.add(executor.submit(() -> {
+                    Random random = new Random(writer + 2);
+                    for (int i = 0; i < 20_000; i++) {
+                        manager.getItems(THRESHOLDS[random.nextInt(THRESHOLDS.length)]);
+                        manager.getFillFactor(random.nextInt(8));
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // nothing cached while the writers ran may have outlived a later write
+        for (double threshold : THRESHOLDS) {
+            assertArrayEquals(uncached.getItems(threshold), manager.getItems(threshold));
+        }
+        for (long itemType = 0; itemType < 8; itemType++) {
+            assertEquals(uncached.getFillFactorAsDouble(itemType), manager.getFillFactorAsDouble(itemType), 0.0d);
+        }
+        assertFalse(manager.getCachedThresholds().isEmpty());
+    }
+}
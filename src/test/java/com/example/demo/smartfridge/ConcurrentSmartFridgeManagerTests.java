@@ -0,0 +1,528 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentSmartFridgeManagerTests {
+    private static final int THREADS = 4;
+    private static final int EVENTS_PER_THREAD = 50_000;
+    private static final int UUIDS = 1_000;
+    private static final int ITEM_TYPES = 16;
+
+    private String randomUUID() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Test
+    public void toStringShouldBeOverwritten() {
+        SmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+
+        String expected = "ConcurrentSmartFridgeManager{}";
+        String actual = manager.toString();
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void getFillFactorIgnoreEmptyContainer() {
+        SmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testItem1",
+                0.5d
+        );
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testItem2",
+                1.0d
+        );
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testItem3",
+                0.0d
+        );
+
+        Double expected = 0.75d;
+        Double actual = manager.getFillFactor(1);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void getFillFactorAfterItemReinserted() {
+        String uuid = randomUUID();
+        SmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+
+        manager.handleItemAdded(
+                1,
+                uuid,
+                "testItem",
+                1.0d
+        );
+        manager.handleItemAdded(
+                2,
+                uuid,
+                "testItem",
+                0.25d
+        );
+
+        Double expected = 0.0d;
+        Double actual = manager.getFillFactor(1);
+        assertEquals(expected, actual);
+
+        expected = 0.25d;
+        actual = manager.getFillFactor(2);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void getItemsIgnoreItems() {
+        String uuid = randomUUID();
+        SmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testItem1",
+                0.5d
+        );
+        manager.handleItemAdded(
+                2,
+                randomUUID(),
+                "testItem2",
+                0.25d
+        );
+        manager.handleItemAdded(
+                3,
+                uuid,
+                "testItem3",
+                0.0d
+        );
+
+        Object[] actual = manager.getItems(0.75d);
+        assertEquals(3, actual.length);
+
+        actual = manager.getItems(0.25d);
+        assertEquals(2, actual.length);
+
+        manager.forgetItem(2);
+        actual = manager.getItems(0.75d);
+        assertEquals(2, actual.length);
+
+        manager.handleItemRemoved(uuid);
+        actual = manager.getItems(0.75d);
+        assertEquals(1, actual.length);
+    }
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void handleItemAddedFillFactorOverOne() {
+        SmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+
+        exception.expect(IllegalArgumentException.class);
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testNewItem",
+                1.1d
+        );
+    }
+
+    @Test
+    public void concurrentEventsMatchContents() throws Exception {
+        ConcurrentSmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+        String[] uuids = new String[UUIDS];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = randomUUID();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            writers.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                    String uuid = uuids[random.nextInt(uuids.length)];
+                    if (random.nextInt(3) == 0) {
+                        manager.handleItemRemoved(uuid);
+                    } else {
+                        double fillFactor = random.nextInt(4) == 0 ? 0.0d : random.nextDouble();
+                        manager.handleItemAdded(random.nextInt(ITEM_TYPES), uuid, "testItem", fillFactor);
+                    }
+                }
+                return null;
+            }));
+        }
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            while (writing.get()) {
+                for (Object item : manager.getItems(1.0d)) {
+                    double fill = (Double) ((Object[]) item)[1];
+                    if (fill < 0.0d || fill > 1.0d) {
+                        throw new AssertionError("fill factor out of range: " + fill);
+                    }
+                }
+            }
+            return null;
+        });
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(1, TimeUnit.MINUTES);
+        }
+        writing.set(false);
+        reader.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+
+        for (long itemType = 0; itemType < ITEM_TYPES; itemType++) {
+            long type = itemType;
+            OptionalDouble expected = manager
+                    .getContents()
+                    .values()
+                    .stream()
+                    .filter(e -> e.getItemType() == type)
+                    .mapToDouble(SmartFridgeItem::getFillFactor)
+                    .filter(e -> e > 0.0d)
+                    .average();
+            assertEquals(expected.orElse(0.0d), manager.getFillFactor(itemType), 1e-9d);
+        }
+
+        long expectedTypes = manager
+                .getContents()
+                .values()
+                .stream()
+                .map(SmartFridgeItem::getItemType)
+                .distinct()
+                .count();
+        assertEquals(expectedTypes, manager.getItems(1.0d).length);
+    }
+
+    @Test
+    public void concurrentEventsMatchNameIndex() throws Exception {
+        ConcurrentSmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+        String[] names = {"Milk", "Oat Milk", "Jam", "Strawberry Jam"};
+        String[] uuids = new String[UUIDS];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = randomUUID();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            writers.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                    String uuid = uuids[random.nextInt(uuids.length)];
+                    if (random.nextInt(3) == 0) {
+                        manager.handleItemRemoved(uuid);
+                    } else {
+                        manager.handleItemAdded(random.nextInt(ITEM_TYPES), uuid, names[random.nextInt(names.length)], random.nextDouble());
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        for (String prefix : new String[]{"milk", "oat", "jam", "s"}) {
+            Set<Long> expected = new HashSet<>();
+            for (SmartFridgeItem item : manager.getContents().values()) {
+                if ((" " + item.getName().toLowerCase(Locale.ROOT)).contains(" " + prefix)) {
+                    expected.add(item.getItemType());
+                }
+            }
+            Set<Long> actual = new HashSet<>();
+            for (Object item : manager.findItems(prefix, ITEM_TYPES)) {
+                actual.add((Long) ((Object[]) item)[0]);
+            }
+            assertEquals(prefix, expected, actual);
+        }
+    }
+
+    @Test
+    public void snapshotIgnoresLaterEvents() {
+        String uuid = randomUUID();
+        ConcurrentSmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+        manager.handleItemAdded(1, uuid, "testItem1", 0.5d);
+        manager.handleItemAdded(2, randomUUID(), "testItem2", 0.25d);
+
+        try (ConcurrentSmartFridgeManager.Snapshot snapshot = manager.snapshot()) {
+            manager.handleItemAdded(1, uuid, "testItem1", 1.0d);
+            manager.handleItemAdded(3, randomUUID(), "testItem3", 0.1d);
+            manager.forgetItem(2);
+
+            assertEquals(2, snapshot.getItems(1.0d).length);
+            assertEquals(0.5d, snapshot.getFillFactor(1), 0.0d);
+            assertEquals(0.0d, snapshot.getFillFactor(3), 0.0d);
+            assertEquals(1.0d, manager.getFillFactor(1), 0.0d);
+            assertEquals(2, manager.getItems(1.0d).length);
+        }
+    }
+
+    @Test
+    public void closedSnapshotReleasesVersions() {
+        String uuid = randomUUID();
+        ConcurrentSmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+        manager.handleItemAdded(1, uuid, "testItem1", 0.5d);
+
+        ConcurrentSmartFridgeManager.Snapshot snapshot = manager.snapshot();
+        manager.handleItemAdded(1, uuid, "testItem1", 0.75d);
+        manager.getItems(1.0d);
+        manager.handleItemAdded(1, uuid, "testItem1", 1.0d);
+        assertTrue(manager.getVersionCount(1) >= 3);
+
+        snapshot.close();
+        snapshot.close();
+        manager.handleItemAdded(1, uuid, "testItem1", 0.25d);
+        assertEquals(1, manager.getVersionCount(1));
+
+        exception.expect(IllegalStateException.class);
+        snapshot.getItems(1.0d);
+    }
+
+    /**
+     * Movers are containers half full that keep switching between item types 1 and 2, which also
+     * hold one full container each. A consistent view always counts every mover exactly once.
+     */
+    @Test
+    public void concurrentSnapshotsAreConsistent() throws Exception {
+        int movers = 8;
+        ConcurrentSmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+        manager.handleItemAdded(1, randomUUID(), "testItem1", 1.0d);
+        manager.handleItemAdded(2, randomUUID(), "testItem2", 1.0d);
+        String[] uuids = new String[movers];
+        for (int i = 0; i < movers; i++) {
+            uuids[i] = randomUUID();
+            manager.handleItemAdded(1 + i % 2, uuids[i], "testMover", 0.5d);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            writers.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                    manager.handleItemAdded(1 + random.nextInt(2), uuids[random.nextInt(movers)], "testMover", 0.5d);
+                }
+                return null;
+            }));
+        }
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            while (writing.get()) {
+                try (ConcurrentSmartFridgeManager.Snapshot snapshot = manager.snapshot()) {
+                    double fill1 = snapshot.getFillFactor(1);
+                    double fill2 = snapshot.getFillFactor(2);
+                    // fill = (1 + 0.5 * m) / (1 + m)
+                    long counted = Math.round((1.0d - fill1) / (fill1 - 0.5d))
+                            + Math.round((1.0d - fill2) / (fill2 - 0.5d));
+                    if (counted != movers) {
+                        throw new AssertionError("counted " + counted + " movers in " + snapshot);
+                    }
+                }
+            }
+            return null;
+        });
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(1, TimeUnit.MINUTES);
+        }
+        writing.set(false);
+        reader.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+    }
+
+    @Test
+    public void emptyAggregateIsDroppedOnceNoSnapshotSeesIt() {
+        String uuid1 = randomUUID();
+        String uuid2 = randomUUID();
+        ConcurrentSmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+        manager.handleItemAdded(1, uuid1, "testItem1", 0.5d);
+        manager.handleItemAdded(2, uuid2, "testItem2", 0.5d);
+        manager.handleItemRemoved(uuid1);
+        assertEquals(1, manager.getAggregateCount());
+
+        ConcurrentSmartFridgeManager.Snapshot snapshot = manager.snapshot();
+        manager.handleItemRemoved(uuid2);
+        assertEquals(1, manager.getAggregateCount());
+        assertEquals(0.5d, snapshot.getFillFactor(2), 0.0d);
+        assertEquals(0, manager.getItems(1.0d).length);
+
+        snapshot.close();
+        assertEquals(0, manager.getAggregateCount());
+        manager.handleItemAdded(2, uuid2, "testItem2", 0.25d);
+        assertEquals(0.25d, manager.getFillFactor(2), 0.0d);
+    }
+
+    @Test
+    public void getLowestItemsMatchesDemoSmartFridgeManager() {
+        Random random = new Random(42);
+        DemoSmartFridgeManager expected = new DemoSmartFridgeManager();
+        ConcurrentSmartFridgeManager actual = new ConcurrentSmartFridgeManager();
+        for (int i = 0; i < 5_000; i++) {
+            String uuid = "testUUID" + random.nextInt(1_000);
+            long itemType = random.nextInt(200);
+            double fillFactor = random.nextInt(10) == 0 ? 0.0d : random.nextInt(20) / 20.0d;
+            if (random.nextInt(3) == 0) {
+                expected.handleItemRemoved(uuid);
+                actual.handleItemRemoved(uuid);
+            } else {
+                expected.handleItemAdded(itemType, uuid, "testItem", fillFactor);
+                actual.handleItemAdded(itemType, uuid, "testItem", fillFactor);
+            }
+        }
+        expected.forgetItem(7);
+        actual.forgetItem(7);
+
+        for (int offset : new int[]{0, 1, 17, 150, 500}) {
+            Object[] expectedPage = expected.getLowestItems(20, offset);
+            Object[] actualPage = actual.getLowestItems(20, offset);
+            assertEquals(expectedPage.length, actualPage.length);
+            for (int i = 0; i < expectedPage.length; i++) {
+                Object[] expectedItem = (Object[]) expectedPage[i];
+                Object[] actualItem = (Object[]) actualPage[i];
+                assertEquals(expectedItem[0], actualItem[0]);
+                assertEquals((Double) expectedItem[1], (Double) actualItem[1], 1e-9d);
+            }
+        }
+    }
+
+    @Test
+    public void handleItemAddedNaNFillFactor() {
+        SmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+
+        exception.expect(IllegalArgumentException.class);
+        manager.handleItemAdded(1, randomUUID(), "testNewItem", Double.NaN);
+    }
+
+    @Test
+    public void sizes() {
+        SmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        manager.handleItemAdded(1, "b", "milk", 0.0d);
+        manager.handleItemAdded(2, "c", "jam", 1.0d);
+        manager.handleItemAdded(3, "d", "cheese", 1.0d);
+        manager.handleItemRemoved("d");
+        manager.forgetItem(2);
+
+        assertEquals(3, manager.getItemCount());
+        assertEquals(1, manager.getItemTypeCount());
+        assertEquals(1, manager.getForgottenItemTypeCount());
+    }
+
+    @Test
+    public void forgetItemExpires() {
+        MutableClock clock = new MutableClock();
+        ConcurrentSmartFridgeManager manager = new ConcurrentSmartFridgeManager(clock);
+        manager.handleItemAdded(1, randomUUID(), "testItem1", 0.5d);
+        manager.handleItemAdded(2, randomUUID(), "testItem2", 0.5d);
+
+        manager.forgetItem(1, Duration.ofHours(1));
+        manager.forgetItem(2, Duration.ofHours(1));
+        // forgetting without a time to live makes it permanent
+        manager.forgetItem(2);
+        assertEquals(0, manager.getItems(1.0d).length);
+        assertEquals(clock.millis() + Duration.ofHours(1).toMillis(), manager.getNextForgetExpiry());
+
+        clock.advance(Duration.ofMinutes(59));
+        assertEquals(0, manager.getItems(1.0d).length);
+
+        clock.advance(Duration.ofMinutes(1));
+        assertEquals(1, manager.getItems(1.0d).length);
+        assertEquals(Collections.singleton(2L), manager.getIgnoreItemTypes());
+        assertEquals(1, manager.getForgottenItemTypeCount());
+        assertEquals(Long.MAX_VALUE, manager.getNextForgetExpiry());
+
+        manager.forgetItem(2, Duration.ZERO);
+        assertEquals(2, manager.getItems(1.0d).length);
+        assertEquals(0, manager.getForgottenItemTypeCount());
+    }
+
+    @Test
+    public void rememberItemKeepsOpenSnapshots() {
+        ConcurrentSmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        manager.forgetItem(1);
+        assertEquals(0, manager.findItems("milk", 10).length);
+
+        try (ConcurrentSmartFridgeManager.Snapshot forgotten = manager.snapshot()) {
+            manager.rememberItem(1);
+            assertEquals(0, forgotten.getItems(1.0d).length);
+            try (ConcurrentSmartFridgeManager.Snapshot remembered = manager.snapshot()) {
+                manager.forgetItem(1);
+                assertEquals(0, forgotten.getItems(1.0d).length);
+                assertEquals(1, remembered.getItems(1.0d).length);
+                manager.rememberItem(1);
+            }
+        }
+
+        assertEquals(1, manager.getItems(1.0d).length);
+        assertEquals(1, manager.findItems("milk", 10).length);
+        assertEquals(0, manager.getForgottenItemTypeCount());
+        assertEquals(Collections.emptySet(), manager.getIgnoreItemTypes());
+    }
+
+    @Test
+    public void forgetAndRememberMatchDemoManager() {
+        Random random = new Random(7);
+        MutableClock clock = new MutableClock();
+        DemoSmartFridgeManager expected = new DemoSmartFridgeManager(clock);
+        ConcurrentSmartFridgeManager actual = new ConcurrentSmartFridgeManager(clock);
+        for (int i = 0; i < 5_000; i++) {
+            String uuid = "testUUID" + random.nextInt(50);
+            long itemType = random.nextInt(10);
+            int event = random.nextInt(12);
+            Duration timeToLive = Duration.ofMinutes(random.nextInt(3));
+            for (SmartFridgeManager manager : new SmartFridgeManager[]{expected, actual}) {
+                if (event == 0) {
+                    manager.forgetItem(itemType);
+                } else if (event == 1) {
+                    manager.rememberItem(itemType);
+                } else if (event == 2) {
+                    manager.forgetItem(itemType, timeToLive);
+                } else if (event == 3) {
+                    manager.handleItemRemoved(uuid);
+                } else {
+                    manager.handleItemAdded(itemType, uuid, "testItem", 0.05d * event);
+                }
+            }
+            if (i % 10 == 0) {
+                clock.advance(Duration.ofSeconds(30));
+            }
+
+            assertEquals(expected.getIgnoreItemTypes(), actual.getIgnoreItemTypes());
+            assertEquals(expected.getNextForgetExpiry(), actual.getNextForgetExpiry());
+            assertEquals(expected.getForgottenItemTypeCount(), actual.getForgottenItemTypeCount());
+            ItemFillResult expectedItems = expected.getItems(1.0d, new ItemFillResult());
+            ItemFillResult actualItems = actual.getItems(1.0d, new ItemFillResult());
+            assertEquals(expectedItems.size(), actualItems.size());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeduplicatingSmartFridgeManagerTests {
+    private final InstrumentedSmartFridgeManager target = new InstrumentedSmartFridgeManager(new DemoSmartFridgeManager());
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void repeatedEventsAreSuppressed() {
+        DeduplicatingSmartFridgeManager manager = new DeduplicatingSmartFridgeManager(target, 100);
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        manager.handleItemAdded(1, "a", "milk", 0.4d);
+        manager.handleItemRemoved("a");
+        manager.handleItemRemoved("a");
+        // a re-insert after the removal is a new event
+        manager.handleItemAdded(1, "a", "milk", 0.4d);
+
+        assertEquals(3, target.getAddedCount());
+        assertEquals(1, target.getRemovedCount());
+        assertEquals(2, manager.getDuplicateCount());
+        assertEquals(0, manager.getOutOfOrderCount());
+        assertEquals(0.4d, manager.getFillFactor(1), 0.0d);
+    }
+
+    @Test
+    public void sequencedEventsAreAppliedInOrder() {
+        DeduplicatingSmartFridgeManager manager = new DeduplicatingSmartFridgeManager(target, 100);
+        assertTrue(manager.handleEvent(SmartFridgeEvent.added(1, "a", "milk", 0.5d).withSequence(1)));
+        assertTrue(manager.handleEvent(SmartFridgeEvent.removed("a").withSequence(3)));
+        // a retry and a late add that would bring back the removed container
+        assertFalse(manager.handleEvent(SmartFridgeEvent.removed("a").withSequence(3)));
+        assertFalse(manager.handleEvent(SmartFridgeEvent.added(1, "a", "milk", 0.4d).withSequence(2)));
+
+        assertEquals(1, manager.getDuplicateCount());
+        assertEquals(1, manager.getOutOfOrderCount());
+        assertNull(manager.getItemType("a"));
+        assertEquals(1, target.getAddedCount());
+
+        // a numbered repeat of the last event changes nothing either, but moves the sequence on
+        assertFalse(manager.handleEvent(SmartFridgeEvent.removed("a").withSequence(4)));
+        assertTrue(manager.handleEvent(SmartFridgeEvent.added(1, "a", "milk", 0.4d).withSequence(5)));
+        assertFalse(manager.handleEvent(SmartFridgeEvent.added(1, "a", "milk", 0.3d).withSequence(4)));
+        assertEquals(0.4d, manager.getFillFactor(1), 0.0d);
+    }
+
+    @Test
+    public void batchSuppressesAgainstWindowAndItself() {
+        DeduplicatingSmartFridgeManager manager = new DeduplicatingSmartFridgeManager(target, 100);
+        manager.handleEvent(SmartFridgeEvent.added(1, "a", "milk", 0.5d).withSequence(10));
+        manager.handleItemAdded(2, "b", "jam", 0.25d);
+
+        manager.applyEvents(Arrays.asList(
+                SmartFridgeEvent.added(1, "a", "milk", 0.1d).withSequence(9),
+                SmartFridgeEvent.added(2, "b", "jam", 0.25d),
+                SmartFridgeEvent.added(3, "c", "oats", 1.0d).withSequence(1),
+                SmartFridgeEvent.added(3, "c", "oats", 1.0d).withSequence(1),
+                SmartFridgeEvent.removed("c").withSequence(2)
+        ));
+
+        assertEquals(1, manager.getOutOfOrderCount());
+        assertEquals(2, manager.getDuplicateCount());
+        assertArrayEquals(new Object[]{new Object[]{2L, 0.25d}, new Object[]{1L, 0.5d}}, manager.getItems(1.0d));
+        assertEquals(3, manager.getWindowSize());
+
+        // the batch's own events are in the window now
+        manager.applyEvents(Collections.singletonList(SmartFridgeEvent.removed("c").withSequence(2)));
+        assertEquals(3, manager.getDuplicateCount());
+    }
+
+    @Test
+    public void rejectedBatchLeavesWindowUnchanged() {
+        DeduplicatingSmartFridgeManager manager = new DeduplicatingSmartFridgeManager(target, 100);
+        try {
+            manager.applyEvents(Arrays.asList(SmartFridgeEvent.added(1, "a", "milk", 0.5d), null));
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(0, manager.getWindowSize());
+
+        manager.applyEvents(Collections.singletonList(SmartFridgeEvent.added(1, "a", "milk", 0.5d)));
+        assertEquals(0.5d, manager.getFillFactor(1), 0.0d);
+    }
+
+    @Test
+    public void windowIsBoundedByCount() {
+        DeduplicatingSmartFridgeManager manager = new DeduplicatingSmartFridgeManager(target, 2);
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        manager.handleItemAdded(1, "b", "milk", 0.5d);
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        manager.handleItemAdded(1, "c", "milk", 0.5d);
+        assertEquals(2, manager.getWindowSize());
+
+        // b was the least recently seen, so its retry gets through again
+        manager.handleItemAdded(1, "b", "milk", 0.5d);
+        manager.handleItemAdded(1, "c", "milk", 0.5d);
+        assertEquals(2, manager.getDuplicateCount());
+        assertEquals(4, target.getAddedCount());
+    }
+
+    @Test
+    public void windowIsBoundedByTime() {
+        MutableClock clock = new MutableClock();
+        DeduplicatingSmartFridgeManager manager = new DeduplicatingSmartFridgeManager(target, 100, Duration.ofMinutes(10), clock);
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        clock.advance(Duration.ofMinutes(5));
+        manager.handleItemAdded(1, "b", "milk", 0.5d);
+        clock.advance(Duration.ofMinutes(3));
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        assertEquals(1, manager.getDuplicateCount());
+
+        // the duplicate kept a in the window, b has expired
+        clock.advance(Duration.ofMinutes(7));
+        manager.handleItemAdded(1, "c", "milk", 0.5d);
+        assertEquals(2, manager.getWindowSize());
+        manager.handleItemAdded(1, "b", "milk", 0.5d);
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        assertEquals(2, manager.getDuplicateCount());
+        assertEquals(4, target.getAddedCount());
+    }
+
+    @Test
+    public void invalidEventIsNotRemembered() {
+        DeduplicatingSmartFridgeManager manager = new DeduplicatingSmartFridgeManager(target, 100);
+        try {
+            manager.handleItemAdded(1, "a", "milk", 1.5d);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(0, manager.getWindowSize());
+
+        exception.expect(IllegalArgumentException.class);
+        manager.handleItemAdded(1, "a", "milk", 1.5d);
+    }
+
+    @Test
+    public void maxEntriesLessThanOne() {
+        exception.expect(IllegalArgumentException.class);
+        new DeduplicatingSmartFridgeManager(target, 0);
+    }
+}
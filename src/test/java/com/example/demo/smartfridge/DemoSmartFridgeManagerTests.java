@@ -5,12 +5,14 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.time.Duration;
+import java.util.*;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 public class DemoSmartFridgeManagerTests {
     private Map<String, SmartFridgeItem> contents;
@@ -543,4 +545,604 @@ public class DemoSmartFridgeManagerTests {
         assertEquals(0, actual.length);
 
     }
+
+    @Test
+    public void getFillFactorFromInitialContents() {
+        String uuid1 = randomUUID();
+        String uuid2 = randomUUID();
+        contents.put(
+                uuid1,
+                new StandardSmartFridgeItem(
+                        1,
+                        uuid1,
+                        "testItem1",
+                        0.5d
+                )
+        );
+        contents.put(
+                uuid2,
+                new StandardSmartFridgeItem(
+                        1,
+                        uuid2,
+                        "testItem2",
+                        1.0d
+                )
+        );
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager(contents);
+
+        Double expected = 0.75d;
+        Double actual = manager.getFillFactor(1);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void getFillFactorUnknownItemType() {
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+
+        Double expected = 0.0d;
+        Double actual = manager.getFillFactor(1);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void getFillFactorAfterItemRemoved() {
+        String uuid = randomUUID();
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testItem1",
+                0.5d
+        );
+        manager.handleItemAdded(
+                1,
+                uuid,
+                "testItem2",
+                1.0d
+        );
+        manager.handleItemRemoved(uuid);
+
+        Double expected = 0.5d;
+        Double actual = manager.getFillFactor(1);
+        assertEquals(expected, actual);
+
+        manager.handleItemRemoved(uuid);
+        actual = manager.getFillFactor(1);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void getFillFactorAfterItemReinserted() {
+        String uuid = randomUUID();
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testItem1",
+                0.5d
+        );
+        manager.handleItemAdded(
+                1,
+                uuid,
+                "testItem2",
+                1.0d
+        );
+        manager.handleItemAdded(
+                1,
+                uuid,
+                "testItem2",
+                0.25d
+        );
+
+        Double expected = 0.375d;
+        Double actual = manager.getFillFactor(1);
+        assertEquals(expected, actual);
+        assertEquals(2, manager.getItemTypeIndex().get(1).getCount());
+    }
+
+    @Test
+    public void getFillFactorAfterItemTypeChanged() {
+        String uuid = randomUUID();
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+
+        manager.handleItemAdded(
+                1,
+                uuid,
+                "testItem",
+                0.5d
+        );
+        manager.handleItemAdded(
+                2,
+                uuid,
+                "testItem",
+                0.25d
+        );
+
+        assertNull(manager.getItemTypeIndex().get(1));
+        assertEquals(1, manager.getItemTypeIndex().values().size());
+
+        Double expected = 0.25d;
+        Double actual = manager.getFillFactor(2);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void getItemsSortedByFillFactor() {
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testItem1",
+                0.5d
+        );
+        manager.handleItemAdded(
+                2,
+                randomUUID(),
+                "testItem2",
+                0.25d
+        );
+        manager.handleItemAdded(
+                3,
+                randomUUID(),
+                "testItem3",
+                0.0d
+        );
+        String uuid = randomUUID();
+        manager.handleItemAdded(
+                4,
+                uuid,
+                "testItem4",
+                1.0d
+        );
+
+        Object[] actual = manager.getItems(0.75d);
+        assertEquals(3, actual.length);
+        assertArrayEquals(new Object[]{3L, 0.0d}, (Object[]) actual[0]);
+        assertArrayEquals(new Object[]{2L, 0.25d}, (Object[]) actual[1]);
+        assertArrayEquals(new Object[]{1L, 0.5d}, (Object[]) actual[2]);
+
+        manager.handleItemAdded(
+                4,
+                uuid,
+                "testItem4",
+                0.1d
+        );
+
+        actual = manager.getItems(0.75d);
+        assertEquals(4, actual.length);
+        assertArrayEquals(new Object[]{4L, 0.1d}, (Object[]) actual[1]);
+
+        actual = manager.getItems(-1.0d);
+        assertEquals(0, actual.length);
+    }
+
+    @Test
+    public void applyEvents() {
+        String uuid1 = randomUUID();
+        String uuid2 = randomUUID();
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+        manager.handleItemAdded(
+                2,
+                uuid2,
+                "testItem2",
+                0.5d
+        );
+
+        manager.applyEvents(Arrays.asList(
+                SmartFridgeEvent.added(1, uuid1, "testItem1", 1.0d),
+                SmartFridgeEvent.added(1, randomUUID(), "testItem1", 0.5d),
+                SmartFridgeEvent.added(1, uuid1, "testItem1", 0.25d),
+                SmartFridgeEvent.removed(uuid2),
+                SmartFridgeEvent.added(2, uuid2, "testItem2", 0.25d),
+                SmartFridgeEvent.removed(uuid2)
+        ));
+
+        assertEquals(2, manager.getContents().size());
+        assertEquals(0.375d, manager.getFillFactorAsDouble(1), 0.0d);
+        assertNull(manager.getItemTypeIndex().get(2));
+        assertEquals(1, manager.getItems(1.0d).length);
+    }
+
+    @Test
+    public void applyEventsMatchesSingleEvents() {
+        Random random = new Random(7);
+        String[] uuids = new String[200];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = randomUUID();
+        }
+        DemoSmartFridgeManager expected = new DemoSmartFridgeManager();
+        DemoSmartFridgeManager actual = new DemoSmartFridgeManager();
+
+        for (int batch = 0; batch < 100; batch++) {
+            List<SmartFridgeEvent> events = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String uuid = uuids[random.nextInt(uuids.length)];
+                if (random.nextInt(3) == 0) {
+                    events.add(SmartFridgeEvent.removed(uuid));
+                } else {
+                    double fillFactor = random.nextInt(4) == 0 ? 0.0d : random.nextDouble();
+                    events.add(SmartFridgeEvent.added(random.nextInt(20), uuid, "testItem", fillFactor));
+                }
+            }
+            events.forEach(e -> e.applyTo(expected));
+            actual.applyEvents(events);
+        }
+
+        assertEquals(expected.getContents().keySet(), actual.getContents().keySet());
+        for (long itemType = 0; itemType < 20; itemType++) {
+            assertEquals(expected.getFillFactorAsDouble(itemType), actual.getFillFactorAsDouble(itemType), 1e-9d);
+        }
+        assertEquals(expected.getItems(0.5d).length, actual.getItems(0.5d).length);
+    }
+
+    @Test
+    public void applyEventsRejectsWholeBatch() {
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+
+        try {
+            manager.applyEvents(Arrays.asList(
+                    SmartFridgeEvent.added(1, randomUUID(), "testItem1", 1.0d),
+                    null
+            ));
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, manager.getContents().size());
+            return;
+        }
+        fail("expected IllegalArgumentException");
+    }
+
+    @Test
+    public void getItemsDepletingWithin() {
+        MutableClock clock = new MutableClock();
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager(clock);
+        String milk = randomUUID();
+        String jam = randomUUID();
+        manager.handleItemAdded(1, milk, "milk", 1.0d);
+        manager.handleItemAdded(2, jam, "jam", 1.0d);
+        manager.handleItemAdded(3, randomUUID(), "water", 0.0d);
+        manager.handleItemAdded(4, randomUUID(), "salt", 0.8d);
+
+        // milk loses 10% an hour, jam 1%
+        for (int hour = 1; hour <= 5; hour++) {
+            clock.advance(Duration.ofHours(1));
+            manager.handleItemAdded(1, milk, "milk", 1.0d - 0.1d * hour);
+            manager.handleItemAdded(2, jam, "jam", 1.0d - 0.01d * hour);
+        }
+
+        Object[] actual = manager.getItemsDepletingWithin(Duration.ofDays(1));
+        assertEquals(2, actual.length);
+        assertEquals(3L, ((Object[]) actual[0])[0]);
+        assertEquals(Duration.ZERO, ((Object[]) actual[0])[1]);
+        assertEquals(1L, ((Object[]) actual[1])[0]);
+        Duration milkLeft = (Duration) ((Object[]) actual[1])[1];
+        assertEquals(5.0d, milkLeft.toMinutes() / 60.0d, 0.5d);
+
+        manager.forgetItem(1);
+        assertEquals(1, manager.getItemsDepletingWithin(Duration.ofDays(1)).length);
+        // jam runs out in about four days, salt is not consumed at all
+        assertEquals(2, manager.getItemsDepletingWithin(Duration.ofDays(365)).length);
+    }
+
+    @Test
+    public void getItemsDepletingWithinNegative() {
+        SmartFridgeManager manager = new DemoSmartFridgeManager();
+
+        exception.expect(IllegalArgumentException.class);
+        manager.getItemsDepletingWithin(Duration.ofSeconds(-1));
+    }
+
+    @Test
+    public void getItemsDepletingWithinIgnoresStocking() {
+        MutableClock clock = new MutableClock();
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager(clock);
+        String full = randomUUID();
+        manager.handleItemAdded(1, full, "milk", 1.0d);
+        clock.advance(Duration.ofSeconds(1));
+        manager.handleItemAdded(1, randomUUID(), "milk", 0.2d);
+        manager.applyEvents(Arrays.asList(
+                SmartFridgeEvent.added(1, randomUUID(), "milk", 0.1d),
+                SmartFridgeEvent.added(2, randomUUID(), "jam", 0.5d)
+        ));
+        clock.advance(Duration.ofSeconds(1));
+        // the average drops, but nothing was consumed
+        manager.handleItemRemoved(full);
+
+        assertEquals(0, manager.getItemsDepletingWithin(Duration.ofDays(365)).length);
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(0, manager.getItemsDepletingWithin(Duration.ofDays(365)).length);
+    }
+
+    @Test
+    public void getItemsDepletingWithinCountsContainersPutBack() {
+        MutableClock clock = new MutableClock();
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager(clock);
+        String milk = randomUUID();
+        manager.handleItemAdded(1, milk, "milk", 1.0d);
+
+        // taken out and put back with 10% less every hour
+        for (int hour = 1; hour <= 5; hour++) {
+            clock.advance(Duration.ofMinutes(30));
+            manager.handleItemRemoved(milk);
+            clock.advance(Duration.ofMinutes(30));
+            if (hour % 2 == 0) {
+                manager.handleItemAdded(1, milk, "milk", 1.0d - 0.1d * hour);
+            } else {
+                manager.applyEvents(Collections.singletonList(SmartFridgeEvent.added(1, milk, "milk", 1.0d - 0.1d * hour)));
+            }
+        }
+
+        Object[] actual = manager.getItemsDepletingWithin(Duration.ofDays(1));
+        assertEquals(1, actual.length);
+        assertEquals(5.0d, ((Duration) ((Object[]) actual[0])[1]).toMinutes() / 60.0d, 0.5d);
+    }
+
+    @Test
+    public void forgottenItemTypesLeaveTheIndex() {
+        String uuid = randomUUID();
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+        manager.handleItemAdded(1, uuid, "testItem1", 0.5d);
+        manager.handleItemAdded(2, randomUUID(), "testItem2", 0.25d);
+
+        manager.forgetItem(1);
+        assertNull(manager.getItemTypeIndex().get(1));
+        assertNull(manager.getFillHistory(1));
+        assertEquals(1, manager.getItems(1.0d).length);
+
+        // still tracked while forgotten
+        manager.handleItemAdded(1, randomUUID(), "testItem1", 1.0d);
+        assertEquals(0.75d, manager.getFillFactorAsDouble(1), 0.0d);
+        manager.handleItemRemoved(uuid);
+        manager.applyEvents(Collections.singletonList(SmartFridgeEvent.added(1, randomUUID(), "testItem1", 0.5d)));
+        assertEquals(0.75d, manager.getFillFactorAsDouble(1), 0.0d);
+        assertEquals(1, manager.getItems(1.0d).length);
+
+        manager.rememberItem(1);
+        assertEquals(0, manager.getIgnoreItemTypes().size());
+        assertEquals(0, manager.getForgottenAggregates().size());
+        Object[] actual = manager.getItems(1.0d);
+        assertEquals(2, actual.length);
+        assertArrayEquals(new Object[]{1L, 0.75d}, (Object[]) actual[1]);
+    }
+
+    @Test
+    public void forgetItemExpires() {
+        MutableClock clock = new MutableClock();
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager(clock);
+        manager.handleItemAdded(1, randomUUID(), "testItem1", 0.5d);
+        manager.handleItemAdded(2, randomUUID(), "testItem2", 0.5d);
+
+        manager.forgetItem(1, Duration.ofHours(1));
+        manager.forgetItem(2, Duration.ofHours(1));
+        // forgetting without a time to live makes it permanent
+        manager.forgetItem(2);
+        assertEquals(0, manager.getItems(1.0d).length);
+
+        clock.advance(Duration.ofMinutes(59));
+        assertEquals(0, manager.getItems(1.0d).length);
+
+        clock.advance(Duration.ofMinutes(1));
+        assertEquals(1, manager.getItems(1.0d).length);
+        assertEquals(Collections.singleton(2L), manager.getIgnoreItemTypes());
+        assertEquals(0, manager.getForgetExpiries().size());
+
+        manager.forgetItem(2, Duration.ZERO);
+        assertEquals(2, manager.getItems(1.0d).length);
+    }
+
+    @Test
+    public void forgetAndRememberMatchFreshManager() {
+        Random random = new Random(7);
+        String[] uuids = new String[50];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = randomUUID();
+        }
+
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+        for (int i = 0; i < 5_000; i++) {
+            long itemType = random.nextInt(10);
+            int event = random.nextInt(10);
+            if (event == 0) {
+                manager.forgetItem(itemType);
+            } else if (event == 1) {
+                manager.rememberItem(itemType);
+            } else if (event == 2) {
+                manager.handleItemRemoved(uuids[random.nextInt(uuids.length)]);
+            } else {
+                manager.handleItemAdded(itemType, uuids[random.nextInt(uuids.length)], "testItem", random.nextDouble());
+            }
+
+            DemoSmartFridgeManager expected = new DemoSmartFridgeManager(new HashMap<>(manager.getContents()));
+            manager.getIgnoreItemTypes().forEach(expected::forgetItem);
+            ItemFillResult expectedItems = expected.getItems(1.0d, new ItemFillResult());
+            ItemFillResult actualItems = manager.getItems(1.0d, new ItemFillResult());
+            assertEquals(expectedItems.size(), actualItems.size());
+            for (int j = 0; j < expectedItems.size(); j++) {
+                assertEquals(expectedItems.getFillFactor(j), actualItems.getFillFactor(j), 1e-9d);
+            }
+            assertEquals(expected.getFillFactorAsDouble(itemType), manager.getFillFactorAsDouble(itemType), 1e-9d);
+        }
+    }
+
+    @Test
+    public void findItemsByWordPrefix() {
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+        manager.handleItemAdded(1, "a", "Oat Milk", 0.5d);
+        manager.handleItemAdded(1, "b", "Oat Milk", 1.0d);
+        manager.handleItemAdded(2, "c", "Milk", 0.25d);
+        manager.handleItemAdded(3, "d", "milk chocolate", 0.1d);
+        manager.handleItemAdded(4, "e", "Jam", 0.1d);
+
+        assertArrayEquals(new Object[]{new Object[]{1L, "Oat Milk", 0.75d}}, manager.findItems("oat m", 10));
+        assertArrayEquals(new Object[]{
+                new Object[]{2L, "Milk", 0.25d},
+                new Object[]{1L, "Oat Milk", 0.75d},
+                new Object[]{3L, "milk chocolate", 0.1d}
+        }, manager.findItems("MILK", 10));
+        assertEquals(2, manager.findItems("mi", 2).length);
+        assertEquals(0, manager.findItems("milkshake", 10).length);
+
+        manager.forgetItem(2);
+        manager.handleItemRemoved("d");
+        manager.handleItemAdded(1, "b", "Soy Milk", 1.0d);
+        assertArrayEquals(new Object[]{
+                new Object[]{1L, "Oat Milk", 0.75d}
+        }, manager.findItems("milk", 10));
+        manager.handleItemRemoved("a");
+        assertArrayEquals(new Object[]{
+                new Object[]{1L, "Soy Milk", 1.0d}
+        }, manager.findItems("milk", 10));
+    }
+
+    @Test
+    public void findItemsNullPrefix() {
+        exception.expect(IllegalArgumentException.class);
+        new DemoSmartFridgeManager().findItems(null, 10);
+    }
+
+    @Test
+    public void findItemsMatchesContents() {
+        Random random = new Random(11);
+        String[] names = {"Milk", "Oat Milk", "Soy milk", "Milk Chocolate", "Jam", "Strawberry Jam", "Butter", "Peanut butter"};
+        String[] uuids = new String[200];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = randomUUID();
+        }
+
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+        for (int i = 0; i < 20_000; i++) {
+            int event = random.nextInt(20);
+            if (event == 0) {
+                manager.forgetItem(random.nextInt(10));
+            } else if (event == 1) {
+                manager.rememberItem(random.nextInt(10));
+            } else if (event < 6) {
+                manager.handleItemRemoved(uuids[random.nextInt(uuids.length)]);
+            } else if (event == 6) {
+                manager.applyEvents(Arrays.asList(
+                        SmartFridgeEvent.added(random.nextInt(10), uuids[random.nextInt(uuids.length)], names[random.nextInt(names.length)], random.nextDouble()),
+                        SmartFridgeEvent.removed(uuids[random.nextInt(uuids.length)])
+                ));
+            } else {
+                manager.handleItemAdded(random.nextInt(10), uuids[random.nextInt(uuids.length)], names[random.nextInt(names.length)], random.nextDouble());
+            }
+        }
+
+        for (String prefix : new String[]{"m", "milk", "milk c", "oat", "j", "b", "butter", "x"}) {
+            Set<Long> expected = new HashSet<>();
+            for (SmartFridgeItem item : manager.getContents().values()) {
+                if (!manager.getIgnoreItemTypes().contains(item.getItemType())
+                        && (" " + item.getName().toLowerCase(Locale.ROOT)).contains(" " + prefix)) {
+                    expected.add(item.getItemType());
+                }
+            }
+            Set<Long> actual = new HashSet<>();
+            for (Object item : manager.findItems(prefix, 100)) {
+                actual.add((Long) ((Object[]) item)[0]);
+                assertEquals(manager.getFillFactorAsDouble((Long) ((Object[]) item)[0]), (Double) ((Object[]) item)[2], 0.0d);
+            }
+            assertEquals(prefix, expected, actual);
+        }
+
+        // a fridge restored from the same contents has the same index
+        DemoSmartFridgeManager restored = new DemoSmartFridgeManager(new HashMap<>(manager.getContents()));
+        manager.getIgnoreItemTypes().forEach(restored::forgetItem);
+        Object[] expected = manager.findItems("m", 100);
+        Object[] actual = restored.findItems("m", 100);
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(((Object[]) expected[i])[0], ((Object[]) actual[i])[0]);
+            assertEquals(((Object[]) expected[i])[1], ((Object[]) actual[i])[1]);
+        }
+    }
+
+    @Test
+    public void getFillSamples() {
+        MutableClock clock = new MutableClock();
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager(clock);
+        long start = clock.millis();
+        String milk = randomUUID();
+        manager.handleItemAdded(1, milk, "milk", 1.0d);
+        clock.advance(Duration.ofSeconds(10));
+        manager.handleItemAdded(1, randomUUID(), "milk", 0.5d);
+        clock.advance(Duration.ofHours(1));
+        manager.handleItemRemoved(milk);
+
+        Object[] raw = manager.getFillSamples(1, FillHistoryTier.RAW);
+        assertEquals(3, raw.length);
+        assertArrayEquals(new Object[]{start, 1.0d}, (Object[]) raw[0]);
+        assertArrayEquals(new Object[]{start + 10_000L, 0.75d}, (Object[]) raw[1]);
+        assertArrayEquals(new Object[]{start + 3_610_000L, 0.5d}, (Object[]) raw[2]);
+        // the first two changes fall into the same minute and hour
+        assertEquals(2, manager.getFillSamples(1, FillHistoryTier.MINUTE).length);
+        assertEquals(0, manager.getFillSamples(2, FillHistoryTier.RAW).length);
+
+        manager.forgetItem(1);
+        assertEquals(0, manager.getFillSamples(1, FillHistoryTier.HOUR).length);
+    }
+
+    @Test
+    public void handleItemAddedNaNFillFactor() {
+        SmartFridgeManager manager = new DemoSmartFridgeManager();
+
+        exception.expect(IllegalArgumentException.class);
+        manager.handleItemAdded(1, randomUUID(), "testNewItem", Double.NaN);
+    }
+
+    @Test
+    public void getLowestItemsPages() {
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+        manager.handleItemAdded(1, randomUUID(), "testItem1", 0.5d);
+        manager.handleItemAdded(2, randomUUID(), "testItem2", 0.25d);
+        manager.handleItemAdded(3, randomUUID(), "testItem3", 0.0d);
+        manager.handleItemAdded(4, randomUUID(), "testItem4", 0.25d);
+        manager.handleItemAdded(5, randomUUID(), "testItem5", 0.1d);
+        manager.forgetItem(5);
+
+        Object[] first = manager.getLowestItems(2, 0);
+        assertEquals(2, first.length);
+        assertArrayEquals(new Object[]{3L, 0.0d}, (Object[]) first[0]);
+        assertArrayEquals(new Object[]{2L, 0.25d}, (Object[]) first[1]);
+
+        Object[] second = manager.getLowestItems(2, 2);
+        assertEquals(2, second.length);
+        assertArrayEquals(new Object[]{4L, 0.25d}, (Object[]) second[0]);
+        assertArrayEquals(new Object[]{1L, 0.5d}, (Object[]) second[1]);
+
+        assertEquals(0, manager.getLowestItems(2, 4).length);
+        assertArrayEquals(manager.getItems(1.0d), manager.getLowestItems(Integer.MAX_VALUE, 0));
+    }
+
+    @Test
+    public void getLowestItemsNegativeOffset() {
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+
+        exception.expect(IllegalArgumentException.class);
+        manager.getLowestItems(10, -1);
+    }
+
+    @Test
+    public void getItemsReusingResult() {
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+        manager.handleItemAdded(1, randomUUID(), "testItem1", 0.5d);
+        manager.handleItemAdded(2, randomUUID(), "testItem2", 0.25d);
+        manager.handleItemAdded(3, randomUUID(), "testItem3", 1.0d);
+        manager.forgetItem(4);
+        manager.handleItemAdded(4, randomUUID(), "testItem4", 0.1d);
+
+        ItemFillResult result = new ItemFillResult(1);
+        assertEquals(result, manager.getItems(0.75d, result));
+        assertEquals(2, result.size());
+        assertEquals(2L, result.getItemType(0));
+        assertEquals(0.25d, result.getFillFactor(0), 0.0d);
+        assertEquals(1L, result.getItemType(1));
+        assertEquals(0.5d, result.getFillFactor(1), 0.0d);
+        assertArrayEquals(manager.getItems(Double.valueOf(0.75d)), result.toArray());
+
+        manager.getItems(0.3d, result);
+        assertEquals(1, result.size());
+        assertEquals(2L, result.getItemType(0));
+    }
 }
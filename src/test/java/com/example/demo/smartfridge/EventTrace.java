@@ -0,0 +1,361 @@
+package com.example.demo.smartfridge;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * A recorded sequence of fridge events for load tests and replays, made up by
+ * {@link #generate(long, int, int, int, int)} or read from a trace file.
+ *
+ * The generated fridges behave like used ones. Every container is stocked once, then each event
+ * picks a random container: a stored one is taken out, a taken out one is put back with less in
+ * it, or refilled once it runs empty. Some events are hardware retries of the container's last
+ * event, and now and then an owner forgets an item type, which forgets it for every fridge when
+ * the trace is replayed into a single manager. Item types are as popular as in a Zipf
+ * distribution, so a few of them hold most of the containers. The same seed and sizes always
+ * give the same trace.
+ *
+ * Trace files are big-endian, with counts and indexes as unsigned LEB128 varints:
+ *
+ *      int MAGIC, int VERSION
+ *      fridgeCount, itemTypeCount, itemTypeCount * UTF name
+ *      containerCount, containerCount * (long mostSignificantBits, long leastSignificantBits, fridge)
+ *      eventCount, eventCount * (byte type, fields)
+ *      ADDED fields:     container, itemType, unsigned short fillFactor in 1/10000
+ *      REMOVED fields:   container
+ *      FORGOTTEN fields: fridge, itemType
+ *
+ * A removal takes 2 to 4 bytes and an add 5 to 8, for up to two million containers and 16384
+ * item types. Item types and containers are numbered from 0, the names and itemUUIDs they stand
+ * for are resolved once when the trace is loaded. Read-only once generated or read.
+ */
+public final class EventTrace {
+    public static final byte ADDED = 1;
+    public static final byte REMOVED = 2;
+    public static final byte FORGOTTEN = 3;
+
+    static final int MAGIC = 0x53465452;
+    static final int VERSION = 1;
+    static final int FILL_FACTOR_SCALE = 10_000;
+
+    private static final int RETRY_PERCENT = 5;
+    private static final int REFILL_PERCENT = 10;
+    private static final int FORGET_PER_MILLION = 20;
+
+    private final int fridgeCount;
+    private final String[] itemTypeNames;
+    private final String[] containerUUIDs;
+    private final int[] containerFridges;
+
+    private byte[] types;
+    // the container of ADDED and REMOVED events, the fridge of FORGOTTEN ones
+    private int[] targets;
+    // the item type of ADDED and FORGOTTEN events
+    private int[] itemTypes;
+    private char[] fillFactors;
+    private int eventCount;
+
+    private EventTrace(int fridgeCount, String[] itemTypeNames, String[] containerUUIDs, int[] containerFridges, int expectedEventCount) {
+        this.fridgeCount = fridgeCount;
+        this.itemTypeNames = itemTypeNames;
+        this.containerUUIDs = containerUUIDs;
+        this.containerFridges = containerFridges;
+        int capacity = Math.max(16, expectedEventCount);
+        types = new byte[capacity];
+        targets = new int[capacity];
+        itemTypes = new int[capacity];
+        fillFactors = new char[capacity];
+    }
+
+    /**
+     * @param seed
+     * @param fridgeCount
+     * @param itemTypeCount
+     * @param containerCount
+     * @param eventCount number of events after the containers are stocked
+     *
+     * @return a trace of containerCount + eventCount events
+     *
+     * @throws IllegalArgumentException if a count is less than 1, eventCount less than 0
+     */
+    public static EventTrace generate(long seed, int fridgeCount, int itemTypeCount, int containerCount, int eventCount) {
+        if (fridgeCount < 1 || itemTypeCount < 1 || containerCount < 1) {
+            throw new IllegalArgumentException("EventTrace.generate: fridgeCount, itemTypeCount and containerCount must be >= 1");
+        }
+        if (eventCount < 0 || (long) containerCount + eventCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("EventTrace.generate: int eventCount must be >= 0 and fit next to the containers");
+        }
+        Random random = new Random(seed);
+
+        String[] words = new String[Math.max(16, (int) Math.sqrt(itemTypeCount) * 2)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = randomWord(random);
+        }
+        String[] names = new String[itemTypeCount];
+        for (int itemType = 0; itemType < itemTypeCount; itemType++) {
+            names[itemType] = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+        }
+
+        // cumulative Zipf weights, itemType 0 being the most popular
+        double[] popularity = new double[itemTypeCount];
+        double total = 0.0d;
+        for (int itemType = 0; itemType < itemTypeCount; itemType++) {
+            total += 1.0d / (itemType + 1);
+            popularity[itemType] = total;
+        }
+
+        String[] uuids = new String[containerCount];
+        int[] fridges = new int[containerCount];
+        int[] containerTypes = new int[containerCount];
+        for (int container = 0; container < containerCount; container++) {
+            long mostSigBits = random.nextLong() & ~0xF000L | 0x4000L;
+            long leastSigBits = random.nextLong() & ~(3L << 62) | 1L << 63;
+            uuids[container] = new UUID(mostSigBits, leastSigBits).toString();
+            fridges[container] = random.nextInt(fridgeCount);
+            int itemType = Arrays.binarySearch(popularity, random.nextDouble() * total);
+            containerTypes[container] = itemType >= 0 ? itemType : Math.min(-itemType - 1, itemTypeCount - 1);
+        }
+
+        EventTrace trace = new EventTrace(fridgeCount, names, uuids, fridges, containerCount + eventCount);
+        char[] fills = new char[containerCount];
+        boolean[] stored = new boolean[containerCount];
+        for (int container = 0; container < containerCount; container++) {
+            fills[container] = (char) (FILL_FACTOR_SCALE / 4 + random.nextInt(FILL_FACTOR_SCALE * 3 / 4 + 1));
+            stored[container] = true;
+            trace.add(ADDED, container, containerTypes[container], fills[container]);
+        }
+
+        for (int i = 0; i < eventCount; i++) {
+            int container = random.nextInt(containerCount);
+            if (random.nextInt(1_000_000) < FORGET_PER_MILLION) {
+                trace.add(FORGOTTEN, fridges[container], random.nextInt(itemTypeCount), (char) 0);
+            } else if (random.nextInt(100) < RETRY_PERCENT) {
+                if (stored[container]) {
+                    trace.add(ADDED, container, containerTypes[container], fills[container]);
+                } else {
+                    trace.add(REMOVED, container, 0, (char) 0);
+                }
+            } else if (stored[container]) {
+                stored[container] = false;
+                trace.add(REMOVED, container, 0, (char) 0);
+            } else {
+                if (fills[container] == 0 || random.nextInt(100) < REFILL_PERCENT) {
+                    fills[container] = FILL_FACTOR_SCALE;
+                } else {
+                    int used = FILL_FACTOR_SCALE / 20 + random.nextInt(FILL_FACTOR_SCALE * 3 / 10);
+                    fills[container] = (char) Math.max(0, fills[container] - used);
+                }
+                stored[container] = true;
+                trace.add(ADDED, container, containerTypes[container], fills[container]);
+            }
+        }
+        return trace;
+    }
+
+    private static String randomWord(Random random) {
+        char[] letters = new char[3 + random.nextInt(6)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        letters[0] = Character.toUpperCase(letters[0]);
+        return new String(letters);
+    }
+
+    private void add(byte type, int target, int itemType, char fillFactor) {
+        if (eventCount == types.length) {
+            int capacity = types.length * 2;
+            types = Arrays.copyOf(types, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            itemTypes = Arrays.copyOf(itemTypes, capacity);
+            fillFactors = Arrays.copyOf(fillFactors, capacity);
+        }
+        types[eventCount] = type;
+        targets[eventCount] = target;
+        itemTypes[eventCount] = itemType;
+        fillFactors[eventCount] = fillFactor;
+        eventCount++;
+    }
+
+    public int getFridgeCount() {
+        return fridgeCount;
+    }
+
+    public int getItemTypeCount() {
+        return itemTypeNames.length;
+    }
+
+    public int getContainerCount() {
+        return containerUUIDs.length;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @param event
+     * @return ADDED, REMOVED or FORGOTTEN
+     */
+    public byte getType(int event) {
+        return types[event];
+    }
+
+    /**
+     * @param event
+     * @return the fridge the event happened in, events of different fridges can be replayed in
+     *      any order relative to each other
+     */
+    public int getFridge(int event) {
+        return types[event] == FORGOTTEN ? targets[event] : containerFridges[targets[event]];
+    }
+
+    /**
+     * Hands a single event to the manager
+     *
+     * @param event
+     * @param manager
+     */
+    public void apply(int event, SmartFridgeManager manager) {
+        switch (types[event]) {
+            case ADDED:
+                manager.handleItemAdded(itemTypes[event], containerUUIDs[targets[event]], itemTypeNames[itemTypes[event]],
+                        fillFactors[event] / (double) FILL_FACTOR_SCALE);
+                break;
+            case REMOVED:
+                manager.handleItemRemoved(containerUUIDs[targets[event]]);
+                break;
+            default:
+                manager.forgetItem(itemTypes[event]);
+                break;
+        }
+    }
+
+    /**
+     * Hands every event to the manager, in order
+     *
+     * @param manager
+     */
+    public void replay(SmartFridgeManager manager) {
+        for (int event = 0; event < eventCount; event++) {
+            apply(event, manager);
+        }
+    }
+
+    /**
+     * @param file
+     *
+     * @throws IOException
+     */
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeVarint(out, fridgeCount);
+            writeVarint(out, itemTypeNames.length);
+            for (String name : itemTypeNames) {
+                out.writeUTF(name);
+            }
+            writeVarint(out, containerUUIDs.length);
+            for (int container = 0; container < containerUUIDs.length; container++) {
+                UUID uuid = UUID.fromString(containerUUIDs[container]);
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+                writeVarint(out, containerFridges[container]);
+            }
+
+            writeVarint(out, eventCount);
+            for (int event = 0; event < eventCount; event++) {
+                out.writeByte(types[event]);
+                writeVarint(out, targets[event]);
+                if (types[event] != REMOVED) {
+                    writeVarint(out, itemTypes[event]);
+                }
+                if (types[event] == ADDED) {
+                    out.writeChar(fillFactors[event]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param file written by {@link #write(Path)}
+     *
+     * @return the trace
+     *
+     * @throws IOException if the file cannot be read or is not a trace file
+     */
+    public static EventTrace read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("EventTrace.read: " + file + " is not a version " + VERSION + " trace file");
+            }
+            int fridgeCount = readVarint(in);
+            String[] names = new String[readVarint(in)];
+            for (int itemType = 0; itemType < names.length; itemType++) {
+                names[itemType] = in.readUTF();
+            }
+            int containerCount = readVarint(in);
+            String[] uuids = new String[containerCount];
+            int[] fridges = new int[containerCount];
+            for (int container = 0; container < containerCount; container++) {
+                uuids[container] = new UUID(in.readLong(), in.readLong()).toString();
+                fridges[container] = readVarint(in);
+            }
+
+            int eventCount = readVarint(in);
+            EventTrace trace = new EventTrace(fridgeCount, names, uuids, fridges, eventCount);
+            for (int event = 0; event < eventCount; event++) {
+                byte type = in.readByte();
+                int target = readVarint(in);
+                switch (type) {
+                    case ADDED:
+                        trace.add(type, target, readVarint(in), in.readChar());
+                        break;
+                    case REMOVED:
+                        trace.add(type, target, 0, (char) 0);
+                        break;
+                    case FORGOTTEN:
+                        trace.add(type, target, readVarint(in), (char) 0);
+                        break;
+                    default:
+                        throw new IOException("EventTrace.read: unknown event type " + type + " in " + file);
+                }
+            }
+            return trace;
+        }
+    }
+
+    private static void writeVarint(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("EventTrace.read: varint longer than 5 bytes");
+    }
+
+    @Override
+    public String toString() {
+        return "EventTrace{" +
+                "fridgeCount=" + fridgeCount +
+                ", itemTypeCount=" + itemTypeNames.length +
+                ", containerCount=" + containerUUIDs.length +
+                ", eventCount=" + eventCount +
+                "}";
+    }
+}
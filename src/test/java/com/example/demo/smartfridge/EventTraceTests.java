@@ -0,0 +1,115 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventTraceTests {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    private Path write(EventTrace trace) throws IOException {
+        Path file = folder.newFile().toPath();
+        trace.write(file);
+        return file;
+    }
+
+    @Test
+    public void sameSeedSameTrace() throws IOException {
+        byte[] first = Files.readAllBytes(write(EventTrace.generate(42, 10, 100, 1_000, 10_000)));
+        byte[] second = Files.readAllBytes(write(EventTrace.generate(42, 10, 100, 1_000, 10_000)));
+        byte[] other = Files.readAllBytes(write(EventTrace.generate(43, 10, 100, 1_000, 10_000)));
+
+        assertArrayEquals(first, second);
+        assertFalse(Arrays.equals(first, other));
+    }
+
+    @Test
+    public void generatedTraceHasEveryEventType() {
+        EventTrace trace = EventTrace.generate(42, 10, 100, 1_000, 100_000);
+        assertEquals(101_000, trace.getEventCount());
+
+        int[] counts = new int[4];
+        for (int event = 0; event < trace.getEventCount(); event++) {
+            counts[trace.getType(event)]++;
+            assertTrue(trace.getFridge(event) < trace.getFridgeCount());
+        }
+        assertTrue(counts[EventTrace.ADDED] > counts[EventTrace.REMOVED]);
+        assertTrue(counts[EventTrace.REMOVED] > 40_000);
+        assertTrue(counts[EventTrace.FORGOTTEN] > 0);
+    }
+
+    @Test
+    public void readWhatWasWritten() throws IOException {
+        EventTrace written = EventTrace.generate(42, 10, 100, 1_000, 10_000);
+        EventTrace read = EventTrace.read(write(written));
+        assertEquals(written.toString(), read.toString());
+        // under 8 bytes an event, the container UUIDs included
+        assertTrue(Files.size(write(read)) < 8L * read.getEventCount());
+
+        DemoSmartFridgeManager expected = new DemoSmartFridgeManager();
+        written.replay(expected);
+        DemoSmartFridgeManager actual = new DemoSmartFridgeManager();
+        read.replay(actual);
+        assertEquals(expected.getContents().keySet(), actual.getContents().keySet());
+        assertArrayEquals(expected.getItems(1.0d), actual.getItems(1.0d));
+    }
+
+    @Test
+    public void implementationsAgreeOnTrace() {
+        EventTrace trace = EventTrace.generate(7, 20, 500, 5_000, 50_000);
+        DemoSmartFridgeManager expected = new DemoSmartFridgeManager();
+        trace.replay(expected);
+
+        SmartFridgeManager[] managers = {
+                new ConcurrentSmartFridgeManager(),
+                new ArraySmartFridgeManager(),
+                new OffHeapSmartFridgeManager(),
+                new CachingSmartFridgeManager(new DemoSmartFridgeManager(), 100),
+                new DeduplicatingSmartFridgeManager(new DemoSmartFridgeManager(), 1_000)
+        };
+        for (SmartFridgeManager actual : managers) {
+            trace.replay(actual);
+            for (double threshold : new double[]{0.1d, 0.5d, 1.0d}) {
+                assertEquals(actual.toString(), itemTypes(expected.getItems(threshold)), itemTypes(actual.getItems(threshold)));
+            }
+            for (long itemType = 0; itemType < trace.getItemTypeCount(); itemType++) {
+                assertEquals(actual.toString(), expected.getFillFactorAsDouble(itemType), actual.getFillFactorAsDouble(itemType), 1e-9d);
+            }
+        }
+    }
+
+    private static Set<Long> itemTypes(Object[] items) {
+        Set<Long> itemTypes = new TreeSet<>();
+        for (Object item : items) {
+            itemTypes.add((Long) ((Object[]) item)[0]);
+        }
+        return itemTypes;
+    }
+
+    @Test
+    public void readRejectsOtherFiles() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[64]);
+
+        exception.expect(IOException.class);
+        EventTrace.read(file);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FillHistoryTests {
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void steadyConsumption() {
+        FillHistory history = new FillHistory(0L);
+        // 1% per hour for three days
+        long time = 0L;
+        for (int i = 0; i < 72; i++) {
+            time += HOUR;
+            history.recordConsumption(time, 0.01d);
+        }
+
+        assertEquals(0.01d / HOUR, history.getConsumptionRate(time), 0.0001d / HOUR);
+        assertEquals(50.0d, history.getMillisUntilEmpty(time, 0.5d) / (double) HOUR, 1.0d);
+    }
+
+    @Test
+    public void youngHistoryIsNotBiased() {
+        FillHistory history = new FillHistory(0L);
+        history.recordConsumption(HOUR, 0.1d);
+
+        assertEquals(0.1d / HOUR, history.getConsumptionRate(HOUR), 0.001d / HOUR);
+    }
+
+    @Test
+    public void noConsumptionNoForecast() {
+        FillHistory history = new FillHistory(0L);
+        history.recordConsumption(HOUR, 0.0d);
+        // a container reported with more in it was refilled, which is not negative consumption
+        history.recordConsumption(HOUR, -0.5d);
+
+        assertEquals(0.0d, history.getConsumptionRate(HOUR), 0.0d);
+        assertEquals(Long.MAX_VALUE, history.getMillisUntilEmpty(HOUR, 1.0d));
+        assertEquals(0L, history.getMillisUntilEmpty(HOUR, 0.0d));
+    }
+
+    @Test
+    public void idleItemTypeSlowsDown() {
+        FillHistory history = new FillHistory(0L);
+        history.recordConsumption(HOUR, 0.5d);
+
+        double rate = history.getConsumptionRate(HOUR);
+        assertTrue(rate > 0.0d);
+        assertTrue(history.getConsumptionRate(HOUR * 24) < rate / 10.0d);
+    }
+
+    @Test
+    public void tiersStayBounded() {
+        FillHistory history = new FillHistory(0L);
+        long time = 0L;
+        for (int i = 0; i < 20_000; i++) {
+            history.recordFill(time, (i % 100) / 100.0d);
+            time += MINUTE / 4;
+        }
+
+        FillHistory.Tier raw = history.getTier(FillHistoryTier.RAW);
+        FillHistory.Tier minutes = history.getTier(FillHistoryTier.MINUTE);
+        FillHistory.Tier hours = history.getTier(FillHistoryTier.HOUR);
+        assertEquals(FillHistory.RAW_CAPACITY, raw.size());
+        assertEquals(FillHistory.MINUTE_CAPACITY, minutes.size());
+        assertEquals(FillHistory.HOUR_CAPACITY, hours.size());
+
+        long last = time - MINUTE / 4;
+        assertEquals(last, raw.getTime(FillHistory.RAW_CAPACITY - 1));
+        assertEquals(last, minutes.getTime(FillHistory.MINUTE_CAPACITY - 1));
+        assertEquals(last, hours.getTime(FillHistory.HOUR_CAPACITY - 1));
+        // one sample per bucket, oldest first
+        for (int i = 1; i < FillHistory.MINUTE_CAPACITY; i++) {
+            assertEquals(minutes.getTime(i - 1) / MINUTE + 1, minutes.getTime(i) / MINUTE);
+        }
+    }
+
+    @Test
+    public void takenOutContainersStayBounded() {
+        FillHistory history = new FillHistory(0L);
+        for (int i = 0; i <= FillHistory.TAKEN_OUT_CAPACITY; i++) {
+            history.takeOut("container" + i, i / 100.0d);
+        }
+
+        // the oldest one was pushed out by the last one
+        assertTrue(Double.isNaN(history.putBack("container0")));
+        assertEquals(0.01d, history.putBack("container1"), 0.0d);
+        assertTrue(Double.isNaN(history.putBack("container1")));
+        assertEquals(FillHistory.TAKEN_OUT_CAPACITY / 100.0d, history.putBack("container" + FillHistory.TAKEN_OUT_CAPACITY), 0.0d);
+    }
+}
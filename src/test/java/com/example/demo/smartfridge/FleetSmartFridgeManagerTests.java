@@ -0,0 +1,185 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FleetSmartFridgeManagerTests {
+    private static final int THREADS = 4;
+    private static final int FRIDGES = 200;
+    private static final int ITEM_TYPES = 20;
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private String randomUUID() {
+        return UUID.randomUUID().toString();
+    }
+
+    private List<Long> itemTypes(Object[] items) {
+        List<Long> itemTypes = new ArrayList<>();
+        for (Object item : items) {
+            itemTypes.add((Long) ((Object[]) item)[0]);
+        }
+        return itemTypes;
+    }
+
+    @Test
+    public void fridgesAreIndependent() {
+        FleetSmartFridgeManager fleet = new FleetSmartFridgeManager(4, ForkJoinPool.commonPool());
+        String uuid = randomUUID();
+
+        fleet.handleItemAdded(1, 1, uuid, "testItem1", 0.5d);
+        fleet.handleItemAdded(2, 1, uuid, "testItem1", 1.0d);
+        fleet.forgetItem(2, 1);
+
+        assertEquals(0.5d, fleet.getFridge(1).getFillFactorAsDouble(1), 0.0d);
+        assertEquals(1.0d, fleet.getFridge(2).getFillFactorAsDouble(1), 0.0d);
+        assertEquals(1, fleet.getFridge(1).getItems(1.0d).length);
+        assertEquals(0, fleet.getFridge(2).getItems(1.0d).length);
+        assertEquals(0, fleet.getFridge(3).getItems(1.0d).length);
+        assertEquals(2, fleet.getFridgeCount());
+
+        // forgetting is per fridge, the fleet still reports the item type
+        assertEquals(0.75d, fleet.getFillFactor(1), 0.0d);
+        assertEquals(Collections.singletonList(1L), itemTypes(fleet.getItems(1.0d)));
+
+        fleet.getFridge(1).handleItemRemoved(uuid);
+        assertEquals(1.0d, fleet.getFillFactor(1), 0.0d);
+    }
+
+    @Test
+    public void getItemsLowestFillFactorFirst() {
+        FleetSmartFridgeManager fleet = new FleetSmartFridgeManager(8, ForkJoinPool.commonPool());
+        fleet.handleItemAdded(1, 1, randomUUID(), "testItem1", 0.4d);
+        fleet.handleItemAdded(2, 2, randomUUID(), "testItem2", 0.2d);
+        fleet.handleItemAdded(3, 3, randomUUID(), "testItem3", 0.3d);
+        fleet.handleItemAdded(4, 2, randomUUID(), "testItem2", 0.0d);
+        fleet.handleItemAdded(5, 4, randomUUID(), "testItem4", 0.9d);
+
+        assertEquals(Arrays.asList(2L, 3L, 1L), itemTypes(fleet.getItems(0.5d)));
+    }
+
+    @Test
+    public void handleItemAddedFillFactorOverOne() {
+        FleetSmartFridgeManager fleet = new FleetSmartFridgeManager(2, ForkJoinPool.commonPool());
+
+        thrown.expect(IllegalArgumentException.class);
+        fleet.handleItemAdded(1, 1, randomUUID(), "testItem1", 1.5d);
+    }
+
+    @Test
+    public void concurrentEventsMatchPerFridgeManagers() throws Exception {
+        FleetSmartFridgeManager fleet = new FleetSmartFridgeManager(16, ForkJoinPool.commonPool());
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Map<Long, DemoSmartFridgeManager>>> futures = new ArrayList<>();
+
+        // each thread owns a disjoint set of fridges and mirrors its events into plain managers
+        for (int thread = 0; thread < THREADS; thread++) {
+            int owner = thread;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(owner);
+                Map<Long, DemoSmartFridgeManager> expected = new HashMap<>();
+                String[] uuids = new String[100];
+                for (int i = 0; i < uuids.length; i++) {
+                    uuids[i] = randomUUID();
+                }
+                for (int i = 0; i < 20_000; i++) {
+                    long fridgeId = random.nextInt(FRIDGES / THREADS) * THREADS + owner;
+                    SmartFridgeManager fridge = expected.computeIfAbsent(fridgeId, id -> new DemoSmartFridgeManager());
+                    String uuid = uuids[random.nextInt(uuids.length)];
+                    if (random.nextInt(3) == 0) {
+                        fridge.handleItemRemoved(uuid);
+                        fleet.handleItemRemoved(fridgeId, uuid);
+                    } else if (random.nextInt(50) == 0) {
+                        List<SmartFridgeEvent> events = Arrays.asList(
+                                SmartFridgeEvent.added(random.nextInt(ITEM_TYPES), uuid, "testItem", 0.5d),
+                                SmartFridgeEvent.removed(uuids[random.nextInt(uuids.length)])
+                        );
+                        fridge.applyEvents(events);
+                        fleet.applyEvents(fridgeId, events);
+                    } else {
+                        long itemType = random.nextInt(ITEM_TYPES);
+                        double fillFactor = random.nextInt(4) == 0 ? 0.0d : random.nextDouble();
+                        fridge.handleItemAdded(itemType, uuid, "testItem" + itemType, fillFactor);
+                        fleet.handleItemAdded(fridgeId, itemType, uuid, "testItem" + itemType, fillFactor);
+                    }
+                    if (i % 1000 == 0) {
+                        fleet.getItems(0.5d);
+                    }
+                }
+                return expected;
+            }));
+        }
+
+        Map<Long, DemoSmartFridgeManager> expected = new HashMap<>();
+        for (Future<Map<Long, DemoSmartFridgeManager>> future : futures) {
+            expected.putAll(future.get());
+        }
+        executor.shutdown();
+
+        Map<Long, ItemTypeAggregate> totals = new HashMap<>();
+        for (Map.Entry<Long, DemoSmartFridgeManager> fridge : expected.entrySet()) {
+            for (long itemType = 0; itemType < ITEM_TYPES; itemType++) {
+                assertEquals(
+                        fridge.getValue().getFillFactorAsDouble(itemType),
+                        fleet.getFridge(fridge.getKey()).getFillFactorAsDouble(itemType),
+                        0.0d
+                );
+            }
+            for (SmartFridgeItem item : fridge.getValue().getContents().values()) {
+                totals.computeIfAbsent(item.getItemType(), ItemTypeAggregate::new).add(item.getFillFactorAsDouble());
+            }
+        }
+
+        Set<Long> expectedLow = new HashSet<>();
+        for (long itemType = 0; itemType < ITEM_TYPES; itemType++) {
+            ItemTypeAggregate total = totals.getOrDefault(itemType, new ItemTypeAggregate(itemType));
+            assertEquals(total.getFillFactor(), fleet.getFillFactor(itemType), 1e-9d);
+            if (!total.isEmpty() && total.getFillFactor() <= 0.5d) {
+                expectedLow.add(itemType);
+            }
+        }
+        assertEquals(expectedLow, new HashSet<>(itemTypes(fleet.getItems(0.5d))));
+    }
+
+    @Test
+    public void rejectedEventLeavesNoFridge() {
+        FleetSmartFridgeManager fleet = new FleetSmartFridgeManager(2, ForkJoinPool.commonPool());
+
+        try {
+            fleet.handleItemAdded(1, 1, randomUUID(), "testItem1", 1.5d);
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, fleet.getFridgeCount());
+            fleet.handleItemAdded(1, 1, randomUUID(), "testItem1", 0.5d);
+            assertEquals(1, fleet.getFridgeCount());
+            return;
+        }
+        fail("expected IllegalArgumentException");
+    }
+
+    @Test
+    public void sizes() {
+        FleetSmartFridgeManager fleet = new FleetSmartFridgeManager(2, ForkJoinPool.commonPool());
+        assertEquals(0, fleet.getFridge(1).getItemCount());
+
+        SmartFridgeManager manager = fleet.getFridge(1);
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        manager.handleItemAdded(1, "b", "milk", 0.0d);
+        manager.handleItemAdded(2, "c", "jam", 1.0d);
+        manager.handleItemAdded(3, "d", "cheese", 1.0d);
+        manager.handleItemRemoved("d");
+        manager.forgetItem(2);
+        manager.forgetItem(4);
+
+        assertEquals(3, manager.getItemCount());
+        assertEquals(1, manager.getItemTypeCount());
+        assertEquals(2, manager.getForgottenItemTypeCount());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class InstrumentedSmartFridgeManagerTests {
+
+    @Test
+    public void countEvents() {
+        InstrumentedSmartFridgeManager manager = new InstrumentedSmartFridgeManager(new DemoSmartFridgeManager());
+        manager.handleItemAdded(1L, "a", "milk", 0.5d);
+        manager.handleItemAdded(1L, "b", "milk", Double.valueOf(1.0d));
+        manager.applyEvents(Arrays.asList(
+                SmartFridgeEvent.added(2L, "c", "jam", 0.25d),
+                SmartFridgeEvent.removed("a")
+        ));
+        manager.handleItemRemoved("b");
+        manager.forgetItem(2L);
+        manager.forgetItem(3L, Duration.ofHours(1L));
+
+        assertEquals(3, manager.getAddedCount());
+        assertEquals(2, manager.getRemovedCount());
+        assertEquals(2, manager.getForgottenCount());
+        assertEquals(1, manager.getItemCount());
+        assertEquals(0, manager.getItemTypeCount());
+        assertEquals(2, manager.getForgottenItemTypeCount());
+    }
+
+    @Test
+    public void rejectedEventsAreNotCounted() {
+        InstrumentedSmartFridgeManager manager = new InstrumentedSmartFridgeManager(new DemoSmartFridgeManager());
+        try {
+            manager.handleItemAdded(1L, "a", "milk", 1.5d);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(0, manager.getAddedCount());
+    }
+
+    @Test
+    public void recordQueryLatency() {
+        InstrumentedSmartFridgeManager manager = new InstrumentedSmartFridgeManager(new ConcurrentSmartFridgeManager(), 1);
+        manager.handleItemAdded(1L, "a", "milk", 0.5d);
+
+        manager.getItems(1.0d);
+        manager.getItems(1.0d, new ItemFillResult());
+        manager.visitItems(1.0d, (itemType, fillFactor) -> {
+        });
+        manager.getFillFactor(1L);
+        manager.getFillFactorAsDouble(1L);
+
+        assertEquals(3, manager.getItemsLatency().getCount());
+        assertEquals(2, manager.getFillFactorLatency().getCount());
+        assertEquals(1, manager.getItemTypeCount());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ItemFillResultTests {
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void visitGrowsResult() {
+        ItemFillResult result = new ItemFillResult(2);
+        for (int i = 0; i < 100; i++) {
+            result.visit(i, i / 100.0d);
+        }
+
+        assertEquals(100, result.size());
+        assertEquals(99L, result.getItemType(99));
+        assertEquals(0.99d, result.getFillFactor(99), 0.0d);
+    }
+
+    @Test
+    public void toArrayMatchesGetItemsFormat() {
+        ItemFillResult result = new ItemFillResult();
+        result.visit(1, 0.25d);
+        result.visit(2, 0.5d);
+
+        Object[] expected = new Object[]{new Object[]{1L, 0.25d}, new Object[]{2L, 0.5d}};
+        assertArrayEquals(expected, result.toArray());
+        assertEquals("ItemFillResult{1=0.25, 2=0.5}", result.toString());
+    }
+
+    @Test
+    public void clearedResultHidesOldEntries() {
+        ItemFillResult result = new ItemFillResult();
+        result.visit(1, 0.25d);
+        result.clear();
+
+        assertEquals(0, result.size());
+        thrown.expect(IndexOutOfBoundsException.class);
+        result.getItemType(0);
+    }
+}
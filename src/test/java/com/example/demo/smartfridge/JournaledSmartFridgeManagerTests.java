@@ -0,0 +1,262 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JournaledSmartFridgeManagerTests {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private String randomUUID() {
+        return UUID.randomUUID().toString();
+    }
+
+    private void assertSameState(DemoSmartFridgeManager expected, DemoSmartFridgeManager actual) {
+        assertEquals(expected.getContents().keySet(), actual.getContents().keySet());
+        assertEquals(expected.getIgnoreItemTypes(), actual.getIgnoreItemTypes());
+        for (SmartFridgeItem item : expected.getContents().values()) {
+            SmartFridgeItem recovered = actual.getContents().get(item.getItemUUID());
+            assertEquals(item.getItemType(), recovered.getItemType());
+            assertEquals(item.getName(), recovered.getName());
+            assertEquals(item.getFillFactor(), recovered.getFillFactor());
+        }
+        for (long itemType = 0; itemType < 10; itemType++) {
+            assertEquals(expected.getFillFactorAsDouble(itemType), actual.getFillFactorAsDouble(itemType), 1e-9d);
+        }
+    }
+
+    private void randomEvents(Random random, String[] uuids, int count, SmartFridgeManager... managers) {
+        for (int i = 0; i < count; i++) {
+            String uuid = uuids[random.nextInt(uuids.length)];
+            int event = random.nextInt(20);
+            int itemType = random.nextInt(10);
+            for (SmartFridgeManager manager : managers) {
+                if (event == 0) {
+                    manager.forgetItem(itemType);
+                } else if (event == 1) {
+                    manager.rememberItem(itemType);
+                } else if (event == 2) {
+                    manager.forgetItem(itemType, Duration.ofDays(1));
+                } else if (event < 7) {
+                    manager.handleItemRemoved(uuid);
+                } else {
+                    manager.handleItemAdded(event % 10, uuid, event % 3 == 0 ? null : "testItem" + event, 0.05d * event);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void recoverFromJournal() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        String uuid1 = randomUUID();
+        String uuid2 = randomUUID();
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            manager.handleItemAdded(1, uuid1, "testItem1", 0.5d);
+            manager.handleItemAdded(1, uuid2, "testItem2", 1.0d);
+            manager.handleItemAdded(2, randomUUID(), null, 0.25d);
+            manager.handleItemRemoved(uuid2);
+            manager.forgetItem(2);
+        }
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            assertEquals(2, manager.getDelegate().getContents().size());
+            assertEquals(0.5d, manager.getFillFactorAsDouble(1), 0.0d);
+            assertEquals(1, manager.getItems(1.0d).length);
+            assertTrue(manager.getDelegate().getIgnoreItemTypes().contains(2L));
+        }
+    }
+
+    @Test
+    public void rememberAndTimeToLiveSurviveRestart() throws IOException {
+        Path directory = folder.newFolder().toPath();
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            manager.handleItemAdded(1, randomUUID(), "testItem1", 0.5d);
+            manager.handleItemAdded(2, randomUUID(), "testItem2", 0.5d);
+            manager.handleItemAdded(3, randomUUID(), "testItem3", 0.5d);
+            manager.forgetItem(1);
+            manager.forgetItem(2, Duration.ofDays(1));
+            manager.snapshot();
+            manager.rememberItem(1);
+            manager.forgetItem(3, Duration.ofDays(2));
+        }
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            assertEquals(Collections.singletonList(1L), Arrays.stream(manager.getItems(1.0d))
+                    .map(item -> ((Object[]) item)[0])
+                    .collect(Collectors.toList()));
+            Map<Long, Long> expiries = manager.getDelegate().getForgetExpiries();
+            assertEquals(new HashSet<>(Arrays.asList(2L, 3L)), expiries.keySet());
+            assertTrue(expiries.get(3L) - expiries.get(2L) > Duration.ofHours(23).toMillis());
+        }
+    }
+
+    @Test
+    public void replayIsNotConsumption() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        String uuid = randomUUID();
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            manager.handleItemAdded(1, uuid, "testItem1", 1.0d);
+            manager.handleItemRemoved(uuid);
+            manager.handleItemAdded(1, uuid, "testItem1", 0.5d);
+        }
+
+        // replayed at once, the journal would look like half a container consumed in no time
+        try (JournaledSmartFridgeManager recovered = JournaledSmartFridgeManager.open(directory)) {
+            assertEquals(0, recovered.getItemsDepletingWithin(Duration.ofDays(365)).length);
+        }
+    }
+
+    @Test
+    public void invalidEventsAreNotJournaled() throws IOException {
+        Path directory = folder.newFolder().toPath();
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            try {
+                manager.handleItemAdded(1, randomUUID(), "testItem", 1.5d);
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            assertEquals(0, manager.getDelegate().getContents().size());
+        }
+    }
+
+    @Test
+    public void recoverFromSnapshotAndJournalTail() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Random random = new Random(11);
+        String[] uuids = new String[100];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = randomUUID();
+        }
+        DemoSmartFridgeManager expected = new DemoSmartFridgeManager();
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory, 16, 0, 1000)) {
+            randomEvents(random, uuids, 5500, expected, manager);
+            manager.applyEvents(Arrays.asList(
+                    SmartFridgeEvent.added(3, uuids[0], "testItem", 0.5d),
+                    SmartFridgeEvent.removed(uuids[1])
+            ));
+            expected.applyEvents(Arrays.asList(
+                    SmartFridgeEvent.added(3, uuids[0], "testItem", 0.5d),
+                    SmartFridgeEvent.removed(uuids[1])
+            ));
+        }
+
+        // the two newest snapshots and the journal files after the older one
+        assertEquals(2, SmartFridgeSnapshot.files(directory).size());
+        assertEquals(2, SmartFridgeJournal.files(directory).size());
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            assertSameState(expected, manager.getDelegate());
+        }
+    }
+
+    @Test
+    public void recoverIgnoresTornRecord() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Random random = new Random(12);
+        String[] uuids = new String[50];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = randomUUID();
+        }
+        DemoSmartFridgeManager expected = new DemoSmartFridgeManager();
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            randomEvents(random, uuids, 500, expected, manager);
+        }
+        List<Path> journals = SmartFridgeJournal.files(directory);
+        Files.write(journals.get(journals.size() - 1), new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            assertSameState(expected, manager.getDelegate());
+            randomEvents(random, uuids, 500, expected, manager);
+        }
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            assertSameState(expected, manager.getDelegate());
+        }
+    }
+
+    @Test
+    public void recoverFromPreviousSnapshotWhenLatestIsDamaged() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        Random random = new Random(13);
+        String[] uuids = new String[50];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = randomUUID();
+        }
+        DemoSmartFridgeManager expected = new DemoSmartFridgeManager();
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory, 16, 0, 300)) {
+            randomEvents(random, uuids, 1000, expected, manager);
+        }
+        List<Path> snapshots = SmartFridgeSnapshot.files(directory);
+        Path latest = snapshots.get(snapshots.size() - 1);
+        byte[] bytes = Files.readAllBytes(latest);
+        bytes[bytes.length / 2] ^= 0x5a;
+        Files.write(latest, bytes);
+
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            assertSameState(expected, manager.getDelegate());
+        }
+    }
+
+    @Test
+    public void timeToLiveKeepsItsExpiryInJournal() throws IOException, InterruptedException {
+        Path directory = folder.newFolder().toPath();
+        long expiresAt;
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            manager.forgetItem(1, Duration.ofDays(1));
+            expiresAt = manager.getDelegate().getForgetExpiries().get(1L);
+        }
+
+        // a time to live counted from the replay would push the expiry back by the downtime
+        Thread.sleep(20L);
+        try (JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory)) {
+            assertEquals(Collections.singletonMap(1L, expiresAt), manager.getDelegate().getForgetExpiries());
+        }
+    }
+
+    @Test
+    public void unwritableJournalRejectsChangesBeforeApplyingThem() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        JournaledSmartFridgeManager manager = JournaledSmartFridgeManager.open(directory);
+        manager.close();
+
+        try {
+            manager.handleItemAdded(1, randomUUID(), "testItem", 0.5d);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            manager.forgetItem(2);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(0, manager.getItemCount());
+        assertEquals(0, manager.getForgottenItemTypeCount());
+    }
+}
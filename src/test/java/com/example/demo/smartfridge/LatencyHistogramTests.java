@@ -0,0 +1,71 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTests {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void bucketsKeepPrecision() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() & LatencyHistogram.MAX_TRACKABLE_NANOS >>> random.nextInt(36);
+            int bucket = LatencyHistogram.bucket(value);
+            long highest = LatencyHistogram.highestValueIn(bucket);
+
+            assertTrue(value + " in bucket up to " + highest, value <= highest);
+            assertTrue(value + " in bucket up to " + highest, highest - value <= value / LatencyHistogram.SUB_BUCKET_COUNT);
+            assertEquals(bucket, LatencyHistogram.bucket(highest));
+        }
+        assertEquals(63L, LatencyHistogram.highestValueIn(LatencyHistogram.bucket(63L)));
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, LatencyHistogram.highestValueIn(LatencyHistogram.bucket(LatencyHistogram.MAX_TRACKABLE_NANOS)));
+    }
+
+    @Test
+    public void percentiles() {
+        Random random = new Random(42);
+        long[] values = new long[10_000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1_000L + random.nextInt(1_000_000);
+            histogram.recordNanos(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMaxNanos());
+        for (double percentile : new double[]{0.0d, 50.0d, 90.0d, 99.0d, 99.9d, 100.0d}) {
+            long expected = values[Math.max(0, (int) Math.ceil(percentile / 100.0d * values.length) - 1)];
+            long actual = histogram.getNanosAtPercentile(percentile);
+            assertEquals("p" + percentile, expected, actual, expected / LatencyHistogram.SUB_BUCKET_COUNT);
+        }
+    }
+
+    @Test
+    public void outOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getNanosAtPercentile(99.0d));
+
+        histogram.recordNanos(-5L);
+        histogram.recordNanos(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0L, histogram.getNanosAtPercentile(50.0d));
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, histogram.getNanosAtPercentile(100.0d));
+    }
+
+    @Test
+    public void invalidPercentile() {
+        exception.expect(IllegalArgumentException.class);
+        new LatencyHistogram().getNanosAtPercentile(100.5d);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LowStockNotifierTests {
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private String randomUUID() {
+        return UUID.randomUUID().toString();
+    }
+
+    private LowStockEvent next(BlockingQueue<LowStockEvent> events) throws InterruptedException {
+        return events.poll(5, TimeUnit.SECONDS);
+    }
+
+    private void assertEvent(LowStockEvent.Type type, long itemType, double fillFactor, LowStockEvent event) {
+        assertEquals(type, event.getType());
+        assertEquals(itemType, event.getItemType());
+        assertEquals(fillFactor, event.getFillFactor(), 1e-9d);
+    }
+
+    @Test
+    public void watchItemTypeWithHysteresis() throws InterruptedException {
+        String uuid = randomUUID();
+        SmartFridgeManager manager = new DemoSmartFridgeManager();
+        manager.handleItemAdded(1, uuid, "testItem1", 0.8d);
+
+        BlockingQueue<LowStockEvent> events = new LinkedBlockingQueue<>();
+        manager.watchItemType(1, 0.5d, 0.1d, events::add);
+
+        manager.handleItemAdded(1, uuid, "testItem1", 0.6d);
+        manager.handleItemAdded(1, uuid, "testItem1", 0.5d);
+        // inside the hysteresis band, still low
+        manager.handleItemAdded(1, uuid, "testItem1", 0.55d);
+        manager.handleItemAdded(1, uuid, "testItem1", 0.45d);
+        // not above threshold + hysteresis yet
+        manager.handleItemAdded(1, uuid, "testItem1", 0.6d);
+        manager.handleItemAdded(1, uuid, "testItem1", 0.7d);
+        manager.handleItemAdded(2, randomUUID(), "testItem2", 0.1d);
+
+        assertEvent(LowStockEvent.Type.LOW, 1, 0.5d, next(events));
+        assertEvent(LowStockEvent.Type.RESTOCKED, 1, 0.7d, next(events));
+        assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void watchAllItemTypes() throws InterruptedException {
+        String uuid = randomUUID();
+        SmartFridgeManager manager = new DemoSmartFridgeManager();
+        manager.handleItemAdded(1, randomUUID(), "testItem1", 0.2d);
+
+        BlockingQueue<LowStockEvent> events = new LinkedBlockingQueue<>();
+        manager.watchAllItemTypes(0.25d, 0.0d, events::add);
+
+        // item type 1 was already low when the watch started
+        manager.handleItemAdded(1, randomUUID(), "testItem1", 0.1d);
+        manager.handleItemAdded(2, uuid, "testItem2", 0.9d);
+        manager.handleItemAdded(3, randomUUID(), "testItem3", 0.25d);
+        manager.handleItemRemoved(uuid);
+
+        assertEvent(LowStockEvent.Type.LOW, 3, 0.25d, next(events));
+        assertEvent(LowStockEvent.Type.LOW, 2, 0.0d, next(events));
+        assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void applyEventsNotifiesOncePerItemType() throws InterruptedException {
+        SmartFridgeManager manager = new DemoSmartFridgeManager();
+        manager.handleItemAdded(1, randomUUID(), "testItem1", 0.9d);
+
+        BlockingQueue<LowStockEvent> events = new LinkedBlockingQueue<>();
+        manager.watchAllItemTypes(0.5d, 0.0d, events::add);
+        manager.applyEvents(Arrays.asList(
+                SmartFridgeEvent.added(1, randomUUID(), "testItem1", 0.1d),
+                SmartFridgeEvent.added(1, randomUUID(), "testItem1", 0.1d),
+                SmartFridgeEvent.added(1, randomUUID(), "testItem1", 0.1d)
+        ));
+
+        assertEvent(LowStockEvent.Type.LOW, 1, 0.3d, next(events));
+        assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void forgottenAndCancelledAreNotNotified() throws InterruptedException {
+        SmartFridgeManager manager = new DemoSmartFridgeManager();
+        BlockingQueue<LowStockEvent> events = new LinkedBlockingQueue<>();
+        BlockingQueue<LowStockEvent> cancelledEvents = new LinkedBlockingQueue<>();
+
+        manager.watchAllItemTypes(0.5d, 0.0d, events::add);
+        manager.watchItemType(2, 0.5d, 0.0d, cancelledEvents::add).cancel();
+        manager.forgetItem(1);
+        manager.handleItemAdded(1, randomUUID(), "testItem1", 0.1d);
+        manager.handleItemAdded(2, randomUUID(), "testItem2", 0.1d);
+
+        assertEvent(LowStockEvent.Type.LOW, 2, 0.1d, next(events));
+        assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+        assertNull(cancelledEvents.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void slowListenerDoesNotBlockEvents() throws InterruptedException {
+        String uuid = randomUUID();
+        DemoSmartFridgeManager manager = new DemoSmartFridgeManager();
+        CountDownLatch release = new CountDownLatch(1);
+        manager.watchItemType(1, 0.5d, 0.0d, event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        int crossings = LowStockNotifier.DEFAULT_QUEUE_CAPACITY * 4;
+        for (int i = 0; i < crossings; i++) {
+            manager.handleItemAdded(1, uuid, "testItem1", i % 2 == 0 ? 0.1d : 0.9d);
+        }
+        release.countDown();
+
+        // once the queue is full every other change is a transition that is dropped again
+        long dropped = manager.getDroppedLowStockEventCount();
+        assertTrue(dropped >= (crossings - LowStockNotifier.DEFAULT_QUEUE_CAPACITY - 1) / 2);
+        assertEquals(dropped, manager.getLowStockNotifier().getDroppedCount());
+    }
+
+    @Test
+    public void droppedTransitionIsRetried() throws InterruptedException {
+        LowStockNotifier notifier = new LowStockNotifier(1);
+        BlockingQueue<LowStockEvent> events = new LinkedBlockingQueue<>();
+        CountDownLatch release = new CountDownLatch(1);
+        notifier.watch(1L, 0.5d, 0.0d, event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+        }, Collections.emptyList());
+
+        // delivering, queued, dropped
+        notifier.fillFactorChanged(1, 0.1d);
+        notifier.fillFactorChanged(1, 0.9d);
+        notifier.fillFactorChanged(1, 0.2d);
+        assertEquals(1, notifier.getDroppedCount());
+        release.countDown();
+        assertEvent(LowStockEvent.Type.LOW, 1, 0.1d, next(events));
+        assertEvent(LowStockEvent.Type.RESTOCKED, 1, 0.9d, next(events));
+
+        // the listener was last told the item type is restocked, so it still is for the watch
+        notifier.fillFactorChanged(1, 0.3d);
+        assertEvent(LowStockEvent.Type.LOW, 1, 0.3d, next(events));
+        assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void watchThresholdOverOne() {
+        SmartFridgeManager manager = new DemoSmartFridgeManager();
+
+        thrown.expect(IllegalArgumentException.class);
+        manager.watchItemType(1, 1.5d, 0.0d, event -> { });
+    }
+
+    @Test
+    public void watchNotSupported() {
+        SmartFridgeManager manager = new ArraySmartFridgeManager();
+
+        thrown.expect(UnsupportedOperationException.class);
+        manager.watchAllItemTypes(0.5d, 0.0d, event -> { });
+    }
+}
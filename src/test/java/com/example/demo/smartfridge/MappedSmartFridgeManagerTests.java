@@ -0,0 +1,202 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedSmartFridgeManagerTests {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private String randomUUID() {
+        return UUID.randomUUID().toString();
+    }
+
+    private List<Long> itemTypes(Object[] items) {
+        List<Long> itemTypes = new ArrayList<>();
+        for (Object item : items) {
+            itemTypes.add((Long) ((Object[]) item)[0]);
+        }
+        return itemTypes;
+    }
+
+    private MappedSmartFridgeManager open(DemoSmartFridgeManager manager) throws IOException {
+        Path file = folder.newFolder().toPath().resolve("fridge.map");
+        MappedSmartFridgeManager.write(file, manager.getContents().values(), manager.getIgnoreItemTypes());
+        return MappedSmartFridgeManager.open(file);
+    }
+
+    @Test
+    public void toStringWithContents() throws IOException {
+        String uuid = randomUUID();
+        DemoSmartFridgeManager demo = new DemoSmartFridgeManager();
+        demo.handleItemAdded(
+                1,
+                uuid,
+                "testItem1",
+                0.5d
+        );
+
+        SmartFridgeManager manager = open(demo);
+        String expected = "MappedSmartFridgeManager{\n" +
+                "StandardSmartFridgeItem{\n" +
+                " itemType=1,\n" +
+                " itemUUID='" + uuid + "',\n" +
+                " name='testItem1',\n" +
+                " fillFactor=0.5\n" +
+                "}\n" +
+                "}";
+        String actual = manager.toString();
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void emptySnapshot() throws IOException {
+        SmartFridgeManager manager = open(new DemoSmartFridgeManager());
+
+        assertEquals(0.0d, manager.getFillFactorAsDouble(1), 0.0d);
+        assertEquals(0, manager.getItems(1.0d).length);
+
+        manager.handleItemAdded(1, randomUUID(), "testItem1", 0.5d);
+        assertEquals(0.5d, manager.getFillFactorAsDouble(1), 0.0d);
+        assertEquals(1, manager.getItems(1.0d).length);
+    }
+
+    @Test
+    public void snapshotContainersAreReplacedAndRemoved() throws IOException {
+        String uuid1 = randomUUID();
+        String uuid2 = "testUUID2";
+        DemoSmartFridgeManager demo = new DemoSmartFridgeManager();
+        demo.handleItemAdded(1, uuid1, "testItem1", 0.5d);
+        demo.handleItemAdded(1, uuid2, null, 1.0d);
+        demo.handleItemAdded(2, randomUUID(), "testItem2", 0.25d);
+
+        MappedSmartFridgeManager manager = open(demo);
+        assertEquals(0.75d, manager.getFillFactorAsDouble(1), 0.0d);
+
+        manager.handleItemAdded(2, uuid1, "testItem1", 0.75d);
+        assertEquals(1.0d, manager.getFillFactorAsDouble(1), 0.0d);
+        assertEquals(0.5d, manager.getFillFactorAsDouble(2), 0.0d);
+
+        manager.handleItemRemoved(uuid2);
+        manager.handleItemRemoved(uuid2);
+        assertEquals(0.0d, manager.getFillFactorAsDouble(1), 0.0d);
+        assertEquals(Collections.singletonList(2L), itemTypes(manager.getItems(1.0d)));
+        assertEquals(1, manager.getAddedCount());
+    }
+
+    @Test
+    public void forgottenItemTypesSurviveSnapshot() throws IOException {
+        DemoSmartFridgeManager demo = new DemoSmartFridgeManager();
+        demo.handleItemAdded(1, randomUUID(), "testItem1", 0.5d);
+        demo.handleItemAdded(2, randomUUID(), "testItem2", 0.5d);
+        demo.forgetItem(1);
+        demo.forgetItem(3);
+
+        MappedSmartFridgeManager manager = open(demo);
+        manager.handleItemAdded(3, randomUUID(), "testItem3", 0.5d);
+        manager.forgetItem(2);
+        assertEquals(0, manager.getItems(1.0d).length);
+
+        Path file = folder.newFolder().toPath().resolve("compacted.map");
+        manager.writeSnapshot(file);
+        MappedSmartFridgeManager reopened = MappedSmartFridgeManager.open(file);
+        assertEquals(0, reopened.getItems(1.0d).length);
+        assertEquals(0.5d, reopened.getFillFactorAsDouble(3), 0.0d);
+    }
+
+    @Test
+    public void openRejectsOtherFiles() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[128]);
+
+        thrown.expect(IllegalArgumentException.class);
+        MappedSmartFridgeManager.open(file);
+    }
+
+    @Test
+    public void randomEventsMatchDemoSmartFridgeManager() throws IOException {
+        Random random = new Random(42);
+        String[] uuids = new String[500];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = i % 10 == 0 ? "testUUID" + i : randomUUID();
+        }
+        DemoSmartFridgeManager expected = new DemoSmartFridgeManager();
+        randomEvents(random, uuids, 20_000, expected);
+
+        MappedSmartFridgeManager actual = open(expected);
+        assertSameState(expected, actual);
+
+        randomEvents(random, uuids, 20_000, expected, actual);
+        assertSameState(expected, actual);
+
+        Path file = folder.newFolder().toPath().resolve("compacted.map");
+        actual.writeSnapshot(file);
+        MappedSmartFridgeManager reopened = MappedSmartFridgeManager.open(file);
+        assertEquals(0, reopened.getAddedCount());
+        assertSameState(expected, reopened);
+    }
+
+    private void randomEvents(Random random, String[] uuids, int count, SmartFridgeManager... managers) {
+        for (int i = 0; i < count; i++) {
+            String uuid = uuids[random.nextInt(uuids.length)];
+            int event = random.nextInt(3);
+            long itemType = random.nextInt(40);
+            double fillFactor = random.nextInt(4) == 0 ? 0.0d : random.nextDouble();
+            boolean forget = random.nextInt(2000) == 0;
+            for (SmartFridgeManager manager : managers) {
+                if (forget) {
+                    manager.forgetItem(itemType);
+                } else if (event == 0) {
+                    manager.handleItemRemoved(uuid);
+                } else {
+                    manager.handleItemAdded(itemType, uuid, event == 1 ? null : "testItem" + itemType, fillFactor);
+                }
+            }
+        }
+    }
+
+    private void assertSameState(SmartFridgeManager expected, SmartFridgeManager actual) {
+        for (long itemType = 0; itemType < 40; itemType++) {
+            assertEquals(expected.getFillFactorAsDouble(itemType), actual.getFillFactorAsDouble(itemType), 1e-9d);
+        }
+        assertEquals(itemTypes(expected.getItems(0.5d)), itemTypes(actual.getItems(0.5d)));
+        assertEquals(itemTypes(expected.getItems(1.0d)), itemTypes(actual.getItems(1.0d)));
+        assertEquals(itemTypes(expected.getLowestItems(7, 5)), itemTypes(actual.getLowestItems(7, 5)));
+        assertEquals(itemTypes(expected.getLowestItems(100, 0)), itemTypes(actual.getLowestItems(100, 0)));
+    }
+
+    @Test
+    public void sizes() throws IOException {
+        DemoSmartFridgeManager demo = new DemoSmartFridgeManager();
+        demo.handleItemAdded(1, "a", "milk", 0.5d);
+        demo.handleItemAdded(2, "c", "jam", 1.0d);
+        demo.handleItemAdded(3, "d", "cheese", 1.0d);
+        demo.handleItemAdded(5, "e", "bread", 1.0d);
+        demo.forgetItem(5);
+
+        SmartFridgeManager manager = open(demo);
+        manager.handleItemAdded(1, "a", "milk", 0.25d);
+        manager.handleItemAdded(1, "b", "milk", 0.0d);
+        manager.handleItemRemoved("d");
+        manager.forgetItem(2);
+        manager.forgetItem(5);
+
+        assertEquals(4, manager.getItemCount());
+        assertEquals(1, manager.getItemTypeCount());
+        assertEquals(2, manager.getForgottenItemTypeCount());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class NameIndexTests {
+
+    @Test
+    public void findOrdersByWordNameAndItemType() {
+        NameIndex index = new NameIndex();
+        index.add("Whole Milk", 3);
+        index.add("Oat Milk", 2);
+        index.add("Oat Milk", 1);
+        index.add("Milkshake", 4);
+
+        Map<Long, String> found = index.find("milk", 10, itemType -> true);
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), Arrays.asList(found.keySet().toArray()));
+        assertEquals("Oat Milk", found.get(1L));
+        assertEquals("Milkshake", found.get(4L));
+    }
+
+    @Test
+    public void nameIsDroppedWithItsLastContainer() {
+        NameIndex index = new NameIndex();
+        index.add("Oat Milk", 1);
+        index.add("Oat Milk", 1);
+        index.add("Whole Milk", 2);
+        assertEquals(3, index.getKeyCount());
+
+        index.remove("Oat Milk", 1);
+        assertEquals(3, index.getKeyCount());
+        assertEquals(2, index.find("milk", 10, itemType -> true).size());
+
+        index.remove("Oat Milk", 1);
+        assertEquals(2, index.getKeyCount());
+        assertEquals(1, index.find("milk", 10, itemType -> true).size());
+        assertEquals(0, index.find("oat", 10, itemType -> true).size());
+
+        index.add("Oat Milk", 1);
+        assertEquals(2, index.find("milk", 10, itemType -> true).size());
+    }
+}
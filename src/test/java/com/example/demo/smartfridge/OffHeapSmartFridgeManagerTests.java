@@ -0,0 +1,190 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class OffHeapSmartFridgeManagerTests {
+
+    private String randomUUID() {
+        return UUID.randomUUID().toString();
+    }
+
+    private Map<Long, Double> toMap(Object[] items) {
+        Map<Long, Double> map = new HashMap<>();
+        for (Object item : items) {
+            Object[] pair = (Object[]) item;
+            map.put((Long) pair[0], (Double) pair[1]);
+        }
+        return map;
+    }
+
+    @Test
+    public void toStringWithContents() {
+        String uuid = randomUUID();
+
+        SmartFridgeManager manager = new OffHeapSmartFridgeManager();
+        manager.handleItemAdded(
+                1,
+                uuid,
+                "testItem1",
+                0.5d
+        );
+        String expected = "OffHeapSmartFridgeManager{\n" +
+                "StandardSmartFridgeItem{\n" +
+                " itemType=1,\n" +
+                " itemUUID='" + uuid + "',\n" +
+                " name='testItem1',\n" +
+                " fillFactor=0.5\n" +
+                "}\n" +
+                "}";
+        String actual = manager.toString();
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void handleItemRemovedReusesSlot() {
+        OffHeapSmartFridgeManager manager = new OffHeapSmartFridgeManager();
+
+        for (int round = 0; round < 3; round++) {
+            String uuid1 = randomUUID();
+            String uuid2 = "testUUID" + round;
+            manager.handleItemAdded(1, uuid1, "testItem", 1.0d);
+            manager.handleItemAdded(1, uuid2, "testItem", 0.5d);
+            manager.handleItemRemoved(uuid1);
+            manager.handleItemRemoved(uuid2);
+            manager.handleItemRemoved(uuid2);
+        }
+        assertEquals(0, manager.getItemCount());
+        assertEquals(2, manager.getSlotsUsed());
+
+        manager.handleItemAdded(1, randomUUID(), "testItem", 0.5d);
+        assertEquals(1, manager.getItemCount());
+        assertEquals(2, manager.getSlotsUsed());
+        assertEquals(0.5d, manager.getFillFactorAsDouble(1), 0.0d);
+    }
+
+    @Test
+    public void uuidKeysWithFallbackKeys() {
+        String uuid = randomUUID();
+        OffHeapSmartFridgeManager manager = new OffHeapSmartFridgeManager();
+
+        manager.handleItemAdded(1, uuid, "testItem1", 0.5d);
+        manager.handleItemAdded(1, uuid.toUpperCase(), "testItem2", 1.0d);
+        manager.handleItemAdded(1, "testUUID", "testItem3", 0.25d);
+        assertEquals(3, manager.getItemCount());
+
+        manager.handleItemAdded(2, uuid, "testItem1", 0.25d);
+        assertEquals(3, manager.getItemCount());
+        assertEquals(2L, (long) manager.getItemType(uuid));
+        assertEquals(0.625d, manager.getFillFactorAsDouble(1), 0.0d);
+
+        manager.handleItemRemoved(uuid);
+        manager.handleItemRemoved("testUUID");
+        assertEquals(1, manager.getItemCount());
+        assertEquals(1.0d, manager.getFillFactorAsDouble(1), 0.0d);
+        assertNull(manager.getItemType("testUUID"));
+    }
+
+    @Test
+    public void growsPastOneChunk() {
+        int count = OffHeapSmartFridgeManager.SLOTS_PER_CHUNK + 1_000;
+        OffHeapSmartFridgeManager manager = new OffHeapSmartFridgeManager();
+        String[] uuids = new String[count];
+        for (int i = 0; i < count; i++) {
+            uuids[i] = randomUUID();
+            manager.handleItemAdded(i % 10, uuids[i], "testItem", (i % 10) / 10.0d);
+        }
+        for (int i = 0; i < count; i += 2) {
+            manager.handleItemRemoved(uuids[i]);
+        }
+
+        assertEquals(count / 2, manager.getItemCount());
+        for (int i = 0; i < count; i++) {
+            assertEquals("container " + i, i % 2 == 0 ? null : Long.valueOf(i % 10), manager.getItemType(uuids[i]));
+        }
+        assertEquals(0.5d, manager.getFillFactorAsDouble(5), 0.0d);
+    }
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void handleItemAddedNegativeFillFactor() {
+        SmartFridgeManager manager = new OffHeapSmartFridgeManager();
+
+        exception.expect(IllegalArgumentException.class);
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testNewItem",
+                -1.0d
+        );
+    }
+
+    @Test
+    public void randomEventsMatchDemoSmartFridgeManager() {
+        Random random = new Random(42);
+        String[] uuids = new String[500];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = i % 10 == 0 ? "testUUID" + i : randomUUID();
+        }
+        SmartFridgeManager expected = new DemoSmartFridgeManager();
+        SmartFridgeManager actual = new OffHeapSmartFridgeManager();
+
+        for (int i = 0; i < 100_000; i++) {
+            String uuid = uuids[random.nextInt(uuids.length)];
+            if (random.nextInt(3) == 0) {
+                expected.handleItemRemoved(uuid);
+                actual.handleItemRemoved(uuid);
+            } else {
+                long itemType = random.nextInt(40);
+                double fillFactor = random.nextInt(4) == 0 ? 0.0d : random.nextDouble();
+                expected.handleItemAdded(itemType, uuid, "testItem" + itemType, fillFactor);
+                actual.handleItemAdded(itemType, uuid, "testItem" + itemType, fillFactor);
+            }
+        }
+
+        for (long itemType = 0; itemType < 40; itemType++) {
+            assertEquals(expected.getFillFactorAsDouble(itemType), actual.getFillFactorAsDouble(itemType), 1e-9d);
+        }
+        Map<Long, Double> expectedItems = toMap(expected.getItems(0.5d));
+        Map<Long, Double> actualItems = toMap(actual.getItems(0.5d));
+        assertEquals(expectedItems.keySet(), actualItems.keySet());
+    }
+
+    @Test
+    public void sizes() {
+        SmartFridgeManager manager = new OffHeapSmartFridgeManager();
+        manager.handleItemAdded(1, "a", "milk", 0.5d);
+        manager.handleItemAdded(1, "b", "milk", 0.0d);
+        manager.handleItemAdded(2, "c", "jam", 1.0d);
+        manager.handleItemAdded(3, "d", "cheese", 1.0d);
+        manager.handleItemRemoved("d");
+        manager.forgetItem(2);
+        manager.forgetItem(4);
+
+        assertEquals(3, manager.getItemCount());
+        assertEquals(1, manager.getItemTypeCount());
+        assertEquals(2, manager.getForgottenItemTypeCount());
+    }
+
+    @Test
+    public void handleItemAddedNaNFillFactor() {
+        SmartFridgeManager manager = new OffHeapSmartFridgeManager();
+
+        exception.expect(IllegalArgumentException.class);
+        manager.handleItemAdded(
+                1,
+                randomUUID(),
+                "testNewItem",
+                Double.NaN
+        );
+    }
+}
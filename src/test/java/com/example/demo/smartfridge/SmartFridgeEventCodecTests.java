@@ -0,0 +1,174 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SmartFridgeEventCodecTests {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    /**
+     * Remembers the events it is handed, rejects the item type -1
+     */
+    private static class RecordingManager extends DemoSmartFridgeManager {
+        final List<Object[]> events = new ArrayList<>();
+
+        @Override
+        public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+            if (itemType == -1L) {
+                throw new IllegalArgumentException("rejected");
+            }
+            events.add(new Object[]{itemType, itemUUID, name, fillFactor});
+            super.handleItemAdded(itemType, itemUUID, name, fillFactor);
+        }
+
+        @Override
+        public void handleItemRemoved(String itemUUID) {
+            events.add(new Object[]{itemUUID});
+            super.handleItemRemoved(itemUUID);
+        }
+    }
+
+    @Test
+    public void roundTrip() {
+        String canonical = UUID.randomUUID().toString();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        SmartFridgeEventCodec.putAddedFrame(buffer, 1L, canonical, "milk", 0.5d);
+        SmartFridgeEventCodec.putAddedFrame(buffer, 2L, "testUUID", null, 1.0d);
+        SmartFridgeEventCodec.putAddedFrame(buffer, 3L, canonical.toUpperCase(), "crème fraîche 🧀", 0.25d);
+        SmartFridgeEventCodec.putRemovedFrame(buffer, canonical);
+        buffer.flip();
+
+        RecordingManager manager = new RecordingManager();
+        assertEquals(4, new SmartFridgeEventCodec().decodeFrames(buffer, manager));
+        assertEquals(0, buffer.remaining());
+
+        assertEquals(4, manager.events.size());
+        assertEvent(manager.events.get(0), 1L, canonical, "milk", 0.5d);
+        assertEvent(manager.events.get(1), 2L, "testUUID", null, 1.0d);
+        assertEvent(manager.events.get(2), 3L, canonical.toUpperCase(), "crème fraîche 🧀", 0.25d);
+        assertEquals(canonical, manager.events.get(3)[0]);
+    }
+
+    private static void assertEvent(Object[] event, long itemType, String itemUUID, String name, double fillFactor) {
+        assertEquals(itemType, event[0]);
+        assertEquals(itemUUID, event[1]);
+        assertEquals(name, event[2]);
+        assertEquals(fillFactor, (double) event[3], 0.0d);
+    }
+
+    @Test
+    public void canonicalUuidIsCompact() {
+        assertEquals(20, SmartFridgeEventCodec.removedLength(UUID.randomUUID().toString()));
+        assertEquals(4 + 8, SmartFridgeEventCodec.removedLength("testUUID"));
+        assertEquals(4 + 2, SmartFridgeEventCodec.removedLength("é"));
+        assertEquals(4 + 4, SmartFridgeEventCodec.removedLength("🧀"));
+    }
+
+    @Test
+    public void partialFrameStaysInBuffer() {
+        ByteBuffer frames = ByteBuffer.allocate(1024);
+        SmartFridgeEventCodec.putAddedFrame(frames, 1L, "a", "milk", 0.5d);
+        SmartFridgeEventCodec.putAddedFrame(frames, 1L, "b", "milk", 1.0d);
+        frames.flip();
+
+        // feed the stream a few bytes at a time, like a slow connection
+        SmartFridgeEventCodec codec = new SmartFridgeEventCodec();
+        RecordingManager manager = new RecordingManager();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        int decoded = 0;
+        while (frames.hasRemaining()) {
+            buffer.put(frames.get());
+            if (frames.hasRemaining()) {
+                buffer.put(frames.get());
+            }
+            buffer.flip();
+            decoded += codec.decodeFrames(buffer, manager);
+            buffer.compact();
+        }
+
+        assertEquals(2, decoded);
+        assertEquals(0, buffer.position());
+        assertEquals(0.75d, manager.getFillFactorAsDouble(1L), 0.0d);
+    }
+
+    @Test
+    public void rejectedEventsAreSkipped() {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        SmartFridgeEventCodec.putAddedFrame(buffer, -1L, "a", "milk", 0.5d);
+        SmartFridgeEventCodec.putAddedFrame(buffer, 1L, "b", "milk", 1.5d);
+        SmartFridgeEventCodec.putAddedFrame(buffer, 1L, "c", "milk", 0.5d);
+        buffer.flip();
+
+        SmartFridgeEventCodec codec = new SmartFridgeEventCodec();
+        DemoSmartFridgeManager manager = new RecordingManager();
+        assertEquals(3, codec.decodeFrames(buffer, manager));
+        assertEquals(2, codec.getRejectedCount());
+        assertEquals(0.5d, manager.getFillFactorAsDouble(1L), 0.0d);
+    }
+
+    @Test
+    public void namesAreInterned() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+        SmartFridgeEventCodec.putAddedFrame(buffer, 1L, "a", new String("milk"), 0.5d);
+        SmartFridgeEventCodec.putAddedFrame(buffer, 1L, "b", new String("milk"), 0.5d);
+        buffer.flip();
+
+        RecordingManager manager = new RecordingManager();
+        new SmartFridgeEventCodec().decodeFrames(buffer, manager);
+        assertSame(manager.events.get(0)[2], manager.events.get(1)[2]);
+    }
+
+    @Test
+    public void unknownEventType() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putInt(1).put((byte) 7).flip();
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("unknown event type 7");
+        new SmartFridgeEventCodec().decodeFrames(buffer, new RecordingManager());
+    }
+
+    @Test
+    public void truncatedEvent() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.putInt(1 + 8).put(SmartFridgeEventCodec.ADDED).putLong(1L).flip();
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("truncated event");
+        new SmartFridgeEventCodec().decodeFrames(buffer, new RecordingManager());
+    }
+
+    @Test
+    public void frameTooLong() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putInt(SmartFridgeEventCodec.MAX_FRAME_LENGTH + 1).flip();
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("frame length");
+        new SmartFridgeEventCodec().decodeFrames(buffer, new RecordingManager());
+    }
+
+    @Test
+    public void trailingBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        int length = SmartFridgeEventCodec.removedLength("a");
+        buffer.putInt(1 + length + 1).put(SmartFridgeEventCodec.REMOVED);
+        SmartFridgeEventCodec.putRemoved(buffer, "a");
+        buffer.put((byte) 0).flip();
+
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("1 bytes after the event");
+        new SmartFridgeEventCodec().decodeFrames(buffer, new RecordingManager());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SmartFridgeEventServerTests {
+
+    private static final InetSocketAddress LOOPBACK = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    /**
+     * Fails with something other than a rejection for the item type -2
+     */
+    private static class FailingManager extends ConcurrentSmartFridgeManager {
+        @Override
+        public void handleItemAdded(long itemType, String itemUUID, String name, double fillFactor) {
+            if (itemType == -2L) {
+                throw new UnsupportedOperationException("failed");
+            }
+            super.handleItemAdded(itemType, itemUUID, name, fillFactor);
+        }
+    }
+
+    private static SocketChannel connect(SmartFridgeEventServer server) throws IOException {
+        return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+    }
+
+    private static void write(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void awaitEventCount(SmartFridgeEventServer server, long eventCount) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (server.getEventCount() < eventCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(eventCount, server.getEventCount());
+    }
+
+    @Test
+    public void serveOverLoopback() throws IOException, InterruptedException {
+        ConcurrentSmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+        try (SmartFridgeEventServer server = SmartFridgeEventServer.start(manager, LOOPBACK)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            for (int i = 0; i < 1000; i++) {
+                SmartFridgeEventCodec.putAddedFrame(buffer, i % 10, "item" + i, "type" + i % 10, 0.5d);
+            }
+            SmartFridgeEventCodec.putAddedFrame(buffer, 1L, "item1000", "type1", 1.5d);
+
+            try (SocketChannel channel = connect(server)) {
+                write(channel, buffer);
+            }
+
+            awaitEventCount(server, 1001);
+            assertEquals(1, server.getRejectedCount());
+            assertEquals(0, server.getFailedCount());
+            for (long itemType = 0; itemType < 10; itemType++) {
+                assertEquals(0.5d, manager.getFillFactorAsDouble(itemType), 0.0d);
+            }
+        }
+    }
+
+    @Test
+    public void malformedFrameClosesConnection() throws IOException, InterruptedException {
+        ConcurrentSmartFridgeManager manager = new ConcurrentSmartFridgeManager();
+        try (SmartFridgeEventServer server = SmartFridgeEventServer.start(manager, LOOPBACK)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            buffer.putInt(1).put((byte) 7);
+
+            try (SocketChannel channel = connect(server)) {
+                write(channel, buffer);
+                // the server closes its end, which the client sees as end of stream
+                assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+            }
+            assertEquals(0, server.getEventCount());
+            assertEquals(0, server.getFailedCount());
+            assertEquals(0, manager.getItems(1.0d).length);
+        }
+    }
+
+    @Test
+    public void failingEventClosesOnlyItsConnection() throws IOException, InterruptedException {
+        ConcurrentSmartFridgeManager manager = new FailingManager();
+        try (SmartFridgeEventServer server = SmartFridgeEventServer.start(manager, LOOPBACK);
+             SocketChannel other = connect(server)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            SmartFridgeEventCodec.putAddedFrame(buffer, 1L, "a", "milk", 0.5d);
+            write(other, buffer);
+            awaitEventCount(server, 1);
+
+            try (SocketChannel channel = connect(server)) {
+                buffer.clear();
+                SmartFridgeEventCodec.putAddedFrame(buffer, -2L, "b", "broken", 0.5d);
+                write(channel, buffer);
+                assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+            }
+            assertEquals(1, server.getFailedCount());
+
+            // the server thread survived, and so did the other connection
+            buffer.clear();
+            SmartFridgeEventCodec.putAddedFrame(buffer, 2L, "c", "cheese", 0.25d);
+            write(other, buffer);
+            awaitEventCount(server, 2);
+            assertEquals(0.25d, manager.getFillFactorAsDouble(2L), 0.0d);
+
+            try (SocketChannel channel = connect(server)) {
+                buffer.clear();
+                SmartFridgeEventCodec.putRemovedFrame(buffer, "a");
+                write(channel, buffer);
+            }
+            awaitEventCount(server, 3);
+            assertEquals(0.0d, manager.getFillFactorAsDouble(1L), 0.0d);
+        }
+    }
+
+    @Test
+    public void closeClosesConnections() throws IOException, InterruptedException {
+        SmartFridgeEventServer server = SmartFridgeEventServer.start(new ConcurrentSmartFridgeManager(), LOOPBACK);
+        int port = server.getLocalPort();
+        try (SocketChannel channel = connect(server)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            SmartFridgeEventCodec.putAddedFrame(buffer, 1L, "a", "milk", 0.5d);
+            write(channel, buffer);
+            awaitEventCount(server, 1);
+
+            server.close();
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+        }
+
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+            fail("expected the server to stop accepting connections");
+        } catch (ConnectException e) {
+            // closed
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+
+public class SmartFridgeEventTests {
+
+    @Test
+    public void coalesceKeepsLastEventPerUUID() {
+        SmartFridgeEvent last1 = SmartFridgeEvent.removed("testUUID1");
+        SmartFridgeEvent last2 = SmartFridgeEvent.added(2, "testUUID2", "testItem2", 0.5d);
+
+        Collection<SmartFridgeEvent> actual = SmartFridgeEvent.coalesce(Arrays.asList(
+                SmartFridgeEvent.added(1, "testUUID1", "testItem1", 1.0d),
+                last2,
+                last1
+        ));
+
+        assertEquals(2, actual.size());
+        Iterator<SmartFridgeEvent> events = actual.iterator();
+        assertEquals(last1, events.next());
+        assertEquals(last2, events.next());
+    }
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void addedFillFactorOverOne() {
+        exception.expect(IllegalArgumentException.class);
+        SmartFridgeEvent.added(1, "testUUID", "testItem", 1.1d);
+    }
+
+    @Test
+    public void addedFillFactorNaN() {
+        exception.expect(IllegalArgumentException.class);
+        SmartFridgeEvent.added(1, "testUUID", "testItem", Double.NaN);
+    }
+
+    @Test
+    public void removedNullUUID() {
+        exception.expect(IllegalArgumentException.class);
+        SmartFridgeEvent.removed(null);
+    }
+
+    @Test
+    public void withSequenceKeepsEvent() {
+        SmartFridgeEvent event = SmartFridgeEvent.added(1, "testUUID", "testItem", 0.5d).withSequence(7);
+        assertEquals(7, event.getSequence());
+        assertEquals("testUUID", event.getItemUUID());
+        assertEquals(0.5d, event.getFillFactor(), 0.0d);
+        assertEquals(SmartFridgeEvent.NO_SEQUENCE, SmartFridgeEvent.removed("testUUID").getSequence());
+    }
+
+    @Test
+    public void withSequenceNegative() {
+        exception.expect(IllegalArgumentException.class);
+        SmartFridgeEvent.removed("testUUID").withSequence(-1);
+    }
+}
@@ -60,6 +60,12 @@ public class StandardSmartFridgeItemTests {
         assertEquals(expected, item.getFillFactor());
     }
 
+    @Test
+    public void getFillFactorAsDouble() {
+        item.setFillFactor(Double.valueOf(0.5d));
+        assertEquals(0.5d, item.getFillFactorAsDouble(), 0.0d);
+    }
+
     @Rule
     public final ExpectedException exception = ExpectedException.none();
 
@@ -69,6 +75,12 @@ public class StandardSmartFridgeItemTests {
         item.setFillFactor(-1.0d);
     }
 
+    @Test
+    public void setNegativeBoxedFillFactor() {
+        exception.expect(IllegalArgumentException.class);
+        item.setFillFactor(Double.valueOf(-1.0d));
+    }
+
     @Test
     public void setFillFactorOverOne() {
         exception.expect(IllegalArgumentException.class);
@@ -0,0 +1,38 @@
+package com.example.demo.smartfridge;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UuidsTests {
+
+    @Test
+    public void roundTrip() {
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = UUID.randomUUID();
+            String value = uuid.toString();
+
+            assertTrue(Uuids.isCanonical(value));
+            assertEquals(uuid.getMostSignificantBits(), Uuids.mostSignificantBits(value));
+            assertEquals(uuid.getLeastSignificantBits(), Uuids.leastSignificantBits(value));
+            assertEquals(value, Uuids.toString(Uuids.mostSignificantBits(value), Uuids.leastSignificantBits(value)));
+        }
+    }
+
+    @Test
+    public void notCanonical() {
+        String value = UUID.randomUUID().toString();
+
+        assertFalse(Uuids.isCanonical(null));
+        assertFalse(Uuids.isCanonical("testUUID"));
+        assertFalse(Uuids.isCanonical(value.toUpperCase()));
+        assertFalse(Uuids.isCanonical(value.replace('-', '0')));
+        assertFalse(Uuids.isCanonical(value.substring(1) + "g"));
+        assertFalse(Uuids.isCanonical(value.substring(1) + "-"));
+        assertFalse(Uuids.isCanonical(value.substring(1) + "\u00e9"));
+    }
+}
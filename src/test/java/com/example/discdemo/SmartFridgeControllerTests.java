@@ -0,0 +1,133 @@
+package com.example.discdemo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class SmartFridgeControllerTests {
+
+	@Autowired
+	private MockMvc mvc;
+
+	private void postEvent(String json) throws Exception {
+		mvc.perform(post("/fridge/events").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andExpect(status().isNoContent());
+	}
+
+	@Test
+	public void addRemoveAndQuery() throws Exception {
+		postEvent("{\"itemType\": 1, \"itemUUID\": \"a\", \"name\": \"milk\", \"fillFactor\": 0.5}");
+		postEvent("{\"itemType\": 1, \"itemUUID\": \"b\", \"name\": \"milk\", \"fillFactor\": 1.0}");
+		postEvent("{\"itemType\": 2, \"itemUUID\": \"c\", \"name\": \"jam\", \"fillFactor\": 0.25}");
+
+		mvc.perform(get("/fridge/item-types/1"))
+				.andExpect(status().isOk())
+				.andExpect(content().json("{\"itemType\": 1, \"fillFactor\": 0.75}"));
+		mvc.perform(get("/fridge/items").param("fillFactor", "0.75"))
+				.andExpect(content().json("[[2, 0.25], [1, 0.75]]"));
+
+		mvc.perform(delete("/fridge/items/b")).andExpect(status().isNoContent());
+		mvc.perform(post("/fridge/item-types/2/forget")).andExpect(status().isNoContent());
+		mvc.perform(get("/fridge/items").param("fillFactor", "0.75"))
+				.andExpect(content().json("[[1, 0.5]]"));
+	}
+
+	@Test
+	public void metrics() throws Exception {
+		postEvent("{\"itemType\": 1, \"itemUUID\": \"a\", \"name\": \"milk\", \"fillFactor\": 0.5}");
+		mvc.perform(get("/fridge/items").param("fillFactor", "1.0"));
+
+		mvc.perform(get("/metrics"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$['counter.smartfridge.items.added']").value(1))
+				.andExpect(jsonPath("$['gauge.smartfridge.items']").value(1))
+				.andExpect(jsonPath("$['gauge.smartfridge.item-types']").value(1))
+				.andExpect(jsonPath("$['timer.smartfridge.get-items.count']").value(1));
+	}
+
+	@Test
+	public void lowestItemsPages() throws Exception {
+		postEvent("{\"itemType\": 1, \"itemUUID\": \"a\", \"name\": \"milk\", \"fillFactor\": 0.5}");
+		postEvent("{\"itemType\": 2, \"itemUUID\": \"b\", \"name\": \"jam\", \"fillFactor\": 0.25}");
+		postEvent("{\"itemType\": 3, \"itemUUID\": \"c\", \"name\": \"oats\", \"fillFactor\": 1.0}");
+
+		mvc.perform(get("/fridge/items/lowest").param("limit", "2"))
+				.andExpect(status().isOk())
+				.andExpect(content().json("[[2, 0.25], [1, 0.5]]"));
+		mvc.perform(get("/fridge/items/lowest").param("limit", "2").param("offset", "2"))
+				.andExpect(content().json("[[3, 1.0]]"));
+		mvc.perform(get("/fridge/items/lowest").param("offset", "-1"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void searchByName() throws Exception {
+		postEvent("{\"itemType\": 1, \"itemUUID\": \"a\", \"name\": \"Oat Milk\", \"fillFactor\": 0.5}");
+		postEvent("{\"itemType\": 2, \"itemUUID\": \"b\", \"name\": \"Milk\", \"fillFactor\": 0.25}");
+		postEvent("{\"itemType\": 3, \"itemUUID\": \"c\", \"name\": \"Jam\", \"fillFactor\": 1.0}");
+
+		mvc.perform(get("/fridge/items/search").param("prefix", "oat m"))
+				.andExpect(status().isOk())
+				.andExpect(content().json("[[1, \"Oat Milk\", 0.5]]"));
+		mvc.perform(get("/fridge/items/search").param("prefix", "mi").param("limit", "1"))
+				.andExpect(content().json("[[2, \"Milk\", 0.25]]"));
+		mvc.perform(get("/fridge/items/search").param("prefix", "milk").param("limit", "0"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void applyBatch() throws Exception {
+		mvc.perform(post("/fridge/events/batch").contentType(MediaType.APPLICATION_JSON).content("["
+				+ "{\"itemType\": 1, \"itemUUID\": \"a\", \"fillFactor\": 0.5},"
+				+ "{\"itemType\": 2, \"itemUUID\": \"b\", \"fillFactor\": 0.5},"
+				+ "{\"type\": \"REMOVED\", \"itemUUID\": \"a\"}"
+				+ "]")).andExpect(status().isNoContent());
+
+		mvc.perform(get("/fridge/items").param("fillFactor", "1.0"))
+				.andExpect(content().json("[[2, 0.5]]"));
+	}
+
+	@Test
+	public void invalidEvents() throws Exception {
+		mvc.perform(post("/fridge/events").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"itemType\": 1, \"itemUUID\": \"a\", \"fillFactor\": 1.5}"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(post("/fridge/events/batch").contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"itemType\": 1, \"itemUUID\": \"a\", \"fillFactor\": 0.5}, {\"itemType\": 1}]"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(get("/fridge/items").param("fillFactor", "1.0"))
+				.andExpect(content().json("[]"));
+	}
+
+	@Test
+	public void forgetForAWhileAndRemember() throws Exception {
+		postEvent("{\"itemType\": 1, \"itemUUID\": \"a\", \"name\": \"milk\", \"fillFactor\": 0.5}");
+		postEvent("{\"itemType\": 2, \"itemUUID\": \"b\", \"name\": \"jam\", \"fillFactor\": 0.25}");
+
+		mvc.perform(post("/fridge/item-types/1/forget").param("ttl", "PT12H")).andExpect(status().isNoContent());
+		mvc.perform(post("/fridge/item-types/2/forget")).andExpect(status().isNoContent());
+		mvc.perform(get("/fridge/items").param("fillFactor", "1.0"))
+				.andExpect(content().json("[]"));
+
+		mvc.perform(post("/fridge/item-types/2/remember")).andExpect(status().isNoContent());
+		mvc.perform(get("/fridge/items").param("fillFactor", "1.0"))
+				.andExpect(content().json("[[2, 0.25]]"));
+	}
+}
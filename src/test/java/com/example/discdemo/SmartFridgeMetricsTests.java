@@ -0,0 +1,47 @@
+package com.example.discdemo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "smartfridge.dedup-window-size=100")
+@AutoConfigureMockMvc
+public class SmartFridgeMetricsTests {
+
+	@Autowired
+	private MockMvc mvc;
+
+	private void postEvent(String json) throws Exception {
+		mvc.perform(post("/fridge/events").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andExpect(status().isNoContent());
+	}
+
+	@Test
+	public void duplicatesAreNotCountedAsEvents() throws Exception {
+		postEvent("{\"itemType\": 1, \"itemUUID\": \"a\", \"name\": \"milk\", \"fillFactor\": 0.5}");
+		// a retry of the same reading, then a numbered event and its retry
+		postEvent("{\"itemType\": 1, \"itemUUID\": \"a\", \"name\": \"milk\", \"fillFactor\": 0.5}");
+		postEvent("{\"itemType\": 1, \"itemUUID\": \"a\", \"name\": \"milk\", \"fillFactor\": 0.25, \"sequence\": 7}");
+		postEvent("{\"itemType\": 1, \"itemUUID\": \"a\", \"name\": \"milk\", \"fillFactor\": 0.25, \"sequence\": 7}");
+		mvc.perform(delete("/fridge/items/a")).andExpect(status().isNoContent());
+		mvc.perform(delete("/fridge/items/a")).andExpect(status().isNoContent());
+
+		mvc.perform(get("/metrics"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$['counter.smartfridge.items.added']").value(2))
+				.andExpect(jsonPath("$['counter.smartfridge.items.removed']").value(1))
+				.andExpect(jsonPath("$['counter.smartfridge.events.duplicate']").value(3));
+	}
+}